@@ -5,7 +5,7 @@ import java.util.ArrayList;
 import java.util.List;
 
 import org.aksw.limes.core.io.cache.Cache;
-import org.aksw.limes.core.io.mapping.MemoryMapping;
+import org.aksw.limes.core.io.mapping.Mapping;
 import org.apache.log4j.Logger;
 
 /**
@@ -23,7 +23,7 @@ public abstract class ExecutionEngine implements IExecutionEngine, Serializable
 	private static final long serialVersionUID = 1L;
 	static Logger logger = Logger.getLogger("LIMES");
     // contains the results
-    protected List<MemoryMapping> buffer;
+    protected List<Mapping> buffer;
     protected String sourceVariable;
     protected String targetVariable;
     protected Cache source;
@@ -42,7 +42,7 @@ public abstract class ExecutionEngine implements IExecutionEngine, Serializable
      *            Target variable (usually "?y")
      */
     public ExecutionEngine(Cache source, Cache target, String sourceVar, String targetVar) {
-	this.buffer = new ArrayList<MemoryMapping>();
+	this.buffer = new ArrayList<Mapping>();
 	this.source = source;
 	this.target = target;
 	this.sourceVariable = sourceVar;
@@ -27,14 +27,10 @@ public class ExecutionEngineFactory {
     public static ExecutionEngine getEngine(String name, Cache source, Cache target, String sourceVar,
 	    String targetVar) {
 
-	//if (name.equalsIgnoreCase(DEFAULT))
-    	//logger.info("engine factory");
-	    return new SimpleExecutionEngine(source, target, sourceVar, targetVar);
-	//if (name.equalsIgnoreCase(PARALLEL))
-	//    return new ParallelExecutionEngine(source, target, sourceVar, targetVar);
-
-	//logger.error("Sorry, " + name + " is not yet implemented. Exit with error ...");
-	//System.exit(1);
-	//return null;
+	if (name.equalsIgnoreCase(PARALLEL))
+	    return new ParallelExecutionEngine(source, target, sourceVar, targetVar);
+	if (!name.equalsIgnoreCase(DEFAULT))
+	    logger.warn("Sorry, " + name + " is not yet implemented. Using the default engine ...");
+	return new SimpleExecutionEngine(source, target, sourceVar, targetVar);
     }
 }
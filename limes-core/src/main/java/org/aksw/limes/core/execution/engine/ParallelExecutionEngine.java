@@ -1,52 +1,319 @@
 package org.aksw.limes.core.execution.engine;
 
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveTask;
+
+import org.aksw.limes.core.execution.planning.plan.Instruction;
+import org.aksw.limes.core.execution.planning.plan.Instruction.Command;
 import org.aksw.limes.core.execution.planning.plan.NestedPlan;
 import org.aksw.limes.core.execution.planning.plan.Plan;
 import org.aksw.limes.core.io.cache.Cache;
 import org.aksw.limes.core.io.mapping.Mapping;
 import org.aksw.limes.core.io.mapping.MemoryMapping;
+import org.aksw.limes.core.measures.mapper.MapperExecutor;
 
 /**
  * Implements the default parallel engine class. The idea is that the engine
  * gets a series of instructions in the form of an execution plan and runs these
- * instructions in parallel and returns a mapping.
+ * instructions in parallel and returns a mapping. The plan is treated as a
+ * DAG: the subplans of a nested plan as well as the RUN instructions of a plan
+ * do not depend on each other and are forked on a {@link ForkJoinPool}, while
+ * set operators and filters wait for the mappings they consume. The results
+ * are the same as the ones of the {@link SimpleExecutionEngine}.
+ *
+ * By default, the tasks run on the pool shared with the mappers, see
+ * {@link MapperExecutor#getPool()}. An engine with its own parallelism
+ * creates a pool for each execution and shuts it down when the execution is
+ * done. A pool passed to the engine is neither created nor shut down by it.
  *
  * @author ngonga
  * @author kleanthi
  */
-public class ParallelExecutionEngine extends ExecutionEngine {
+public class ParallelExecutionEngine extends SimpleExecutionEngine {
+
+    private static final long serialVersionUID = 1L;
+    private int parallelism;
+    private transient ForkJoinPool pool;
 
-    
+    /**
+     * Constructor for a parallel execution engine that runs its tasks on the
+     * pool shared with the mappers.
+     *
+     * @param source,
+     *            Source cache
+     * @param target,
+     *            Target cache
+     * @param sourceVar,
+     *            Source variable (usually "?x")
+     * @param targetVar,
+     *            Target variable (usually "?y")
+     */
     public ParallelExecutionEngine(Cache source, Cache target, String sourceVar, String targetVar) {
+	this(source, target, sourceVar, targetVar, MapperExecutor.getPool());
+    }
+
+    /**
+     * Constructor for a parallel execution engine with its own pool, which is
+     * created for each execution and shut down when the execution is done.
+     *
+     * @param source,
+     *            Source cache
+     * @param target,
+     *            Target cache
+     * @param sourceVar,
+     *            Source variable (usually "?x")
+     * @param targetVar,
+     *            Target variable (usually "?y")
+     * @param parallelism,
+     *            Number of worker threads of the pool
+     */
+    public ParallelExecutionEngine(Cache source, Cache target, String sourceVar, String targetVar,
+	    int parallelism) {
+	super(source, target, sourceVar, targetVar);
+	this.parallelism = parallelism;
+    }
+
+    /**
+     * Constructor for a parallel execution engine that runs its tasks on an
+     * existing pool, e.g., one shared by several engines of the same job.
+     *
+     * @param source,
+     *            Source cache
+     * @param target,
+     *            Target cache
+     * @param sourceVar,
+     *            Source variable (usually "?x")
+     * @param targetVar,
+     *            Target variable (usually "?y")
+     * @param pool,
+     *            Pool the instructions are executed on
+     */
+    public ParallelExecutionEngine(Cache source, Cache target, String sourceVar, String targetVar,
+	    ForkJoinPool pool) {
 	super(source, target, sourceVar, targetVar);
-	// TODO Auto-generated constructor stub
+	this.pool = pool;
+	this.parallelism = pool.getParallelism();
+    }
+
+    /**
+     * Runs a task on the pool of the engine. If the engine has no pool, a new
+     * one is created and shut down once the task is done.
+     *
+     * @param task
+     *            Task to run
+     * @return The mapping computed by the task
+     */
+    private Mapping invoke(RecursiveTask<Mapping> task) {
+	if (pool != null) {
+	    return pool.invoke(task);
+	}
+	ForkJoinPool ownPool = new ForkJoinPool(parallelism);
+	try {
+	    return ownPool.invoke(task);
+	} finally {
+	    ownPool.shutdown();
+	}
     }
 
     /**
-     * Implementation of the execution of a nested plan.
-     * Instructions of the plan are implemented in parallel.
+     * Implementation of the execution of a nested plan. The subplans are
+     * executed in parallel and their results are merged with the operator of
+     * the plan.
      *
-     * @param plan A nested plan
+     * @param plan
+     *            A nested plan
      * @return The mapping from running the plan
      */
     @Override
-    public MemoryMapping execute(NestedPlan plan) {
-	throw new UnsupportedOperationException("Not implemented yet");
+    public Mapping execute(NestedPlan plan) {
+	return invoke(new NestedPlanTask(plan));
     }
+
     /**
-     * Implementation of the execution of an execution plan.
-     * Instructions of the plan are implemented in parallel.
+     * Implementation of the execution of an execution plan. RUN instructions
+     * are executed in parallel, all other instructions start as soon as the
+     * mappings they consume are available.
      *
-     * @param plan An execution plan
+     * @param plan
+     *            An execution plan
      * @return The mapping from running the plan
      */
     @Override
     public Mapping execute(Plan plan) {
-	throw new UnsupportedOperationException("Not implemented yet");
+	return invoke(new PlanTask(plan));
+    }
 
+    /**
+     * Merges two mappings with a set operator.
+     *
+     * @param operator
+     *            INTERSECTION, UNION, DIFF or XOR
+     * @param m1
+     *            First Mapping
+     * @param m2
+     *            Second Mapping
+     * @return the merged mapping, m1 if the operator is not a set operator
+     */
+    private Mapping executeOperator(Command operator, Mapping m1, Mapping m2) {
+	if (operator.equals(Command.INTERSECTION)) {
+	    return executeIntersection(m1, m2);
+	} else if (operator.equals(Command.UNION)) {
+	    return executeUnion(m1, m2);
+	} else if (operator.equals(Command.DIFF)) {
+	    return executeDifference(m1, m2);
+	} else if (operator.equals(Command.XOR)) {
+	    return executeExclusiveOr(m1, m2);
+	}
+	return m1;
+    }
+
+    /**
+     * Executes a nested plan. Subplans are forked, the operator is applied
+     * from left to right once all of them are done.
+     */
+    private class NestedPlanTask extends RecursiveTask<Mapping> {
+
+	private static final long serialVersionUID = 1L;
+	private final NestedPlan plan;
+
+	NestedPlanTask(NestedPlan plan) {
+	    this.plan = plan;
+	}
+
+	@Override
+	protected Mapping compute() {
+	    if (plan.isEmpty()) {
+		return new MemoryMapping();
+	    }
+	    if (plan.isAtomic()) {
+		return new PlanTask(plan).compute();
+	    }
+	    List<NestedPlanTask> tasks = new ArrayList<NestedPlanTask>();
+	    for (NestedPlan subPlan : plan.getSubPlans()) {
+		tasks.add(new NestedPlanTask(subPlan));
+	    }
+	    invokeAll(tasks);
+	    Mapping m = tasks.get(0).join();
+	    for (int i = 1; i < tasks.size(); i++) {
+		m = executeOperator(plan.getOperator(), m, tasks.get(i).join());
+	    }
+	    // only run filtering if there is a filter indeed
+	    if (plan.getFilteringInstruction() != null) {
+		m = executeFilter(plan.getFilteringInstruction(), m);
+	    }
+	    return m;
+	}
     }
 
-    
+    /**
+     * Executes the instruction list of a plan. Each instruction becomes a task
+     * that is forked right away; the buffer of the simple engine is replaced
+     * by a list of the tasks that produce the buffered mappings.
+     */
+    private class PlanTask extends RecursiveTask<Mapping> {
+
+	private static final long serialVersionUID = 1L;
+	private final Plan plan;
+
+	PlanTask(Plan plan) {
+	    this.plan = plan;
+	}
+
+	@Override
+	protected Mapping compute() {
+	    if (plan.isEmpty()) {
+		logger.info("Plan is empty. Done.");
+		return new MemoryMapping();
+	    }
+	    List<ForkJoinTask<Mapping>> slots = new ArrayList<ForkJoinTask<Mapping>>();
+	    List<ForkJoinTask<Mapping>> forked = new ArrayList<ForkJoinTask<Mapping>>();
+	    Mapping result = null;
+	    for (Instruction inst : plan.getInstructionList()) {
+		int index = inst.getResultIndex();
+		InstructionTask task;
+		if (inst.getCommand().equals(Command.RETURN)) {
+		    logger.info("Reached return command. Returning results.");
+		    if (slots.isEmpty()) {
+			result = new MemoryMapping();
+		    } else if (index < 0) {// return last element of buffer
+			result = slots.get(slots.size() - 1).join();
+		    } else {
+			result = slots.get(index).join();
+		    }
+		    break;
+		} else if (inst.getCommand().equals(Command.RUN)) {
+		    task = new InstructionTask(inst, null, null);
+		} else if (inst.getCommand().equals(Command.FILTER)) {
+		    task = new InstructionTask(inst, slots.get(inst.getSourceMapping()), null);
+		} else {
+		    task = new InstructionTask(inst, slots.get(inst.getSourceMapping()),
+			    slots.get(inst.getTargetMapping()));
+		}
+		task.fork();
+		forked.add(task);
+		// place the task in the same slot the simple engine would use
+		if (index < 0 || index < slots.size()) {
+		    slots.add(task);
+		} else {
+		    while ((index + 1) > slots.size()) {
+			InstructionTask placeholder = new InstructionTask(null, null, null);
+			placeholder.fork();
+			slots.add(placeholder);
+		    }
+		    slots.set(index, task);
+		}
+	    }
+	    // wait for all instructions, also for those whose result is not
+	    // returned, so that no work is left behind in the pool
+	    for (ForkJoinTask<Mapping> task : forked) {
+		task.join();
+	    }
+	    if (result != null) {
+		return result;
+	    }
+	    // just in case the return operator was forgotten.
+	    // then we return the last mapping computed
+	    if (slots.isEmpty()) {
+		return new MemoryMapping();
+	    }
+	    return slots.get(slots.size() - 1).join();
+	}
+    }
+
+    /**
+     * Executes a single instruction once its input mappings are available. An
+     * instruction task without instruction stands for an empty placeholder
+     * in the buffer.
+     */
+    private class InstructionTask extends RecursiveTask<Mapping> {
+
+	private static final long serialVersionUID = 1L;
+	private final Instruction inst;
+	private final ForkJoinTask<Mapping> first;
+	private final ForkJoinTask<Mapping> second;
+
+	InstructionTask(Instruction inst, ForkJoinTask<Mapping> first, ForkJoinTask<Mapping> second) {
+	    this.inst = inst;
+	    this.first = first;
+	    this.second = second;
+	}
+
+	@Override
+	protected Mapping compute() {
+	    if (inst == null) {
+		return new MemoryMapping();
+	    }
+	    if (inst.getCommand().equals(Command.RUN)) {
+		return executeRun(inst);
+	    }
+	    if (inst.getCommand().equals(Command.FILTER)) {
+		return executeFilter(inst, first.join());
+	    }
+	    return executeOperator(inst.getCommand(), first.join(), second.join());
+	}
+    }
 
-    
 }
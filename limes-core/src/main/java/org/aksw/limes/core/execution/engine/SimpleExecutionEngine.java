@@ -77,7 +77,7 @@ public class SimpleExecutionEngine extends ExecutionEngine {
      */
     public Mapping execute(Plan plan) {
     	
-	buffer = new ArrayList<MemoryMapping>();
+	buffer = new ArrayList<Mapping>();
 	if (plan.isEmpty()) {
 	    logger.info("Plan is empty. Done.");
 	    return new MemoryMapping();
@@ -121,12 +121,12 @@ public class SimpleExecutionEngine extends ExecutionEngine {
 	    }
 	    // place resulting mapping in the buffer
 	    if (index < 0) {// add the new mapping at the end of the list
-		buffer.add((MemoryMapping) m);
+		buffer.add(m);
 	    } else {
 		// avoid overriding places in buffer
 		// by adding the result at the end
 		if (index < buffer.size()) {
-		    buffer.add((MemoryMapping) m);
+		    buffer.add(m);
 		} else {
 		    // add placeholders to ensure that the mapping can be placed
 		    // where the user wanted to have it
@@ -134,7 +134,7 @@ public class SimpleExecutionEngine extends ExecutionEngine {
 		    while ((index + 1) > buffer.size()) {
 			buffer.add(new MemoryMapping());
 		    }
-		    buffer.set(index, (MemoryMapping) m);
+		    buffer.set(index, m);
 		}
 
 	    }
@@ -5,7 +5,7 @@ import org.aksw.limes.core.io.cache.Instance;
 import org.aksw.limes.core.io.mapping.Mapping;
 import org.aksw.limes.core.io.mapping.MemoryMapping;
 import org.aksw.limes.core.measures.mapper.MappingOperations;
-import org.aksw.limes.core.measures.measure.MeasureProcessor;
+import org.aksw.limes.core.measures.measure.MeasureEvaluator;
 import org.apache.log4j.Logger;
 
 /**
@@ -78,12 +78,14 @@ public class LinearFilter implements IFilter {
 	if(threshold == 0.0d)
 	    return map;
 	Mapping result = new MemoryMapping();
+	// 1. compile the condition once for all pairs
+	MeasureEvaluator evaluator = MeasureEvaluator.compile(condition, threshold, sourceVar, targetVar);
 	// 2. run on all pairs and remove those
 	for (String key : map.getMap().keySet()) {
 	    s = source.getInstance(key);
 	    for (String value : map.getMap().get(key).keySet()) {
 		t = target.getInstance(value);
-		sim = MeasureProcessor.getSimilarity(s, t, condition, threshold, sourceVar, targetVar);
+		sim = evaluator.score(s, t);
 		if (sim >= threshold) {
 		    result.add(s.getUri(), t.getUri(), sim);
 		}
@@ -135,12 +137,14 @@ public class LinearFilter implements IFilter {
 	}
 	if(threshold == 0.0d && mainThreshold == 0.0d)
 	   return map;
+	// 1. compile the condition once for all pairs
+	MeasureEvaluator evaluator = MeasureEvaluator.compile(condition, threshold, sourceVar, targetVar);
 	// 2. run on all pairs and remove those
 	for (String key : map.getMap().keySet()) {
 	    s = source.getInstance(key);
 	    for (String value : map.getMap().get(key).keySet()) {
 		t = target.getInstance(value);
-		sim = MeasureProcessor.getSimilarity(s, t, condition, threshold, sourceVar, targetVar);
+		sim = evaluator.score(s, t);
 		// result must pass the filter threshold first!
 		if (sim >= threshold) {
 		    double sim2 = map.getMap().get(s.getUri()).get(t.getUri());
@@ -0,0 +1,688 @@
+package org.aksw.limes.core.io.cache;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * Versioned binary snapshot format for caches. Replaces the Java serialization
+ * of HybridCache, which is slow to read, large on disk and breaks whenever one
+ * of the serialized classes changes.
+ *
+ * A snapshot consists of a fixed header (magic "LIMC", format version, flags,
+ * number of instances, number of strings) followed by the body. The body
+ * starts with a dictionary of all distinct strings (URIs, property names and
+ * values), each written as varint length and UTF-8 bytes. Then follow the
+ * instances as varint string IDs: URI, number of properties, and for each
+ * property its name, the number of values and the values. If the snapshot is
+ * compressed, the body is cut into Deflate blocks of at most 1 MB, each
+ * preceded by its raw and compressed length.
+ *
+ * Snapshots are written and read through NIO channels. Reading maps the file
+ * in windows, so that loading is bounded by disk bandwidth rather than by
+ * object deserialization. {@link #readLazily(File, Cache)} only skims the
+ * mapped file for the positions of the strings and instances and decodes an
+ * instance when it is first used.
+ *
+ * Snapshot files are named with {@link #EXTENSION}, so that they are not
+ * confused with the Java-serialized .ser files of older versions.
+ */
+public class BinaryCacheFormat {
+
+	public static final int VERSION = 1;
+
+	/**
+	 * File name extension of snapshots
+	 */
+	public static final String EXTENSION = ".limc";
+
+	private static final byte[] MAGIC = { 'L', 'I', 'M', 'C' };
+	private static final int HEADER_SIZE = 14;
+	private static final int FLAG_DEFLATE = 1;
+	private static final int BLOCK_SIZE = 1 << 20;
+	private static final long WINDOW_SIZE = 256L << 20;
+	private static final Charset UTF8 = Charset.forName("UTF-8");
+
+	/**
+	 * @param file
+	 *            Snapshot file
+	 * @return true if the file starts with the header of a binary snapshot
+	 */
+	public static boolean isBinaryCache(File file) throws IOException {
+		if (file.length() < HEADER_SIZE) {
+			return false;
+		}
+		RandomAccessFile raf = new RandomAccessFile(file, "r");
+		try {
+			byte[] magic = new byte[MAGIC.length];
+			raf.readFully(magic);
+			for (int i = 0; i < MAGIC.length; i++) {
+				if (magic[i] != MAGIC[i]) {
+					return false;
+				}
+			}
+			return true;
+		} finally {
+			raf.close();
+		}
+	}
+
+	/**
+	 * Writes a snapshot of a cache.
+	 *
+	 * @param cache
+	 *            Cache to write
+	 * @param file
+	 *            Snapshot file, overwritten if it exists
+	 * @param compress
+	 *            If true, the body is written as Deflate blocks
+	 */
+	public static void write(Cache cache, File file, boolean compress) throws IOException {
+		ArrayList<Instance> instances = cache.getAllInstances();
+		// assign IDs in order of appearance
+		HashMap<String, Integer> ids = new HashMap<String, Integer>();
+		List<String> strings = new ArrayList<String>();
+		for (Instance instance : instances) {
+			intern(instance.getUri(), ids, strings);
+			for (String p : instance.getAllProperties()) {
+				intern(p, ids, strings);
+				for (String v : instance.getProperty(p)) {
+					intern(v, ids, strings);
+				}
+			}
+		}
+
+		RandomAccessFile raf = new RandomAccessFile(file, "rw");
+		try {
+			raf.setLength(0);
+			FileChannel channel = raf.getChannel();
+			ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+			header.put(MAGIC);
+			header.put((byte) VERSION);
+			header.put((byte) (compress ? FLAG_DEFLATE : 0));
+			header.putInt(instances.size());
+			header.putInt(strings.size());
+			header.flip();
+			writeFully(channel, header);
+
+			BlockOutput out = new BlockOutput(channel, compress);
+			for (String s : strings) {
+				byte[] bytes = s.getBytes(UTF8);
+				out.writeVarint(bytes.length);
+				out.write(bytes);
+			}
+			for (Instance instance : instances) {
+				out.writeVarint(ids.get(instance.getUri()));
+				Set<String> properties = instance.getAllProperties();
+				out.writeVarint(properties.size());
+				for (String p : properties) {
+					out.writeVarint(ids.get(p));
+					TreeSet<String> values = instance.getProperty(p);
+					out.writeVarint(values.size());
+					for (String v : values) {
+						out.writeVarint(ids.get(v));
+					}
+				}
+			}
+			out.close();
+		} finally {
+			raf.close();
+		}
+	}
+
+	/**
+	 * Reads a snapshot into a cache. All instances are decoded at once.
+	 *
+	 * @param file
+	 *            Snapshot file
+	 * @param cache
+	 *            Cache the instances are added to
+	 * @throws IOException
+	 *             if the file is not a snapshot of a supported version
+	 */
+	public static void read(File file, Cache cache) throws IOException {
+		RandomAccessFile raf = new RandomAccessFile(file, "r");
+		try {
+			FileChannel channel = raf.getChannel();
+			Header header = new Header(channel, file);
+			BlockInput in = new BlockInput(channel, HEADER_SIZE, header.compressed);
+			String[] strings = new String[header.stringCount];
+			for (int i = 0; i < header.stringCount; i++) {
+				strings[i] = in.readString();
+			}
+			for (int i = 0; i < header.instanceCount; i++) {
+				Instance instance = new Instance(strings[in.readVarint()]);
+				int properties = in.readVarint();
+				for (int j = 0; j < properties; j++) {
+					String p = strings[in.readVarint()];
+					int values = in.readVarint();
+					TreeSet<String> set = new TreeSet<String>();
+					for (int k = 0; k < values; k++) {
+						set.add(strings[in.readVarint()]);
+					}
+					instance.addProperty(p, set);
+				}
+				cache.addInstance(instance);
+			}
+			in.close();
+		} finally {
+			raf.close();
+		}
+	}
+
+	/**
+	 * Reads a snapshot into a cache without decoding the instances. Only the
+	 * URIs are read, and the properties of an instance are decoded from the
+	 * memory-mapped file when the instance is used for the first time.
+	 * Compressed snapshots cannot be decoded instance by instance and are
+	 * read at once as by {@link #read(File, Cache)}.
+	 *
+	 * The file must not be changed while instances of the cache are not
+	 * decoded yet.
+	 *
+	 * @param file
+	 *            Snapshot file
+	 * @param cache
+	 *            Cache the instances are added to
+	 * @throws IOException
+	 *             if the file is not a snapshot of a supported version
+	 */
+	public static void readLazily(File file, Cache cache) throws IOException {
+		Snapshot snapshot = null;
+		RandomAccessFile raf = new RandomAccessFile(file, "r");
+		try {
+			FileChannel channel = raf.getChannel();
+			Header header = new Header(channel, file);
+			if (!header.compressed) {
+				// the mapping stays valid after the file is closed
+				snapshot = new Snapshot(new BlockInput(channel, HEADER_SIZE, false), header);
+			}
+		} finally {
+			raf.close();
+		}
+		if (snapshot == null) {
+			read(file, cache);
+			return;
+		}
+		for (int i = 0; i < snapshot.size(); i++) {
+			cache.addInstance(new SnapshotInstance(snapshot, i));
+		}
+	}
+
+	/**
+	 * Header of a snapshot file
+	 */
+	private static class Header {
+		final boolean compressed;
+		final int instanceCount;
+		final int stringCount;
+
+		Header(FileChannel channel, File file) throws IOException {
+			ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+			while (header.hasRemaining()) {
+				if (channel.read(header, header.position()) < 0) {
+					throw new IOException("Truncated cache file " + file.getAbsolutePath());
+				}
+			}
+			header.flip();
+			for (int i = 0; i < MAGIC.length; i++) {
+				if (header.get() != MAGIC[i]) {
+					throw new IOException(file.getAbsolutePath() + " is not a binary cache file");
+				}
+			}
+			int version = header.get();
+			if (version != VERSION) {
+				throw new IOException("Unsupported cache file version " + version + " in " + file.getAbsolutePath());
+			}
+			compressed = (header.get() & FLAG_DEFLATE) != 0;
+			instanceCount = header.getInt();
+			stringCount = header.getInt();
+		}
+	}
+
+	/**
+	 * Index of an uncompressed snapshot: the file positions of the strings
+	 * and of the properties of each instance. Strings are decoded once, when
+	 * they are first needed.
+	 */
+	private static class Snapshot {
+		private final BlockInput in;
+		private final long[] stringPositions;
+		private final String[] strings;
+		private final int[] uriIds;
+		private final long[] propertyPositions;
+
+		/**
+		 * Skims the body once without decoding the strings
+		 */
+		Snapshot(BlockInput in, Header header) throws IOException {
+			this.in = in;
+			stringPositions = new long[header.stringCount];
+			strings = new String[header.stringCount];
+			for (int i = 0; i < header.stringCount; i++) {
+				stringPositions[i] = in.position();
+				in.skip(in.readVarint());
+			}
+			uriIds = new int[header.instanceCount];
+			propertyPositions = new long[header.instanceCount];
+			for (int i = 0; i < header.instanceCount; i++) {
+				uriIds[i] = in.readVarint();
+				propertyPositions[i] = in.position();
+				int properties = in.readVarint();
+				for (int j = 0; j < properties; j++) {
+					in.readVarint();
+					int values = in.readVarint();
+					for (int k = 0; k < values; k++) {
+						in.readVarint();
+					}
+				}
+			}
+		}
+
+		int size() {
+			return uriIds.length;
+		}
+
+		synchronized String getUri(int instance) throws IOException {
+			return string(uriIds[instance]);
+		}
+
+		private String string(int id) throws IOException {
+			if (strings[id] == null) {
+				in.seek(stringPositions[id]);
+				strings[id] = in.readString();
+			}
+			return strings[id];
+		}
+
+		/**
+		 * Decodes an instance
+		 */
+		synchronized Instance read(int instance) throws IOException {
+			// read the IDs first, as decoding strings moves the input
+			in.seek(propertyPositions[instance]);
+			int properties = in.readVarint();
+			int[][] ids = new int[properties][];
+			for (int j = 0; j < properties; j++) {
+				int p = in.readVarint();
+				ids[j] = new int[in.readVarint() + 1];
+				ids[j][0] = p;
+				for (int k = 1; k < ids[j].length; k++) {
+					ids[j][k] = in.readVarint();
+				}
+			}
+			Instance result = new Instance(getUri(instance));
+			for (int j = 0; j < properties; j++) {
+				TreeSet<String> set = new TreeSet<String>();
+				for (int k = 1; k < ids[j].length; k++) {
+					set.add(string(ids[j][k]));
+				}
+				result.addProperty(string(ids[j][0]), set);
+			}
+			return result;
+		}
+	}
+
+	/**
+	 * Instance of a snapshot that is decoded when it is used for the first
+	 * time. All methods of Instance that use the properties are overridden
+	 * and delegate to the decoded instance.
+	 */
+	private static class SnapshotInstance extends Instance {
+
+		private static final long serialVersionUID = 1L;
+		// null once the instance is decoded
+		private transient Snapshot snapshot;
+		private final int index;
+		private volatile Instance instance;
+
+		SnapshotInstance(Snapshot snapshot, int index) throws IOException {
+			super(snapshot.getUri(index), null);
+			this.snapshot = snapshot;
+			this.index = index;
+		}
+
+		private Instance instance() {
+			Instance result = instance;
+			if (result == null) {
+				synchronized (this) {
+					result = instance;
+					if (result == null) {
+						try {
+							result = snapshot.read(index);
+						} catch (IOException e) {
+							throw new IllegalStateException("Could not read " + getUri() + " from the cache file", e);
+						}
+						instance = result;
+						snapshot = null;
+					}
+				}
+			}
+			return result;
+		}
+
+		/**
+		 * Serializes the decoded instance
+		 */
+		private Object writeReplace() {
+			Instance result = instance().copy();
+			result.distance = distance;
+			return result;
+		}
+
+		@Override
+		public void addProperty(String propUri, String value) {
+			instance().addProperty(propUri, value);
+		}
+
+		@Override
+		public void addProperty(String propUri, TreeSet<String> values) {
+			instance().addProperty(propUri, values);
+		}
+
+		@Override
+		public void replaceProperty(String propUri, TreeSet<String> values) {
+			instance().replaceProperty(propUri, values);
+		}
+
+		@Override
+		public TreeSet<String> getProperty(String propUri) {
+			return instance().getProperty(propUri);
+		}
+
+		@Override
+		public Set<String> getAllProperties() {
+			return instance().getAllProperties();
+		}
+
+		@Override
+		public void removePropery(String propUri) {
+			instance().removePropery(propUri);
+		}
+
+		@Override
+		public Instance copy() {
+			return instance().copy();
+		}
+
+		@Override
+		public String toString() {
+			StringBuilder s = new StringBuilder(getUri());
+			for (String p : getAllProperties()) {
+				s.append("; \n").append(p).append(" -> ").append(getProperty(p));
+			}
+			return s.append("; distance = ").append(distance).append("\n").toString();
+		}
+	}
+
+	private static void intern(String s, HashMap<String, Integer> ids, List<String> strings) {
+		if (!ids.containsKey(s)) {
+			ids.put(s, strings.size());
+			strings.add(s);
+		}
+	}
+
+	private static void writeFully(FileChannel channel, ByteBuffer buffer) throws IOException {
+		while (buffer.hasRemaining()) {
+			channel.write(buffer);
+		}
+	}
+
+	/**
+	 * Buffers the body and writes it either as it is or as Deflate blocks.
+	 */
+	private static class BlockOutput {
+
+		private final FileChannel channel;
+		private final Deflater deflater;
+		private final byte[] block = new byte[BLOCK_SIZE];
+		private byte[] compressed;
+		private int position = 0;
+
+		BlockOutput(FileChannel channel, boolean compress) {
+			this.channel = channel;
+			this.deflater = compress ? new Deflater() : null;
+			this.compressed = compress ? new byte[BLOCK_SIZE + BLOCK_SIZE / 8] : null;
+		}
+
+		void writeVarint(int value) throws IOException {
+			if (position + 5 > BLOCK_SIZE) {
+				flush();
+			}
+			while ((value & ~0x7F) != 0) {
+				block[position++] = (byte) ((value & 0x7F) | 0x80);
+				value >>>= 7;
+			}
+			block[position++] = (byte) value;
+		}
+
+		void write(byte[] bytes) throws IOException {
+			int offset = 0;
+			while (offset < bytes.length) {
+				if (position == BLOCK_SIZE) {
+					flush();
+				}
+				int length = Math.min(bytes.length - offset, BLOCK_SIZE - position);
+				System.arraycopy(bytes, offset, block, position, length);
+				position += length;
+				offset += length;
+			}
+		}
+
+		void flush() throws IOException {
+			if (position == 0) {
+				return;
+			}
+			if (deflater == null) {
+				writeFully(channel, ByteBuffer.wrap(block, 0, position));
+			} else {
+				deflater.reset();
+				deflater.setInput(block, 0, position);
+				deflater.finish();
+				int length = 0;
+				while (!deflater.finished()) {
+					if (length == compressed.length) {
+						byte[] larger = new byte[compressed.length * 2];
+						System.arraycopy(compressed, 0, larger, 0, length);
+						compressed = larger;
+					}
+					length += deflater.deflate(compressed, length, compressed.length - length);
+				}
+				ByteBuffer lengths = ByteBuffer.allocate(8);
+				lengths.putInt(position);
+				lengths.putInt(length);
+				lengths.flip();
+				writeFully(channel, lengths);
+				writeFully(channel, ByteBuffer.wrap(compressed, 0, length));
+			}
+			position = 0;
+		}
+
+		void close() throws IOException {
+			flush();
+			if (deflater != null) {
+				deflater.end();
+			}
+		}
+	}
+
+	/**
+	 * Reads the body from windows of the memory-mapped file, inflating the
+	 * blocks of compressed snapshots. All windows are mapped when the input
+	 * is created, so the input can be used after the file is closed.
+	 * Uncompressed snapshots can be read at any position, see
+	 * {@link #seek(long)}.
+	 */
+	private static class BlockInput {
+
+		private final long fileSize;
+		private final MappedByteBuffer[] windows;
+		private final Inflater inflater;
+		// file position of the next byte that is read from the file itself
+		private long position;
+		// current inflated block of compressed snapshots
+		private byte[] block;
+		private byte[] compressed;
+		private int blockLength = 0;
+		private int blockPosition = 0;
+		// buffer of readString
+		private byte[] bytes = new byte[64];
+
+		BlockInput(FileChannel channel, long start, boolean compressed) throws IOException {
+			this.fileSize = channel.size();
+			this.windows = new MappedByteBuffer[(int) ((fileSize + WINDOW_SIZE - 1) / WINDOW_SIZE)];
+			for (int w = 0; w < windows.length; w++) {
+				long windowStart = w * WINDOW_SIZE;
+				windows[w] = channel.map(FileChannel.MapMode.READ_ONLY, windowStart,
+						Math.min(WINDOW_SIZE, fileSize - windowStart));
+			}
+			this.inflater = compressed ? new Inflater() : null;
+			this.block = compressed ? new byte[BLOCK_SIZE] : null;
+			this.compressed = compressed ? new byte[BLOCK_SIZE] : null;
+			this.position = start;
+		}
+
+		/**
+		 * @return the file position of the next byte of an uncompressed
+		 *         snapshot
+		 */
+		long position() {
+			return position;
+		}
+
+		/**
+		 * Moves to a file position of an uncompressed snapshot
+		 */
+		void seek(long position) {
+			this.position = position;
+		}
+
+		/**
+		 * Skips bytes of an uncompressed snapshot
+		 */
+		void skip(int length) {
+			position += length;
+		}
+
+		/**
+		 * Reads from the file itself, i.e., without inflating
+		 */
+		private byte readRaw() throws IOException {
+			if (position >= fileSize) {
+				throw new IOException("Unexpected end of cache file");
+			}
+			byte b = windows[(int) (position / WINDOW_SIZE)].get((int) (position % WINDOW_SIZE));
+			position++;
+			return b;
+		}
+
+		private void readRaw(byte[] bytes, int length) throws IOException {
+			if (position + length > fileSize) {
+				throw new IOException("Unexpected end of cache file");
+			}
+			int offset = 0;
+			while (offset < length) {
+				ByteBuffer window = windows[(int) (position / WINDOW_SIZE)].duplicate();
+				window.position((int) (position % WINDOW_SIZE));
+				int n = Math.min(length - offset, window.remaining());
+				window.get(bytes, offset, n);
+				offset += n;
+				position += n;
+			}
+		}
+
+		private int readRawInt() throws IOException {
+			return ((readRaw() & 0xFF) << 24) | ((readRaw() & 0xFF) << 16) | ((readRaw() & 0xFF) << 8)
+					| (readRaw() & 0xFF);
+		}
+
+		private void nextBlock() throws IOException {
+			int rawLength = readRawInt();
+			int compressedLength = readRawInt();
+			if (compressed.length < compressedLength) {
+				compressed = new byte[compressedLength];
+			}
+			readRaw(compressed, compressedLength);
+			inflater.reset();
+			inflater.setInput(compressed, 0, compressedLength);
+			try {
+				blockLength = 0;
+				while (blockLength < rawLength && !inflater.finished()) {
+					blockLength += inflater.inflate(block, blockLength, rawLength - blockLength);
+				}
+			} catch (DataFormatException e) {
+				throw new IOException("Corrupt block in cache file", e);
+			}
+			blockPosition = 0;
+		}
+
+		byte readByte() throws IOException {
+			if (inflater == null) {
+				return readRaw();
+			}
+			if (blockPosition == blockLength) {
+				nextBlock();
+			}
+			return block[blockPosition++];
+		}
+
+		void read(byte[] bytes, int length) throws IOException {
+			if (inflater == null) {
+				readRaw(bytes, length);
+				return;
+			}
+			int offset = 0;
+			while (offset < length) {
+				if (blockPosition == blockLength) {
+					nextBlock();
+				}
+				int n = Math.min(length - offset, blockLength - blockPosition);
+				System.arraycopy(block, blockPosition, bytes, offset, n);
+				blockPosition += n;
+				offset += n;
+			}
+		}
+
+		/**
+		 * Reads a string of the dictionary
+		 */
+		String readString() throws IOException {
+			int length = readVarint();
+			if (bytes.length < length) {
+				bytes = new byte[Math.max(length, bytes.length * 2)];
+			}
+			read(bytes, length);
+			return new String(bytes, 0, length, UTF8);
+		}
+
+		void close() {
+			if (inflater != null) {
+				inflater.end();
+			}
+		}
+
+		int readVarint() throws IOException {
+			int value = 0;
+			int shift = 0;
+			byte b;
+			do {
+				b = readByte();
+				value |= (b & 0x7F) << shift;
+				shift += 7;
+			} while ((b & 0x80) != 0);
+			return value;
+		}
+	}
+}
@@ -0,0 +1,572 @@
+package org.aksw.limes.core.io.cache;
+
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.Set;
+import java.util.TreeSet;
+
+/**
+ * Memory cache that stores the data column-wise instead of as one Instance
+ * object per URI. Property names and values are interned into dictionaries,
+ * so that repeated keys such as rdfs:label and repeated values are stored only
+ * once. Each property is a column that holds, for each instance with values
+ * for the property, the offset and number of its value IDs in an int pool.
+ * Columns of rare properties find the slot of an instance by a hash table
+ * and switch to arrays indexed by the instance IDs once enough instances have
+ * values. The instances of the cache are lightweight views on the columns,
+ * one per URI, so that the cache returns the same instance for a URI each
+ * time, as the MemoryCache does. Adding properties to such a view writes to
+ * the cache, just as for the instances of the MemoryCache. Note that
+ * the sets of values returned by getProperty are read from the columns and
+ * must not be modified: an instance returns the same set for a property until
+ * the column of the property changes.
+ *
+ * Like the MemoryCache, the cache may be read by several threads, but not be
+ * written while it is read.
+ */
+public class ColumnarCache extends MemoryCache implements Serializable {
+
+	private static final long serialVersionUID = 1L;
+
+	private final HashMap<String, Integer> uriIds = new HashMap<String, Integer>();
+	private final ArrayList<String> uris = new ArrayList<String>();
+	private final Dictionary propertyNames = new Dictionary();
+	private final Dictionary values = new Dictionary();
+	// columns, indexed by property ID
+	private final ArrayList<Column> columns = new ArrayList<Column>();
+	// views on the instances, indexed by URI ID, rebuilt after
+	// deserialization
+	private transient ArrayList<InstanceView> views = new ArrayList<InstanceView>();
+
+	// iterator state for getNextInstance
+	private int next = 0;
+
+	public ColumnarCache() {
+		super(0);
+	}
+
+	/**
+	 * String to ID dictionary.
+	 */
+	private static class Dictionary implements Serializable {
+
+		private static final long serialVersionUID = 1L;
+		private final HashMap<String, Integer> ids = new HashMap<String, Integer>();
+		private final ArrayList<String> strings = new ArrayList<String>();
+
+		int intern(String s) {
+			Integer id = ids.get(s);
+			if (id == null) {
+				id = strings.size();
+				ids.put(s, id);
+				strings.add(s);
+			}
+			return id;
+		}
+
+		int getId(String s) {
+			Integer id = ids.get(s);
+			return (id == null) ? -1 : id;
+		}
+
+		String get(int id) {
+			return strings.get(id);
+		}
+
+		void clear() {
+			ids.clear();
+			strings.clear();
+		}
+	}
+
+	/**
+	 * Open addressing hash table from instance IDs to slots.
+	 */
+	private static class SlotTable implements Serializable {
+
+		private static final long serialVersionUID = 1L;
+		private int[] keys = new int[16];
+		private int[] slots = new int[16];
+		private int size = 0;
+
+		SlotTable() {
+			Arrays.fill(keys, -1);
+		}
+
+		private int find(int key) {
+			int mask = keys.length - 1;
+			int h = key * 0x9E3779B9;
+			int i = (h ^ (h >>> 16)) & mask;
+			while (keys[i] != -1 && keys[i] != key) {
+				i = (i + 1) & mask;
+			}
+			return i;
+		}
+
+		/**
+		 * @return the slot of the key, -1 if the key has none
+		 */
+		int get(int key) {
+			int i = find(key);
+			return (keys[i] == key) ? slots[i] : -1;
+		}
+
+		/**
+		 * @return the slot of the key, the next free slot if it had none
+		 */
+		int getOrAdd(int key) {
+			int i = find(key);
+			if (keys[i] == key) {
+				return slots[i];
+			}
+			keys[i] = key;
+			slots[i] = size++;
+			if (size * 2 > keys.length) {
+				int[] oldKeys = keys;
+				int[] oldSlots = slots;
+				keys = new int[oldKeys.length * 2];
+				Arrays.fill(keys, -1);
+				slots = new int[oldKeys.length * 2];
+				for (int j = 0; j < oldKeys.length; j++) {
+					if (oldKeys[j] != -1) {
+						int k = find(oldKeys[j]);
+						keys[k] = oldKeys[j];
+						slots[k] = oldSlots[j];
+					}
+				}
+			}
+			return size - 1;
+		}
+	}
+
+	/**
+	 * Values of one property. The value IDs of an instance are a run in the
+	 * pool. If values are added to a run that is not at the end of the pool,
+	 * the run is moved to the end; the pool is compacted when more than half
+	 * of it is left unused by such moves. The offset and length of the run of
+	 * an instance are stored in the slot of the instance, which is found by a
+	 * slot table while the column is sparse. Once a third of the instances up
+	 * to the largest ID have a slot, the arrays cost less than the table, and
+	 * the slot of an instance becomes its ID.
+	 */
+	private static class Column implements Serializable {
+
+		private static final long serialVersionUID = 1L;
+		// offset and length of the run of each slot, length 0 if the
+		// instance of the slot has no value for the property
+		private int[] offsets = new int[4];
+		private int[] lengths = new int[4];
+		// slots of the instances, null once the column is dense
+		private SlotTable slots = new SlotTable();
+		private int maxInstance = -1;
+		private int[] pool = new int[16];
+		private int poolSize = 0;
+		private int used = 0;
+		// incremented on every change, to detect stale sets of values
+		private int version = 0;
+
+		/**
+		 * @return the slot of the instance, -1 if it has none
+		 */
+		private int slot(int instance) {
+			if (slots == null) {
+				return (instance < lengths.length) ? instance : -1;
+			}
+			return slots.get(instance);
+		}
+
+		int length(int instance) {
+			int slot = slot(instance);
+			return (slot < 0) ? 0 : lengths[slot];
+		}
+
+		/**
+		 * @return the position of the first value ID of the instance in the
+		 *         pool, see {@link #value(int)}
+		 */
+		int offset(int instance) {
+			return offsets[slot(instance)];
+		}
+
+		int value(int position) {
+			return pool[position];
+		}
+
+		void add(int instance, int value) {
+			maxInstance = Math.max(maxInstance, instance);
+			if (slots != null && slots.size * 3 > maxInstance + 1) {
+				densify();
+			}
+			int slot = (slots == null) ? instance : slots.getOrAdd(instance);
+			if (slot >= offsets.length) {
+				int capacity = Math.max(offsets.length * 2, slot + 1);
+				offsets = Arrays.copyOf(offsets, capacity);
+				lengths = Arrays.copyOf(lengths, capacity);
+			}
+			int length = lengths[slot];
+			for (int i = 0; i < length; i++) {
+				if (pool[offsets[slot] + i] == value) {
+					return;
+				}
+			}
+			// compaction may move the run, so read its offset afterwards
+			ensurePool(length + 1);
+			int offset = offsets[slot];
+			if (length == 0 || offset + length != poolSize) {
+				// move the run to the end of the pool
+				System.arraycopy(pool, offset, pool, poolSize, length);
+				offsets[slot] = poolSize;
+				poolSize += length;
+			}
+			pool[poolSize++] = value;
+			lengths[slot] = length + 1;
+			used++;
+			version++;
+		}
+
+		/**
+		 * Moves the runs from the slots of the table to the slots of the
+		 * instance IDs
+		 */
+		private void densify() {
+			int capacity = Math.max(16, maxInstance + 1);
+			int[] denseOffsets = new int[capacity];
+			int[] denseLengths = new int[capacity];
+			for (int i = 0; i < slots.keys.length; i++) {
+				int instance = slots.keys[i];
+				if (instance != -1) {
+					denseOffsets[instance] = offsets[slots.slots[i]];
+					denseLengths[instance] = lengths[slots.slots[i]];
+				}
+			}
+			offsets = denseOffsets;
+			lengths = denseLengths;
+			slots = null;
+		}
+
+		void remove(int instance) {
+			int slot = slot(instance);
+			if (slot >= 0) {
+				used -= lengths[slot];
+				lengths[slot] = 0;
+				version++;
+			}
+		}
+
+		private void ensurePool(int extra) {
+			if (poolSize + extra <= pool.length) {
+				return;
+			}
+			if (used * 2 < poolSize) {
+				compact();
+				if (poolSize + extra <= pool.length) {
+					return;
+				}
+			}
+			pool = Arrays.copyOf(pool, Math.max(pool.length * 2, poolSize + extra));
+		}
+
+		private void compact() {
+			int[] compacted = new int[pool.length];
+			int size = 0;
+			for (int slot = 0; slot < lengths.length; slot++) {
+				int length = lengths[slot];
+				if (length > 0) {
+					System.arraycopy(pool, offsets[slot], compacted, size, length);
+					offsets[slot] = size;
+					size += length;
+				}
+			}
+			pool = compacted;
+			poolSize = size;
+		}
+	}
+
+	/**
+	 * View on the data of one URI. The view has no map of properties, all
+	 * methods of Instance that use it are overridden.
+	 */
+	private class InstanceView extends Instance {
+
+		private static final long serialVersionUID = 1L;
+		private final int id;
+		// sets of values returned by getProperty, by property ID
+		private transient HashMap<Integer, ValueSet> valueSets;
+
+		InstanceView(int id) {
+			super(uris.get(id), null);
+			this.id = id;
+		}
+
+
+		/**
+		 * Views are equal if they are views on the same URI of the same cache
+		 */
+		@Override
+		public boolean equals(Object o) {
+			if (!(o instanceof InstanceView)) {
+				return false;
+			}
+			InstanceView other = (InstanceView) o;
+			return other.id == id && other.cache() == ColumnarCache.this;
+		}
+
+		@Override
+		public int hashCode() {
+			return getUri().hashCode();
+		}
+
+		private ColumnarCache cache() {
+			return ColumnarCache.this;
+		}
+
+		@Override
+		public void addProperty(String propUri, String value) {
+			ColumnarCache.this.addValue(id, propUri, value);
+		}
+
+		@Override
+		public void addProperty(String propUri, TreeSet<String> values) {
+			for (String value : values) {
+				ColumnarCache.this.addValue(id, propUri, value);
+			}
+		}
+
+		@Override
+		public void replaceProperty(String propUri, TreeSet<String> values) {
+			removePropery(propUri);
+			addProperty(propUri, values);
+		}
+
+		@Override
+		public TreeSet<String> getProperty(String propUri) {
+			int p = propertyNames.getId(propUri);
+			if (p < 0) {
+				return new TreeSet<String>();
+			}
+			Column column = columns.get(p);
+			if (valueSets == null) {
+				valueSets = new HashMap<Integer, ValueSet>();
+			}
+			ValueSet set = valueSets.get(p);
+			if (set == null || set.column != column || set.version != column.version) {
+				set = new ValueSet(column, ColumnarCache.this.getValues(id, propUri));
+				valueSets.put(p, set);
+			}
+			return set.values;
+		}
+
+		@Override
+		public Set<String> getAllProperties() {
+			return ColumnarCache.this.getProperties(id);
+		}
+
+		@Override
+		public void removePropery(String propUri) {
+			int property = propertyNames.getId(propUri);
+			if (property >= 0) {
+				columns.get(property).remove(id);
+				modified();
+			}
+		}
+
+		@Override
+		public Instance copy() {
+			Instance instance = new Instance(getUri());
+			for (String p : getAllProperties()) {
+				instance.addProperty(p, getProperty(p));
+			}
+			return instance;
+		}
+
+		@Override
+		public String toString() {
+			StringBuilder s = new StringBuilder(getUri());
+			for (String p : getAllProperties()) {
+				s.append("; \n").append(p).append(" -> ").append(getProperty(p));
+			}
+			return s.append("; distance = ").append(distance).append("\n").toString();
+		}
+	}
+
+	/**
+	 * Values of an instance for a property and the version of the column
+	 * they were read from.
+	 */
+	private static class ValueSet {
+		final Column column;
+		final int version;
+		final TreeSet<String> values;
+
+		ValueSet(Column column, TreeSet<String> values) {
+			this.column = column;
+			this.version = column.version;
+			this.values = values;
+		}
+	}
+
+	private int getOrCreateId(String uri) {
+		Integer id = uriIds.get(uri);
+		if (id == null) {
+			id = uris.size();
+			uriIds.put(uri, id);
+			uris.add(uri);
+			views.add(new InstanceView(id));
+		}
+		return id;
+	}
+
+	private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+		in.defaultReadObject();
+		views = new ArrayList<InstanceView>(uris.size());
+		for (int id = 0; id < uris.size(); id++) {
+			views.add(new InstanceView(id));
+		}
+	}
+
+	private void addValue(int instance, String property, String value) {
+		int p = propertyNames.intern(property);
+		if (p == columns.size()) {
+			columns.add(new Column());
+		}
+		columns.get(p).add(instance, values.intern(value));
+		modified();
+	}
+
+	private TreeSet<String> getValues(int instance, String property) {
+		TreeSet<String> result = new TreeSet<String>();
+		int p = propertyNames.getId(property);
+		if (p >= 0) {
+			Column column = columns.get(p);
+			int length = column.length(instance);
+			if (length > 0) {
+				int offset = column.offset(instance);
+				for (int i = 0; i < length; i++) {
+					result.add(values.get(column.value(offset + i)));
+				}
+			}
+		}
+		return result;
+	}
+
+	private Set<String> getProperties(int instance) {
+		Set<String> result = new LinkedHashSet<String>();
+		for (int p = 0; p < columns.size(); p++) {
+			if (columns.get(p).length(instance) > 0) {
+				result.add(propertyNames.get(p));
+			}
+		}
+		return result;
+	}
+
+	private void copyInto(int id, Instance i) {
+		for (String p : i.getAllProperties()) {
+			for (String value : i.getProperty(p)) {
+				addValue(id, p, value);
+			}
+		}
+	}
+
+	@Override
+	public void clear() {
+		uriIds.clear();
+		uris.clear();
+		views.clear();
+		propertyNames.clear();
+		values.clear();
+		columns.clear();
+		modified();
+		resetIterator();
+	}
+
+	@Override
+	public Instance getNextInstance() {
+		if (next < uris.size()) {
+			return views.get(next++);
+		}
+		return null;
+	}
+
+	@Override
+	public ArrayList<Instance> getAllInstances() {
+		return new ArrayList<Instance>(views);
+	}
+
+	@Override
+	public void addInstance(Instance i) {
+		if (!uriIds.containsKey(i.getUri())) {
+			copyInto(getOrCreateId(i.getUri()), i);
+			modified();
+		}
+	}
+
+	@Override
+	public Instance getInstance(String uri) {
+		Integer id = uriIds.get(uri);
+		return (id == null) ? null : views.get(id);
+	}
+
+	@Override
+	public int size() {
+		return uris.size();
+	}
+
+	@Override
+	public void addTriple(String s, String p, String o) {
+		addValue(getOrCreateId(s), p, o);
+	}
+
+	@Override
+	public boolean containsInstance(Instance i) {
+		return uriIds.containsKey(i.getUri());
+	}
+
+	@Override
+	public boolean containsUri(String uri) {
+		return uriIds.containsKey(uri);
+	}
+
+	@Override
+	public void resetIterator() {
+		next = 0;
+	}
+
+	@Override
+	public String toString() {
+		return getAllInstances().toString();
+	}
+
+	@Override
+	public ArrayList<String> getAllUris() {
+		return new ArrayList<String>(uris);
+	}
+
+	@Override
+	public Set<String> getAllProperties() {
+		Set<String> props = new LinkedHashSet<String>();
+		for (int p = 0; p < columns.size(); p++) {
+			if (columns.get(p).used > 0) {
+				props.add(propertyNames.get(p));
+			}
+		}
+		return props;
+	}
+
+	@Override
+	public void replaceInstance(String uri, Instance a) {
+		int id = getOrCreateId(uri);
+		if (a instanceof InstanceView && ((InstanceView) a).id == id) {
+			return;
+		}
+		for (Column column : columns) {
+			column.remove(id);
+		}
+		copyInto(id, a);
+		modified();
+	}
+}
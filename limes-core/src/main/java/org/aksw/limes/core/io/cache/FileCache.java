@@ -0,0 +1,658 @@
+package org.aksw.limes.core.io.cache;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+
+import org.aksw.limes.core.io.preprocessing.Preprocessor;
+import org.apache.log4j.Logger;
+
+import com.hp.hpl.jena.rdf.model.Model;
+
+/**
+ * Cache for very large data sets that do not fit in memory. Instances are
+ * appended as records to segment files. Each segment is created with its full
+ * size and memory-mapped once, and records are written to and read from that
+ * mapping, so segments are never remapped. The URI to record offset index is
+ * an open-addressing hash table that lives off-heap in a direct buffer, and
+ * only a bounded number of recently used instances is kept on the heap. Thus,
+ * mappers can stream the cache through getAllUris and getInstance without
+ * loading it as a whole.
+ *
+ * Triples added through addTriple are collected in a bounded write buffer and
+ * written when it is full or when the cache is read. Instances returned by
+ * getInstance are read from the stored records, and the recently used ones
+ * are kept on the heap and returned to every caller that asks for them.
+ * Changing such an instance does not change its stored record, but later
+ * callers see the change until the instance is dropped from the heap; use
+ * replaceInstance to change the cache. Records that are replaced stay in the
+ * segment files until the cache is closed.
+ *
+ * The folder of a temporary cache is deleted when the cache is closed, and at
+ * the latest when the JVM exits. Caches returned by processData and
+ * addProperty are temporary FileCaches; the caller owns them and should
+ * close them when they are no longer needed.
+ *
+ * When a cache with a non-temporary folder is closed, its index is written to
+ * the folder, and a FileCache created on that folder later reopens the cache.
+ * Changes after the last close are lost if the cache is not closed.
+ *
+ * @author ngonga
+ * @author Mohamed Sherif <sherif@informatik.uni-leipzig.de>
+ * @version Nov 23, 2015
+ */
+public class FileCache extends Cache implements Closeable {
+
+	private static final Logger logger = Logger.getLogger(FileCache.class.getName());
+	private static final Charset UTF8 = Charset.forName("UTF-8");
+
+	public static final long DEFAULT_SEGMENT_SIZE = 256L << 20;
+	public static final int DEFAULT_HOT_INSTANCES = 10000;
+	public static final int DEFAULT_WRITE_BUFFER = 10000;
+
+	// offsets are (segment << SEGMENT_SHIFT) | position in segment
+	private static final int SEGMENT_SHIFT = 40;
+	// index slots: record offset + 1 (0 for empty slots) and URI hash
+	private static final int SLOT_SIZE = 12;
+	private static final String INDEX_FILE = "index.dat";
+	private static final int INDEX_HEADER_SIZE = 16;
+
+	private final File folder;
+	private final boolean temporary;
+	private final long segmentSize;
+
+	private final List<RandomAccessFile> segmentFiles = new ArrayList<RandomAccessFile>();
+	private final List<MappedByteBuffer> segmentBuffers = new ArrayList<MappedByteBuffer>();
+	// end of the records in the last segment
+	private int writePosition;
+
+	private ByteBuffer index;
+	private int indexCapacity;
+	private int size;
+
+	private final LinkedHashMap<String, Instance> hotInstances;
+	private final Map<String, Instance> writeBuffer = new HashMap<String, Instance>();
+	private final int writeBufferSize;
+
+	// iterator state for getNextInstance
+	private int iteratorSlot = 0;
+
+	/**
+	 * Creates a cache in a temporary folder that is deleted when the cache is
+	 * closed.
+	 */
+	public FileCache() {
+		this(createTempFolder(), true, DEFAULT_SEGMENT_SIZE, DEFAULT_HOT_INSTANCES, DEFAULT_WRITE_BUFFER);
+	}
+
+	/**
+	 * Creates a cache whose segment files are written to folder, or reopens
+	 * the cache that was closed in folder.
+	 *
+	 * @param folder
+	 *            Folder for the segment files. Created if it does not exist.
+	 */
+	public FileCache(File folder) {
+		this(folder, false, DEFAULT_SEGMENT_SIZE, DEFAULT_HOT_INSTANCES, DEFAULT_WRITE_BUFFER);
+	}
+
+	/**
+	 * @param folder
+	 *            Folder for the segment files. Created if it does not exist.
+	 * @param temporary
+	 *            If true, the folder is deleted when the cache is closed
+	 * @param segmentSize
+	 *            Size of the segment files, at most 2GB
+	 * @param hotInstances
+	 *            Number of recently used instances kept on the heap
+	 * @param writeBufferSize
+	 *            Number of instances collected by addTriple before they are
+	 *            written
+	 */
+	public FileCache(File folder, boolean temporary, long segmentSize, final int hotInstances,
+			int writeBufferSize) {
+		this.folder = folder;
+		this.temporary = temporary;
+		this.segmentSize = segmentSize;
+		this.writeBufferSize = writeBufferSize;
+		if (segmentSize <= 0 || segmentSize > Integer.MAX_VALUE) {
+			throw new IllegalArgumentException("Segment size must be between 1 byte and 2GB: " + segmentSize);
+		}
+		if (!folder.exists() && !folder.mkdirs()) {
+			throw new IllegalArgumentException("Cannot create cache folder " + folder.getAbsolutePath());
+		}
+		if (temporary) {
+			// files registered later are deleted first, i.e., the segments
+			// before the folder
+			folder.deleteOnExit();
+		}
+		this.hotInstances = new LinkedHashMap<String, Instance>(16, 0.75f, true) {
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<String, Instance> eldest) {
+				return size() > hotInstances;
+			}
+		};
+		if (!temporary && new File(folder, INDEX_FILE).exists()) {
+			open();
+		} else {
+			allocateIndex(1024);
+		}
+	}
+
+	private static File createTempFolder() {
+		try {
+			return Files.createTempDirectory("limes-filecache").toFile();
+		} catch (IOException e) {
+			throw new IllegalStateException("Cannot create temporary cache folder", e);
+		}
+	}
+
+	// ---------------------------------------------------------------------
+	// off-heap index
+	// ---------------------------------------------------------------------
+
+	private void allocateIndex(int capacity) {
+		indexCapacity = capacity;
+		index = ByteBuffer.allocateDirect(capacity * SLOT_SIZE);
+	}
+
+	private static int hash(String uri) {
+		int h = uri.hashCode();
+		return h ^ (h >>> 16);
+	}
+
+	/**
+	 * @return slot of the URI, or the empty slot where it would be stored
+	 */
+	private int findSlot(String uri, int hash) {
+		int mask = indexCapacity - 1;
+		int slot = hash & mask;
+		while (true) {
+			long stored = index.getLong(slot * SLOT_SIZE);
+			if (stored == 0) {
+				return slot;
+			}
+			if (index.getInt(slot * SLOT_SIZE + 8) == hash && uri.equals(readUri(stored - 1))) {
+				return slot;
+			}
+			slot = (slot + 1) & mask;
+		}
+	}
+
+	private long getOffset(String uri) {
+		long stored = index.getLong(findSlot(uri, hash(uri)) * SLOT_SIZE);
+		return stored - 1;
+	}
+
+	private void putOffset(String uri, long offset) {
+		int hash = hash(uri);
+		int slot = findSlot(uri, hash);
+		if (index.getLong(slot * SLOT_SIZE) == 0) {
+			size++;
+		}
+		index.putLong(slot * SLOT_SIZE, offset + 1);
+		index.putInt(slot * SLOT_SIZE + 8, hash);
+		if (size * 4 > indexCapacity * 3) {
+			growIndex();
+		}
+	}
+
+	private void growIndex() {
+		ByteBuffer old = index;
+		int oldCapacity = indexCapacity;
+		allocateIndex(oldCapacity * 2);
+		int mask = indexCapacity - 1;
+		for (int i = 0; i < oldCapacity; i++) {
+			long stored = old.getLong(i * SLOT_SIZE);
+			if (stored != 0) {
+				int hash = old.getInt(i * SLOT_SIZE + 8);
+				int slot = hash & mask;
+				while (index.getLong(slot * SLOT_SIZE) != 0) {
+					slot = (slot + 1) & mask;
+				}
+				index.putLong(slot * SLOT_SIZE, stored);
+				index.putInt(slot * SLOT_SIZE + 8, hash);
+			}
+		}
+	}
+
+	// ---------------------------------------------------------------------
+	// segment files
+	// ---------------------------------------------------------------------
+
+	private File segmentFile(int segment) {
+		return new File(folder, "segment-" + segment + ".dat");
+	}
+
+	/**
+	 * Maps a segment file with its full size
+	 */
+	private void mapSegment(int segment, long capacity) throws IOException {
+		if (temporary) {
+			segmentFile(segment).deleteOnExit();
+		}
+		RandomAccessFile raf = new RandomAccessFile(segmentFile(segment), "rw");
+		if (raf.length() < capacity) {
+			raf.setLength(capacity);
+		}
+		segmentFiles.add(raf);
+		segmentBuffers.add(raf.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, raf.length()));
+	}
+
+	/**
+	 * Appends a record to the current segment
+	 *
+	 * @return offset of the record
+	 */
+	private long write(Instance instance) {
+		try {
+			ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+			DataOutputStream out = new DataOutputStream(bytes);
+			out.writeInt(0); // placeholder for the length
+			writeString(out, instance.getUri());
+			Set<String> properties = instance.getAllProperties();
+			out.writeInt(properties.size());
+			for (String p : properties) {
+				writeString(out, p);
+				TreeSet<String> values = instance.getProperty(p);
+				out.writeInt(values.size());
+				for (String v : values) {
+					writeString(out, v);
+				}
+			}
+			out.flush();
+			ByteBuffer record = ByteBuffer.wrap(bytes.toByteArray());
+			record.putInt(0, record.capacity() - 4);
+
+			if (segmentBuffers.isEmpty()
+					|| writePosition + record.capacity() > segmentBuffers.get(segmentBuffers.size() - 1).capacity()) {
+				// records larger than a segment get a segment of their own
+				mapSegment(segmentBuffers.size(), Math.max(segmentSize, record.capacity()));
+				writePosition = 0;
+			}
+			int segment = segmentBuffers.size() - 1;
+			ByteBuffer buffer = segmentBuffers.get(segment).duplicate();
+			buffer.position(writePosition);
+			buffer.put(record);
+			long offset = ((long) segment << SEGMENT_SHIFT) | writePosition;
+			writePosition += record.capacity();
+			return offset;
+		} catch (IOException e) {
+			throw new IllegalStateException("Cannot write to cache folder " + folder.getAbsolutePath(), e);
+		}
+	}
+
+	private static void writeString(DataOutputStream out, String s) throws IOException {
+		byte[] b = s.getBytes(UTF8);
+		out.writeInt(b.length);
+		out.write(b);
+	}
+
+	/**
+	 * @return a read-only view on the record at offset
+	 */
+	private ByteBuffer record(long offset) {
+		int segment = (int) (offset >>> SEGMENT_SHIFT);
+		int position = (int) (offset & ((1L << SEGMENT_SHIFT) - 1));
+		MappedByteBuffer buffer = segmentBuffers.get(segment);
+		ByteBuffer view = buffer.duplicate();
+		view.position(position + 4);
+		view.limit(position + 4 + buffer.getInt(position));
+		return view.slice();
+	}
+
+	private String readUri(long offset) {
+		return readString(record(offset));
+	}
+
+	private static String readString(ByteBuffer buffer) {
+		int length = buffer.getInt();
+		byte[] b = new byte[length];
+		buffer.get(b);
+		return new String(b, UTF8);
+	}
+
+	private Instance read(long offset) {
+		ByteBuffer buffer = record(offset);
+		Instance instance = new Instance(readString(buffer));
+		int properties = buffer.getInt();
+		for (int i = 0; i < properties; i++) {
+			String p = readString(buffer);
+			int values = buffer.getInt();
+			TreeSet<String> set = new TreeSet<String>();
+			for (int j = 0; j < values; j++) {
+				set.add(readString(buffer));
+			}
+			instance.addProperty(p, set);
+		}
+		return instance;
+	}
+
+	// ---------------------------------------------------------------------
+	// index file
+	// ---------------------------------------------------------------------
+
+	/**
+	 * Reopens the segments and reads the index of a closed cache
+	 */
+	private void open() {
+		File file = new File(folder, INDEX_FILE);
+		try {
+			RandomAccessFile raf = new RandomAccessFile(file, "r");
+			try {
+				int segments = raf.readInt();
+				writePosition = raf.readInt();
+				int capacity = raf.readInt();
+				size = raf.readInt();
+				allocateIndex(capacity);
+				ByteBuffer buffer = index.duplicate();
+				FileChannel channel = raf.getChannel();
+				while (buffer.hasRemaining()) {
+					if (channel.read(buffer, INDEX_HEADER_SIZE + buffer.position()) < 0) {
+						throw new IOException("Truncated index file " + file.getAbsolutePath());
+					}
+				}
+				for (int i = 0; i < segments; i++) {
+					mapSegment(i, 0);
+				}
+			} finally {
+				raf.close();
+			}
+		} catch (IOException e) {
+			throw new IllegalStateException("Cannot open cache folder " + folder.getAbsolutePath(), e);
+		}
+		logger.info("Reopened " + this);
+	}
+
+	/**
+	 * Writes the index so that the cache can be reopened
+	 */
+	private void writeIndex() throws IOException {
+		RandomAccessFile raf = new RandomAccessFile(new File(folder, INDEX_FILE), "rw");
+		try {
+			raf.setLength(0);
+			raf.writeInt(segmentBuffers.size());
+			raf.writeInt(writePosition);
+			raf.writeInt(indexCapacity);
+			raf.writeInt(size);
+			ByteBuffer buffer = index.duplicate();
+			buffer.clear();
+			FileChannel channel = raf.getChannel();
+			while (buffer.hasRemaining()) {
+				channel.write(buffer, INDEX_HEADER_SIZE + buffer.position());
+			}
+		} finally {
+			raf.close();
+		}
+	}
+
+	/**
+	 * Writes all instances of the write buffer
+	 */
+	private void flush() {
+		for (Instance instance : writeBuffer.values()) {
+			putOffset(instance.getUri(), write(instance));
+		}
+		writeBuffer.clear();
+	}
+
+	/**
+	 * Writes the instance and drops its stale hot copy
+	 */
+	private void store(Instance instance) {
+		putOffset(instance.getUri(), write(instance));
+		hotInstances.remove(instance.getUri());
+	}
+
+	// ---------------------------------------------------------------------
+	// Cache
+	// ---------------------------------------------------------------------
+
+	public synchronized void addInstance(Instance i) {
+		if (!containsUri(i.getUri())) {
+			store(i);
+			modified();
+		}
+	}
+
+	/**
+	 * Adds a new spo statement to the cache
+	 *
+	 * @param s
+	 *            The URI of the instance linked to o via p
+	 * @param p
+	 *            The property which links s and o
+	 * @param o
+	 *            The value of the property of p for the entity s
+	 */
+	public synchronized void addTriple(String s, String p, String o) {
+		Instance m = writeBuffer.get(s);
+		if (m == null) {
+			long offset = getOffset(s);
+			m = (offset < 0) ? new Instance(s) : read(offset);
+			hotInstances.remove(s);
+			if (writeBuffer.size() >= writeBufferSize) {
+				flush();
+			}
+			writeBuffer.put(s, m);
+		}
+		m.addProperty(p, o);
+		modified();
+	}
+
+	/**
+	 * @param uri
+	 *            URI to look for
+	 * @return The instance with the URI uri if it is in the cache, else null
+	 */
+	public synchronized Instance getInstance(String uri) {
+		Instance instance = hotInstances.get(uri);
+		if (instance != null) {
+			return instance;
+		}
+		flush();
+		long offset = getOffset(uri);
+		if (offset < 0) {
+			return null;
+		}
+		instance = read(offset);
+		hotInstances.put(uri, instance);
+		return instance;
+	}
+
+	public synchronized boolean containsUri(String uri) {
+		return writeBuffer.containsKey(uri) || getOffset(uri) >= 0;
+	}
+
+	public boolean containsInstance(Instance i) {
+		return containsUri(i.getUri());
+	}
+
+	public synchronized int size() {
+		flush();
+		return size;
+	}
+
+	/**
+	 * Returns the URIs of all instances. Only the URIs are loaded into memory.
+	 */
+	public synchronized ArrayList<String> getAllUris() {
+		flush();
+		ArrayList<String> uris = new ArrayList<String>(size);
+		for (int slot = 0; slot < indexCapacity; slot++) {
+			long stored = index.getLong(slot * SLOT_SIZE);
+			if (stored != 0) {
+				uris.add(readUri(stored - 1));
+			}
+		}
+		return uris;
+	}
+
+	/**
+	 * Returns all instances. Be aware that this loads the whole cache into
+	 * memory; prefer getAllUris and getInstance or getNextInstance.
+	 */
+	public synchronized ArrayList<Instance> getAllInstances() {
+		flush();
+		ArrayList<Instance> instances = new ArrayList<Instance>(size);
+		for (int slot = 0; slot < indexCapacity; slot++) {
+			long stored = index.getLong(slot * SLOT_SIZE);
+			if (stored != 0) {
+				instances.add(read(stored - 1));
+			}
+		}
+		return instances;
+	}
+
+	public synchronized Instance getNextInstance() {
+		flush();
+		while (iteratorSlot < indexCapacity) {
+			long stored = index.getLong(iteratorSlot * SLOT_SIZE);
+			iteratorSlot++;
+			if (stored != 0) {
+				return read(stored - 1);
+			}
+		}
+		return null;
+	}
+
+	public synchronized void resetIterator() {
+		iteratorSlot = 0;
+	}
+
+	public synchronized void replaceInstance(String uri, Instance a) {
+		flush();
+		store(a);
+		modified();
+	}
+
+	public Cache getSample(int size) {
+		Cache c = new MemoryCache();
+		ArrayList<String> uris = getAllUris();
+		while (c.size() < size) {
+			int index = (int) Math.floor(Math.random() * uris.size());
+			c.addInstance(getInstance(uris.get(index)));
+		}
+		return c;
+	}
+
+	/**
+	 * Returns a set of properties (most likely) all instances have. Scans the
+	 * whole cache.
+	 */
+	public Set<String> getAllProperties() {
+		HashSet<String> props = new HashSet<String>();
+		for (String uri : getAllUris()) {
+			props.addAll(getInstance(uri).getAllProperties());
+		}
+		return props;
+	}
+
+	/**
+	 * Processes the data into a new temporary FileCache. The caller owns the
+	 * returned cache and should close it to delete its segment files.
+	 */
+	public FileCache processData(Map<String, String> propertyMap) {
+		FileCache c = new FileCache();
+		for (String uri : getAllUris()) {
+			Instance instance = getInstance(uri);
+			for (String p : instance.getAllProperties()) {
+				for (String value : instance.getProperty(p)) {
+					if (propertyMap.containsKey(p)) {
+						c.addTriple(uri, p, Preprocessor.process(value, propertyMap.get(p)));
+					} else {
+						c.addTriple(uri, p, value);
+					}
+				}
+			}
+		}
+		return c;
+	}
+
+	/**
+	 * Adds the property into a new temporary FileCache. The caller owns the
+	 * returned cache and should close it to delete its segment files.
+	 */
+	public FileCache addProperty(String sourcePropertyName, String targetPropertyName, String processingChain) {
+		FileCache c = new FileCache();
+		for (String uri : getAllUris()) {
+			Instance instance = getInstance(uri);
+			for (String p : instance.getAllProperties()) {
+				for (String value : instance.getProperty(p)) {
+					if (p.equals(sourcePropertyName)) {
+						c.addTriple(uri, targetPropertyName, Preprocessor.process(value, processingChain));
+					}
+					c.addTriple(uri, p, value);
+				}
+			}
+		}
+		return c;
+	}
+
+	/**
+	 * Creates the model through a MemoryCache. Thus, only use it for caches
+	 * that fit in memory.
+	 */
+	public Model parseCSVtoRDFModel(String baseURI, String IDbaseURI, String rdfType) {
+		MemoryCache c = new MemoryCache();
+		for (Instance i : getAllInstances()) {
+			c.addInstance(i);
+		}
+		c.resetIterator();
+		return c.parseCSVtoRDFModel(baseURI, IDbaseURI, rdfType);
+	}
+
+	/**
+	 * Closes the segment files and deletes them if the cache is temporary,
+	 * else writes the index. The mappings of the segments are released when
+	 * they are garbage collected, as Java cannot unmap them explicitly.
+	 */
+	public synchronized void close() throws IOException {
+		if (temporary) {
+			writeBuffer.clear();
+		} else {
+			flush();
+			for (MappedByteBuffer buffer : segmentBuffers) {
+				buffer.force();
+			}
+			writeIndex();
+		}
+		hotInstances.clear();
+		segmentBuffers.clear();
+		for (RandomAccessFile raf : segmentFiles) {
+			raf.close();
+		}
+		if (temporary) {
+			for (int i = 0; i < segmentFiles.size(); i++) {
+				if (!segmentFile(i).delete()) {
+					logger.warn("Could not delete segment " + i + " of " + folder.getAbsolutePath());
+				}
+			}
+			folder.delete();
+		}
+		segmentFiles.clear();
+	}
+
+	@Override
+	public String toString() {
+		return "FileCache(" + folder.getAbsolutePath() + ", " + size + " instances)";
+	}
+}
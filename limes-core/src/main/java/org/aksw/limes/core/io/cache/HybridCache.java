@@ -0,0 +1,257 @@
+package org.aksw.limes.core.io.cache;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.Serializable;
+
+import org.aksw.limes.core.io.config.KBInfo;
+import org.aksw.limes.core.io.query.IQueryModule;
+import org.aksw.limes.core.io.query.NoPrefixSparqlQueryModule;
+import org.aksw.limes.core.io.query.QueryModuleFactory;
+import org.apache.log4j.Logger;
+
+
+/**
+ * This cache implements a hybrid between memory and file cache. It generates a
+ * hash for each data source associated with it and serializes the content of the
+ * corresponding data source into a file. If another mapping task is associated
+ * with the same data source, it retrieves the corresponding data from the file,
+ * which is obviously more efficient for online data sources (no HTTP latency,
+ * offline processing, etc.). Else, it retrieves the data, generates a hash and
+ * caches it on the hard drive.
+ * Enhancing it with folders: specify the folder, where the application has 
+ * permissions to read and write files.
+ * 
+ * @author ngonga
+ * @author Lyko
+ * @author Mohamed Sherif <sherif@informatik.uni-leipzig.de>
+ * @version Nov 25, 2015
+ */
+public class HybridCache extends MemoryCache implements Serializable{
+	static Logger logger = Logger.getLogger(HybridCache.class.getName());
+	
+	private static final long serialVersionUID = -2268344215686055231L;
+
+    // pointing to the parent folder of the "cache" folder
+    private File folder = new File("");
+
+    // whether saveToFile writes Deflate compressed blocks
+    private boolean compress = false;
+    
+    public HybridCache() {
+        super();
+    }
+    /**
+     * Create cache specifying the parent folder. Make shure the Application has write permissions there.
+     * @param folder File pointing to the the parent folder of the (to-be-created) "cache" folder.
+     */
+    public HybridCache(File folder) {
+    	this();
+    	setFolder(folder);
+    }
+
+    /**
+     * Returns the next instance in the list of instances
+     * @return null if no next instance, else the next instance
+     */
+    public Instance getNextInstance() {
+    	if(instanceIterator == null) {
+    		instanceIterator = instanceMap.values().iterator();
+    	}
+    	return super.getNextInstance();
+    }
+
+    /** Tries to write the content of the cache to a file in the
+     * {@link BinaryCacheFormat}. If it fails, no file is written to avoid the
+     * corruption of future data sources.
+     * 
+     * @param file File wherein the content of the cache is to be written
+     */
+    public void saveToFile(File file) {
+        logger.info("Writing " + size() + " objects to " + file.getAbsolutePath());
+
+        try {
+            BinaryCacheFormat.write(this, file, compress);
+        } catch (Exception e) {
+            logger.error("Could not write the cache to " + file.getAbsolutePath(), e);
+            file.delete();
+        }
+    }
+
+    /** Tries to load the content of the cache from a file. Files in the
+     * {@link BinaryCacheFormat} are read lazily, i.e., instances are decoded
+     * when they are first used, other files are deserialized.
+     *
+     * @param file File from which the content is to be loaded
+     * @return A Hybrid cache
+     * @throws IOException
+     */
+    public static HybridCache loadFromFile(File file) throws IOException {
+    	String path = file.getAbsolutePath();
+        String parentPath = path.substring(0, path.lastIndexOf("cache"));
+        File parent = new File(parentPath);
+
+        if (BinaryCacheFormat.isBinaryCache(file)) {
+            HybridCache cache = new HybridCache(parent);
+            BinaryCacheFormat.readLazily(file, cache);
+            return cache;
+        }
+
+        FileInputStream in = new FileInputStream(file);
+        ObjectInputStream deSerializer = new ObjectInputStream(in);
+        HybridCache cache;
+
+        try {
+            cache = (HybridCache) deSerializer.readObject();
+            cache.setFolder(parent);
+            return cache;
+        } catch (ClassNotFoundException e) {
+            throw new IOException(e);
+        } finally {
+            in.close();
+        }
+    }
+
+    public static HybridCache getData(KBInfo kb) {
+    	return getData(new File(""), kb);
+    }
+    
+    
+    /**
+     * Method to get Data of the specified endpoint, and cache it to the "cache" folder in the folder specified.
+     * @param folder Path to the parent folder of the "cache" folder.
+     * @param kb Endpoint specification.
+     * @return
+     */
+    public static HybridCache getData(File folder, KBInfo kb) {
+
+        HybridCache cache = new HybridCache(folder);
+        //1. Try to get content from a serialization
+        String hash = kb.hashCode()+"";
+        File cacheFile = new File(folder+"cache/" + hash + BinaryCacheFormat.EXTENSION);
+        logger.info("Checking for file "+cacheFile.getAbsolutePath());
+        warnIfLegacy(cacheFile);
+        try {
+            if (cacheFile.exists()) {
+                logger.info("Found cached data. Loading data from file " + cacheFile.getAbsolutePath());
+                cache = HybridCache.loadFromFile(cacheFile);
+            }
+            if (cache.size() == 0) {
+                throw new Exception();
+            } else {
+                logger.info("Cached data loaded successfully from file " + cacheFile.getAbsolutePath());
+                logger.info("Size = " + cache.size());
+            }
+        } //2. If it does not work, then get it from data sourceInfo as specified
+        catch (Exception e) {
+            // need to add a QueryModuleFactory
+            logger.info("No cached data found for " + kb.getId());
+            IQueryModule module = QueryModuleFactory.getQueryModule(kb.getType(), kb);
+            module.fillCache(cache);
+
+            if (!new File(folder.getAbsolutePath()+ File.separatorChar + "cache").exists() || !new File(folder.getAbsolutePath()+ File.separatorChar + "cache").isDirectory()) {
+                new File(folder.getAbsolutePath()+ File.separatorChar + "cache").mkdir();
+            }
+            cache.saveToFile(new File(folder.getAbsolutePath()+ File.separatorChar + "cache/" + hash + BinaryCacheFormat.EXTENSION));
+        }
+
+        return cache;
+    }
+    
+    /** This method is used by learners which do not have prefix information.
+    *
+    * @param kb Info to the knowledge base to query
+    * @return A cache filled with the entities to link
+    */
+    public static HybridCache getNoPrefixData(KBInfo kb) {
+    	return getNoPrefixData(new File (""), kb);
+    }
+    
+    /** This method is used by learners which do not have prefix information and with a specified folder containing the cache folder.
+     *
+     * @param folder Path to parent folder of the supposed cache folder.
+     * @param kb Info to the knowledge base to query
+     * @return A cache filled with the entities to link
+     */
+    public static HybridCache getNoPrefixData(File folder, KBInfo kb) {
+        HybridCache cache = new HybridCache();
+        //1. Try to get content from a serialization
+        File cacheFile = new File(folder.getAbsolutePath()+ File.separatorChar +"cache/" + kb.hashCode() + BinaryCacheFormat.EXTENSION);
+        warnIfLegacy(cacheFile);
+        try {
+            if (cacheFile.exists()) {
+                logger.info("Found cached data. Loading data from file " + cacheFile.getAbsolutePath());
+                cache = HybridCache.loadFromFile(cacheFile);
+            }
+            if (cache.size() == 0) {
+                throw new Exception();
+            } else {
+                logger.info("Cached data loaded successfully from file " + cacheFile.getAbsolutePath());
+                logger.info("Size = " + cache.size());
+            }
+        } //2. If it does not work, then get it from data sourceInfo as specified
+        catch (Exception e) {
+            // need to add a QueryModuleFactory
+            logger.info("No cached data found for " + kb.getId());
+            NoPrefixSparqlQueryModule module = new NoPrefixSparqlQueryModule(kb);
+            module.fillCache(cache);
+
+            if (!new File(folder.getAbsolutePath()+ File.separatorChar + "cache").exists() || !new File(folder.getAbsolutePath()+ File.separatorChar + "cache").isDirectory()) {
+                new File(folder.getAbsolutePath()+ File.separatorChar + "cache").mkdir();
+            }
+            cache.saveToFile(new File(folder.getAbsolutePath()+ File.separatorChar + "cache/" + kb.hashCode() + BinaryCacheFormat.EXTENSION));
+        }
+
+        return cache;
+    }
+
+    /**
+     * Logs a warning if there is no snapshot but a Java-serialized .ser file
+     * of an older version. Such files are not read, as the fields of this
+     * class have changed, and the data is fetched again.
+     *
+     * @param cacheFile Snapshot file
+     */
+    private static void warnIfLegacy(File cacheFile) {
+        String path = cacheFile.getPath();
+        File legacy = new File(path.substring(0, path.length() - BinaryCacheFormat.EXTENSION.length()) + ".ser");
+        if (!cacheFile.exists() && legacy.exists()) {
+            logger.warn("Ignoring " + legacy.getAbsolutePath() + ", which was written by an older version. "
+                    + "The data is fetched again and written to " + cacheFile.getAbsolutePath());
+        }
+    }
+
+    
+    /**
+     * Returns the file  pointing to the parent folder of cache.
+     * @return
+     */
+	public File getFolder() {
+		return folder;
+	}
+	/**
+	 * Set the parent folder of the cache sub folder.
+	 * @param folder Pointing to the parent folder holding the cache. 
+	 */
+	public void setFolder(File folder) {
+			this.folder = folder;
+	}
+
+	/**
+	 * @return true if the cache is written to file with Deflate compression
+	 */
+	public boolean isCompress() {
+		return compress;
+	}
+
+	/**
+	 * Sets whether saveToFile compresses the file. Compressed files are
+	 * smaller but slower to read from fast disks.
+	 * @param compress True to compress
+	 */
+	public void setCompress(boolean compress) {
+		this.compress = compress;
+	}
+}
@@ -0,0 +1,410 @@
+package org.aksw.limes.core.io.cache;
+
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.WeakHashMap;
+
+import org.aksw.limes.core.io.preprocessing.PreprocessingPipeline;
+import org.apache.log4j.Logger;
+
+/**
+ * Index from the values of one property of a cache to the URIs of the
+ * instances that have these values. Most atomic mappers start by building
+ * exactly this index for the source and the target, which is wasteful when
+ * several atomic measures of a link specification use the same property.
+ * Indexes are therefore kept in a registry per cache, property and
+ * preprocessing chain, see {@link #get(Cache, String, String)}, and are
+ * built only once.
+ *
+ * The index is stored compactly: the distinct values are a dictionary, and
+ * the URIs of each value are a run of URI IDs in a single int array. The
+ * index is immutable and thus thread-safe. {@link #asMap()} returns a
+ * read-only map view for mappers that work on maps.
+ *
+ * An index is rebuilt if its cache was changed since it was built, see
+ * {@link Cache#getModificationCount()}. Changes made directly to the
+ * instances of a memory cache are not noticed and must be announced by
+ * calling {@link #invalidate(Cache)}.
+ */
+public class ValueIndex {
+
+	static Logger logger = Logger.getLogger(ValueIndex.class.getName());
+
+	// indexes per cache, the caches are weakly referenced so that the
+	// registry does not keep them alive
+	private static final Map<Cache, Map<String, ValueIndex>> registry = new WeakHashMap<Cache, Map<String, ValueIndex>>();
+
+	private final int modifications;
+	// distinct values, indexed by value ID
+	private final String[] values;
+	// URIs, indexed by URI ID
+	private final String[] uris;
+	// the URI IDs of value i are postings[offsets[i]] to postings[offsets[i+1]-1]
+	private final int[] offsets;
+	private final int[] postings;
+	// open addressing table of value IDs + 1, 0 marks empty slots
+	private final int[] table;
+
+	private Map<String, Set<String>> map;
+
+	private ValueIndex(int modifications, String[] values, String[] uris, int[] offsets, int[] postings) {
+		this.modifications = modifications;
+		this.values = values;
+		this.uris = uris;
+		this.offsets = offsets;
+		this.postings = postings;
+		int capacity = Integer.highestOneBit(Math.max(values.length, 1) * 2) * 2;
+		table = new int[capacity];
+		for (int id = 0; id < values.length; id++) {
+			int slot = slot(values[id]);
+			while (table[slot] != 0) {
+				slot = (slot + 1) & (table.length - 1);
+			}
+			table[slot] = id + 1;
+		}
+	}
+
+	/**
+	 * Returns the index of the values of a property of a cache.
+	 *
+	 * @param cache
+	 *            Cache to index
+	 * @param property
+	 *            Property whose values are indexed
+	 * @return The index
+	 */
+	public static ValueIndex get(Cache cache, String property) {
+		return get(cache, property, null);
+	}
+
+	/**
+	 * Returns the index of the values of a property of a cache after
+	 * preprocessing. The index is built on its first request and shared by
+	 * all later requests for the same cache, property and chain.
+	 *
+	 * @param cache
+	 *            Cache to index
+	 * @param property
+	 *            Property whose values are indexed
+	 * @param preprocessingChain
+	 *            Preprocessing functions applied to the values before they are
+	 *            indexed, may be null or empty
+	 * @return The index
+	 */
+	public static ValueIndex get(Cache cache, String property, String preprocessingChain) {
+		Map<String, ValueIndex> indexes;
+		synchronized (registry) {
+			indexes = registry.get(cache);
+			if (indexes == null) {
+				indexes = new HashMap<String, ValueIndex>();
+				registry.put(cache, indexes);
+			}
+		}
+		String key = (preprocessingChain == null || preprocessingChain.equals("")) ? property
+				: property + "\u0000" + preprocessingChain;
+		// indexes of the same cache are built one after the other, indexes of
+		// different caches in parallel
+		synchronized (indexes) {
+			ValueIndex index = indexes.get(key);
+			if (index == null || index.modifications != cache.getModificationCount()) {
+				index = build(cache, property, (preprocessingChain == null || preprocessingChain.equals("")) ? null
+						: PreprocessingPipeline.forChain(preprocessingChain));
+				indexes.put(key, index);
+			}
+			return index;
+		}
+	}
+
+	/**
+	 * Drops all indexes of a cache. Must be called after changes to the
+	 * instances of the cache that were not made through the cache.
+	 *
+	 * @param cache
+	 *            Changed cache
+	 */
+	public static void invalidate(Cache cache) {
+		synchronized (registry) {
+			registry.remove(cache);
+		}
+	}
+
+	private static ValueIndex build(Cache cache, String property, PreprocessingPipeline pipeline) {
+		long begin = System.currentTimeMillis();
+		int modifications = cache.getModificationCount();
+		HashMap<String, Integer> valueIds = new HashMap<String, Integer>();
+		String[] values = new String[16];
+		String[] uris = new String[Math.max(cache.size(), 1)];
+		// postings as linked lists of (value ID, URI ID, next) until the
+		// number of URIs per value is known
+		int[] valueOf = new int[64];
+		int[] uriOf = new int[64];
+		int[] last = new int[16];
+		int entries = 0;
+		int uriCount = 0;
+		for (Instance instance : cache.getAllInstances()) {
+			if (uriCount == uris.length) {
+				uris = Arrays.copyOf(uris, uris.length * 2);
+			}
+			int uri = uriCount++;
+			uris[uri] = instance.getUri();
+			for (String value : instance.getProperty(property)) {
+				// without a chain, values are indexed as they are, i.e., with
+				// their type information
+				String processed = (pipeline == null) ? value : pipeline.process(value);
+				Integer id = valueIds.get(processed);
+				if (id == null) {
+					id = valueIds.size();
+					valueIds.put(processed, id);
+					if (id == values.length) {
+						values = Arrays.copyOf(values, id * 2);
+						last = Arrays.copyOf(last, id * 2);
+					}
+					values[id] = processed;
+					last[id] = -1;
+				} else if (last[id] >= 0 && uriOf[last[id]] == uri) {
+					// two raw values of the instance were processed to the same value
+					continue;
+				}
+				if (entries == valueOf.length) {
+					valueOf = Arrays.copyOf(valueOf, entries * 2);
+					uriOf = Arrays.copyOf(uriOf, entries * 2);
+				}
+				valueOf[entries] = id;
+				uriOf[entries] = uri;
+				last[id] = entries++;
+			}
+		}
+		int valueCount = valueIds.size();
+		// counting sort of the entries by value ID, stable in the URI IDs
+		int[] offsets = new int[valueCount + 1];
+		for (int i = 0; i < entries; i++) {
+			offsets[valueOf[i] + 1]++;
+		}
+		for (int i = 0; i < valueCount; i++) {
+			offsets[i + 1] += offsets[i];
+		}
+		int[] fill = Arrays.copyOf(offsets, valueCount);
+		int[] postings = new int[entries];
+		for (int i = 0; i < entries; i++) {
+			postings[fill[valueOf[i]]++] = uriOf[i];
+		}
+		ValueIndex index = new ValueIndex(modifications, Arrays.copyOf(values, valueCount),
+				Arrays.copyOf(uris, uriCount), offsets, postings);
+		logger.debug("Indexed " + valueCount + " values of " + property + " in "
+				+ (System.currentTimeMillis() - begin) + " ms");
+		return index;
+	}
+
+	private int slot(String value) {
+		int h = value.hashCode();
+		h ^= (h >>> 16);
+		return (h * 0x9E3779B9) & (table.length - 1);
+	}
+
+	/**
+	 * @return The number of distinct values
+	 */
+	public int size() {
+		return values.length;
+	}
+
+	/**
+	 * @param id
+	 *            Value ID, between 0 and size() - 1
+	 * @return The value with the ID
+	 */
+	public String getValue(int id) {
+		return values[id];
+	}
+
+	/**
+	 * @param value
+	 *            Value to look up
+	 * @return The ID of the value, -1 if it is not in the index
+	 */
+	public int getId(String value) {
+		int slot = slot(value);
+		int id;
+		while ((id = table[slot]) != 0) {
+			if (values[id - 1].equals(value)) {
+				return id - 1;
+			}
+			slot = (slot + 1) & (table.length - 1);
+		}
+		return -1;
+	}
+
+	/**
+	 * @param id
+	 *            Value ID
+	 * @return The number of URIs with the value
+	 */
+	public int getUriCount(int id) {
+		return offsets[id + 1] - offsets[id];
+	}
+
+	/**
+	 * @param id
+	 *            Value ID
+	 * @param i
+	 *            Position, between 0 and getUriCount(id) - 1
+	 * @return The i-th URI with the value
+	 */
+	public String getUri(int id, int i) {
+		return uris[postings[offsets[id] + i]];
+	}
+
+	/**
+	 * @param value
+	 *            Value to look up
+	 * @return A read-only view on the URIs with the value, empty if no
+	 *         instance has the value
+	 */
+	public Set<String> getUris(String value) {
+		int id = getId(value);
+		return (id < 0) ? Collections.<String> emptySet() : new UriSet(id);
+	}
+
+	/**
+	 * @return A read-only view on the distinct values
+	 */
+	public Set<String> values() {
+		return asMap().keySet();
+	}
+
+	/**
+	 * @return A read-only map view of the index, which maps each value to the
+	 *         URIs with this value
+	 */
+	public synchronized Map<String, Set<String>> asMap() {
+		if (map == null) {
+			map = new MapView();
+		}
+		return map;
+	}
+
+	/**
+	 * URIs of one value.
+	 */
+	private class UriSet extends AbstractSet<String> {
+		private final int id;
+
+		UriSet(int id) {
+			this.id = id;
+		}
+
+		@Override
+		public Iterator<String> iterator() {
+			return new Iterator<String>() {
+				private int next = offsets[id];
+
+				public boolean hasNext() {
+					return next < offsets[id + 1];
+				}
+
+				public String next() {
+					if (!hasNext()) {
+						throw new NoSuchElementException();
+					}
+					return uris[postings[next++]];
+				}
+
+				public void remove() {
+					throw new UnsupportedOperationException();
+				}
+			};
+		}
+
+		@Override
+		public int size() {
+			return getUriCount(id);
+		}
+	}
+
+	private class MapView extends AbstractMap<String, Set<String>> {
+
+		private final Set<String> keys = new AbstractSet<String>() {
+			@Override
+			public Iterator<String> iterator() {
+				return Collections.unmodifiableList(Arrays.asList(values)).iterator();
+			}
+
+			@Override
+			public int size() {
+				return values.length;
+			}
+
+			@Override
+			public boolean contains(Object o) {
+				return o instanceof String && getId((String) o) >= 0;
+			}
+		};
+
+		private final Set<Map.Entry<String, Set<String>>> entries = new AbstractSet<Map.Entry<String, Set<String>>>() {
+			@Override
+			public Iterator<Map.Entry<String, Set<String>>> iterator() {
+				return new Iterator<Map.Entry<String, Set<String>>>() {
+					private int next = 0;
+
+					public boolean hasNext() {
+						return next < values.length;
+					}
+
+					public Map.Entry<String, Set<String>> next() {
+						if (!hasNext()) {
+							throw new NoSuchElementException();
+						}
+						int id = next++;
+						return new AbstractMap.SimpleImmutableEntry<String, Set<String>>(values[id],
+								new UriSet(id));
+					}
+
+					public void remove() {
+						throw new UnsupportedOperationException();
+					}
+				};
+			}
+
+			@Override
+			public int size() {
+				return values.length;
+			}
+		};
+
+		@Override
+		public Set<Map.Entry<String, Set<String>>> entrySet() {
+			return entries;
+		}
+
+		@Override
+		public Set<String> keySet() {
+			return keys;
+		}
+
+		@Override
+		public int size() {
+			return values.length;
+		}
+
+		@Override
+		public boolean containsKey(Object key) {
+			return key instanceof String && getId((String) key) >= 0;
+		}
+
+		@Override
+		public Set<String> get(Object key) {
+			if (!(key instanceof String)) {
+				return null;
+			}
+			int id = getId((String) key);
+			return (id < 0) ? null : new UriSet(id);
+		}
+	}
+}
@@ -12,6 +12,7 @@ import java.util.Map;
 import java.util.Map.Entry;
 
 import org.aksw.limes.core.io.config.reader.xml.XMLConfigurationReader;
+import org.aksw.limes.core.io.preprocessing.PreprocessingPipeline;
 
 /**
  * Contains the information necessary to access a knowledge base
@@ -120,6 +121,18 @@ public class KBInfo implements Serializable{
 		this.functions = functions;
 	}
 
+	/**
+	 * Returns the compiled preprocessing chain that derives the values of
+	 * propertyDub from the values of property. Chains are compiled only once.
+	 *
+	 * @param property Property as listed in the properties of the knowledge base
+	 * @param propertyDub Name of the processed property in the cache
+	 * @return The pipeline of the chain
+	 */
+	public PreprocessingPipeline getPipeline(String property, String propertyDub) {
+		return PreprocessingPipeline.forChain(functions.get(property).get(propertyDub));
+	}
+
 	public Map<String, String> getPrefixes() {
 		return prefixes;
 	}
@@ -0,0 +1,886 @@
+package org.aksw.limes.core.io.mapping;
+
+import java.io.Serializable;
+import java.util.AbstractCollection;
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Set;
+import java.util.TreeSet;
+
+import org.aksw.limes.core.io.cache.Cache;
+
+/**
+ * Memory-efficient mapping. Source and target URIs are interned into int IDs
+ * by a {@link UriDictionary} and each link is stored as a long key
+ * (source ID in the upper, target ID in the lower 32 bits) and a double
+ * similarity in an open-addressing hash table. Hence, a link costs about 20
+ * bytes instead of the boxed Double, hash map entries and String references
+ * of a {@link MemoryMapping}. As with MemoryMapping, if (s, t, sim1) is already
+ * in the mapping and (s, t, sim2) is added then the mapping will contain
+ * (s, t, max(sim1, sim2)).
+ *
+ * The nested-map view {@link #getMap()} is only materialized on demand for
+ * legacy callers. It is built once and then kept in sync with the mapping:
+ * links added to the mapping appear in the view, and put, putAll, remove and
+ * clear on the view or on its target maps are written through to the
+ * mapping, as are removals through their key sets, values, entry sets and
+ * iterators and Entry.setValue. {@link #getReversedMap()} returns a copy.
+ */
+public class CompactMapping extends Mapping implements Serializable {
+
+	private static final long serialVersionUID = 1L;
+
+	private static final long EMPTY = -1L;
+	private static final int DEFAULT_CAPACITY = 16;
+
+	protected UriDictionary sourceDictionary;
+	protected UriDictionary targetDictionary;
+	protected long[] keys;
+	protected double[] values;
+	// nested-map view of the links, null until getMap() is called
+	private transient LinkView view;
+
+	/**
+	 * Creates a mapping with its own URI dictionaries.
+	 */
+	public CompactMapping() {
+		this(new UriDictionary(), new UriDictionary());
+	}
+
+	/**
+	 * Creates a mapping that shares the URI dictionaries of the source and
+	 * the target cache with all other mappings of these caches.
+	 *
+	 * @param source
+	 *            Source cache
+	 * @param target
+	 *            Target cache
+	 */
+	public CompactMapping(Cache source, Cache target) {
+		this(UriDictionary.forCache(source), UriDictionary.forCache(target));
+	}
+
+	/**
+	 * @param sourceDictionary
+	 *            Dictionary of the source URIs
+	 * @param targetDictionary
+	 *            Dictionary of the target URIs
+	 */
+	public CompactMapping(UriDictionary sourceDictionary, UriDictionary targetDictionary) {
+		super();
+		this.sourceDictionary = sourceDictionary;
+		this.targetDictionary = targetDictionary;
+		this.keys = new long[DEFAULT_CAPACITY];
+		Arrays.fill(keys, EMPTY);
+		this.values = new double[DEFAULT_CAPACITY];
+	}
+
+	/**
+	 * Returns a mapping as compact mapping over the given dictionaries.
+	 *
+	 * @param mapping
+	 *            Mapping to convert
+	 * @param sourceDictionary
+	 *            Dictionary of the source URIs
+	 * @param targetDictionary
+	 *            Dictionary of the target URIs
+	 * @return the mapping itself if it is a compact mapping over these
+	 *         dictionaries, a compact copy of it otherwise
+	 */
+	public static CompactMapping of(Mapping mapping, UriDictionary sourceDictionary,
+			UriDictionary targetDictionary) {
+		CompactMapping result;
+		if (mapping instanceof CompactMapping) {
+			CompactMapping compact = (CompactMapping) mapping;
+			if (compact.sourceDictionary == sourceDictionary && compact.targetDictionary == targetDictionary) {
+				return compact;
+			}
+			result = new CompactMapping(sourceDictionary, targetDictionary);
+			Cursor c = compact.cursor();
+			while (c.next()) {
+				result.add(c.getSource(), c.getTarget(), c.getConfidence());
+			}
+		} else {
+			result = new CompactMapping(sourceDictionary, targetDictionary);
+			for (Entry<String, HashMap<String, Double>> e : mapping.getMap().entrySet()) {
+				result.add(e.getKey(), e.getValue());
+			}
+		}
+		return result;
+	}
+
+	public UriDictionary getSourceDictionary() {
+		return sourceDictionary;
+	}
+
+	public UriDictionary getTargetDictionary() {
+		return targetDictionary;
+	}
+
+	private static long key(int sourceId, int targetId) {
+		return ((long) sourceId << 32) | (targetId & 0xFFFFFFFFL);
+	}
+
+	private static int sourceId(long key) {
+		return (int) (key >>> 32);
+	}
+
+	private static int targetId(long key) {
+		return (int) key;
+	}
+
+	private static int slot(long key, int mask) {
+		long h = key * 0x9E3779B97F4A7C15L;
+		return (int) (h ^ (h >>> 32)) & mask;
+	}
+
+	/**
+	 * @return the slot of the key or the empty slot where it would be stored
+	 */
+	private int find(long key) {
+		int mask = keys.length - 1;
+		int i = slot(key, mask);
+		while (keys[i] != EMPTY && keys[i] != key) {
+			i = (i + 1) & mask;
+		}
+		return i;
+	}
+
+	private void grow() {
+		long[] oldKeys = keys;
+		double[] oldValues = values;
+		keys = new long[oldKeys.length * 2];
+		Arrays.fill(keys, EMPTY);
+		values = new double[oldKeys.length * 2];
+		for (int i = 0; i < oldKeys.length; i++) {
+			if (oldKeys[i] != EMPTY) {
+				int j = find(oldKeys[i]);
+				keys[j] = oldKeys[i];
+				values[j] = oldValues[i];
+			}
+		}
+	}
+
+	/**
+	 * Add one entry to the mapping using the IDs of the dictionaries
+	 *
+	 * @param sourceId
+	 *            ID of the source URI
+	 * @param targetId
+	 *            ID of the target URI
+	 * @param similarity
+	 *            Similarity of source and target
+	 */
+	public void add(int sourceId, int targetId, double similarity) {
+		long key = key(sourceId, targetId);
+		int i = find(key);
+		if (keys[i] == EMPTY) {
+			keys[i] = key;
+			values[i] = similarity;
+			size++;
+			if (size * 4 > keys.length * 3) {
+				grow();
+			}
+		} else if (similarity > values[i]) {
+			values[i] = similarity;
+		} else {
+			return;
+		}
+		if (view != null) {
+			view.targets(sourceId).link(targetDictionary.getUri(targetId), similarity);
+		}
+	}
+
+	/**
+	 * Sets the similarity of a pair of IDs, even if it is lower than the
+	 * current one. Does not update the view.
+	 */
+	private void set(int sourceId, int targetId, double similarity) {
+		long key = key(sourceId, targetId);
+		int i = find(key);
+		if (keys[i] == EMPTY) {
+			keys[i] = key;
+			size++;
+			values[i] = similarity;
+			if (size * 4 > keys.length * 3) {
+				grow();
+			}
+		} else {
+			values[i] = similarity;
+		}
+	}
+
+	/**
+	 * Removes a pair of IDs. The following links of the probe sequence are
+	 * shifted back so that no tombstones are needed. Does not update the
+	 * view.
+	 */
+	private void delete(int sourceId, int targetId) {
+		int mask = keys.length - 1;
+		int i = find(key(sourceId, targetId));
+		if (keys[i] == EMPTY) {
+			return;
+		}
+		keys[i] = EMPTY;
+		size--;
+		int j = i;
+		while (true) {
+			j = (j + 1) & mask;
+			if (keys[j] == EMPTY) {
+				return;
+			}
+			int k = slot(keys[j], mask);
+			// the link at j stays if its slot lies cyclically in (i, j]
+			if ((i <= j) ? (i < k && k <= j) : (i < k || k <= j)) {
+				continue;
+			}
+			keys[i] = keys[j];
+			values[i] = values[j];
+			keys[j] = EMPTY;
+			i = j;
+		}
+	}
+
+	@Override
+	public void add(String source, String target, double similarity) {
+		add(sourceDictionary.intern(source), targetDictionary.intern(target), similarity);
+	}
+
+	@Override
+	public void add(String source, HashMap<String, Double> instances) {
+		int sourceId = sourceDictionary.intern(source);
+		for (Entry<String, Double> e : instances.entrySet()) {
+			add(sourceId, targetDictionary.intern(e.getKey()), e.getValue());
+		}
+	}
+
+	/**
+	 * Returns the similarity of a pair of IDs, 0 if the pair is not in the
+	 * mapping
+	 */
+	public double getConfidence(int sourceId, int targetId) {
+		int i = find(key(sourceId, targetId));
+		return (keys[i] == EMPTY) ? 0 : values[i];
+	}
+
+	@Override
+	public double getConfidence(String source, String target) {
+		int sourceId = sourceDictionary.getId(source);
+		int targetId = targetDictionary.getId(target);
+		if (sourceId < 0 || targetId < 0) {
+			return 0;
+		}
+		return getConfidence(sourceId, targetId);
+	}
+
+	/**
+	 * Checks whether the mapping contains a pair of IDs
+	 */
+	public boolean contains(int sourceId, int targetId) {
+		return keys[find(key(sourceId, targetId))] != EMPTY;
+	}
+
+	@Override
+	public boolean contains(String source, String target) {
+		int sourceId = sourceDictionary.getId(source);
+		int targetId = targetDictionary.getId(target);
+		if (sourceId < 0 || targetId < 0) {
+			return false;
+		}
+		return contains(sourceId, targetId);
+	}
+
+	@Override
+	public int size() {
+		return size;
+	}
+
+	@Override
+	public int getNumberofMappings() {
+		return size;
+	}
+
+	/**
+	 * Reverses source and target. The dictionaries are swapped, not copied.
+	 *
+	 * @return Reversed map
+	 */
+	@Override
+	public CompactMapping reverseSourceTarget() {
+		CompactMapping m = new CompactMapping(targetDictionary, sourceDictionary);
+		for (int i = 0; i < keys.length; i++) {
+			if (keys[i] != EMPTY) {
+				m.add(targetId(keys[i]), sourceId(keys[i]), values[i]);
+			}
+		}
+		return m;
+	}
+
+	/**
+	 * Returns a mapping that contains all elements of the current mapping that
+	 * have similarity above the threshold.
+	 *
+	 * @param threshold
+	 *            Similarity threshold for filtering
+	 * @return Mapping that contains all elements (s,t) with sim(s,t)>=threshold
+	 */
+	@Override
+	public CompactMapping getSubMap(double threshold) {
+		CompactMapping m = new CompactMapping(sourceDictionary, targetDictionary);
+		for (int i = 0; i < keys.length; i++) {
+			if (keys[i] != EMPTY && values[i] >= threshold) {
+				m.add(sourceId(keys[i]), targetId(keys[i]), values[i]);
+			}
+		}
+		return m;
+	}
+
+	/**
+	 * Computes the best one to n mapping for the current mapping, i.e., for
+	 * each element of the source, it gets the best t from target.
+	 *
+	 * @return Best one to n mapping
+	 */
+	@Override
+	public CompactMapping getBestOneToNMapping() {
+		double[] maxSim = new double[sourceDictionary.size()];
+		for (int i = 0; i < keys.length; i++) {
+			if (keys[i] != EMPTY && values[i] > maxSim[sourceId(keys[i])]) {
+				maxSim[sourceId(keys[i])] = values[i];
+			}
+		}
+		CompactMapping m = new CompactMapping(sourceDictionary, targetDictionary);
+		for (int i = 0; i < keys.length; i++) {
+			if (keys[i] != EMPTY && values[i] == maxSim[sourceId(keys[i])]) {
+				m.add(sourceId(keys[i]), targetId(keys[i]), values[i]);
+			}
+		}
+		return m;
+	}
+
+	/**
+	 * @return the links of the mapping sorted by source ID and target ID
+	 */
+	public SortedLinks getSortedLinks() {
+		long[] sortedKeys = new long[size];
+		int n = 0;
+		for (int i = 0; i < keys.length; i++) {
+			if (keys[i] != EMPTY) {
+				sortedKeys[n++] = keys[i];
+			}
+		}
+		Arrays.sort(sortedKeys);
+		double[] sortedValues = new double[size];
+		for (int i = 0; i < size; i++) {
+			sortedValues[i] = values[find(sortedKeys[i])];
+		}
+		return new SortedLinks(sortedKeys, sortedValues);
+	}
+
+	/**
+	 * Links of a mapping as parallel arrays, sorted by source ID and target
+	 * ID. Two sorted link arrays of mappings that share their dictionaries can
+	 * be merged in a single pass.
+	 */
+	public static class SortedLinks {
+		private final long[] keys;
+		private final double[] values;
+
+		SortedLinks(long[] keys, double[] values) {
+			this.keys = keys;
+			this.values = values;
+		}
+
+		public int size() {
+			return keys.length;
+		}
+
+		/**
+		 * @return key of the i-th link, which orders the links
+		 */
+		public long getKey(int i) {
+			return keys[i];
+		}
+
+		public int getSourceId(int i) {
+			return sourceId(keys[i]);
+		}
+
+		public int getTargetId(int i) {
+			return targetId(keys[i]);
+		}
+
+		public double getConfidence(int i) {
+			return values[i];
+		}
+	}
+
+	/**
+	 * @return a cursor over all links of the mapping
+	 */
+	public Cursor cursor() {
+		return new Cursor();
+	}
+
+	/**
+	 * Iterates over the links of the mapping without creating an object per
+	 * link. Usage: <code>while (c.next()) { c.getSource(); ... }</code>
+	 */
+	public class Cursor {
+		private int position = -1;
+
+		/**
+		 * Moves to the next link
+		 *
+		 * @return false if there is no next link
+		 */
+		public boolean next() {
+			do {
+				position++;
+			} while (position < keys.length && keys[position] == EMPTY);
+			return position < keys.length;
+		}
+
+		public int getSourceId() {
+			return sourceId(keys[position]);
+		}
+
+		public int getTargetId() {
+			return targetId(keys[position]);
+		}
+
+		public String getSource() {
+			return sourceDictionary.getUri(getSourceId());
+		}
+
+		public String getTarget() {
+			return targetDictionary.getUri(getTargetId());
+		}
+
+		public double getConfidence() {
+			return values[position];
+		}
+	}
+
+	/**
+	 * Returns the links as nested maps. The map is materialized on the first
+	 * call and backed by the mapping from then on, see the class comment.
+	 */
+	@Override
+	public HashMap<String, HashMap<String, Double>> getMap() {
+		if (view == null) {
+			LinkView v = new LinkView();
+			Cursor c = cursor();
+			while (c.next()) {
+				v.targets(c.getSourceId()).link(c.getTarget(), c.getConfidence());
+			}
+			view = v;
+		}
+		return view;
+	}
+
+	/**
+	 * Base of the nested-map views. Removals through the key set, the values,
+	 * the entry set and their iterators, and Entry.setValue, are written
+	 * through to the mapping like the changes of the map methods.
+	 */
+	private abstract class ViewMap<V> extends HashMap<String, V> {
+
+		private static final long serialVersionUID = 1L;
+
+		/**
+		 * Removes the links of an entry that was removed from the view
+		 */
+		abstract void deleted(String key, V value);
+
+		/**
+		 * Replaces the links of an entry whose value is set
+		 *
+		 * @return the value to store in the view
+		 */
+		abstract V replaced(String key, V oldValue, V newValue);
+
+		private Set<Entry<String, V>> entries() {
+			return super.entrySet();
+		}
+
+		@Override
+		public Set<Entry<String, V>> entrySet() {
+			return new AbstractSet<Entry<String, V>>() {
+				@Override
+				public Iterator<Entry<String, V>> iterator() {
+					return new EntryIterator();
+				}
+
+				@Override
+				public int size() {
+					return ViewMap.this.size();
+				}
+
+				@Override
+				public boolean contains(Object o) {
+					return entries().contains(o);
+				}
+			};
+		}
+
+		@Override
+		public Set<String> keySet() {
+			return new AbstractSet<String>() {
+				@Override
+				public Iterator<String> iterator() {
+					final EntryIterator entries = new EntryIterator();
+					return new Iterator<String>() {
+						public boolean hasNext() {
+							return entries.hasNext();
+						}
+
+						public String next() {
+							return entries.next().getKey();
+						}
+
+						public void remove() {
+							entries.remove();
+						}
+					};
+				}
+
+				@Override
+				public int size() {
+					return ViewMap.this.size();
+				}
+
+				@Override
+				public boolean contains(Object o) {
+					return containsKey(o);
+				}
+
+				@Override
+				public boolean remove(Object o) {
+					if (!containsKey(o)) {
+						return false;
+					}
+					ViewMap.this.remove(o);
+					return true;
+				}
+			};
+		}
+
+		@Override
+		public Collection<V> values() {
+			return new AbstractCollection<V>() {
+				@Override
+				public Iterator<V> iterator() {
+					final EntryIterator entries = new EntryIterator();
+					return new Iterator<V>() {
+						public boolean hasNext() {
+							return entries.hasNext();
+						}
+
+						public V next() {
+							return entries.next().getValue();
+						}
+
+						public void remove() {
+							entries.remove();
+						}
+					};
+				}
+
+				@Override
+				public int size() {
+					return ViewMap.this.size();
+				}
+			};
+		}
+
+		private class EntryIterator implements Iterator<Entry<String, V>> {
+			private final Iterator<Entry<String, V>> entries = entries().iterator();
+			private Entry<String, V> current;
+
+			public boolean hasNext() {
+				return entries.hasNext();
+			}
+
+			public Entry<String, V> next() {
+				current = entries.next();
+				return new ViewEntry(current);
+			}
+
+			public void remove() {
+				entries.remove();
+				deleted(current.getKey(), current.getValue());
+			}
+		}
+
+		private class ViewEntry implements Entry<String, V> {
+			private final Entry<String, V> entry;
+
+			ViewEntry(Entry<String, V> entry) {
+				this.entry = entry;
+			}
+
+			public String getKey() {
+				return entry.getKey();
+			}
+
+			public V getValue() {
+				return entry.getValue();
+			}
+
+			public V setValue(V value) {
+				V old = entry.getValue();
+				entry.setValue(replaced(entry.getKey(), old, value));
+				return old;
+			}
+
+			@Override
+			public boolean equals(Object o) {
+				return entry.equals(o);
+			}
+
+			@Override
+			public int hashCode() {
+				return entry.hashCode();
+			}
+
+			@Override
+			public String toString() {
+				return entry.toString();
+			}
+		}
+	}
+
+	/**
+	 * Nested-map view of the links that writes its changes through to the
+	 * mapping.
+	 */
+	private class LinkView extends ViewMap<HashMap<String, Double>> {
+
+		private static final long serialVersionUID = 1L;
+
+		/**
+		 * @return the target map of a source, created if needed
+		 */
+		TargetView targets(int sourceId) {
+			String source = sourceDictionary.getUri(sourceId);
+			TargetView targets = (TargetView) super.get(source);
+			if (targets == null) {
+				targets = new TargetView(sourceId);
+				super.put(source, targets);
+			}
+			return targets;
+		}
+
+		@Override
+		void deleted(String source, HashMap<String, Double> targets) {
+			((TargetView) targets).deleteAll();
+		}
+
+		@Override
+		HashMap<String, Double> replaced(String source, HashMap<String, Double> oldTargets,
+				HashMap<String, Double> targets) {
+			TargetView old = (TargetView) oldTargets;
+			old.deleteAll();
+			TargetView v = new TargetView(old.sourceId);
+			v.putAll(targets);
+			return v;
+		}
+
+		@Override
+		public HashMap<String, Double> put(String source, HashMap<String, Double> targets) {
+			HashMap<String, Double> old = remove(source);
+			TargetView v = targets(sourceDictionary.intern(source));
+			v.putAll(targets);
+			return old;
+		}
+
+		@Override
+		public void putAll(Map<? extends String, ? extends HashMap<String, Double>> m) {
+			for (Entry<? extends String, ? extends HashMap<String, Double>> e : m.entrySet()) {
+				put(e.getKey(), e.getValue());
+			}
+		}
+
+		@Override
+		public HashMap<String, Double> remove(Object source) {
+			TargetView old = (TargetView) super.remove(source);
+			if (old != null) {
+				old.deleteAll();
+			}
+			return old;
+		}
+
+		@Override
+		public void clear() {
+			for (HashMap<String, Double> targets : values()) {
+				((TargetView) targets).deleteAll();
+			}
+			super.clear();
+		}
+	}
+
+	/**
+	 * Targets of one source in the {@link LinkView}.
+	 */
+	private class TargetView extends ViewMap<Double> {
+
+		private static final long serialVersionUID = 1L;
+
+		private final int sourceId;
+
+		TargetView(int sourceId) {
+			this.sourceId = sourceId;
+		}
+
+		/**
+		 * Updates the view only
+		 */
+		void link(String target, double similarity) {
+			super.put(target, similarity);
+		}
+
+		/**
+		 * Removes all links of the source from the mapping
+		 */
+		void deleteAll() {
+			for (String target : keySet()) {
+				delete(sourceId, targetDictionary.getId(target));
+			}
+		}
+
+		@Override
+		void deleted(String target, Double similarity) {
+			delete(sourceId, targetDictionary.getId(target));
+		}
+
+		@Override
+		Double replaced(String target, Double oldSimilarity, Double similarity) {
+			set(sourceId, targetDictionary.intern(target), similarity);
+			return similarity;
+		}
+
+		@Override
+		public Double put(String target, Double similarity) {
+			set(sourceId, targetDictionary.intern(target), similarity);
+			return super.put(target, similarity);
+		}
+
+		@Override
+		public void putAll(Map<? extends String, ? extends Double> m) {
+			for (Entry<? extends String, ? extends Double> e : m.entrySet()) {
+				put(e.getKey(), e.getValue());
+			}
+		}
+
+		@Override
+		public Double remove(Object target) {
+			Double old = super.remove(target);
+			if (old != null) {
+				delete(sourceId, targetDictionary.getId((String) target));
+			}
+			return old;
+		}
+
+		@Override
+		public void clear() {
+			deleteAll();
+			super.clear();
+		}
+	}
+
+	/**
+	 * Materializes the links as similarity-keyed nested maps. The returned
+	 * map is a copy, i.e., changing it does not change the mapping.
+	 */
+	@Override
+	public HashMap<Double, HashMap<String, TreeSet<String>>> getReversedMap() {
+		HashMap<Double, HashMap<String, TreeSet<String>>> result = new HashMap<Double, HashMap<String, TreeSet<String>>>();
+		Cursor c = cursor();
+		while (c.next()) {
+			HashMap<String, TreeSet<String>> sources = result.get(c.getConfidence());
+			if (sources == null) {
+				sources = new HashMap<String, TreeSet<String>>();
+				result.put(c.getConfidence(), sources);
+			}
+			String s = c.getSource();
+			if (!sources.containsKey(s)) {
+				sources.put(s, new TreeSet<String>());
+			}
+			sources.get(s).add(c.getTarget());
+		}
+		return result;
+	}
+
+	/**
+	 * Replaces the links of the mapping by the ones of the given map.
+	 */
+	@Override
+	public void setMap(HashMap<String, HashMap<String, Double>> map) {
+		String predicate = this.predicate;
+		clear();
+		this.predicate = predicate;
+		for (Entry<String, HashMap<String, Double>> e : map.entrySet()) {
+			add(e.getKey(), e.getValue());
+		}
+	}
+
+	@Override
+	public void clear() {
+		super.clear();
+		keys = new long[DEFAULT_CAPACITY];
+		Arrays.fill(keys, EMPTY);
+		values = new double[DEFAULT_CAPACITY];
+		view = null;
+	}
+
+	@Override
+	public String toString() {
+		StringBuilder s = new StringBuilder();
+		Cursor c = cursor();
+		while (c.next()) {
+			s.append("[").append(c.getSource()).append(" -> (").append(c.getTarget()).append("|")
+					.append(c.getConfidence()).append(")]\n");
+		}
+		return s.toString();
+	}
+
+	@Override
+	public int hashCode() {
+		final int prime = 31;
+		int result = 1;
+		result = prime * result + ((predicate == null) ? 0 : predicate.hashCode());
+		result = prime * result + size;
+		return result;
+	}
+
+	@Override
+	public boolean equals(Object obj) {
+		if (this == obj)
+			return true;
+		if (obj == null)
+			return false;
+		if (getClass() != obj.getClass())
+			return false;
+		CompactMapping other = (CompactMapping) obj;
+		if (predicate == null) {
+			if (other.predicate != null)
+				return false;
+		} else if (!predicate.equals(other.predicate))
+			return false;
+		if (size != other.size)
+			return false;
+		Cursor c = cursor();
+		while (c.next()) {
+			if (!other.contains(c.getSource(), c.getTarget())
+					|| other.getConfidence(c.getSource(), c.getTarget()) != c.getConfidence())
+				return false;
+		}
+		return true;
+	}
+}
@@ -4,6 +4,7 @@ import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
 
+import org.aksw.limes.core.io.cache.Cache;
 import org.apache.log4j.Logger;
 
 
@@ -17,6 +18,7 @@ public class MappingFactory {
 	protected static final String MEMORY_MAPPING 	= "memorymapping";
 	protected static final String HYBIRD_MAPPING 	= "hybirdmapping";
 	protected static final String FILE_MAPPING 		= "filrmapping";
+	protected static final String COMPACT_MAPPING 	= "compactmapping";
 
 
 	/**
@@ -33,17 +35,35 @@ public class MappingFactory {
 			return new HybridMapping();
 		if(name.equalsIgnoreCase(FILE_MAPPING ))
 			return new FileMapping();
+		if(name.equalsIgnoreCase(COMPACT_MAPPING))
+			return new CompactMapping();
 		logger.error("Sorry, " + name + " is not yet implemented. Exit with error ...");
 		System.exit(1);
 		return null;
 	}
 
 
+	/**
+	 * @param name
+	 * @param source Source cache
+	 * @param target Target cache
+	 * @return a specific module instance given its module's name. A compact
+	 *         mapping shares the URI dictionaries of the caches.
+	 */
+	public static Mapping createMapping(String name, Cache source, Cache target) {
+		if(name.equalsIgnoreCase(COMPACT_MAPPING)) {
+			logger.info("Getting Mapping with name " + name);
+			return new CompactMapping(source, target);
+		}
+		return createMapping(name);
+	}
+
+
 	/**
 	 * @return list of names of all implemented operators
 	 * @author sherif
 	 */
 	public static List<String> getNames(){
-		return new ArrayList<String>(Arrays.asList(MEMORY_MAPPING, FILE_MAPPING, HYBIRD_MAPPING));
+		return new ArrayList<String>(Arrays.asList(MEMORY_MAPPING, FILE_MAPPING, HYBIRD_MAPPING, COMPACT_MAPPING));
 	}
 }
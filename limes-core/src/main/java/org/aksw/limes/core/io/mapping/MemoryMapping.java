@@ -327,8 +327,9 @@ public class MemoryMapping extends Mapping implements Serializable {
 	Mapping result = new MemoryMapping();
 	result.map.putAll(this.map);
 	result.size = size();
-	for (String s : other.map.keySet()) {
-	    result.add(s, other.map.get(s));
+	HashMap<String, HashMap<String, Double>> otherMap = other.getMap();
+	for (String s : otherMap.keySet()) {
+	    result.add(s, otherMap.get(s));
 	    // for(Entry<String, Double> t : other.map.get(s).entrySet()) {
 	    // if(result.contains(s, t.getKey())) {
 	    // double val = Math.max(result.getSimilarity(s,
@@ -0,0 +1,113 @@
+package org.aksw.limes.core.io.mapping;
+
+import java.io.Serializable;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.WeakHashMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.aksw.limes.core.io.cache.Cache;
+
+/**
+ * Interns URIs into dense int IDs. IDs are assigned in the order in which the
+ * URIs are seen, starting at 0. A dictionary is shared by all mappings that
+ * are computed on the same cache (see {@link #forCache(Cache)}), so that the
+ * URIs of a cache are only interned once. All methods are thread-safe. Only
+ * interning a new URI takes a lock, lookups do not.
+ */
+public class UriDictionary implements Serializable {
+
+	private static final long serialVersionUID = 1L;
+
+	private static final Map<Cache, UriDictionary> dictionaries = new WeakHashMap<Cache, UriDictionary>();
+
+	private final ConcurrentHashMap<String, Integer> ids;
+	// URIs by ID; a URI is stored before its ID is published in ids
+	private volatile String[] uris;
+	// number of interned URIs, written after the URI is stored
+	private volatile int size;
+
+	public UriDictionary() {
+		this.ids = new ConcurrentHashMap<String, Integer>();
+		this.uris = new String[16];
+	}
+
+	/**
+	 * Returns the dictionary of a cache. When called for the first time for
+	 * a cache, all URIs of the cache are interned.
+	 *
+	 * @param cache
+	 *            Source or target cache
+	 * @return the dictionary shared by all mappings of the cache
+	 */
+	public static UriDictionary forCache(Cache cache) {
+		synchronized (dictionaries) {
+			UriDictionary dictionary = dictionaries.get(cache);
+			if (dictionary == null) {
+				dictionary = new UriDictionary();
+				for (String uri : cache.getAllUris()) {
+					dictionary.intern(uri);
+				}
+				dictionaries.put(cache, dictionary);
+			}
+			return dictionary;
+		}
+	}
+
+	/**
+	 * @param uri
+	 *            URI to intern
+	 * @return the ID of the URI, a new one if the URI was not interned yet
+	 */
+	public int intern(String uri) {
+		Integer id = ids.get(uri);
+		if (id != null) {
+			return id;
+		}
+		synchronized (this) {
+			id = ids.get(uri);
+			if (id == null) {
+				id = size;
+				String[] u = uris;
+				if (id == u.length) {
+					u = Arrays.copyOf(u, 2 * u.length);
+				}
+				u[id] = uri;
+				uris = u;
+				size = id + 1;
+				ids.put(uri, id);
+			}
+			return id;
+		}
+	}
+
+	/**
+	 * @param uri
+	 *            URI to look up
+	 * @return the ID of the URI, -1 if the URI was not interned
+	 */
+	public int getId(String uri) {
+		Integer id = ids.get(uri);
+		return (id == null) ? -1 : id;
+	}
+
+	/**
+	 * @param id
+	 *            ID to look up
+	 * @return the URI with the given ID
+	 */
+	public String getUri(int id) {
+		// read size first, it is written after the URI
+		if (id < 0 || id >= size) {
+			throw new IndexOutOfBoundsException("ID: " + id + ", size: " + size);
+		}
+		return uris[id];
+	}
+
+	/**
+	 * @return number of interned URIs
+	 */
+	public int size() {
+		return size;
+	}
+}
@@ -0,0 +1,294 @@
+package org.aksw.limes.core.io.preprocessing;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
+
+import org.apache.log4j.Logger;
+
+/**
+ * Compiled form of a preprocessing chain such as
+ * nolang->lowercase->regexreplace(...). The chain is split into typed steps
+ * once, and the regular expressions of the steps are compiled once, so that
+ * processing a value neither parses the chain nor compiles patterns. The
+ * results are the same as the ones of {@link Preprocessor#process}.
+ *
+ * Pipelines are immutable and thus thread-safe. They are cached per chain,
+ * see {@link #forChain(String)}.
+ */
+public class PreprocessingPipeline {
+
+	static Logger logger = Logger.getLogger(PreprocessingPipeline.class.getName());
+
+	private static final ConcurrentHashMap<String, PreprocessingPipeline> pipelines = new ConcurrentHashMap<String, PreprocessingPipeline>();
+	private static final ConcurrentHashMap<String, Step> steps = new ConcurrentHashMap<String, Step>();
+	private static final PreprocessingPipeline EMPTY = new PreprocessingPipeline(new Step[0]);
+
+	private static final Pattern NON_NUMBER = Pattern.compile("[^0-9,.,-]");
+	private static final Pattern NON_DATE = Pattern.compile("[^0-9,.-]");
+
+	private final Step[] chain;
+
+	private PreprocessingPipeline(Step[] chain) {
+		this.chain = chain;
+	}
+
+	/**
+	 * Returns the compiled pipeline of a chain. Chains are compiled on their
+	 * first use only.
+	 *
+	 * @param functionChain
+	 *            Preprocessing functions separated by ->, may be null or
+	 *            empty
+	 * @return The pipeline of the chain
+	 */
+	public static PreprocessingPipeline forChain(String functionChain) {
+		if (functionChain == null || functionChain.equals("")) {
+			return EMPTY;
+		}
+		PreprocessingPipeline pipeline = pipelines.get(functionChain);
+		if (pipeline == null) {
+			String split[] = functionChain.split("->");
+			Step[] chain = new Step[split.length];
+			for (int i = 0; i < split.length; i++) {
+				chain[i] = forFunction(split[i]);
+			}
+			pipeline = new PreprocessingPipeline(chain);
+			pipelines.putIfAbsent(functionChain, pipeline);
+		}
+		return pipeline;
+	}
+
+	/**
+	 * Returns the compiled step of a single preprocessing function
+	 *
+	 * @param function
+	 *            Preprocessing function, e.g., lowercase
+	 * @return The step of the function
+	 */
+	static Step forFunction(String function) {
+		Step step = steps.get(function);
+		if (step == null) {
+			step = compile(function);
+			steps.putIfAbsent(function, step);
+		}
+		return step;
+	}
+
+	/**
+	 * Processes a value, i.e., removes its type information and applies the
+	 * steps of the chain in order.
+	 *
+	 * @param entry
+	 *            Raw value
+	 * @return The processed value
+	 */
+	public String process(String entry) {
+		int type = entry.indexOf('^');
+		String result = (type < 0) ? entry : entry.substring(0, type);
+		for (Step step : chain) {
+			result = step.apply(result);
+		}
+		return result;
+	}
+
+	/**
+	 * Processes a column of values.
+	 *
+	 * @param values
+	 *            Raw values
+	 * @return The processed values, in the same order
+	 */
+	public String[] process(String[] values) {
+		String[] result = new String[values.length];
+		for (int i = 0; i < values.length; i++) {
+			result[i] = process(values[i]);
+		}
+		return result;
+	}
+
+	/**
+	 * Processes a column of values.
+	 *
+	 * @param values
+	 *            Raw values
+	 * @return The processed values, in the same order
+	 */
+	public List<String> process(List<String> values) {
+		List<String> result = new ArrayList<String>(values.size());
+		for (String value : values) {
+			result.add(process(value));
+		}
+		return result;
+	}
+
+	/**
+	 * Single preprocessing function
+	 */
+	static abstract class Step {
+		abstract String apply(String entry);
+	}
+
+	private static final Step IDENTITY = new Step() {
+		String apply(String entry) {
+			return entry;
+		}
+	};
+
+	private static Step compile(final String function) {
+		if (function.length() < 2) {
+			return IDENTITY;
+		}
+		if (function.startsWith(Preprocessor.LOWER_CASE)) {
+			return new Step() {
+				String apply(String entry) {
+					return entry.toLowerCase();
+				}
+			};
+		}
+		if (function.startsWith(Preprocessor.UPPER_CASE)) {
+			return new Step() {
+				String apply(String entry) {
+					return entry.toUpperCase();
+				}
+			};
+		}
+		if (function.startsWith(Preprocessor.REPLACE)) {
+			String replaced = function.substring(8, function.indexOf(","));
+			String replacee = function.substring(function.indexOf(",") + 1, function.indexOf(")"));
+			return new RegexReplaceStep(Pattern.compile(Pattern.quote(replaced)), replacee, false);
+		}
+		if (function.startsWith(Preprocessor.REG_EX_REPLACE)) { //e.g replace((*),)
+			try {
+				String replaced = function.substring(13, function.lastIndexOf(","));
+				String replacee = function.substring(function.lastIndexOf(",") + 1,
+						function.indexOf(")", function.lastIndexOf(",")));
+				return new RegexReplaceStep(Pattern.compile(replaced), replacee, true);
+			} catch (IndexOutOfBoundsException e1) {
+				logger.warn("Preprocessing function " + function + " could not be read.");
+			} catch (PatternSyntaxException e2) {
+				logger.warn("Preprocessing function " + function + " could not be read. Error in Regular Expression.");
+			}
+			return IDENTITY;
+		}
+		if (function.startsWith(Preprocessor.NO_LANG)) {
+			return new Step() {
+				String apply(String entry) {
+					int at = entry.lastIndexOf(Preprocessor.AT);
+					return (at < 0) ? entry : entry.substring(0, at);
+				}
+			};
+		}
+		if (function.startsWith(Preprocessor.CLEAN_IRI)) {
+			return new Step() {
+				String apply(String entry) {
+					return entry.substring(entry.lastIndexOf("/") + 1);
+				}
+			};
+		}
+		if (function.startsWith(Preprocessor.NUMBER)) {
+			return new Step() {
+				String apply(String entry) {
+					return number(entry);
+				}
+			};
+		}
+		if (function.startsWith(Preprocessor.CELSIUS)) {
+			return new Step() {
+				String apply(String entry) {
+					double value = Double.parseDouble(number(entry));
+					double result = 32 + value * 9 / 5;
+					return result + "";
+				}
+			};
+		}
+		if (function.startsWith(Preprocessor.FAHRENHEIT)) {
+			return new Step() {
+				String apply(String entry) {
+					double value = Double.parseDouble(number(entry));
+					double result = (value - 32) * 5 / 9;
+					return result + "";
+				}
+			};
+		}
+		if (function.startsWith(Preprocessor.DATE)) {
+			return new Step() {
+				String apply(String entry) {
+					return NON_DATE.matcher(entry).replaceAll("");
+				}
+			};
+		}
+		if (function.startsWith(Preprocessor.REMOVE_BRACES)) {
+			return new Step() {
+				String apply(String entry) {
+					int openBrace = entry.indexOf("(");
+					int closingBrace = entry.indexOf(")", Math.max(openBrace, 0));
+					if (closingBrace > -1 && openBrace > -1) {
+						return entry.substring(0, Math.min(closingBrace, openBrace) - 1)
+								+ entry.substring(Math.max(openBrace, closingBrace) + 1);
+					} else {
+						return entry.replace("(", "").replace(")", "");
+					}
+				}
+			};
+		}
+		if (function.startsWith(Preprocessor.REGULAR_ALPHABET)) {
+			return compile("regexreplace([^A-Za-z0-9 ],)");
+		}
+		if (function.startsWith(Preprocessor.URI_AS_STRING)) {
+			return new Step() {
+				String apply(String entry) {
+					return Preprocessor.URIasString(entry);
+				}
+			};
+		}
+		//function not known...
+		logger.warn("Unknown preprocessing function " + function);
+		return IDENTITY;
+	}
+
+	/**
+	 * Replaces the matches of a precompiled pattern
+	 */
+	private static class RegexReplaceStep extends Step {
+		private final Pattern pattern;
+		private final String replacement;
+		private final boolean trim;
+
+		RegexReplaceStep(Pattern pattern, String replacement, boolean trim) {
+			this.pattern = pattern;
+			this.replacement = replacement;
+			this.trim = trim;
+		}
+
+		String apply(String entry) {
+			if (!trim) {
+				return pattern.matcher(entry).replaceAll(replacement);
+			}
+			try {
+				return pattern.matcher(entry).replaceAll(replacement).trim();
+			} catch (IndexOutOfBoundsException e) {
+				// e.g. a group in the replacement that is not in the pattern
+				logger.warn("Preprocessing function regexreplace(" + pattern + "," + replacement
+						+ ") could not be read.");
+				return entry;
+			}
+		}
+	}
+
+	private static String number(String entry) {
+		//get rid of the type information
+		String value = NON_NUMBER.matcher(entry).replaceAll("");
+		if (value.length() == 0) {
+			return 0 + "";
+		}
+		try {
+			Double.parseDouble(value);
+		} catch (Exception e) {
+			return 0 + "";
+		}
+		return value;
+	}
+}
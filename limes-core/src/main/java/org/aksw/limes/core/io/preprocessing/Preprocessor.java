@@ -2,8 +2,6 @@ package org.aksw.limes.core.io.preprocessing;
 
 import java.util.ArrayList;
 import java.util.List;
-import java.util.regex.Pattern;
-import java.util.regex.PatternSyntaxException;
 
 import org.apache.log4j.Logger;
 
@@ -32,125 +30,22 @@ public class Preprocessor {
 	public static final String NUMBER 			= "number";
 
 
+	/**
+	 * Removes the type information of a value and applies a chain of
+	 * preprocessing functions to it. The chain is compiled once into a
+	 * {@link PreprocessingPipeline}; use the pipeline directly to process
+	 * many values.
+	 *
+	 * @param entry Raw value
+	 * @param functionChain Preprocessing functions separated by ->
+	 * @return The processed value
+	 */
 	public static String process(String entry, String functionChain) {
-		String result = entry.split("\\^")[0];
-		//System.out.println("entry = "+entry);
-		//System.out.println("Function chain = "+functionChain);
-		if (functionChain != null) {
-			if (!functionChain.equals("")) {
-				{
-					String split[] = functionChain.split("->");
-					for (int i = 0; i < split.length; i++) {
-						result = atomicProcess(result, split[i]);
-						//System.out.println(result);
-					}
-				}
-			}
-		}
-		//System.out.println("<"+entry+">" + " -> <" + result+">");
-		return result;
+		return PreprocessingPipeline.forChain(functionChain).process(entry);
 	}
 
 	public static String atomicProcess(String entry, String function) {
-		//System.out.println(entry +" -> "+ function);
-		if (function.length() < 2) {
-			return entry;
-		}
-		//remove unneeded xsd information        
-		//function = function.toLowerCase();
-		if (function.startsWith(LOWER_CASE)) {
-			return entry.toLowerCase();
-		}
-		if (function.startsWith(UPPER_CASE)) {
-			return entry.toUpperCase();
-		}
-		if (function.startsWith(REPLACE)) {
-			//function = function.replaceAll(Pattern.quote("_"), " ");
-			//System.out.println(">>>"+function);
-			String replaced = function.substring(8, function.indexOf(","));
-			String replacee = function.substring(function.indexOf(",") + 1, function.indexOf(")"));
-			//System.out.println("<"+replaced + ">, <" + replacee + ">");
-			return entry.replaceAll(Pattern.quote(replaced), replacee);
-		}
-		if (function.startsWith(REG_EX_REPLACE)) { //e.g replace((*),)
-			//System.out.println("REGEX REPLACE");
-			try {
-				String replaced = function.substring(13, function.lastIndexOf(","));
-				String replacee = function.substring(function.lastIndexOf(",") + 1, function.indexOf(")", function.lastIndexOf(",")));
-				//System.out.println("value to replace:" +entry);
-				//System.out.println("replaced = "+entry.replaceAll(replaced, replacee).trim());
-				return entry.replaceAll(replaced, replacee).trim();
-			} catch (IndexOutOfBoundsException e1) {
-				logger.warn("Preprocessing function " + function + " could not be read.");
-			} catch (PatternSyntaxException e2) {
-				logger.warn("Preprocessing function " + function + " could not be read. Error in Regular Expression.");
-			}
-			return entry;
-		}
-		if (function.startsWith(NO_LANG)) {
-			if (entry.contains(AT)) {
-				return entry.substring(0, entry.lastIndexOf(AT));
-			} else {
-				return entry;
-			}
-		}
-		if (function.startsWith(CLEAN_IRI)) {
-			if (entry.contains("/")) {
-				return entry.substring(entry.lastIndexOf("/") + 1);
-			} else {
-				return entry;
-			}
-		}
-		if (function.startsWith(NUMBER)) {
-			//get rid of the type information
-			String value = entry.replaceAll("[^0-9,.,-]", "");
-			if (value.length() == 0) {
-				return 0 + "";
-			} else {
-				try {
-					Double.parseDouble(value);
-				} catch (Exception e) {
-					return 0 + "";
-				}
-			}
-			return value;
-		}
-		if (function.startsWith(CELSIUS)) {
-			//get rid of the type information
-			double value = Double.parseDouble(atomicProcess(entry, NUMBER));
-			double result = 32 + value * 9 / 5;
-			return result + "";
-		}
-		if (function.startsWith(FAHRENHEIT)) {
-			//get rid of the type information
-			double value = Double.parseDouble(atomicProcess(entry, NUMBER));
-			double result = (value - 32) * 5 / 9;
-			return result + "";
-		}
-		if (function.startsWith(DATE)) {
-			return entry.replaceAll("[^0-9,.-]", "");
-		}
-		if (function.startsWith(REMOVE_BRACES)) {
-			int openBrace = entry.indexOf("(");
-			int closingBrace = entry.indexOf(")", Math.max(openBrace, 0));
-			if (closingBrace > -1 && openBrace > -1) {
-				return entry.substring(0, Math.min(closingBrace, openBrace) - 1) + entry.substring(Math.max(openBrace, closingBrace) + 1);
-			} else {
-				String ret = entry.replaceAll("\\(", "");
-				return ret.replaceAll("\\)", "");
-			}
-		}
-		if (function.startsWith(REGULAR_ALPHABET)) {
-			return atomicProcess(entry, "regexreplace([^A-Za-z0-9 ],)");
-		} 
-		if (function.startsWith(URI_AS_STRING)) {
-			return URIasString(entry);
-		}
-		//function not known...
-		else {
-			logger.warn("Unknown preprocessing function " + function);
-			return entry;
-		}
+		return PreprocessingPipeline.forFunction(function).apply(entry);
 	}
 
 
@@ -171,7 +66,7 @@ public class Preprocessor {
 	 * Returns the last part of an URI as a String. Additional parsing _ as space.
 	 * @return
 	 */
-	private static String URIasString(String org) {
+	static String URIasString(String org) {
 		String result = org;
 		if(org.lastIndexOf("/") > 0 && org.lastIndexOf("/")<(org.length()-1)) {
 			result = org.substring(org.lastIndexOf("/")+1);
@@ -18,7 +18,7 @@ public class ModelRegistry {
     private static ModelRegistry instance = null;
     private Map<String, Model> map = new HashMap<String, Model>();
 
-    public static ModelRegistry getInstance() {
+    public static synchronized ModelRegistry getInstance() {
         if (instance == null) {
             instance = new ModelRegistry();
         }
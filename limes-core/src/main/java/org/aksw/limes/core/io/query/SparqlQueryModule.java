@@ -2,11 +2,20 @@ package org.aksw.limes.core.io.query;
 
 import com.hp.hpl.jena.query.*;
 
-import java.util.Iterator;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
 
 import org.aksw.limes.core.io.cache.Cache;
 import org.aksw.limes.core.io.config.KBInfo;
-import org.aksw.limes.core.io.preprocessing.Preprocessor;
+import org.aksw.limes.core.io.preprocessing.PreprocessingPipeline;
 import org.apache.log4j.Logger;
 
 import com.hp.hpl.jena.rdf.model.Model;
@@ -20,11 +29,77 @@ public class SparqlQueryModule implements IQueryModule {
 
 	private Logger logger = Logger.getLogger(SparqlQueryModule.class.getName());
 	protected KBInfo kb;
+	// number of page requests kept in flight by the paged fetch mode
+	private int pagesInFlight = 1;
+	// number of threads that decode and preprocess the fetched pages
+	private int workers = Runtime.getRuntime().availableProcessors();
+	// whether pages are requested by the last URI of the previous page
+	private boolean keysetPagination = false;
+	// attempts per page request before fillCache fails
+	private int maxAttempts = 3;
 
 	public SparqlQueryModule(KBInfo kbinfo) {
 		kb = kbinfo;
 	}
 
+	/**
+	 * Sets the number of page requests that are kept in flight. With more
+	 * than one page in flight, fillCache fetches the pages in parallel and
+	 * decodes and preprocesses them on a pool of worker threads while the
+	 * calling thread writes the results to the cache. Requires a page size.
+	 *
+	 * @param pagesInFlight Number of concurrent page requests
+	 */
+	public void setPagesInFlight(int pagesInFlight) {
+		this.pagesInFlight = pagesInFlight;
+	}
+
+	public int getPagesInFlight() {
+		return pagesInFlight;
+	}
+
+	/**
+	 * @param workers Number of threads that preprocess the fetched pages
+	 */
+	public void setWorkers(int workers) {
+		this.workers = workers;
+	}
+
+	public int getWorkers() {
+		return workers;
+	}
+
+	/**
+	 * Enables keyset pagination for the paged fetch mode: instead of growing
+	 * OFFSETs, each page asks for the URIs after the last URI of the previous
+	 * page. This spares the endpoint from skipping over all previous results,
+	 * but pages can then only be requested one after another. It is only
+	 * used if the query has a WHERE clause, i.e., restrictions.
+	 *
+	 * @param keysetPagination True to enable keyset pagination
+	 */
+	public void setKeysetPagination(boolean keysetPagination) {
+		this.keysetPagination = keysetPagination;
+	}
+
+	public boolean isKeysetPagination() {
+		return keysetPagination;
+	}
+
+	/**
+	 * Sets how often a failed page request is sent again before fillCache
+	 * fails with an IllegalStateException.
+	 *
+	 * @param maxAttempts Number of attempts per page, at least 1
+	 */
+	public void setMaxAttempts(int maxAttempts) {
+		this.maxAttempts = Math.max(1, maxAttempts);
+	}
+
+	public int getMaxAttempts() {
+		return maxAttempts;
+	}
+
 	/**
 	 * Reads from a SPARQL endpoint and writes the results in a cache
 	 *
@@ -35,187 +110,408 @@ public class SparqlQueryModule implements IQueryModule {
 	}
 
 	/**
-	 * Reads from a SPARQL endpoint or a file and writes the results in a cache
+	 * Reads from a SPARQL endpoint or a file and writes the results in a cache.
+	 * Page requests that fail are sent again up to maxAttempts times.
 	 *
 	 * @param cache The cache in which the content on the SPARQL endpoint is to be written
 	 * @param isSparql True if the endpoint is a remote SPARQL endpoint, else assume that is is a Jena model
+	 * @throws IllegalStateException if a page cannot be fetched or processed,
+	 *             in which case the cache holds only part of the data
 	 */
 	public void fillCache(Cache cache, boolean isSparql) {
+		if (kb.getPageSize() > 0 && (pagesInFlight > 1 || keysetPagination)) {
+			fillCachePaged(cache, isSparql);
+			return;
+		}
 		long startTime = System.currentTimeMillis();
-		String query = generateQuery();
+		String basicQuery = generateQuery();
 
 		//run query
 		logger.info("Querying the endpoint.");
 		int offset = 0;
 		boolean moreResults = false;
 		int counter = 0;
-		String basicQuery = query;
 		do {
-			logger.info("Getting statements " + offset + " to " + (offset + kb.getPageSize()));
+			String query;
 			if (kb.getPageSize() > 0) {
+				logger.info("Getting statements " + offset + " to " + (offset + kb.getPageSize()));
 				query = basicQuery + " LIMIT " + kb.getPageSize() + " OFFSET " + offset;
-			}else{
+			} else {
 				query = basicQuery;
 			}
-			Query sparqlQuery = QueryFactory.create(query, Syntax.syntaxARQ);
-			QueryExecution qexec;
+			List<String[]> rows = fetchWithRetries(query, isSparql);
+			moreResults = !rows.isEmpty();
+			//write
+			for (String[] triple : process(rows)) {
+				cache.addTriple(triple[0], triple[1], triple[2]);
+			}
+			counter += rows.size();
+			offset = offset + kb.getPageSize();
+		} while (moreResults && kb.getPageSize() > 0);
+		logger.info("Retrieved " + counter + " triples and " + cache.size() + " entities.");
+		logger.info("Retrieving statements took " + (System.currentTimeMillis() - startTime) / 1000.0 + " seconds.");
+	}
+
+	/**
+	 * Creates the execution of a query on the endpoint or on the registered
+	 * model.
+	 */
+	protected QueryExecution createQueryExecution(String query, boolean isSparql) {
+		Query sparqlQuery = QueryFactory.create(query, Syntax.syntaxARQ);
+		// take care of graph issues. Only takes one graph. Seems like some sparql endpoint do
+		// not like the FROM option.
+		if (!isSparql) {
+			Model model = ModelRegistry.getInstance().getMap().get(kb.getEndpoint());
+			if (model == null) {
+				throw new RuntimeException("No model with id '" + kb.getEndpoint() + "' registered");
+			}
+			return QueryExecutionFactory.create(sparqlQuery, model);
+		}
+		if (kb.getGraph() != null) {
+			return QueryExecutionFactory.sparqlService(kb.getEndpoint(), sparqlQuery, kb.getGraph());
+		}
+		return QueryExecutionFactory.sparqlService(kb.getEndpoint(), sparqlQuery);
+	}
+
+	/**
+	 * Paged fetch mode. Fetcher threads keep up to pagesInFlight page
+	 * requests running and copy the raw bindings of each page. The pages are
+	 * decoded and preprocessed by worker threads, which pass the resulting
+	 * triples through a bounded queue to the calling thread. Only the calling
+	 * thread writes to the cache, thus caches need not be thread-safe.
+	 */
+	protected void fillCachePaged(final Cache cache, final boolean isSparql) {
+		long startTime = System.currentTimeMillis();
+		final String basicQuery = generateQuery();
+		final boolean keyset = keysetPagination && basicQuery.trim().endsWith("}");
+		if (keysetPagination && !keyset) {
+			logger.info("Query has no WHERE clause, falling back to OFFSET pagination.");
+		}
+		int fetchers = keyset ? 1 : Math.max(1, pagesInFlight);
+		logger.info("Querying the endpoint with " + fetchers + " page request(s) in flight and " + workers
+				+ " worker(s).");
 
-			// take care of graph issues. Only takes one graph. Seems like some sparql endpoint do
-			// not like the FROM option.
-			if (!isSparql) {
-				Model model = ModelRegistry.getInstance().getMap().get(kb.getEndpoint());
-				if (model == null) {
-					throw new RuntimeException("No model with id '" + kb.getEndpoint() + "' registered");
+		final ExecutorService fetchPool = Executors.newFixedThreadPool(fetchers);
+		final ExecutorService workerPool = Executors.newFixedThreadPool(Math.max(1, workers));
+		final BlockingQueue<List<String[]>> queue = new ArrayBlockingQueue<List<String[]>>(2 * Math.max(1, workers));
+		final List<String[]> end = new ArrayList<String[]>();
+		// running fetch and preprocessing tasks; the last one to finish ends the queue
+		final AtomicInteger pending = new AtomicInteger();
+		final AtomicInteger nextPage = new AtomicInteger();
+		final AtomicBoolean exhausted = new AtomicBoolean(false);
+		final AtomicInteger counter = new AtomicInteger();
+		// first failure of a task, rethrown once the queue is drained
+		final AtomicReference<Exception> failure = new AtomicReference<Exception>();
+
+		abstract class Task implements Runnable {
+			abstract void execute() throws Exception;
+
+			public void run() {
+				try {
+					execute();
+				} catch (Exception e) {
+					exhausted.set(true);
+					failure.compareAndSet(null, e);
+				} finally {
+					if (pending.decrementAndGet() == 0) {
+						put(queue, end);
+					}
 				}
-				qexec = QueryExecutionFactory.create(sparqlQuery, model);
-			} else {
-				if (kb.getGraph() != null) {
-					qexec = QueryExecutionFactory.sparqlService(kb.getEndpoint(), sparqlQuery, kb.getGraph());
-				} //
-				else {
-					qexec = QueryExecutionFactory.sparqlService(kb.getEndpoint(), sparqlQuery);
+			}
+		}
+
+		class ProcessTask extends Task {
+			private final List<String[]> rows;
+
+			ProcessTask(List<String[]> rows) {
+				this.rows = rows;
+			}
+
+			void execute() {
+				put(queue, process(rows));
+			}
+		}
+
+		class FetchTask extends Task {
+			private final int page;
+			private final String lastUri;
+			private final int limit;
+
+			FetchTask(int page, String lastUri, int limit) {
+				this.page = page;
+				this.lastUri = lastUri;
+				this.limit = limit;
+			}
+
+			void execute() {
+				if (exhausted.get()) {
+					return;
+				}
+				String query;
+				if (keyset) {
+					query = keysetQuery(basicQuery, lastUri, limit);
+				} else {
+					int offset = page * kb.getPageSize();
+					logger.info("Getting statements " + offset + " to " + (offset + kb.getPageSize()));
+					query = basicQuery + " LIMIT " + kb.getPageSize() + " OFFSET " + offset;
+				}
+				List<String[]> rows = fetchWithRetries(query, isSparql);
+				counter.addAndGet(rows.size());
+				if (rows.size() < limit) {
+					exhausted.set(true);
+				}
+				if (keyset && !exhausted.get()) {
+					// the rows of the last URI may go on in the next page, so
+					// they are requested again with it
+					int start = rows.size() - 1;
+					String last = rows.get(start)[0];
+					while (start > 0 && rows.get(start - 1)[0].equals(last)) {
+						start--;
+					}
+					if (start == 0) {
+						// all rows belong to one URI, retry with a larger page
+						counter.addAndGet(-rows.size());
+						submit(fetchPool, new FetchTask(page, lastUri, 2 * limit));
+						return;
+					}
+					counter.addAndGet(start - rows.size());
+					rows = rows.subList(0, start);
+					submit(fetchPool, new FetchTask(page + 1, rows.get(start - 1)[0], kb.getPageSize()));
+				} else if (!keyset && !exhausted.get()) {
+					submit(fetchPool, new FetchTask(nextPage.getAndIncrement(), null, kb.getPageSize()));
+				}
+				if (!rows.isEmpty()) {
+					submit(workerPool, new ProcessTask(rows));
 				}
 			}
-			ResultSet results = qexec.execSelect();
 
-			//write            
-			String uri, propertyLabel, rawValue, value;
+			private void submit(ExecutorService pool, Task task) {
+				pending.incrementAndGet();
+				pool.execute(task);
+			}
+		}
+
+		pending.addAndGet(keyset ? 1 : fetchers);
+		if (keyset) {
+			fetchPool.execute(new FetchTask(0, null, kb.getPageSize()));
+		} else {
+			for (int i = 0; i < fetchers; i++) {
+				fetchPool.execute(new FetchTask(nextPage.getAndIncrement(), null, kb.getPageSize()));
+			}
+		}
+		try {
+			List<String[]> triples = queue.take();
+			while (triples != end) {
+				for (String[] triple : triples) {
+					cache.addTriple(triple[0], triple[1], triple[2]);
+				}
+				triples = queue.take();
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			logger.warn("Interrupted while filling the cache");
+		} finally {
+			fetchPool.shutdownNow();
+			workerPool.shutdownNow();
+		}
+		if (failure.get() != null) {
+			throw new IllegalStateException("Could not fill the cache from " + kb.getEndpoint(), failure.get());
+		}
+		logger.info("Retrieved " + counter.get() + " triples and " + cache.size() + " entities.");
+		logger.info("Retrieving statements took " + (System.currentTimeMillis() - startTime) / 1000.0 + " seconds.");
+	}
+
+	private static void put(BlockingQueue<List<String[]>> queue, List<String[]> triples) {
+		try {
+			queue.put(triples);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	/**
+	 * Query for the page after the URI lastUri, null for the first page
+	 */
+	private String keysetQuery(String basicQuery, String lastUri, int limit) {
+		StringBuilder query = new StringBuilder(basicQuery.length() + 128);
+		String body = basicQuery.trim();
+		query.append(body, 0, body.length() - 1);
+		if (lastUri != null) {
+			query.append("FILTER (STR(").append(kb.getVar()).append(") > \"")
+					.append(lastUri.replace("\\", "\\\\").replace("\"", "\\\"")).append("\")\n");
+		}
+		query.append("}\nORDER BY ").append(kb.getVar()).append(" LIMIT ").append(limit);
+		return query.toString();
+	}
+
+	/**
+	 * Runs a page query, sending it again if it fails
+	 *
+	 * @throws IllegalStateException if all attempts fail
+	 */
+	private List<String[]> fetchWithRetries(String query, boolean isSparql) {
+		RuntimeException last = null;
+		for (int attempt = 1; attempt <= maxAttempts; attempt++) {
 			try {
-				if (results.hasNext()) {
-					moreResults = true;
-				} else {
-					moreResults = false;
-					break;
+				return fetch(query, isSparql);
+			} catch (RuntimeException e) {
+				last = e;
+				logger.warn("Attempt " + attempt + " of " + maxAttempts + " to fetch a page failed: " + e);
+			}
+		}
+		throw new IllegalStateException("Could not fetch the page after " + maxAttempts + " attempts:\n" + query, last);
+	}
+
+	/**
+	 * Runs a page query and copies its bindings
+	 *
+	 * @return rows of the URI followed by the raw values of the properties,
+	 *         null for unbound ones
+	 */
+	private List<String[]> fetch(String query, boolean isSparql) {
+		QueryExecution qexec = createQueryExecution(query, isSparql);
+		List<String[]> rows = new ArrayList<String[]>();
+		try {
+			ResultSet results = qexec.execSelect();
+			String var = kb.getVar().substring(1);
+			int properties = kb.getProperties().size();
+			while (results.hasNext()) {
+				QuerySolution soln = results.nextSolution();
+				String[] row = new String[properties + 1];
+				row[0] = soln.get(var).toString();
+				for (int i = 0; i < properties; i++) {
+					if (soln.contains("v" + i)) {
+						row[i + 1] = soln.get("v" + i).toString();
+					}
 				}
+				rows.add(row);
+			}
+		} finally {
+			qexec.close();
+		}
+		return rows;
+	}
 
-				while (results.hasNext()) {
-					QuerySolution soln = results.nextSolution();
-					{
-						try {
-							uri = soln.get(kb.getVar().substring(1)).toString();
-							for (int i = 0; i < kb.getProperties().size(); i++) {
-								propertyLabel = kb.getProperties().get(i);
-								if (soln.contains("v" + i)) {
-									rawValue = soln.get("v" + i).toString();
-									//remove localization information, e.g. @en
-									for (String propertyDub : kb.getFunctions().get(propertyLabel).keySet()) {
-										value = Preprocessor.process(rawValue, kb.getFunctions().get(propertyLabel).get(propertyDub));
-										cache.addTriple(uri, propertyDub, value);
-									}
-								}
-							}
-						} catch (Exception e) {
-							logger.warn("Error while processing: " + soln.toString());
-							logger.warn("Following exception occured: " + e.getMessage());
-							e.printStackTrace();
-							System.exit(1);
-							logger.info("Processing further ...");
-						}
+	/**
+	 * Applies the preprocessing functions to the rows of a page, one
+	 * property column after the other
+	 *
+	 * @return (uri, property, value) triples
+	 */
+	private List<String[]> process(List<String[]> rows) {
+		List<String[]> triples = new ArrayList<String[]>(rows.size() * 2);
+		for (int i = 0; i < kb.getProperties().size(); i++) {
+			String propertyLabel = kb.getProperties().get(i);
+			for (String propertyDub : kb.getFunctions().get(propertyLabel).keySet()) {
+				PreprocessingPipeline pipeline = kb.getPipeline(propertyLabel, propertyDub);
+				for (String[] row : rows) {
+					if (row[i + 1] != null) {
+						triples.add(new String[] { row[0], propertyDub, pipeline.process(row[i + 1]) });
 					}
-					counter++;
 				}
-			} catch (Exception e) {
-				logger.warn("Exception while handling query");
-				logger.warn(e.toString());
-				logger.warn("XML = \n" + ResultSetFormatter.asXMLString(results));
-			} finally {
-				qexec.close();
 			}
-			offset = offset + kb.getPageSize();
-		} while (moreResults && kb.getPageSize() > 0);
-		logger.info("Retrieved " + counter + " triples and " + cache.size() + " entities.");
-		logger.info("Retrieving statements took " + (System.currentTimeMillis() - startTime) / 1000.0 + " seconds.");
+		}
+		return triples;
 	}
 
 	protected String generateQuery() {
+		StringBuilder query = new StringBuilder();
 		//write prefixes
-		Iterator<String> iter = kb.getPrefixes().keySet().iterator();
-		String key, query = "";
-		while (iter.hasNext()) {
-			key = iter.next();
-			query = query + "PREFIX " + key + ": <" + kb.getPrefixes().get(key) + ">\n";
+		for (Map.Entry<String, String> prefix : kb.getPrefixes().entrySet()) {
+			query.append("PREFIX ").append(prefix.getKey()).append(": <").append(prefix.getValue()).append(">\n");
 		}
 		// fill in variable for the different properties to be retrieved
-		query = query + "SELECT DISTINCT " + kb.getVar();
+		query.append("SELECT DISTINCT ").append(kb.getVar());
 		for (int i = 0; i < kb.getProperties().size(); i++) {
-			query = query + " ?v" + i;
+			query.append(" ?v").append(i);
 		}
-		query = query + "\n";
+		query.append("\n");
 		// graph
 		if (kb.getGraph() != null) {
 			if (!kb.getGraph().equals(" ") && kb.getGraph().length() > 3) {
 				logger.info("Query Graph: " + kb.getGraph());
-				query = query + "FROM <" + kb.getGraph() + ">\n";
+				query.append("FROM <").append(kb.getGraph()).append(">\n");
 			} else {
 				kb.setGraph(null);
 			}
 		}
+		// ?w variables of property paths, shared by both property blocks
+		int varCount = 1;
 		//restriction
 		if (kb.getRestrictions().size() > 0) {
 			String where;
-			iter = kb.getRestrictions().iterator();
-			query = query + "WHERE {\n";
+			query.append("WHERE {\n");
 			for (int i = 0; i < kb.getRestrictions().size(); i++) {
 				where = kb.getRestrictions().get(i).trim();
 				if (where.length() > 3) {
-					query = query + where + " .\n";
+					query.append(where).append(" .\n");
 				}
 			}
 		}
 		//properties
-		String propertiesStr;
 		if (kb.getProperties().size() > 0) {
 			logger.info("Properties are " + kb.getProperties());
-			propertiesStr = "";
+			StringBuilder propertiesStr = new StringBuilder();
 			for (int i = 0; i < kb.getProperties().size(); i++) {
-				propertiesStr = propertiesStr + kb.getVar() + " " + kb.getProperties().get(i) + " ?v" + i + " .\n";
+				propertiesStr.append(kb.getVar()).append(" ").append(kb.getProperties().get(i)).append(" ?v").append(i)
+						.append(" .\n");
 			}
 			//some endpoints and parsers do not support property paths. We replace them here with variables
-			int varCount = 1;
-			while (propertiesStr.contains("/")) {
-				propertiesStr = propertiesStr.replaceFirst("/", " ?w" + varCount + " .\n?w" + varCount + " ");
-				varCount++;
-			}
-			//close optional
-			query = query + propertiesStr;
+			varCount = replacePropertyPaths(propertiesStr, varCount);
+			query.append(propertiesStr);
 		}
 		//properties
-		String optionalPropertiesStr;
 		if (kb.getOptionalProperties() != null && kb.getOptionalProperties().size() > 0) {
 			logger.info("Optipnal properties are " + kb.getOptionalProperties());
-			optionalPropertiesStr = "OPTIONAL {\n";
+			StringBuilder optionalPropertiesStr = new StringBuilder("OPTIONAL {\n");
 			for (int i = 0; i < kb.getProperties().size(); i++) {
-				optionalPropertiesStr += kb.getVar() + " " + kb.getOptionalProperties().get(i) + " ?v" + i + " .\n";
+				optionalPropertiesStr.append(kb.getVar()).append(" ").append(kb.getOptionalProperties().get(i))
+						.append(" ?v").append(i).append(" .\n");
 			}
 			//some endpoints and parsers do not support property paths. We replace them here with variables
-			int varCount = 1;
-			while (optionalPropertiesStr.contains("/")) {
-				propertiesStr = optionalPropertiesStr.replaceFirst("/", " ?w" + varCount + " .\n?w" + varCount + " ");
-				varCount++;
-			}
+			replacePropertyPaths(optionalPropertiesStr, varCount);
 			//close optional
-			query = query + optionalPropertiesStr;
+			query.append(optionalPropertiesStr);
 		}
 		//finally replace variables in inverse properties
-		String q[] = query.split("\n");
-		query = "";
+		String q[] = query.toString().split("\n");
+		query.setLength(0);
 		for (int ql = 0; ql < q.length; ql++) {
 			if(q[ql].contains("regex"))
-				query = query + q[ql]+ "\n";
+				query.append(q[ql]).append("\n");
 			else
 				if (q[ql].contains("^")) {
-					System.out.println(q[ql]);
+					logger.debug("Inverting property " + q[ql]);
 					String[] sp = q[ql].replaceAll("\\^", "").split(" ");
-					query = query + sp[2] + " " + sp[1] + " " + sp[0] + " " + sp[3] + "\n";
+					query.append(sp[2]).append(" ").append(sp[1]).append(" ").append(sp[0]).append(" ").append(sp[3])
+							.append("\n");
 				} else {
-					query = query + q[ql] + "\n";
+					query.append(q[ql]).append("\n");
 				}
 		}
 		// close where
 		if (kb.getRestrictions().size() > 0) {
-			query = query + "}";
+			query.append("}");
 		}
 		logger.info("Query issued is \n" + query);
-		return query;
+		return query.toString();
+	}
+
+	/**
+	 * Replaces the property paths p1/p2 of a pattern by ?w variables, i.e.,
+	 * p1 ?w1 . ?w1 p2
+	 *
+	 * @param varCount Number of the first ?w variable
+	 * @return Number of the next free ?w variable
+	 */
+	private static int replacePropertyPaths(StringBuilder pattern, int varCount) {
+		int slash = pattern.indexOf("/");
+		while (slash >= 0) {
+			String replacement = " ?w" + varCount + " .\n?w" + varCount + " ";
+			pattern.replace(slash, slash + 1, replacement);
+			slash = pattern.indexOf("/", slash + replacement.length());
+			varCount++;
+		}
+		return varCount;
 	}
 }
@@ -0,0 +1,296 @@
+package org.aksw.limes.core.measures.mapper;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+import org.aksw.limes.core.io.mapping.Mapping;
+import org.aksw.limes.core.io.mapping.MemoryMapping;
+import org.apache.log4j.Logger;
+
+/**
+ * Execution service shared by the mappers. Instead of creating a thread pool
+ * per call, mappers split their work into tasks that compute local results,
+ * e.g., a mapping per partition, and hand them to
+ * {@link #invokeAll(List)}, which runs them on a shared work-stealing pool and
+ * returns their results once all tasks are done. The caller merges the
+ * results, so that the tasks never write to shared state. Mappers whose work
+ * is a range of items, e.g., their source values, hand a factory of workers
+ * to {@link #processChunks(int, int, int, ChunkWorkerFactory, Mapping)},
+ * which splits the range into chunks and merges the mappings of the tasks.
+ *
+ * The parallelism defaults to the number of available processors and can be
+ * set with the system property limes.mapper.threads or with
+ * {@link #setParallelism(int)}. A job can pin its own parallelism with
+ * {@link #pin(int)}, which applies to the mappers called by the pinning
+ * thread, e.g., 1 to run the mappers of a job in the calling thread only.
+ *
+ * All jobs share a single pool, see {@link #getPool()}. It is created on
+ * first use with as many threads as the default parallelism at that time or
+ * the number of processors, whichever is larger, and its threads are daemon
+ * threads. The parallelism of a job bounds the number of its tasks that run
+ * at the same time on this pool; a job cannot use more threads than the pool
+ * has.
+ */
+public class MapperExecutor {
+
+    static Logger logger = Logger.getLogger(MapperExecutor.class.getName());
+
+    public static final String PARALLELISM_PROPERTY = "limes.mapper.threads";
+
+    private static int parallelism = Integer.getInteger(PARALLELISM_PROPERTY,
+	    Runtime.getRuntime().availableProcessors());
+    private static final ThreadLocal<Integer> pinned = new ThreadLocal<Integer>();
+    private static ForkJoinPool pool;
+
+    private MapperExecutor() {
+    }
+
+    /**
+     * @return The parallelism of the jobs of the calling thread, i.e., the
+     *         pinned parallelism if any, the default parallelism otherwise
+     */
+    public static int getParallelism() {
+	Integer p = pinned.get();
+	return (p != null) ? p : parallelism;
+    }
+
+    /**
+     * Sets the default parallelism of all jobs that did not pin their own.
+     *
+     * @param parallelism
+     *            Maximal number of tasks of a job that run at the same time
+     */
+    public static synchronized void setParallelism(int parallelism) {
+	MapperExecutor.parallelism = Math.max(1, parallelism);
+    }
+
+    /**
+     * Pins the parallelism of the mappers that are called by the current
+     * thread until {@link #unpin()} is called.
+     *
+     * @param parallelism
+     *            Maximal number of tasks of a job that run at the same time
+     */
+    public static void pin(int parallelism) {
+	pinned.set(Math.max(1, parallelism));
+    }
+
+    /**
+     * Drops the parallelism pinned by the current thread.
+     */
+    public static void unpin() {
+	pinned.remove();
+    }
+
+
+    /**
+     * Work of a job that is split into chunks of items, e.g., of the source
+     * values of a mapper. Each task of the job has its own worker, so a
+     * worker may keep state such as buffers.
+     */
+    public interface ChunkWorker {
+	/**
+	 * Processes the items from begin to end, exclusive.
+	 *
+	 * @param begin
+	 *            First item of the chunk
+	 * @param end
+	 *            Item after the last one of the chunk
+	 * @param mapping
+	 *            Mapping of the task the links are added to
+	 */
+	void process(int begin, int end, Mapping mapping);
+    }
+
+    /**
+     * Creates the workers of a job that is split into chunks.
+     */
+    public interface ChunkWorkerFactory {
+	/**
+	 * @return A new worker for a task of the job
+	 */
+	ChunkWorker newWorker();
+    }
+
+    /**
+     * Processes items in chunks with the parallelism of the calling thread,
+     * see {@link #processChunks(int, int, int, ChunkWorkerFactory, Mapping, int)}.
+     *
+     * @param items
+     *            Number of items of the job
+     * @param minItemsPerTask
+     *            Number of items below which a task does not pay off
+     * @param chunkSize
+     *            Number of items a worker takes at once
+     * @param factory
+     *            Factory of the workers
+     * @param result
+     *            Mapping the links of all workers are added to
+     * @return result
+     */
+    public static Mapping processChunks(int items, int minItemsPerTask, int chunkSize, ChunkWorkerFactory factory,
+	    Mapping result) {
+	return processChunks(items, minItemsPerTask, chunkSize, factory, result, getParallelism());
+    }
+
+    /**
+     * Processes the items 0 to items - 1 in chunks. The job is split into at
+     * most parallelism tasks, each with at least minItemsPerTask items. Each
+     * task creates a worker, which takes the next chunk of chunkSize items
+     * until all items are processed, so that tasks that are done early take
+     * over the work of the others. A single task works in the calling thread
+     * and adds its links to result directly; otherwise each task has its own
+     * mapping, which is merged into result when all tasks are done.
+     *
+     * @param items
+     *            Number of items of the job
+     * @param minItemsPerTask
+     *            Number of items below which a task does not pay off
+     * @param chunkSize
+     *            Number of items a worker takes at once
+     * @param factory
+     *            Factory of the workers
+     * @param result
+     *            Mapping the links of all workers are added to
+     * @param parallelism
+     *            Maximal number of tasks that run at the same time
+     * @return result
+     */
+    public static Mapping processChunks(final int items, int minItemsPerTask, final int chunkSize,
+	    final ChunkWorkerFactory factory, Mapping result, int parallelism) {
+	int tasks = Math.max(1, Math.min(parallelism, items / Math.max(1, minItemsPerTask)));
+	final AtomicInteger next = new AtomicInteger();
+	if (tasks == 1) {
+	    processChunks(factory.newWorker(), items, chunkSize, next, result);
+	    return result;
+	}
+	List<Callable<Mapping>> workers = new ArrayList<Callable<Mapping>>(tasks);
+	for (int i = 0; i < tasks; i++) {
+	    workers.add(new Callable<Mapping>() {
+		public Mapping call() {
+		    Mapping mapping = new MemoryMapping();
+		    processChunks(factory.newWorker(), items, chunkSize, next, mapping);
+		    return mapping;
+		}
+	    });
+	}
+	for (Mapping m : invokeAll(workers, parallelism)) {
+	    for (String s : m.getMap().keySet()) {
+		for (String t : m.getMap().get(s).keySet()) {
+		    result.add(s, t, m.getConfidence(s, t));
+		}
+	    }
+	}
+	return result;
+    }
+
+    private static void processChunks(ChunkWorker worker, int items, int chunkSize, AtomicInteger next,
+	    Mapping mapping) {
+	int begin;
+	while ((begin = next.getAndAdd(chunkSize)) < items) {
+	    worker.process(begin, Math.min(begin + chunkSize, items), mapping);
+	}
+    }
+
+    /**
+     * Runs tasks with the parallelism of the calling thread, see
+     * {@link #getParallelism()}.
+     *
+     * @param tasks
+     *            Tasks to run
+     * @return The results of the tasks, in the order of the tasks
+     */
+    public static <T> List<T> invokeAll(List<? extends Callable<T>> tasks) {
+	return invokeAll(tasks, getParallelism());
+    }
+
+    /**
+     * Runs tasks and waits until all of them are done. A single task or
+     * parallelism 1 runs in the calling thread. If there are more tasks than
+     * the parallelism, the tasks are run by as many runners as the
+     * parallelism, each of which takes the next task when it is done.
+     *
+     * @param tasks
+     *            Tasks to run
+     * @param parallelism
+     *            Maximal number of tasks that run at the same time
+     * @return The results of the tasks, in the order of the tasks
+     * @throws RuntimeException
+     *             If a task failed or the calling thread was interrupted
+     */
+    public static <T> List<T> invokeAll(List<? extends Callable<T>> tasks, int parallelism) {
+	List<T> results = new ArrayList<T>(tasks.size());
+	try {
+	    if (tasks.size() <= 1 || parallelism <= 1) {
+		for (Callable<T> task : tasks) {
+		    results.add(task.call());
+		}
+		return results;
+	    }
+	    if (tasks.size() > parallelism) {
+		return invokeBounded(tasks, parallelism);
+	    }
+	    for (Future<T> future : getPool().invokeAll(tasks)) {
+		results.add(future.get());
+	    }
+	} catch (RuntimeException e) {
+	    throw e;
+	} catch (InterruptedException e) {
+	    Thread.currentThread().interrupt();
+	    throw new RuntimeException(e);
+	} catch (ExecutionException e) {
+	    throw new RuntimeException(e.getCause());
+	} catch (Exception e) {
+	    throw new RuntimeException(e);
+	}
+	return results;
+    }
+
+    /**
+     * Runs the tasks on parallelism runners and returns their results in task
+     * order.
+     */
+    private static <T> List<T> invokeBounded(final List<? extends Callable<T>> tasks, int parallelism)
+	    throws Exception {
+	final AtomicReferenceArray<T> results = new AtomicReferenceArray<T>(tasks.size());
+	final AtomicInteger next = new AtomicInteger();
+	List<Callable<Void>> runners = new ArrayList<Callable<Void>>(parallelism);
+	for (int i = 0; i < parallelism; i++) {
+	    runners.add(new Callable<Void>() {
+		public Void call() throws Exception {
+		    int task;
+		    while ((task = next.getAndIncrement()) < tasks.size()) {
+			results.set(task, tasks.get(task).call());
+		    }
+		    return null;
+		}
+	    });
+	}
+	for (Future<Void> future : getPool().invokeAll(runners)) {
+	    future.get();
+	}
+	List<T> list = new ArrayList<T>(tasks.size());
+	for (int i = 0; i < tasks.size(); i++) {
+	    list.add(results.get(i));
+	}
+	return list;
+    }
+
+    /**
+     * @return The pool shared by all jobs, created on the first call
+     */
+    public static synchronized ForkJoinPool getPool() {
+	if (pool == null) {
+	    int threads = Math.max(parallelism, Runtime.getRuntime().availableProcessors());
+	    logger.debug("Creating mapper pool with " + threads + " threads");
+	    pool = new ForkJoinPool(threads);
+	}
+	return pool;
+    }
+}
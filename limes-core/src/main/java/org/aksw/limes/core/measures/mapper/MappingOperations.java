@@ -1,7 +1,10 @@
 package org.aksw.limes.core.measures.mapper;
 
+import org.aksw.limes.core.io.mapping.CompactMapping;
+import org.aksw.limes.core.io.mapping.CompactMapping.SortedLinks;
 import org.aksw.limes.core.io.mapping.Mapping;
 import org.aksw.limes.core.io.mapping.MemoryMapping;
+import org.aksw.limes.core.io.mapping.UriDictionary;
 
 public class MappingOperations {
 
@@ -28,7 +31,7 @@ public class MappingOperations {
 	if (op.equals(Operator.DIFF))
 	    return difference(source, target);
 	if (op.equals(Operator.XOR))
-	    return union(difference(source, target), difference(target, source).reverseSourceTarget());
+	    return xor(source, target);
 	return new MemoryMapping();
     }
 
@@ -75,6 +78,56 @@ public class MappingOperations {
 	    return 0d;
     }
 
+    /**
+     * Runs a set operator as a single merge over the sorted links of two
+     * mappings. Links that are in both mappings get the minimal
+     * (intersection) or maximal (union) similarity. Both mappings are
+     * converted to compact mappings over the same URI dictionaries, those of
+     * the first compact mapping if any, see {@link CompactMapping#of}. The
+     * result is a compact mapping over these dictionaries, so that the
+     * results of nested operators are merged without conversion.
+     */
+    private static Mapping merge(Mapping map1, Mapping map2, Operator op) {
+	UriDictionary sources, targets;
+	if (map1 instanceof CompactMapping) {
+	    sources = ((CompactMapping) map1).getSourceDictionary();
+	    targets = ((CompactMapping) map1).getTargetDictionary();
+	} else if (map2 instanceof CompactMapping) {
+	    sources = ((CompactMapping) map2).getSourceDictionary();
+	    targets = ((CompactMapping) map2).getTargetDictionary();
+	} else {
+	    sources = new UriDictionary();
+	    targets = new UriDictionary();
+	}
+	CompactMapping map = new CompactMapping(sources, targets);
+	SortedLinks l1 = CompactMapping.of(map1, sources, targets).getSortedLinks();
+	SortedLinks l2 = CompactMapping.of(map2, sources, targets).getSortedLinks();
+	boolean keepFirst = !op.equals(Operator.AND);
+	boolean keepSecond = op.equals(Operator.OR) || op.equals(Operator.XOR);
+	boolean keepBoth = op.equals(Operator.AND) || op.equals(Operator.OR);
+	int i = 0, j = 0;
+	while (i < l1.size() || j < l2.size()) {
+	    if (j == l2.size() || (i < l1.size() && l1.getKey(i) < l2.getKey(j))) {
+		if (keepFirst)
+		    map.add(l1.getSourceId(i), l1.getTargetId(i), l1.getConfidence(i));
+		i++;
+	    } else if (i == l1.size() || l2.getKey(j) < l1.getKey(i)) {
+		if (keepSecond)
+		    map.add(l2.getSourceId(j), l2.getTargetId(j), l2.getConfidence(j));
+		j++;
+	    } else {
+		if (keepBoth) {
+		    double sim = op.equals(Operator.AND) ? Math.min(l1.getConfidence(i), l2.getConfidence(j))
+			    : Math.max(l1.getConfidence(i), l2.getConfidence(j));
+		    map.add(l1.getSourceId(i), l1.getTargetId(i), sim);
+		}
+		i++;
+		j++;
+	    }
+	}
+	return map;
+    }
+
     /**
      * Computes the difference of two mappings.
      *
@@ -85,30 +138,12 @@ public class MappingOperations {
      * @return map1 \ map2
      */
     public static Mapping difference(Mapping map1, Mapping map2) {
-	Mapping map = new MemoryMapping();
-
-	// go through all the keys in map1
-	for (String key : map1.getMap().keySet()) {
-	    // if the first term (key) can also be found in map2
-	    if (map2.getMap().containsKey(key)) {
-		// then go through the second terms and checks whether they can
-		// be found in map2 as well
-		for (String value : map1.getMap().get(key).keySet()) {
-		    // if no, save the link
-		    if (!map2.getMap().get(key).containsKey(value)) {
-			map.add(key, value, map1.getMap().get(key).get(value));
-		    }
-		}
-	    } else {
-		map.add(key, map1.getMap().get(key));
-	    }
-	}
-	return map;
+	return merge(map1, map2, Operator.DIFF);
     }
 
     /**
      * Computes the intersection of two mappings. In case an entry exists in
-     * both mappings the minimal similarity is taken
+     * both mappings the minimal similarity is taken.
      *
      * @param map1
      *            First mapping
@@ -117,35 +152,16 @@ public class MappingOperations {
      * @return Intersection of map1 and map2
      */
     public static Mapping intersection(Mapping map1, Mapping map2) {
-	Mapping map = new MemoryMapping();
 	// takes care of not running the filter if some set is empty
 	if (map1.size() == 0 || map2.size() == 0) {
 	    return new MemoryMapping();
 	}
-	// go through all the keys in map1
-	for (String key : map1.getMap().keySet()) {
-	    // if the first term (key) can also be found in map2
-	    if (map2.getMap().containsKey(key)) {
-		// then go through the second terms and checks whether they can
-		// be found in map2 as well
-		for (String value : map1.getMap().get(key).keySet()) {
-		    // if yes, take the highest similarity
-		    if (map2.getMap().get(key).containsKey(value)) {
-			if (map1.getMap().get(key).get(value) <= map2.getMap().get(key).get(value)) {
-			    map.add(key, value, map1.getMap().get(key).get(value));
-			} else {
-			    map.add(key, value, map2.getMap().get(key).get(value));
-			}
-		    }
-		}
-	    }
-	}
-	return map;
+	return merge(map1, map2, Operator.AND);
     }
 
     /**
      * Computes the union of two mappings. In case an entry exists in both
-     * mappings the maximal similarity is taken
+     * mappings the maximal similarity is taken.
      *
      * @param map1
      *            First mapping
@@ -154,24 +170,12 @@ public class MappingOperations {
      * @return Union of map1 and map2
      */
     public static Mapping union(Mapping map1, Mapping map2) {
-	Mapping map = new MemoryMapping();
-	// go through all the keys in map1
-	for (String key : map1.getMap().keySet()) {
-	    for (String value : map1.getMap().get(key).keySet()) {
-		map.add(key, value, map1.getMap().get(key).get(value));
-	    }
-	}
-	for (String key : map2.getMap().keySet()) {
-	    // if the first term (key) can also be found in map2
-	    for (String value : map2.getMap().get(key).keySet()) {
-		map.add(key, value, map2.getMap().get(key).get(value));
-	    }
-	}
-	return map;
+	return merge(map1, map2, Operator.OR);
     }
 
     /**
-     * Implements the exclusive or operator
+     * Implements the exclusive or operator, i.e., the links that are in
+     * exactly one of the mappings.
      * 
      * @param map1
      *            First map
@@ -180,7 +184,7 @@ public class MappingOperations {
      * @return XOR(map1, map2)
      */
     public static Mapping xor(Mapping map1, Mapping map2) {
-	return difference(union(map1, map2), intersection(map1, map2));
+	return merge(map1, map2, Operator.XOR);
     }
 
 }
@@ -35,12 +35,24 @@ import java.util.List;
 public class EDJoin extends Mapper {
 
     static Logger logger = Logger.getLogger("LIMES");
-    private static int Q = -1;
-    private static Mapping mapping = null;
-    private static HashMap<Integer, String> sourceMap;
-    private static HashMap<Integer, String> targetMap;
-    @SuppressWarnings("unused")
-    private int comparisons = 0;
+    private static final int Q = 3;
+    // characters below this value are matched bit-parallel
+    private static final int PEQ_SIZE = 256;
+
+    /**
+     * State of one run of the mapper. Keeping it per call instead of in
+     * fields makes the mapper reentrant, i.e., several runs may take place
+     * at the same time.
+     */
+    private static class Context {
+	final Mapping mapping = new MemoryMapping();
+	final HashMap<Integer, String> sourceMap = new HashMap<Integer, String>();
+	final HashMap<Integer, String> targetMap = new HashMap<Integer, String>();
+	// character frequencies of the content filter, all 0 between uses
+	final int[] frequencies = new int[Character.MAX_VALUE + 1];
+	// match masks of the edit distance, all 0 between uses
+	final long[] peq = new long[PEQ_SIZE];
+    }
 
     public String getName() {
 	return "EDJoin";
@@ -66,14 +78,11 @@ public class EDJoin extends Mapper {
      */
     public Mapping getMapping(Cache source, Cache target, String sourceVar, String targetVar, String expression,
 	    double threshold) {
-	if (Q <= 1) {
-	    Q = 3;
-	}
 	// convert similarity in distance threshold
 	threshold = (1 - threshold) / threshold;
 
-	this.comparisons = 0;
-	mapping = new MemoryMapping();
+	Context context = new Context();
+	Mapping mapping = context.mapping;
 	if (threshold < 0) {
 	    logger.info("Wrong threshold setting. Returning empty mapping.");
 	    return mapping;
@@ -101,7 +110,7 @@ public class EDJoin extends Mapper {
 	// sorting
 	// later on
 	// logger.info("Filling objects from source knowledge base.");
-	sourceMap = new HashMap<Integer, String>();
+	HashMap<Integer, String> sourceMap = context.sourceMap;
 	ArrayList<String> uris = source.getAllUris();
 	ArrayList<String> entries = new ArrayList<String>();
 	Instance instance;
@@ -117,7 +126,7 @@ public class EDJoin extends Mapper {
 
 	// 3.2 fill objects from target in entries
 	// logger.info("Filling objects from target knowledge base.");
-	targetMap = new HashMap<Integer, String>();
+	HashMap<Integer, String> targetMap = context.targetMap;
 	uris = target.getAllUris();
 	for (int i = 0; i < uris.size(); i++) {
 	    instance = target.getInstance(uris.get(i));
@@ -156,7 +165,7 @@ public class EDJoin extends Mapper {
 
 			// length filtering
 			if (Math.abs(x.length() - y.length()) <= threshold) {
-			    int ed = editDistance(x, y);
+			    int ed = editDistance(x, y, (int) threshold, context.peq);
 			    if (ed <= threshold) {
 				if ((sourceMap.containsKey(records[i].id) && targetMap.containsKey(records[j].id))) {
 				    id1 = sourceMap.get(records[i].id);
@@ -211,7 +220,7 @@ public class EDJoin extends Mapper {
 		    }
 		}
 		if (candidates.size() > 0) {
-		    count = count + verification(currentRec, candidates, entries, Q, (int) threshold);
+		    count = count + verification(context, currentRec, candidates, entries, Q, (int) threshold);
 		}
 	    }
 	}
@@ -253,8 +262,11 @@ public class EDJoin extends Mapper {
 	return records;
     }
 
-    private static int verification(Record currentRec, HashMap<Integer, Record> candidates, ArrayList<String> objects,
-	    int q, int threshold) {
+    private static int verification(Context context, Record currentRec, HashMap<Integer, Record> candidates,
+	    ArrayList<String> objects, int q, int threshold) {
+	HashMap<Integer, String> sourceMap = context.sourceMap;
+	HashMap<Integer, String> targetMap = context.targetMap;
+	Mapping mapping = context.mapping;
 	int count = 0;
 	String id1, id2;
 	Iterator<Record> iter = candidates.values().iterator();
@@ -271,9 +283,10 @@ public class EDJoin extends Mapper {
 		 * location-based mismatch filtering
 		 */
 		if (e2 <= threshold) {
-		    int e3 = contentFilter(objects.get(currentRec.id), objects.get(y.id), compResult.Q, threshold, q);
+		    int e3 = contentFilter(objects.get(currentRec.id), objects.get(y.id), compResult.Q, threshold, q,
+			    context.frequencies);
 		    if (e3 <= 2 * threshold) {
-			int ed = editDistance(objects.get(currentRec.id), objects.get(y.id));
+			int ed = editDistance(objects.get(currentRec.id), objects.get(y.id), threshold, context.peq);
 			if (ed <= threshold) {
 			    if ((sourceMap.containsKey(currentRec.id) && targetMap.containsKey(y.id))) {
 				id1 = sourceMap.get(currentRec.id);
@@ -392,7 +405,7 @@ public class EDJoin extends Mapper {
 	return cnt;
     }
 
-    private static int contentFilter(String x, String y, MismatchingQGram[] Q, int tau, int q) {
+    private static int contentFilter(String x, String y, MismatchingQGram[] Q, int tau, int q, int[] frequencies) {
 	if (Q.length == 0) {
 	    return 0;
 	}
@@ -413,7 +426,7 @@ public class EDJoin extends Mapper {
 	int epsilon;
 	while (i < Q.length) {
 	    if (Q[i].loc - Q[i - 1].loc > 1) {
-		epsilon = L1Distance(x, y, Q[j].loc, Q[i - 1].loc + q - 1) + sumRightErrs(Q[i - 1].loc + q, iter);
+		epsilon = L1Distance(x, y, Q[j].loc, Q[i - 1].loc + q - 1, frequencies) + sumRightErrs(Q[i - 1].loc + q, iter);
 		if (epsilon > 2 * tau) {
 		    return 2 * tau + 1;
 		}
@@ -421,36 +434,38 @@ public class EDJoin extends Mapper {
 	    }
 	    i++;
 	}
-	return L1Distance(x, y, Q[j].loc, Q[i - 1].loc + q - 1) + sumRightErrs(Q[i - 1].loc + q, iter);
+	return L1Distance(x, y, Q[j].loc, Q[i - 1].loc + q - 1, frequencies) + sumRightErrs(Q[i - 1].loc + q, iter);
     }
 
-    private static int L1Distance(String x, String y, int lo, int hi) {
-	HashMap<Character, Frequency> frequencyTable = new HashMap<Character, Frequency>();
-	char c;
-	Frequency f;
+    /**
+     * Computes the L1 distance of the character frequencies of x[lo..hi] and
+     * y[lo..hi].
+     *
+     * @param frequencies
+     *            Counters indexed by character, all 0. They are 0 again when
+     *            the method returns
+     */
+    private static int L1Distance(String x, String y, int lo, int hi, int[] frequencies) {
 	int i;
 	for (i = lo; i <= hi; i++) {
-	    c = x.charAt(i);
-	    if ((f = frequencyTable.get(c)) != null) {
-		f.value++;
-	    } else {
-		frequencyTable.put(c, new Frequency(1));
-	    }
+	    frequencies[x.charAt(i)]++;
 	}
-
-	for (i = lo; i < y.length() && i <= hi; i++) {
-	    c = y.charAt(i);
-	    if ((f = frequencyTable.get(c)) != null) {
-		f.value--;
-	    } else {
-		frequencyTable.put(c, new Frequency(-1));
-	    }
+	int yHi = Math.min(y.length() - 1, hi);
+	for (i = lo; i <= yHi; i++) {
+	    frequencies[y.charAt(i)]--;
 	}
-
-	Iterator<Frequency> iter = frequencyTable.values().iterator();
+	// sum up and reset the counters of all characters that occurred
 	int L1 = 0;
-	while (iter.hasNext()) {
-	    L1 += Math.abs(iter.next().value);
+	char c;
+	for (i = lo; i <= hi; i++) {
+	    c = x.charAt(i);
+	    L1 += Math.abs(frequencies[c]);
+	    frequencies[c] = 0;
+	}
+	for (i = lo; i <= yHi; i++) {
+	    c = y.charAt(i);
+	    L1 += Math.abs(frequencies[c]);
+	    frequencies[c] = 0;
 	}
 	return L1;
     }
@@ -513,6 +528,139 @@ public class EDJoin extends Mapper {
 	return d[n][m];
     }
 
+    /**
+     * Computes the edit distance between two strings if it is at most tau.
+     * Unlike {@link #editDistance(String, String)}, only the part of the
+     * dynamic programming matrix that can lead to a distance of at most tau is
+     * computed, and the computation stops as soon as the distance is known to
+     * be larger. Strings whose shorter one has at most 64 characters are
+     * compared with the bit-parallel algorithm of Myers in the formulation of
+     * Hyyrö, all others with a dynamic programming band of width 2 * tau + 1.
+     *
+     * @param x
+     *            first string
+     * @param y
+     *            second string
+     * @param tau
+     *            distance threshold
+     * @return The edit distance of x and y if it is at most tau, else tau + 1
+     */
+    public static int editDistance(String x, String y, int tau) {
+	return editDistance(x, y, tau, new long[PEQ_SIZE]);
+    }
+
+    private static int editDistance(String x, String y, int tau, long[] peq) {
+	if (Math.abs(x.length() - y.length()) > tau) {
+	    return tau + 1;
+	}
+	// the shorter string is the pattern, i.e., the rows of the matrix
+	if (x.length() > y.length()) {
+	    String z = x;
+	    x = y;
+	    y = z;
+	}
+	if (x.length() == 0) {
+	    return y.length();
+	}
+	if (x.length() <= 64) {
+	    int m = x.length();
+	    int i;
+	    for (i = 0; i < m && x.charAt(i) < PEQ_SIZE; i++) {
+		peq[x.charAt(i)] |= 1L << i;
+	    }
+	    if (i == m) {
+		int ed = myers(x, y, tau, peq);
+		for (i = 0; i < m; i++) {
+		    peq[x.charAt(i)] = 0;
+		}
+		return ed;
+	    }
+	    // the pattern contains characters without match mask
+	    for (int j = 0; j < i; j++) {
+		peq[x.charAt(j)] = 0;
+	    }
+	}
+	return bandedEditDistance(x, y, tau);
+    }
+
+    /**
+     * Bit-parallel computation of the last row of the matrix. Bit i of the
+     * vertical (horizontal) delta vectors is set if the value of the cell in
+     * row i + 1 is one larger (smaller) than the one above (to the left).
+     */
+    private static int myers(String x, String y, int tau, long[] peq) {
+	int m = x.length();
+	int n = y.length();
+	long last = 1L << (m - 1);
+	long pv = -1L;
+	long mv = 0L;
+	int score = m;
+	for (int j = 0; j < n; j++) {
+	    char c = y.charAt(j);
+	    long eq = (c < PEQ_SIZE) ? peq[c] : 0L;
+	    long xv = eq | mv;
+	    long xh = (((eq & pv) + pv) ^ pv) | eq;
+	    long ph = mv | ~(xh | pv);
+	    long mh = pv & xh;
+	    if ((ph & last) != 0) {
+		score++;
+	    } else if ((mh & last) != 0) {
+		score--;
+	    }
+	    // the first row of the matrix is 0, 1, 2, ...
+	    ph = (ph << 1) | 1L;
+	    mh = mh << 1;
+	    pv = mh | ~(xv | ph);
+	    mv = ph & xv;
+	    // the distance decreases by at most one per remaining character
+	    if (score - (n - j - 1) > tau) {
+		return tau + 1;
+	    }
+	}
+	return (score <= tau) ? score : tau + 1;
+    }
+
+    /**
+     * Computes the cells of the matrix whose row and column differ by at most
+     * tau, row by row. Cells outside the band are larger than tau.
+     */
+    private static int bandedEditDistance(String x, String y, int tau) {
+	int n = x.length();
+	int m = y.length();
+	int big = tau + 1;
+	int[] previous = new int[m + 1];
+	int[] current = new int[m + 1];
+	for (int j = 0; j <= m; j++) {
+	    previous[j] = (j <= tau) ? j : big;
+	}
+	for (int i = 1; i <= n; i++) {
+	    int lo = Math.max(1, i - tau);
+	    int hi = Math.min(m, i + tau);
+	    current[0] = (i <= tau) ? i : big;
+	    current[lo - 1] = (lo == 1) ? current[0] : big;
+	    int rowMin = current[lo - 1];
+	    char c = x.charAt(i - 1);
+	    for (int j = lo; j <= hi; j++) {
+		int cost = (c == y.charAt(j - 1)) ? 0 : 1;
+		int value = Math.min(min(previous[j] + 1, current[j - 1] + 1, previous[j - 1] + cost), big);
+		current[j] = value;
+		if (value < rowMin) {
+		    rowMin = value;
+		}
+	    }
+	    if (hi < m) {
+		current[hi + 1] = big;
+	    }
+	    if (rowMin > tau) {
+		return big;
+	    }
+	    int[] swap = previous;
+	    previous = current;
+	    current = swap;
+	}
+	return Math.min(previous[m], big);
+    }
+
     private static int min(int a, int b, int c) {
 	int min;
 	min = a;
@@ -573,15 +721,6 @@ class SuffixSumListEntry {
     }
 }
 
-class Frequency {
-
-    int value = 0;
-
-    public Frequency(int freq) {
-	value = freq;
-    }
-}
-
 class EdPosition {
 
     Record record = null;
@@ -4,17 +4,29 @@
  */
 package org.aksw.limes.core.measures.mapper.atomic;
 
+import java.io.File;
 import java.lang.String;
 import java.util.*;
 
 import org.aksw.limes.core.io.cache.Cache;
+import org.aksw.limes.core.io.cache.ValueIndex;
 import org.aksw.limes.core.io.mapping.Mapping;
 import org.aksw.limes.core.io.mapping.MemoryMapping;
 import org.aksw.limes.core.io.parser.Parser;
 import org.aksw.limes.core.measures.mapper.Mapper;
+import org.aksw.limes.core.measures.mapper.MapperExecutor;
+import org.aksw.limes.core.measures.mapper.atomic.exactmatch.PartitionedHashJoin;
 import org.apache.log4j.Logger;
 
 /**
+ * Links the instances with equal values.
+ *
+ * By default, the values of the smaller of the shared value indexes of both
+ * caches, see {@link ValueIndex}, are probed in the other index in parallel.
+ * With a memory budget, set by the system property limes.exactmatch.budget or
+ * by {@link #setMemoryBudget(long, File)}, the mapper builds no indexes but
+ * runs a {@link PartitionedHashJoin} that spills partitions to disk when more
+ * entries than the budget are held in memory.
  *
  * @author ngonga
  */
@@ -22,6 +34,31 @@ public class ExactMatchMapper extends Mapper {
 
     static Logger logger = Logger.getLogger("LIMES");
 
+    public static final String BUDGET_PROPERTY = "limes.exactmatch.budget";
+    private static final int PARTITIONS = 64;
+    // below this number of probed values per thread, threads do not pay off
+    private static final int MIN_VALUES_PER_THREAD = 10000;
+    // number of values a worker probes at once
+    private static final int CHUNK_SIZE = 1024;
+
+    private long budget = Long.getLong(BUDGET_PROPERTY, Long.MAX_VALUE);
+    private File spillDirectory = null;
+
+    /**
+     * Sets the number of join entries held in memory before partitions are
+     * spilled to disk.
+     *
+     * @param budget
+     *            Maximal number of entries in memory
+     * @param spillDirectory
+     *            Directory of the spilled partitions, null for the default
+     *            temporary directory
+     */
+    public void setMemoryBudget(long budget, File spillDirectory) {
+	this.budget = budget;
+	this.spillDirectory = spillDirectory;
+    }
+
     /**
      * Computes a mapping between a source and a target.
      *
@@ -44,94 +81,86 @@ public class ExactMatchMapper extends Mapper {
 	    double threshold) {
 
 	logger.info("Starting ExactMatchMapper");
-	String property1 = null, property2 = null;
-	// get property labels
-	Parser p = new Parser(expression, threshold);
-
-	// get first property label
-	String term1 = "?" + p.getTerm1();
-	String term2 = "?" + p.getTerm2();
-	String split[];
-	String var;
-
-	if (term1.contains(".")) {
-	    split = term1.split("\\.");
-	    var = split[0];
-	    if (var.equals(sourceVar)) {
-		property1 = split[1];
-	    } else {
-		property2 = split[1];
-	    }
-	} else {
-	    property1 = term1;
+	if (!new Parser(expression, threshold).isAtomic()) {
+	    logger.fatal("Mappers can only deal with atomic expression");
+	    logger.fatal("Expression " + expression + " was given to a mapper to process");
+	    System.exit(1);
 	}
+	List<String> properties = PropertyFetcher.getProperties(expression, threshold);
+	String property1 = properties.get(0);
+	String property2 = properties.get(1);
 
-	// get second property label
-	if (term2.contains(".")) {
-	    split = term2.split("\\.");
-	    var = split[0];
-	    if (var.equals(sourceVar)) {
-		property1 = split[1];
-	    } else {
-		property2 = split[1];
-	    }
-	} else {
-	    property2 = term2;
+	if (budget == Long.MAX_VALUE) {
+	    return join(ValueIndex.get(source, property1), ValueIndex.get(target, property2));
 	}
-
-	// if no properties then terminate
-	if (property1 == null || property2 == null) {
-	    logger.fatal("Property values could not be read. Exiting");
-	    System.exit(1);
+	// the instances are fetched one by one, so that caches that are not
+	// held in memory, e.g., a FileCache, are streamed
+	PartitionedHashJoin join = new PartitionedHashJoin(PARTITIONS, budget, spillDirectory);
+	for (String uri : source.getAllUris()) {
+	    for (String value : source.getInstance(uri).getProperty(property1)) {
+		join.addSource(value, uri);
+	    }
 	}
-
-	if (!p.isAtomic()) {
-	    logger.fatal("Mappers can only deal with atomic expression");
-	    logger.fatal("Expression " + expression + " was given to a mapper to process");
-	    System.exit(1);
+	for (String uri : target.getAllUris()) {
+	    for (String value : target.getInstance(uri).getProperty(property2)) {
+		join.addTarget(value, uri);
+	    }
 	}
+	return join.join();
+    }
 
-	Map<String, Set<String>> sourceIndex = index(source, property1);
-	Map<String, Set<String>> targetIndex = index(target, property2);
+    /**
+     * Probes the values of the smaller index in the other index in parallel.
+     */
+    private Mapping join(final ValueIndex sourceIndex, final ValueIndex targetIndex) {
+	final boolean probeSource = sourceIndex.size() <= targetIndex.size();
+	ValueIndex probe = probeSource ? sourceIndex : targetIndex;
+	return MapperExecutor.processChunks(probe.size(), MIN_VALUES_PER_THREAD, CHUNK_SIZE,
+		new MapperExecutor.ChunkWorkerFactory() {
+		    public MapperExecutor.ChunkWorker newWorker() {
+			return new Probe(sourceIndex, targetIndex, probeSource);
+		    }
+		}, new MemoryMapping());
+    }
 
-	Mapping m = new MemoryMapping();
+    /**
+     * Probes chunks of the values of one index in the other index.
+     */
+    private static class Probe implements MapperExecutor.ChunkWorker {
+	private final ValueIndex sourceIndex;
+	private final ValueIndex targetIndex;
+	private final boolean probeSource;
+
+	Probe(ValueIndex sourceIndex, ValueIndex targetIndex, boolean probeSource) {
+	    this.sourceIndex = sourceIndex;
+	    this.targetIndex = targetIndex;
+	    this.probeSource = probeSource;
+	}
 
-	if (sourceIndex.keySet().size() < targetIndex.keySet().size()) {
-	    for (String value : sourceIndex.keySet()) {
-		if (targetIndex.containsKey(value)) {
-		    for (String sourceUri : sourceIndex.get(value)) {
-			for (String targetUri : targetIndex.get(value)) {
-			    m.add(sourceUri, targetUri, 1d);
-			}
-		    }
+	public void process(int begin, int end, Mapping m) {
+	    ValueIndex probe = probeSource ? sourceIndex : targetIndex;
+	    ValueIndex build = probeSource ? targetIndex : sourceIndex;
+	    for (int id = begin; id < end; id++) {
+		int other = build.getId(probe.getValue(id));
+		if (other < 0) {
+		    continue;
 		}
-	    }
-	} else {
-	    for (String value : targetIndex.keySet()) {
-		if (sourceIndex.containsKey(value)) {
-		    for (String sourceUri : sourceIndex.get(value)) {
-			for (String targetUri : targetIndex.get(value)) {
-			    m.add(sourceUri, targetUri, 1d);
-			}
+		int sourceId = probeSource ? id : other;
+		int targetId = probeSource ? other : id;
+		for (int i = 0; i < sourceIndex.getUriCount(sourceId); i++) {
+		    for (int j = 0; j < targetIndex.getUriCount(targetId); j++) {
+			m.add(sourceIndex.getUri(sourceId, i), targetIndex.getUri(targetId, j), 1d);
 		    }
 		}
 	    }
 	}
-	return m;
     }
 
+    /**
+     * @return The index of the values of the property
+     */
     public Map<String, Set<String>> index(Cache c, String property) {
-	Map<String, Set<String>> index = new HashMap<String, Set<String>>();
-	for (String uri : c.getAllUris()) {
-	    TreeSet<String> values = c.getInstance(uri).getProperty(property);
-	    for (String v : values) {
-		if (!index.containsKey(v)) {
-		    index.put(v, new HashSet<String>());
-		}
-		index.get(v).add(uri);
-	    }
-	}
-	return index;
+	return ValueIndex.get(c, property).asMap();
     }
 
     public String getName() {
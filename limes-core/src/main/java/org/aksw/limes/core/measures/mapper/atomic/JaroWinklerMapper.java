@@ -1,19 +1,14 @@
 package org.aksw.limes.core.measures.mapper.atomic;
 
 import org.aksw.limes.core.io.cache.Cache;
+import org.aksw.limes.core.io.cache.ValueIndex;
 import org.aksw.limes.core.io.mapping.Mapping;
-import org.aksw.limes.core.io.mapping.MemoryMapping;
 import org.aksw.limes.core.measures.mapper.Mapper;
-import org.aksw.limes.core.measures.mapper.atomic.jarowinkler.LengthQuicksort;
 import org.aksw.limes.core.measures.mapper.atomic.jarowinkler.TrieFilter;
 import org.aksw.limes.core.measures.measure.string.JaroWinkler;
-import org.apache.commons.lang3.tuple.*;
 import org.apache.log4j.Logger;
 
 import java.util.*;
-import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
 
 /**
  * Matches one list of strings against the other, using the given JaroWinkler
@@ -25,18 +20,7 @@ public class JaroWinklerMapper extends Mapper {
     static Logger logger = Logger.getLogger("LIMES");
 
     private Map<String, Set<String>> getValueToUriMap(Cache c, String property) {
-	Map<String, Set<String>> result = new HashMap<>();
-	List<String> uris = c.getAllUris();
-	for (String uri : uris) {
-	    Set<String> values = c.getInstance(uri).getProperty(property);
-	    for (String value : values) {
-		if (!result.containsKey(value)) {
-		    result.put(value, new HashSet<String>());
-		}
-		result.get(value).add(uri);
-	    }
-	}
-	return result;
+	return ValueIndex.get(c, property).asMap();
     }
 
     /**
@@ -63,90 +47,10 @@ public class JaroWinklerMapper extends Mapper {
 
 	logger.info("Running JaroWinklerMapper");
 
-	List<String> listA, listB;
-	JaroWinkler metric = new JaroWinkler();
 	List<String> properties = PropertyFetcher.getProperties(expression, threshold);
 	Map<String, Set<String>> sourceMap = getValueToUriMap(source, properties.get(0));
 	Map<String, Set<String>> targetMap = getValueToUriMap(target, properties.get(1));
-	listA = new ArrayList<>(sourceMap.keySet());
-	listB = new ArrayList<>(targetMap.keySet());
-
-	ConcurrentHashMap<String, Map<String, Double>> similarityBook;
-
-	similarityBook = new ConcurrentHashMap<>(listA.size(), 1.0f);
-
-	List<String> red, blue;
-	red = listA;
-	blue = listB;
-	LengthQuicksort.sort((ArrayList<String>) red);
-	LengthQuicksort.sort((ArrayList<String>) blue);
-	// red is the list with the longest string
-	if (red.get(red.size() - 1).length() < blue.get(blue.size() - 1).length()) {
-	    List<String> temp = red;
-	    red = blue;
-	    blue = temp;
-	}
-
-	List<Pair<List<String>, List<String>>> tempPairs = new LinkedList<>();
-	// generate length filtered partitions
-	if (metric.lengthUpperBound(1, threshold) != -1) {
-	    List<ImmutableTriple<Integer, Integer, Integer>> sliceBoundaries = metric
-		    .getPartitionBounds(blue.get(blue.size() - 1).length(), threshold);
-	    for (ImmutableTriple<Integer, Integer, Integer> sliceBoundary : sliceBoundaries) {
-		MutablePair<List<String>, List<String>> m = new MutablePair<>();
-		m.setLeft(new LinkedList<String>());
-		m.setRight(new LinkedList<String>());
-		for (String s : red)
-		    if (s.length() >= sliceBoundary.getMiddle() && s.length() <= sliceBoundary.getRight())
-			m.getLeft().add(s);
-		    else if (s.length() > sliceBoundary.getRight())
-			break;
-		for (String s : blue)
-		    if (s.length() == sliceBoundary.getLeft())
-			m.getRight().add(s);
-		    else if (s.length() > sliceBoundary.getLeft())
-			break;
-		if (m.getRight().size() > 0 && m.getLeft().size() > 0)
-		    tempPairs.add(m);
-	    }
-	} else {
-	    MutablePair<List<String>, List<String>> m = new MutablePair<>();
-	    m.setLeft(red);
-	    m.setRight(blue);
-	    tempPairs.add(m);
-	}
-
-	logger.info("Partitioned into " + String.valueOf(tempPairs.size()) + " sets.");
-	logger.info("Initializing Threadpool for " + String.valueOf(Runtime.getRuntime().availableProcessors())
-		+ " threads.");
-
-	// create thread pool, one thread per partition
-	ExecutorService executor = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors());
-	// executor = Executors.newFixedThreadPool(1);
-	for (Pair<List<String>, List<String>> tempPair : tempPairs) {
-	    Runnable worker = new TrieFilter(tempPair, similarityBook, metric.clone(), threshold);
-	    executor.execute(worker);
-	}
-	executor.shutdown();
-	while (!executor.isTerminated()) {
-	    try {
-		Thread.sleep(500);
-	    } catch (InterruptedException e) {
-		e.printStackTrace();
-	    }
-	}
-	logger.info("Similarity Book has " + String.valueOf(similarityBook.size()) + " entries.");
-	Mapping result = new MemoryMapping();
-	for (String s : similarityBook.keySet()) {
-	    for (String t : similarityBook.get(s).keySet()) {
-		for (String sourceUri : sourceMap.get(s)) {
-		    for (String targetUri : targetMap.get(t)) {
-			result.add(sourceUri, targetUri, similarityBook.get(s).get(t));
-		    }
-		}
-	    }
-	}
-	return result;
+	return TrieFilter.getMapping(sourceMap, targetMap, new JaroWinkler(), threshold);
     }
 
     @Override
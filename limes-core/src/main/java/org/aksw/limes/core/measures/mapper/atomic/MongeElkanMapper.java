@@ -1,15 +1,32 @@
 package org.aksw.limes.core.measures.mapper.atomic;
 
 import org.aksw.limes.core.io.cache.Cache;
+import org.aksw.limes.core.io.cache.ValueIndex;
 import org.aksw.limes.core.io.mapping.Mapping;
 import org.aksw.limes.core.io.mapping.MemoryMapping;
 import org.aksw.limes.core.measures.mapper.Mapper;
+import org.aksw.limes.core.measures.mapper.MapperExecutor;
 import org.aksw.limes.core.measures.measure.string.TrigramMeasure;
 import org.apache.log4j.Logger;
 
 import java.util.*;
 
 /**
+ * Monge-Elkan similarity of a source and a target text, i.e., the average over
+ * the tokens of the source text of the best trigram similarity to a token of
+ * the target text.
+ *
+ * Each distinct value is tokenized once, and each distinct token is encoded
+ * once as a sorted array of n-gram IDs, so that the similarity of two tokens
+ * is a merge of two int arrays. The token similarities are memoized in a
+ * bounded cache per thread. Pairs of values are pruned by an upper bound of
+ * the average: the similarity of two tokens is at most 2 min(a, b) / (a + b)
+ * for a and b n-grams, so the best similarity of a source token is bounded by
+ * the target token with the closest number of n-grams. The bound is tightened
+ * with the exact similarities while the source tokens are compared, and the
+ * comparison stops as soon as the threshold cannot be reached anymore. The
+ * source values are compared in parallel.
+ *
  * @author Peggy Lucke
  *
  */
@@ -17,6 +34,15 @@ public class MongeElkanMapper extends Mapper {
 
     static Logger logger = Logger.getLogger("LIMES");
 
+    // tolerance for rounding errors of the bounds
+    private static final double EPSILON = 1e-6;
+    // below this number of source values per thread, threads do not pay off
+    private static final int MIN_VALUES_PER_THREAD = 100;
+    // number of source values a worker takes at once
+    private static final int CHUNK_SIZE = 16;
+    // number of token pairs whose similarity each worker remembers
+    private static final int CACHE_SIZE = 1 << 16;
+
     // Tokens are divide by space
     private String split = " ";
 
@@ -25,21 +51,6 @@ public class MongeElkanMapper extends Mapper {
 	this.split = split;
     }
 
-    private Map<String, Set<String>> getValueToUriMap(Cache c, String property) {
-	Map<String, Set<String>> result = new HashMap<>();
-	List<String> uris = c.getAllUris();
-	for (String uri : uris) {
-	    Set<String> values = c.getInstance(uri).getProperty(property);
-	    for (String value : values) {
-		if (!result.containsKey(value)) {
-		    result.put(value, new HashSet<String>());
-		}
-		result.get(value).add(uri);
-	    }
-	}
-	return result;
-    }
-
     /**
      * @param source
      *            Texts to compare with target
@@ -51,74 +62,267 @@ public class MongeElkanMapper extends Mapper {
      *         similarity of them
      */
     public Map<String, Map<String, Double>> mongeElkan(Set<String> source, Set<String> target, double threshold) {
-	Iterator<String> sit = source.iterator();// As
-	double resultDouble;
-	// (A,B)+result
-	Map<String, Map<String, Double>> result = new HashMap<>();
-	while (sit.hasNext()) {// ein A
-	    Iterator<String> tit = target.iterator();// Bs
-	    String sourceString = sit.next();
-	    HashMap<String, Double> resultB = new HashMap<>();
-	    while (tit.hasNext()) {// ein B --> schneller machen, wenn B = vorh.
-				   // B
-		String targetString = tit.next();
-		resultDouble = oneMongeElkan(sourceString.split(split), targetString.split(split), threshold);
-		if (threshold <= resultDouble) {
-		    resultB.put(targetString, resultDouble);
-		}
+	final String[] sourceValues = source.toArray(new String[source.size()]);
+	final String[] targetValues = target.toArray(new String[target.size()]);
+	Mapping mapping = compare(sourceValues, targetValues, threshold, new Linker() {
+	    public void link(int s, int t, double similarity, Mapping result) {
+		result.add(sourceValues[s], targetValues[t], similarity);
 	    }
-	    result.put(sourceString, resultB);
+	});
+	Map<String, Map<String, Double>> result = new HashMap<>();
+	for (String s : sourceValues) {
+	    Map<String, Double> targets = mapping.getMap().get(s);
+	    result.put(s, (targets != null) ? targets : new HashMap<String, Double>());
 	}
 	return result;
     }
 
-    /*
-     * compare one text with another
+    /**
+     * Compares all source values with all target values in parallel
+     *
+     * @return The links of the pairs of values whose similarity reaches the
+     *         threshold
+     */
+    private Mapping compare(String[] sourceValues, String[] targetValues, final double threshold,
+	    final Linker linker) {
+	final Tokens tokens = new Tokens();
+	final int[][] sourceTokens = tokens.encode(sourceValues, split);
+	final int[][] targetTokens = tokens.encode(targetValues, split);
+	final int[][] targetSizes = new int[targetTokens.length][];
+	for (int t = 0; t < targetTokens.length; t++) {
+	    targetSizes[t] = tokens.getSizes(targetTokens[t]);
+	}
+	return MapperExecutor.processChunks(sourceTokens.length, MIN_VALUES_PER_THREAD, CHUNK_SIZE,
+		new MapperExecutor.ChunkWorkerFactory() {
+		    public MapperExecutor.ChunkWorker newWorker() {
+			return new Worker(tokens, sourceTokens, targetTokens, targetSizes, threshold, linker);
+		    }
+		}, new MemoryMapping());
+    }
+
+    /**
+     * Dictionaries of the tokens and n-grams of the source and the target
+     * values. Immutable once both sides are encoded.
      */
-    private double oneMongeElkan(String[] sourceToken, String[] targetToken, double threshold) {
-	double simB = 0;
-	double result = 0;
-	float maxNumber = sourceToken.length;
-	/*
-	 * the minimum of the result to reach the threshold
+    private static class Tokens {
+	private final TrigramMeasure trigrams = new TrigramMeasure();
+	private final HashMap<String, Integer> tokenIds = new HashMap<String, Integer>();
+	private final HashMap<String, Integer> gramIds = new HashMap<String, Integer>();
+	// sorted n-gram IDs of each token, empty for the empty token
+	private final ArrayList<int[]> grams = new ArrayList<int[]>();
+
+	/**
+	 * @return The token IDs of each value, in the order of the tokens
 	 */
-	float treshMin = (float) (maxNumber * threshold);
-	for (String sourceString : sourceToken) {// ein a
-	    double maxSim = 0;
-	    for (String targetString : targetToken) {// ein b
-		double sim = tokenSim(sourceString, targetString);
-		if (maxSim < sim) {
-		    maxSim = sim;
+	int[][] encode(String[] values, String split) {
+	    int[][] result = new int[values.length][];
+	    for (int v = 0; v < values.length; v++) {
+		String[] parts = values[v].split(split);
+		int[] ids = new int[parts.length];
+		for (int i = 0; i < parts.length; i++) {
+		    ids[i] = getId(parts[i]);
 		}
-		if (maxSim == 1) {
-		    break;
+		result[v] = ids;
+	    }
+	    return result;
+	}
+
+	private int getId(String token) {
+	    Integer id = tokenIds.get(token);
+	    if (id == null) {
+		id = grams.size();
+		tokenIds.put(token, id);
+		int[] ids = new int[0];
+		// same n-grams as the trigram measure, which treats the empty
+		// token separately
+		if (!token.isEmpty()) {
+		    TreeSet<String> set = trigrams.getTrigrams("  " + token + "  ");
+		    ids = new int[set.size()];
+		    int i = 0;
+		    for (String gram : set) {
+			Integer gramId = gramIds.get(gram);
+			if (gramId == null) {
+			    gramId = gramIds.size();
+			    gramIds.put(gram, gramId);
+			}
+			ids[i++] = gramId;
+		    }
+		    Arrays.sort(ids);
 		}
+		grams.add(ids);
+	    }
+	    return id;
+	}
+
+	/**
+	 * @return The sorted distinct numbers of n-grams of the tokens
+	 */
+	int[] getSizes(int[] tokens) {
+	    int[] sizes = new int[tokens.length];
+	    for (int i = 0; i < tokens.length; i++) {
+		sizes[i] = grams.get(tokens[i]).length;
 	    }
-	    maxNumber -= 1 - maxSim;
-	    /*
-	     * add 0.0001 for rounding errors. if the similarity of all source
-	     * tokens with the target tokens don't reach the minimum threshold,
-	     * there are no result, so break the algorithm.
-	     */
-	    if (treshMin > maxNumber + 0.0001) {
-		result = 0;
-		break;
+	    Arrays.sort(sizes);
+	    int n = 0;
+	    for (int i = 0; i < sizes.length; i++) {
+		if (n == 0 || sizes[n - 1] != sizes[i]) {
+		    sizes[n++] = sizes[i];
+		}
 	    }
-	    simB += maxSim;
+	    return Arrays.copyOf(sizes, n);
 	}
-	if (simB != 0) {
-	    result = simB / sourceToken.length;
+
+	int size(int token) {
+	    return grams.get(token).length;
+	}
+
+	/**
+	 * Trigram similarity of two tokens
+	 */
+	double similarity(int a, int b) {
+	    if (a == b) {
+		return 1d;
+	    }
+	    int[] x = grams.get(a);
+	    int[] y = grams.get(b);
+	    if (x.length == 0 || y.length == 0) {
+		return (x.length == y.length) ? 1d : 0d;
+	    }
+	    int common = 0;
+	    int i = 0, j = 0;
+	    while (i < x.length && j < y.length) {
+		if (x[i] < y[j]) {
+		    i++;
+		} else if (x[i] > y[j]) {
+		    j++;
+		} else {
+		    common++;
+		    i++;
+		    j++;
+		}
+	    }
+	    return 2d * common / (x.length + y.length);
 	}
-	return result;
     }
 
-    /*
-     * use the Trigramm Algorithm to compare the tokens
+    /**
+     * Upper bound of the similarity of a token with n-grams to any token of a
+     * text whose tokens have the given sorted numbers of n-grams.
      */
-    private double tokenSim(String tokenA, String tokenB) {
-	TrigramMeasure trigram = new TrigramMeasure();
-	double result = trigram.getSimilarity(tokenA, tokenB);
-	return result;
+    private static double bound(int n, int[] sizes) {
+	int position = Arrays.binarySearch(sizes, n);
+	if (position >= 0) {
+	    return 1d;
+	}
+	if (n == 0) {
+	    return 0d;
+	}
+	position = -position - 1;
+	double bound = 0d;
+	// only the closest numbers, the empty token is dissimilar to all others
+	if (position > 0 && sizes[position - 1] > 0) {
+	    bound = 2d * sizes[position - 1] / (n + sizes[position - 1]);
+	}
+	if (position < sizes.length) {
+	    bound = Math.max(bound, 2d * n / (n + sizes[position]));
+	}
+	return bound;
+    }
+
+    /**
+     * Adds the links of a pair of source and target value IDs to a mapping
+     */
+    private interface Linker {
+	void link(int source, int target, double similarity, Mapping result);
+    }
+
+    /**
+     * Compares chunks of the source values with all target values.
+     */
+    private static class Worker implements MapperExecutor.ChunkWorker {
+	private final Tokens tokens;
+	private final int[][] sourceTokens;
+	private final int[][] targetTokens;
+	private final int[][] targetSizes;
+	private final double threshold;
+	private final Linker linker;
+	// direct mapped cache of token pair similarities
+	private final long[] keys = new long[CACHE_SIZE];
+	private final double[] values = new double[CACHE_SIZE];
+
+	Worker(Tokens tokens, int[][] sourceTokens, int[][] targetTokens, int[][] targetSizes, double threshold,
+		Linker linker) {
+	    this.tokens = tokens;
+	    this.sourceTokens = sourceTokens;
+	    this.targetTokens = targetTokens;
+	    this.targetSizes = targetSizes;
+	    this.threshold = threshold;
+	    this.linker = linker;
+	    Arrays.fill(keys, -1L);
+	}
+
+	public void process(int begin, int end, Mapping result) {
+	    for (int s = begin; s < end; s++) {
+		int[] source = sourceTokens[s];
+		double[] bounds = new double[source.length];
+		double minimum = threshold * source.length - EPSILON;
+		for (int t = 0; t < targetTokens.length; t++) {
+		    double upper = 0;
+		    for (int i = 0; i < source.length; i++) {
+			bounds[i] = bound(tokens.size(source[i]), targetSizes[t]);
+			upper += bounds[i];
+		    }
+		    if (upper < minimum) {
+			continue;
+		    }
+		    double similarity = mongeElkan(source, targetTokens[t], bounds, upper, minimum);
+		    if (threshold <= similarity) {
+			linker.link(s, t, similarity, result);
+		    }
+		}
+	    }
+	}
+
+	/**
+	 * @return The similarity of the texts, -1 if it is below the threshold
+	 */
+	private double mongeElkan(int[] source, int[] target, double[] bounds, double upper, double minimum) {
+	    if (source.length == 0) {
+		return 0d;
+	    }
+	    double sum = 0;
+	    for (int i = 0; i < source.length; i++) {
+		double max = 0;
+		for (int b : target) {
+		    double sim = similarity(source[i], b);
+		    if (max < sim) {
+			max = sim;
+		    }
+		    if (max == 1) {
+			break;
+		    }
+		}
+		upper -= bounds[i] - max;
+		if (upper < minimum) {
+		    return -1d;
+		}
+		sum += max;
+	    }
+	    return sum / source.length;
+	}
+
+	private double similarity(int a, int b) {
+	    long key = ((long) a << 32) | b;
+	    long h = key * 0x9E3779B97F4A7C15L;
+	    int slot = (int) (h >>> 48) & (CACHE_SIZE - 1);
+	    if (keys[slot] == key) {
+		return values[slot];
+	    }
+	    double sim = tokens.similarity(a, b);
+	    keys[slot] = key;
+	    values[slot] = sim;
+	    return sim;
+	}
     }
 
     @Override
@@ -127,21 +331,25 @@ public class MongeElkanMapper extends Mapper {
 	logger.info("Running MongeElkanMapper");
 
 	List<String> properties = PropertyFetcher.getProperties(expression, threshold);
-	Map<String, Set<String>> sourceMap = getValueToUriMap(source, properties.get(0));
-	Map<String, Set<String>> targetMap = getValueToUriMap(target, properties.get(1));
-	Map<String, Map<String, Double>> similarityBook = mongeElkan(sourceMap.keySet(), targetMap.keySet(), threshold);
-	logger.info("Similarity Book has " + String.valueOf(similarityBook.size()) + " entries.");
-	Mapping result = new MemoryMapping();
-	for (String s : similarityBook.keySet()) {
-	    for (String t : similarityBook.get(s).keySet()) {
-		for (String sourceUri : sourceMap.get(s)) {
-		    for (String targetUri : targetMap.get(t)) {
-			result.add(sourceUri, targetUri, similarityBook.get(s).get(t));
+	final ValueIndex sourceIndex = ValueIndex.get(source, properties.get(0));
+	final ValueIndex targetIndex = ValueIndex.get(target, properties.get(1));
+	String[] sourceValues = new String[sourceIndex.size()];
+	for (int i = 0; i < sourceValues.length; i++) {
+	    sourceValues[i] = sourceIndex.getValue(i);
+	}
+	String[] targetValues = new String[targetIndex.size()];
+	for (int i = 0; i < targetValues.length; i++) {
+	    targetValues[i] = targetIndex.getValue(i);
+	}
+	return compare(sourceValues, targetValues, threshold, new Linker() {
+	    public void link(int s, int t, double similarity, Mapping result) {
+		for (int i = 0; i < sourceIndex.getUriCount(s); i++) {
+		    for (int j = 0; j < targetIndex.getUriCount(t); j++) {
+			result.add(sourceIndex.getUri(s, i), targetIndex.getUri(t, j), similarity);
 		    }
 		}
 	    }
-	}
-	return result;
+	});
     }
 
     @Override
@@ -151,11 +359,16 @@ public class MongeElkanMapper extends Mapper {
 
     @Override
     public double getRuntimeApproximation(int sourceSize, int targetSize, double theta, Language language) {
-	return -1d;
+	// all pairs of values are bounded, and the pairs that pass the bound
+	// are compared token by token, fewer the higher the threshold
+	double pairs = (double) sourceSize * targetSize;
+	return 0.0001 * pairs * (2 - theta);
     }
 
     @Override
     public double getMappingSizeApproximation(int sourceSize, int targetSize, double theta, Language language) {
-	return -1d;
+	// at most all pairs, the share of linked pairs falls with the threshold
+	double pairs = (double) sourceSize * targetSize;
+	return pairs * (1 - theta) * (1 - theta) / 100;
     }
-}
\ No newline at end of file
+}
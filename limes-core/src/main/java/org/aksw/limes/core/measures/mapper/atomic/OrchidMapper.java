@@ -6,25 +6,49 @@ package org.aksw.limes.core.measures.mapper.atomic;
 
 import org.aksw.limes.core.datastrutures.Point;
 import org.aksw.limes.core.io.cache.Cache;
-import org.aksw.limes.core.io.cache.Instance;
 import org.aksw.limes.core.io.mapping.Mapping;
 import org.aksw.limes.core.measures.mapper.Mapper;
+import org.apache.log4j.Logger;
 
 import java.util.*;
-import java.util.regex.Pattern;
 
 import org.aksw.limes.core.measures.mapper.atomic.hausdorff.GeoHR3;
+import org.aksw.limes.core.measures.mapper.atomic.hausdorff.ParsedPolygons;
 import org.aksw.limes.core.measures.mapper.atomic.hausdorff.Polygon;
+import org.aksw.limes.core.measures.mapper.atomic.hausdorff.SpatialJoin;
+import org.aksw.limes.core.measures.mapper.atomic.hausdorff.WktParser;
 import org.aksw.limes.core.measures.measure.pointsets.IPointsetsMeasure;
 import org.aksw.limes.core.measures.measure.pointsets.SetMeasureFactory.Type;
 
 /**
+ * Links polygons whose set measure distance is below the threshold. The
+ * polygons are blocked by the squares of {@link GeoHR3} or joined on an
+ * R-tree of their MBBs, see {@link SpatialJoin}, as selected by the measure
+ * expression, e.g., hausdorff_rtree(x.geo, y.geo), or by
+ * {@link #setJoinMode(SpatialJoin.Mode)}. The WKT values of a cache are
+ * parsed once and shared by later mappings on the same cache, see
+ * {@link ParsedPolygons}.
  *
  * @author ngonga
  */
 public class OrchidMapper extends Mapper {
 
+    static Logger logger = Logger.getLogger("LIMES");
+
     IPointsetsMeasure m = null;
+    SpatialJoin.Mode joinMode = null;
+
+    /**
+     * Sets the blocking of the polygons, which overrides the blocking
+     * selected by the expression, see {@link SpatialJoin#getMode(String)}.
+     *
+     * @param joinMode
+     *            Squares or R-tree, null to use the blocking of the
+     *            expression
+     */
+    public void setJoinMode(SpatialJoin.Mode joinMode) {
+	this.joinMode = joinMode;
+    }
 
     /**
      * Computes a mapping using the setMeasure distance
@@ -56,72 +80,46 @@ public class OrchidMapper extends Mapper {
 	float theta = (1 / (float) threshold) - 1;
 	Type type = getTypeFromExpression(expression);
 	GeoHR3 orchid = new GeoHR3(theta, GeoHR3.DEFAULT_GRANULARITY, type);
-	return orchid.run(sourcePolygons, targetPolygons);
+	SpatialJoin.Mode mode = (joinMode != null) ? joinMode : SpatialJoin.getMode(expression);
+	return orchid.run(sourcePolygons, targetPolygons, mode);
     }
 
     /**
-     * Computes polygons out of strings in the WKT format. Currently works for
-     * LINESTRING, POINT, POLYGON
+     * Computes polygons out of strings in the WKT format, e.g., POINT,
+     * LINESTRING, POLYGON and their MULTI variants. The polygons are parsed
+     * on the first request for the cache and property, see
+     * {@link ParsedPolygons}.
      *
      * @param c
      *            Cache from which the data is to be fetched
      * @param property
      *            Property to use
-     * @return Set of polygons. Each polygon contains the uri to which it
-     *         matches
+     * @return Read-only set of polygons. Each polygon contains the uri to
+     *         which it matches
      */
     public Set<Polygon> getPolygons(Cache c, String property) {
-	Polygon p;
-	Set<Polygon> polygons = new HashSet<Polygon>();
-	for (Instance instance : c.getAllInstances()) {
-	    p = new Polygon(instance.getUri());
-	    TreeSet<String> values = instance.getProperty(property);
-	    if (instance.getUri().contains("dbpedia")) {
-		String value = values.first();
-		value = value.replace(",", "");
-		values = new TreeSet<String>();
-		values.add(value);
-	    }
-
-	    for (String v : values) {
-		List<Point> points = getPoints(v);
-		for (Point point : points) {
-		    p.add(point);
-		}
-	    }
-	    polygons.add(p);
-	}
-	return polygons;
+	return ParsedPolygons.get(c, property);
     }
 
+    /**
+     * Reads the coordinates of a WKT string, see {@link WktParser}.
+     * Malformed coordinates are skipped and logged.
+     *
+     * @param rawValue
+     *            An WKT string
+     * @return The points of the string
+     */
     public static List<Point> getPoints(String rawValue) {
-	if (!(rawValue.contains("(") && rawValue.contains(")"))) {
-	    return new ArrayList<Point>();
-	}
-	String s = rawValue.substring(rawValue.indexOf("(") + 1, rawValue.lastIndexOf(")"));
-	s = s.replaceAll(Pattern.quote("("), "");
-	s = s.replaceAll(Pattern.quote(")"), "");
-	s = s.replaceAll(Pattern.quote("  "), "");
-	s = s.replaceAll(Pattern.quote(" ,"), ",");
-	s = s.replaceAll(Pattern.quote(", "), ",");
-
-	String split[] = s.split(",");
-	List<Point> result = new ArrayList<Point>();
-	for (int i = 0; i < split.length; i++) {
-	    String[] coords = split[i].split(" ");
-	    for (int j = 0; j < coords.length; j = j + 2) {
-		List<Double> coordinates = new ArrayList<Double>();
-		try {
-		    coordinates.add(Double.parseDouble(coords[j].replaceAll(" ", "")));
-		    coordinates.add(Double.parseDouble(coords[j + 1].replaceAll(" ", "")));
-		    Point p = new Point("", coordinates);
-		    result.add(p);
-		} catch (Exception e) {
-		    System.err.println(e);
-		}
-	    }
+	WktParser parser = new WktParser();
+	parse(parser, rawValue);
+	return parser.getPoints();
+    }
+
+    private static void parse(WktParser parser, String rawValue) {
+	parser.parse(rawValue);
+	if (parser.getError() != null) {
+	    logger.warn("Malformed WKT value " + rawValue + ": " + parser.getError());
 	}
-	return result;
     }
 
     /**
@@ -132,12 +130,9 @@ public class OrchidMapper extends Mapper {
      * @return A polygon
      */
     public static Polygon getPolygon(String rawValue) {
-	Polygon p = new Polygon("");
-	List<Point> points = getPoints(rawValue);
-	for (Point point : points) {
-	    p.add(point);
-	}
-	return p;
+	WktParser parser = new WktParser();
+	parse(parser, rawValue);
+	return parser.toPolygon("");
     }
 
     public String getName() {
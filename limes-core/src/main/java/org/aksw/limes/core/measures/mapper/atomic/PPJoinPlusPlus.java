@@ -8,28 +8,18 @@ package org.aksw.limes.core.measures.mapper.atomic;
  *
  * @author ngonga
  */
-import algorithms.ppjoinplus.Record;
-
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.HashMap;
-import java.util.Iterator;
-import java.util.LinkedList;
-import java.util.Map;
+import java.util.List;
 import java.util.StringTokenizer;
-import java.util.concurrent.ConcurrentHashMap;
-
-import algorithms.StoppUhr;
-import algorithms.Token;
 
 import org.aksw.limes.core.io.cache.Cache;
-import org.aksw.limes.core.io.cache.Instance;
 import org.aksw.limes.core.io.mapping.Mapping;
 import org.aksw.limes.core.io.mapping.MemoryMapping;
 import org.aksw.limes.core.io.parser.Parser;
-
-import java.util.ArrayList;
-
 import org.aksw.limes.core.measures.mapper.Mapper;
+import org.aksw.limes.core.measures.mapper.MapperExecutor;
 import org.aksw.limes.core.measures.measure.Measure;
 import org.aksw.limes.core.measures.measure.date.DayMeasure;
 import org.aksw.limes.core.measures.measure.date.SimpleDateMeasure;
@@ -40,56 +30,6 @@ import org.aksw.limes.core.measures.measure.string.JaccardMeasure;
 import org.aksw.limes.core.measures.measure.string.TrigramMeasure;
 import org.apache.log4j.Logger;
 
-class Position {
-
-    Record record = null;
-    int position = -1;
-
-    public Position(Record record, int position) {
-	this.record = record;
-	this.position = position;
-    }
-}
-
-class CandidateInfo {
-
-    int currentOverlap = -1;
-    int alpha = -1;
-
-    public CandidateInfo(int currentOverlap, int alpha) {
-	this.currentOverlap = currentOverlap;
-	this.alpha = alpha;
-    }
-}
-
-class PartitionResult {
-
-    int l = -1;
-    int r = -1;
-    int f = -1;
-    int diff = -1;
-
-    /**
-     *
-     * @param l
-     *            right bound of the left partition
-     * @param r
-     *            left bound of the right partition
-     * @param f
-     *            a flag indicating whether the token w is in the searching
-     *            range
-     * @param diff
-     *            a flag indicating whether the probing token w is not found in
-     *            a record
-     */
-    public PartitionResult(int l, int r, int f, int diff) {
-	this.l = l;
-	this.r = r;
-	this.f = f;
-	this.diff = diff;
-    }
-}
-
 /**
  * Die Implementierung von PPJoin+ Algorithmus. Der Algorithmus bestimmt alle
  * Paare von Objekten, deren Ähnlichkeit aufgrund des verwendeten
@@ -107,17 +47,32 @@ class PartitionResult {
  * <a href="http://www.cse.unsw.edu.au/~weiw/files/WWW08-PPJoin-Final.pdf">
  * detaillierte Beschreibung von PPJoin+</a>.
  *
+ * Records are int arrays of token ranks in frequency order, and their
+ * prefixes are indexed in int arrays. Instead of one pass over the sorted
+ * union of source and target, the source records probe the index of the
+ * target records and vice versa, so that the probe records can be processed
+ * in parallel. If source and target are the same, the records are joined
+ * with themselves.
+ *
  * @author Dawid Kotlarz
  * @version 1.0
  */
 public class PPJoinPlusPlus extends Mapper {
 
     static Logger logger = Logger.getLogger("LIMES");
-    private static int MAX_DEPTH;
-    private static Mapping mapping = null;
-    private static ConcurrentHashMap<Integer, String> sourceMap;
-    private static ConcurrentHashMap<Integer, String> targetMap;
-    private IStringMeasure measure;
+    private static final int MAX_DEPTH = 2;
+
+    // modes of a join, i.e., which records are probed against which index
+    // source records probe the target records with fewer tokens
+    private static final int SOURCE_PROBES = 0;
+    // target records probe the source records with at most as many tokens
+    private static final int TARGET_PROBES = 1;
+    // records probe the records of the same set that precede them
+    private static final int SELF = 2;
+    // below this number of probe records per thread, threads do not pay off
+    private static final int MIN_PROBES_PER_THREAD = 1000;
+    // number of probe records a worker takes at once
+    private static final int CHUNK_SIZE = 256;
 
     public String getName() {
 	return "PPJoinPlusPlus";
@@ -143,8 +98,6 @@ public class PPJoinPlusPlus extends Mapper {
      */
     public Mapping getMapping(Cache source, Cache target, String sourceVar, String targetVar, String expression,
 	    double threshold) {
-	MAX_DEPTH = 2;
-	mapping = new MemoryMapping();
 	// logger.info("Starting PPJoinPlus");
 	if (threshold < 0) {
 	    throw new RuntimeException("Verification threshold must be >= 0");
@@ -215,204 +168,390 @@ public class PPJoinPlusPlus extends Mapper {
 	    // System.exit(1);
 	}
 
-	// 3.1 fill objects from source in entry
-	// logger.info("Filling objects from source knowledge base.");
-	sourceMap = new ConcurrentHashMap<Integer, String>();
-	ArrayList<String> uris = source.getAllUris();
-	ArrayList<String> entries = new ArrayList<String>();
-	Instance instance;
-	int counter = 0;
-	for (int i = 0; i < uris.size(); i++) {
-	    instance = source.getInstance(uris.get(i));
-	    for (String s : instance.getProperty(property1)) {
-		sourceMap.put(counter, uris.get(i));
-		entries.add(s);
-		counter++;
+	IStringMeasure measure = (IStringMeasure) this.getMeasure(p.getOperator());
+	// logger.info("Beginninng comparison per se");
+	if (measure != null) {
+	    // logger.info("Using measure " + measure.getName());
+	} else {
+	    logger.fatal("Metric is null. Exiting.");
+	    System.exit(1);
+	}
+
+	// 3.1 tokenize the values of the source and the target. If both are the
+	// same, the values are tokenized once and joined with themselves
+	TokenDictionary dictionary = new TokenDictionary();
+	ArrayList<String> sourceUris = new ArrayList<String>();
+	ArrayList<int[]> sourceTokens = new ArrayList<int[]>();
+	dictionary.tokenize(source, property1, sourceUris, sourceTokens);
+	boolean selfJoin = (source == target && property1.equals(property2));
+	ArrayList<String> targetUris = new ArrayList<String>();
+	ArrayList<int[]> targetTokens = new ArrayList<int[]>();
+	if (!selfJoin) {
+	    dictionary.tokenize(target, property2, targetUris, targetTokens);
+	}
+
+	// 3.2 order the tokens by frequency and index the records
+	int[] ranks = dictionary.ranks();
+	Records sourceRecords = new Records(sourceUris, sourceTokens, ranks, measure, threshold);
+	Mapping mapping = new MemoryMapping();
+	if (selfJoin) {
+	    join(sourceRecords, sourceRecords, SELF, measure, threshold, mapping);
+	} else {
+	    // as in a join of the sorted union of both, pairs are verified by
+	    // probing with the longer record. Records of the same size are
+	    // probed with the target record
+	    Records targetRecords = new Records(targetUris, targetTokens, ranks, measure, threshold);
+	    join(sourceRecords, targetRecords, SOURCE_PROBES, measure, threshold, mapping);
+	    join(targetRecords, sourceRecords, TARGET_PROBES, measure, threshold, mapping);
+	}
+	return mapping;
+    }
+
+    /**
+     * Probes the index of a set of records with the records of another set in
+     * parallel. Each record is matched against the indexed records that
+     * precede it, see {@link #SOURCE_PROBES}, {@link #TARGET_PROBES} and
+     * {@link #SELF}.
+     */
+    private static void join(final Records probe, final Records indexed, final int mode,
+	    final IStringMeasure measure, final double threshold, Mapping mapping) {
+	MapperExecutor.processChunks(probe.size(), MIN_PROBES_PER_THREAD, CHUNK_SIZE,
+		new MapperExecutor.ChunkWorkerFactory() {
+		    public MapperExecutor.ChunkWorker newWorker() {
+			return new Worker(probe, indexed, mode, measure, threshold);
+		    }
+		}, mapping);
+    }
+
+    /**
+     * Token IDs and record frequencies of all tokens. Repeated tokens of a
+     * value are distinct tokens, i.e., the second "a" in "a b a" is the token
+     * "a.2".
+     */
+    private static class TokenDictionary {
+	private final HashMap<String, Integer> ids = new HashMap<String, Integer>();
+	private int[] df = new int[1024];
+
+	/**
+	 * Tokenizes the values of a property of all instances of a cache
+	 */
+	void tokenize(Cache cache, String property, List<String> uris, List<int[]> tokens) {
+	    for (String uri : cache.getAllUris()) {
+		for (String value : cache.getInstance(uri).getProperty(property)) {
+		    uris.add(uri);
+		    tokens.add(tokenize(value));
+		}
 	    }
 	}
 
-	// 3.2 fill objects from target in entries
-	// logger.info("Filling objects from target knowledge base.");
-	targetMap = new ConcurrentHashMap<Integer, String>();
-	uris = target.getAllUris();
-	for (int i = 0; i < uris.size(); i++) {
-	    instance = target.getInstance(uris.get(i));
-	    for (String s : instance.getProperty(property2)) {
-		targetMap.put(counter, uris.get(i));
-		entries.add(s);
-		counter++;
+	private int[] tokenize(String value) {
+	    StringTokenizer st = new StringTokenizer(value, " .,?!\t");
+	    int[] tokens = new int[st.countTokens()];
+	    // frequency of the tokens in the value
+	    HashMap<String, Integer> recordTokens = new HashMap<String, Integer>();
+	    for (int j = 0; j < tokens.length; j++) {
+		String token = st.nextToken();
+		Integer frequency = recordTokens.get(token);
+		frequency = (frequency == null) ? 1 : frequency + 1;
+		recordTokens.put(token, frequency);
+		// character '.' is not allowed in tokens
+		tokens[j] = id(frequency == 1 ? token : token + "." + frequency);
 	    }
+	    return tokens;
 	}
 
-	String[] entryArray = new String[entries.size()];
-	for (int i = 0; i < entries.size(); i++) {
-	    entryArray[i] = entries.get(i);
+	private int id(String token) {
+	    Integer id = ids.get(token);
+	    if (id == null) {
+		id = ids.size();
+		ids.put(token, id);
+		if (id == df.length) {
+		    df = Arrays.copyOf(df, id * 2);
+		}
+	    }
+	    df[id]++;
+	    return id;
 	}
 
-	Record[] records = tokenizer(entryArray);
-	HashMap<Integer, LinkedList<Position>> index = new HashMap<Integer, LinkedList<Position>>(); // I
+	/**
+	 * @return The rank of each token ID in the global order, i.e., by
+	 *         ascending frequency and then ID
+	 */
+	int[] ranks() {
+	    int n = ids.size();
+	    long[] order = new long[n];
+	    for (int id = 0; id < n; id++) {
+		order[id] = ((long) df[id] << 32) | id;
+	    }
+	    Arrays.sort(order);
+	    int[] ranks = new int[n];
+	    for (int rank = 0; rank < n; rank++) {
+		ranks[(int) order[rank]] = rank;
+	    }
+	    return ranks;
+	}
+    }
 
-	if (threshold == 0) {
-	} else {
+    /**
+     * Tokenized values, ordered by ascending number of tokens, with an
+     * inverted index of their prefixes. The tokens of each record are token
+     * ranks in ascending order. The index holds for each token the IDs of the
+     * records that have it in their prefix, and its position there, in
+     * ascending order of the IDs. The records of a size range are thus a
+     * contiguous part of each posting list.
+     */
+    private static class Records {
+	final String[] uris;
+	final int[][] tokens;
+	final int[] prefixLength;
+	final int[] midPrefix;
+	// sizeStart[s] is the ID of the first record with at least s tokens
+	final int[] sizeStart;
+	// postings of token t are offsets[t] to offsets[t+1]-1
+	final int[] offsets;
+	final int[] postingRecords;
+	final int[] postingPositions;
+
+	Records(List<String> values, List<int[]> rawTokens, int[] ranks, IStringMeasure measure, double threshold) {
+	    int n = values.size();
+	    int maxSize = 0;
+	    for (int[] t : rawTokens) {
+		maxSize = Math.max(maxSize, t.length);
+	    }
+	    // stable counting sort by size
+	    sizeStart = new int[maxSize + 2];
+	    for (int[] t : rawTokens) {
+		sizeStart[t.length + 1]++;
+	    }
+	    for (int s = 1; s < sizeStart.length; s++) {
+		sizeStart[s] += sizeStart[s - 1];
+	    }
+	    int[] next = Arrays.copyOf(sizeStart, sizeStart.length);
+	    uris = new String[n];
+	    tokens = new int[n][];
+	    for (int i = 0; i < n; i++) {
+		int[] t = rawTokens.get(i);
+		int id = next[t.length]++;
+		uris[id] = values.get(i);
+		for (int j = 0; j < t.length; j++) {
+		    t[j] = ranks[t[j]];
+		}
+		Arrays.sort(t);
+		tokens[id] = t;
+	    }
+	    // index the prefixes
+	    prefixLength = new int[n];
+	    midPrefix = new int[n];
+	    offsets = new int[ranks.length + 1];
+	    for (int id = 0; id < n; id++) {
+		prefixLength[id] = measure.getPrefixLength(tokens[id].length, threshold);
+		midPrefix[id] = measure.getMidLength(tokens[id].length, threshold);
+		for (int j = 0; j < indexedPrefix(id); j++) {
+		    offsets[tokens[id][j] + 1]++;
+		}
+	    }
+	    for (int t = 0; t < ranks.length; t++) {
+		offsets[t + 1] += offsets[t];
+	    }
+	    int[] fill = Arrays.copyOf(offsets, ranks.length);
+	    postingRecords = new int[offsets[ranks.length]];
+	    postingPositions = new int[offsets[ranks.length]];
+	    for (int id = 0; id < n; id++) {
+		for (int j = 0; j < indexedPrefix(id); j++) {
+		    int p = fill[tokens[id][j]]++;
+		    postingRecords[p] = id;
+		    postingPositions[p] = j;
+		}
+	    }
 	}
 
-	measure = (IStringMeasure) this.getMeasure(p.getOperator());
-	// logger.info("Beginninng comparison per se");
-	if (measure != null) {
-	    // logger.info("Using measure " + measure.getName());
-	} else {
-	    logger.fatal("Metric is null. Exiting.");
-	    System.exit(1);
+	private int indexedPrefix(int id) {
+	    return Math.min(tokens[id].length, Math.min(prefixLength[id], midPrefix[id]));
+	}
+
+	int size() {
+	    return uris.length;
+	}
+
+	int firstOfSize(int size) {
+	    if (size <= 0) {
+		return 0;
+	    }
+	    return (size < sizeStart.length) ? sizeStart[size] : uris.length;
+	}
+
+	/**
+	 * @return The first posting of the token whose record ID is at least
+	 *         from
+	 */
+	int firstPosting(int token, int from) {
+	    int lo = offsets[token], hi = offsets[token + 1];
+	    while (lo < hi) {
+		int mid = (lo + hi) >>> 1;
+		if (postingRecords[mid] < from) {
+		    lo = mid + 1;
+		} else {
+		    hi = mid;
+		}
+	    }
+	    return lo;
+	}
+    }
+
+    /**
+     * Probes chunks of the probe records against the index. The candidates of
+     * a probe record are accumulated in arrays that are indexed by the IDs of
+     * the indexed records and reused for all probe records of the worker. An
+     * entry belongs to the current probe record if its stamp is the current
+     * one, so the arrays never need to be cleared.
+     */
+    private static class Worker implements MapperExecutor.ChunkWorker {
+	private final Records probe;
+	private final Records indexed;
+	private final int mode;
+	private final IStringMeasure measure;
+	private final double threshold;
+	private final int[] stamps;
+	private final int[] overlaps;
+	private final int[] alphas;
+	private final int[] candidates;
+	private int stamp = 0;
+
+	Worker(Records probe, Records indexed, int mode, IStringMeasure measure, double threshold) {
+	    this.probe = probe;
+	    this.indexed = indexed;
+	    this.mode = mode;
+	    this.measure = measure;
+	    this.threshold = threshold;
+	    stamps = new int[indexed.size()];
+	    overlaps = new int[indexed.size()];
+	    alphas = new int[indexed.size()];
+	    candidates = new int[indexed.size()];
+	}
+
+	public void process(int begin, int end, Mapping mapping) {
+	    for (int x = begin; x < end; x++) {
+		verification(x, candidates(x), mapping);
+	    }
 	}
-	for (int i = 0; i < records.length; i++) {
-	    HashMap<Record, CandidateInfo> candidates = new HashMap<Record, CandidateInfo>(); // A
-	    Record currentRec = records[i]; // record x
-	    int tokensNumber = currentRec.tokens.length; // |x|
-
-	    currentRec.prefixLength = measure.getPrefixLength(tokensNumber, threshold);
-	    currentRec.midPrefix = measure.getMidLength(tokensNumber, threshold);
-
-	    for (int j = 0; j < currentRec.tokens.length && j < currentRec.prefixLength; j++) {
-		Integer tokenID = currentRec.tokens[j].id;
-		LinkedList<Position> l = index.get(tokenID);
-		if (l != null) {
-		    Iterator<Position> iter = l.iterator();
-		    while (iter.hasNext()) {
-			Position pos = iter.next();
-			double sizeFilteringThreshold = measure.getSizeFilteringThreshold(tokensNumber, threshold);
-
-			int tokensNumber2 = pos.record.tokens.length; // |y|
-			if (tokensNumber2 >= sizeFilteringThreshold) { // size
-								       // filtering
-								       // on |y|
-			    int alpha = measure.getAlpha(tokensNumber, tokensNumber2, threshold);
-			    int ubound = 1 + Math.min(tokensNumber - j - 1, tokensNumber2 - pos.position - 1);
-
-			    CandidateInfo cf = candidates.get(pos.record);
-			    if (cf == null) {
-				if (ubound >= alpha) {
-				    // differs from paper because count starts
-				    // at 0 not 1
-				    int H_max = tokensNumber + tokensNumber2 - 2 * alpha - j - pos.position;
-				    int H = suffixFilter(currentRec, j + 1, currentRec.tokens.length - 1, pos.record,
-					    pos.position + 1, pos.record.tokens.length - 1, H_max, 1);
-				    if (H <= H_max) {
-					candidates.put(pos.record, new CandidateInfo(1, alpha));
-				    } else {
-					candidates.put(pos.record, new CandidateInfo(Integer.MIN_VALUE, alpha));
-				    }
-				}
+
+	/**
+	 * Collects the candidates of a probe record by prefix, positional and
+	 * suffix filtering.
+	 *
+	 * @return The number of candidates
+	 */
+	private int candidates(int x) {
+	    int[] currentRec = probe.tokens[x]; // record x
+	    int tokensNumber = currentRec.length; // |x|
+	    int prefixLength = probe.prefixLength[x];
+	    // size filtering on |y|
+	    double sizeFilteringThreshold = measure.getSizeFilteringThreshold(tokensNumber, threshold);
+	    int from = indexed.firstOfSize((int) Math.ceil(sizeFilteringThreshold));
+	    int to;
+	    if (mode == SELF) {
+		to = x + 1;
+	    } else if (mode == TARGET_PROBES) {
+		to = indexed.firstOfSize(tokensNumber + 1);
+	    } else {
+		to = indexed.firstOfSize(tokensNumber);
+	    }
+	    if (from >= to) {
+		return 0;
+	    }
+	    stamp++;
+	    int count = 0;
+	    for (int j = 0; j < tokensNumber && j < prefixLength; j++) {
+		int token = currentRec[j];
+		int end = indexed.offsets[token + 1];
+		for (int p = indexed.firstPosting(token, from); p < end; p++) {
+		    int y = indexed.postingRecords[p];
+		    if (y >= to) {
+			break;
+		    }
+		    int position = indexed.postingPositions[p];
+		    int[] record = indexed.tokens[y];
+		    int tokensNumber2 = record.length; // |y|
+		    int alpha = measure.getAlpha(tokensNumber, tokensNumber2, threshold);
+		    int ubound = 1 + Math.min(tokensNumber - j - 1, tokensNumber2 - position - 1);
+		    if (stamps[y] != stamp) {
+			if (ubound >= alpha) {
+			    // differs from paper because count starts
+			    // at 0 not 1
+			    int H_max = tokensNumber + tokensNumber2 - 2 * alpha - j - position;
+			    int H = suffixFilter(currentRec, j + 1, tokensNumber - 1, record, position + 1,
+				    tokensNumber2 - 1, H_max, 1);
+			    stamps[y] = stamp;
+			    overlaps[y] = (H <= H_max) ? 1 : Integer.MIN_VALUE;
+			    alphas[y] = alpha;
+			    candidates[count++] = y;
+			}
+		    } else if (overlaps[y] + ubound >= alpha) {
+			if (overlaps[y] == 0) {
+			    int H_max = tokensNumber + tokensNumber2 - 2 * alpha - j - position;
+			    int H = suffixFilter(currentRec, j + 1, tokensNumber - 1, record, position + 1,
+				    tokensNumber2 - 1, H_max, 1);
+			    if (H <= H_max) {
+				overlaps[y]++; // a++;
 			    } else {
-				if (cf.currentOverlap + ubound >= alpha) {
-				    if (cf.currentOverlap == 0) {
-					int H_max = tokensNumber + tokensNumber2 - 2 * alpha - j - pos.position;
-					int H = suffixFilter(currentRec, j + 1, currentRec.tokens.length - 1,
-						pos.record, pos.position + 1, pos.record.tokens.length - 1, H_max, 1);
-					if (H <= H_max) {
-					    cf.currentOverlap++; // a++;
-					} else {
-					    cf.currentOverlap = Integer.MIN_VALUE;
-					}
-				    } else {
-					cf.currentOverlap++; // a++;
-				    }
-				} else {
-				    cf.currentOverlap = 0; // prune candidate
-				}
+				overlaps[y] = Integer.MIN_VALUE;
 			    }
 			} else {
-			    iter.remove();
+			    overlaps[y]++; // a++;
 			}
-		    }
-
-		    if (j < currentRec.midPrefix) {
-			l.add(new Position(currentRec, j)); // index the current
-							    // prefix
-		    }
-		} else {
-		    if (j < currentRec.midPrefix) {
-			LinkedList<Position> temp = new LinkedList<Position>();
-			temp.add(new Position(currentRec, j));
-			index.put(tokenID, temp);
+		    } else {
+			overlaps[y] = 0; // prune candidate
 		    }
 		}
 	    }
-	    verification(currentRec, candidates);
+	    return count;
 	}
-	// logger.info("Mapping carried out using " + comparisons + "
-	// comparisons.");
-	return mapping;
-    }
 
-    private int verification(Record currentRec, HashMap<Record, CandidateInfo> candidates) {
-	int count = 0;
-	String id1, id2;
-
-	for (@SuppressWarnings("rawtypes")
-	Map.Entry e : candidates.entrySet()) {
-	    CandidateInfo value = (CandidateInfo) e.getValue();
-	    if (value.currentOverlap > 0) {
-		Record key = (Record) e.getKey();
-		int overlap = value.currentOverlap;
-		Token wx = currentRec.tokens[currentRec.prefixLength - 1];
-		// Token wy = key.tokens[key.prefixLength - 1];
-		Token wy = key.tokens[key.midPrefix - 1];
-		int compRes = wx.compareTo(wy);
-		if (compRes < 0) {
-		    int ubound = value.currentOverlap + currentRec.tokens.length - currentRec.prefixLength;
-		    if (ubound >= value.alpha) {
-			overlap += overlap(currentRec, currentRec.prefixLength, key, value.currentOverlap);
+	private void verification(int x, int count, Mapping mapping) {
+	    int[] currentRec = probe.tokens[x];
+	    int prefixLength = probe.prefixLength[x];
+	    for (int c = 0; c < count; c++) {
+		int y = candidates[c];
+		int currentOverlap = overlaps[y];
+		if (currentOverlap <= 0) {
+		    continue;
+		}
+		int[] key = indexed.tokens[y];
+		int midPrefix = indexed.midPrefix[y];
+		int alpha = alphas[y];
+		int overlap = currentOverlap;
+		int wx = currentRec[prefixLength - 1];
+		int wy = key[midPrefix - 1];
+		if (wx < wy) {
+		    int ubound = currentOverlap + currentRec.length - prefixLength;
+		    if (ubound >= alpha) {
+			overlap += overlap(currentRec, prefixLength, key, currentOverlap);
 		    }
-		} else if (compRes > 0) {
-		    int ubound = value.currentOverlap + key.tokens.length
-			    - /*
-			       * key.prefixLength
-			       */ key.midPrefix;
-		    if (ubound >= value.alpha) {
-			overlap += overlap(currentRec, value.currentOverlap, key,
-				/*
-				 * key.prefixLength
-				 */ key.midPrefix);
+		} else if (wx > wy) {
+		    int ubound = currentOverlap + key.length - midPrefix;
+		    if (ubound >= alpha) {
+			overlap += overlap(currentRec, currentOverlap, key, midPrefix);
 		    }
 		} else { // Fehler in Pseudocode; dieser Fall falsch behandelt
 			 // --> Duplikate fehlen!
-		    int ubound = value.currentOverlap + Math.min(currentRec.tokens.length - currentRec.prefixLength,
-			    key.tokens.length - /*
-						 * key.prefixLength
-						 */ key.midPrefix);
-		    if (ubound >= value.alpha) {
-			overlap += overlap(currentRec, currentRec.prefixLength, key,
-				/*
-				 * key.prefixLength
-				 */ key.midPrefix);
+		    int ubound = currentOverlap + Math.min(currentRec.length - prefixLength, key.length - midPrefix);
+		    if (ubound >= alpha) {
+			overlap += overlap(currentRec, prefixLength, key, midPrefix);
 		    }
 		}
-		if (overlap >= value.alpha) {
-		    double similarity = measure.getSimilarity(overlap, currentRec.tokens.length, key.tokens.length);
-		    // use border here instead. faster!
-		    if ((sourceMap.containsKey(currentRec.id) && targetMap.containsKey(key.id))) {
-			id1 = sourceMap.get(currentRec.id);
-			id2 = targetMap.get(key.id);
-			// CORRECT
-			mapping.add(id1, id2, similarity);
-			// mapping.add(id2, id1, similarity);
-		    } else if (targetMap.containsKey(currentRec.id) && sourceMap.containsKey(key.id)) {
-			// get uris for ids
-			{
-			    id1 = sourceMap.get(key.id);
-			    id2 = targetMap.get(currentRec.id);
-
-			    // CORRECT
-			    mapping.add(id1, id2, similarity);
-			    // mapping.add(id2, id1, similarity);
-			}
-			count++;
+		if (overlap >= alpha) {
+		    double similarity = measure.getSimilarity(overlap, currentRec.length, key.length);
+		    if (mode == SOURCE_PROBES) {
+			mapping.add(probe.uris[x], indexed.uris[y], similarity);
+		    } else if (mode == TARGET_PROBES) {
+			mapping.add(indexed.uris[y], probe.uris[x], similarity);
+		    } else {
+			mapping.add(probe.uris[x], indexed.uris[y], similarity);
+			mapping.add(indexed.uris[y], probe.uris[x], similarity);
 		    }
 		}
-		// count++;
 	    }
 	}
-	return count;
     }
 
     /**
@@ -452,12 +591,12 @@ public class PPJoinPlusPlus extends Mapper {
      *            Position des Anfangstokens vom zweiten Datensatz
      * @return Überlappung von x und y
      */
-    public static int overlap(Record x, int beginnX, Record y, int beginnY) {
+    public static int overlap(int[] x, int beginnX, int[] y, int beginnY) {
 	int overlap = 0;
-	for (int i = beginnX; i < x.tokens.length; i++) {
+	for (int i = beginnX; i < x.length; i++) {
 
-	    for (int j = beginnY; j < y.tokens.length; j++) {
-		if (x.tokens[i].id == y.tokens[j].id) {
+	    for (int j = beginnY; j < y.length; j++) {
+		if (x[i] == y[j]) {
 		    overlap++;
 		    beginnY = j + 1;
 		    break;
@@ -467,7 +606,7 @@ public class PPJoinPlusPlus extends Mapper {
 	return overlap;
     }
 
-    private static int suffixFilter(Record x, int xBeginn, int xEnd, Record y, int yBeginn, int yEnd, int H_max,
+    private static int suffixFilter(int[] x, int xBeginn, int xEnd, int[] y, int yBeginn, int yEnd, int H_max,
 	    int depth) {
 	int xSize = xEnd - xBeginn + 1;
 	int ySize = yEnd - yBeginn + 1;
@@ -479,72 +618,67 @@ public class PPJoinPlusPlus extends Mapper {
 	}
 	int mid = yBeginn + (int) Math.ceil(1.0 * ySize / 2) - 1; // index from
 								  // 0 -> -1
-	// int mid = (yBeginn + yEnd) / 2;
-	Token w = y.tokens[mid];
+	int w = y[mid];
 
-	/*
-	 * ---funktioniert nicht immer korrekt
-	 * (java.lang.ArrayIndexOutOfBoundsException bei partition)---
-	 *
-	 * int o = (H_max - Math.abs( xSize - ySize)) / 2; //always divisible
-	 * int ol, or; if( xSize < ySize){ ol = 1; or = 0; }else{ ol = 0; or =
-	 * 1; } PartitionResult pr = partition( x, w, mid - o - Math.abs( xSize
-	 * - ySize) * ol, mid + o + Math.abs( xSize - ySize) * or);
-	 * /*-------------------------------
-	 */
-	PartitionResult pr = partition(x, w, xBeginn, xEnd);
+	int pr = partition(x, w, xBeginn, xEnd);
+	int diff = pr & 1;
+	int l = (pr >> 1) - 1;
+	int r = l + 2 - diff;
 
-	/*
-	 * ---nicht nötig--- if( pr.f == 0){ return H_max + 1; }
-	 * -------------------
-	 */
-	int xlSize = pr.l - xBeginn + 1;
-	int xrSize = xEnd - pr.r + 1;
+	int xlSize = l - xBeginn + 1;
+	int xrSize = xEnd - r + 1;
 	int ylSize = mid - yBeginn;
 	int yrSize = yEnd - mid;
-	int H = Math.abs(xlSize - ylSize) + Math.abs(xrSize - yrSize) + pr.diff;
+	int H = Math.abs(xlSize - ylSize) + Math.abs(xrSize - yrSize) + diff;
 	if (H > H_max) {
 	    return H;
 	} else {
-	    int Hl = suffixFilter(x, xBeginn, pr.l, y, yBeginn, mid - 1, H_max - Math.abs(xrSize - yrSize) - pr.diff,
+	    int Hl = suffixFilter(x, xBeginn, l, y, yBeginn, mid - 1, H_max - Math.abs(xrSize - yrSize) - diff,
 		    depth + 1);
-	    H = Hl + Math.abs(xrSize - yrSize) + pr.diff;
+	    H = Hl + Math.abs(xrSize - yrSize) + diff;
 	    if (H <= H_max) {
-		int Hr = suffixFilter(x, pr.r, xEnd, y, mid + 1, yEnd, H_max - Hl - pr.diff, depth + 1);
-		return Hl + Hr + pr.diff;
+		int Hr = suffixFilter(x, r, xEnd, y, mid + 1, yEnd, H_max - Hl - diff, depth + 1);
+		return Hl + Hr + diff;
 	    } else {
 		return H;
 	    }
 	}
     }
 
-    private static PartitionResult partition(Record s, Token w, int l, int r) {
-	/*
-	 * ---funktioniert nicht immer korrekt--- if( s.tokens[l].compareTo(w) >
-	 * 0 || s.tokens[r].compareTo(w) < 0){ return new PartitionResult( -1,
-	 * -1, 0, 1); } /*------------------------------
-	 */
-
-	if (s.tokens[l].compareTo(w) > 0) {
-	    return new PartitionResult(l - 1, l, 1, 1);
+    /**
+     * Partitions s[l..r] by the token w.
+     *
+     * @return The right bound of the left partition plus one, shifted left
+     *         by one bit, and in the lowest bit a flag indicating whether w
+     *         is not found in s. The left bound of the right partition
+     *         follows, as it is the right bound of the left partition plus
+     *         one, plus two if w is skipped.
+     */
+    private static int partition(int[] s, int w, int l, int r) {
+	if (s[l] > w) {
+	    return partitionResult(l - 1, 1);
 	}
 
-	if (s.tokens[r].compareTo(w) < 0) {
-	    return new PartitionResult(r, r + 1, 1, 1);
+	if (s[r] < w) {
+	    return partitionResult(r, 1);
 	}
 
 	int p = binarySearch(s, l, r, w);
 
-	if (s.tokens[p].compareTo(w) == 0) {
-	    return new PartitionResult(p - 1, p + 1, 1, 0); // skip the token w
+	if (s[p] == w) {
+	    return partitionResult(p - 1, 0); // skip the token w
 	} else {
-	    return new PartitionResult(p - 1, p, 1, 1);
+	    return partitionResult(p - 1, 1);
 	}
     }
 
+    private static int partitionResult(int l, int diff) {
+	return ((l + 1) << 1) | diff;
+    }
+
     /**
      * Binary search for the position of the first token in x that is no smaller
-     * than w in the global ordering within x.tokens[l..r].
+     * than w in the global ordering within x[l..r].
      *
      * @param x
      *            a record
@@ -556,21 +690,20 @@ public class PPJoinPlusPlus extends Mapper {
      *            a token
      * @return the position of the first token in x that is no smaller than w
      */
-    private static int binarySearch(Record x, int l, int r, Token w) {
+    private static int binarySearch(int[] x, int l, int r, int w) {
 	int p = (l + r) / 2;
-	int c = x.tokens[p].compareTo(w);
-	if (c == 0) {
+	if (x[p] == w) {
 	    return (p);
 	}
 
 	if (l == r) {
-	    if (c < 0) {
+	    if (x[p] < w) {
 		return (p + 1);
 	    } else {
 		return p;
 	    }
 	}
-	if (c < 0) {
+	if (x[p] < w) {
 	    if (p < r) {
 		return (binarySearch(x, p + 1, r, w));
 	    } else {
@@ -585,66 +718,6 @@ public class PPJoinPlusPlus extends Mapper {
 	}
     }
 
-    private static Record[] tokenizer(String[] objects) {
-	StoppUhr s = new StoppUhr();
-	s.Starten();
-	HashMap<String, Token> allTokens = new HashMap<String, Token>();
-	Record[] records = new Record[objects.length];
-
-	for (int i = 0; i < objects.length; i++) {
-
-	    StringTokenizer st = new StringTokenizer(objects[i], " .,?!\t");
-	    int tokensNumber = st.countTokens();
-	    Record record = new Record(i, tokensNumber);
-	    // HasTable of tokens in the record <Sting> and their record
-	    // frequency <Integer>
-	    HashMap<String, Integer> recordTokens = new HashMap<String, Integer>();
-
-	    for (int j = 0; j < tokensNumber; j++) {
-		String token = st.nextToken();
-		if (recordTokens.containsKey(token)) {
-		    Integer token_freq = recordTokens.get(token).intValue() + 1;
-		    recordTokens.put(token, token_freq);
-		    if (allTokens.containsKey(token + "." + token_freq)) { // character
-									   // '.'
-									   // is
-									   // not
-									   // allowed
-									   // in
-									   // tokens
-			Token t = allTokens.get(token + "." + token_freq);
-			t.df++;
-			record.tokens[j] = t;
-		    } else {
-			Token t = new Token(allTokens.size(), 1);
-			allTokens.put(token + "." + token_freq, t);
-			record.tokens[j] = t;
-		    }
-		} else {
-		    if (allTokens.containsKey(token)) {
-			Token t = allTokens.get(token);
-			t.df++;
-			recordTokens.put(token, new Integer(1));
-			record.tokens[j] = t;
-		    } else {
-			Token t = new Token(allTokens.size(), 1);
-			allTokens.put(token, t);
-			recordTokens.put(token, new Integer(1));
-			record.tokens[j] = t;
-		    }
-		}
-	    }
-	    records[i] = record;
-	}
-	for (int i = 0; i < records.length; i++) {
-	    Arrays.sort(records[i].tokens);
-	}
-	Arrays.sort(records);
-	s.Stoppen();
-	// logger.info("Tokenizing carried out in " + s.Laufzeit() + "ms.");
-	return records;
-    }
-
     public double getRuntimeApproximation(int sourceSize, int targetSize, double threshold, Language language) {
 	if (language.equals(Language.DE)) {
 	    // error = 667.22
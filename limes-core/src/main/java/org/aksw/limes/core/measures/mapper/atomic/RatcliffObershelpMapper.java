@@ -1,40 +1,35 @@
 package org.aksw.limes.core.measures.mapper.atomic;
 
 import org.aksw.limes.core.io.cache.Cache;
+import org.aksw.limes.core.io.cache.ValueIndex;
 import org.aksw.limes.core.io.mapping.Mapping;
 import org.aksw.limes.core.io.mapping.MemoryMapping;
 import org.aksw.limes.core.measures.mapper.Mapper;
-import org.aksw.limes.core.measures.mapper.atomic.jarowinkler.LengthQuicksort;
-import org.aksw.limes.core.measures.mapper.atomic.jarowinkler.TrieFilter;
+import org.aksw.limes.core.measures.mapper.MapperExecutor;
 import org.aksw.limes.core.measures.measure.string.RatcliffObershelpMeasure;
-import org.apache.commons.lang3.tuple.ImmutableTriple;
-import org.apache.commons.lang3.tuple.MutablePair;
-import org.apache.commons.lang3.tuple.Pair;
 import org.apache.log4j.Logger;
 
 import java.util.*;
-import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
 
+/**
+ * Filters and verifies the pairs of values whose Ratcliff/Obershelp score
+ * reaches the threshold. The score of two strings of lengths a and b that
+ * match m characters is 2m / (a + b), and m is at most the number of
+ * characters the strings have in common, counted with their multiplicity.
+ * Hence, the target values are sorted by length, only the lengths that can
+ * reach the threshold are compared, and the pairs whose common characters
+ * cannot reach the threshold are discarded before the score is computed.
+ * As the measure ignores case, the values are lower cased once. The source
+ * values are compared in parallel.
+ */
 public class RatcliffObershelpMapper extends Mapper {
 
     static Logger logger = Logger.getLogger("LIMES");
 
-    private Map<String, Set<String>> getValueToUriMap(Cache c, String property) {
-	Map<String, Set<String>> result = new HashMap<String, Set<String>>();
-	List<String> uris = c.getAllUris();
-	for (String uri : uris) {
-	    Set<String> values = c.getInstance(uri).getProperty(property);
-	    for (String value : values) {
-		if (!result.containsKey(value)) {
-		    result.put(value, new HashSet<String>());
-		}
-		result.get(value).add(uri);
-	    }
-	}
-	return result;
-    }
+    // below this number of source values per thread, threads do not pay off
+    private static final int MIN_VALUES_PER_THREAD = 100;
+    // number of source values a worker takes at once
+    private static final int CHUNK_SIZE = 16;
 
     /**
      * Computes a mapping between a source and a target.
@@ -56,97 +51,150 @@ public class RatcliffObershelpMapper extends Mapper {
      */
     @Override
     public Mapping getMapping(Cache source, Cache target, String sourceVar, String targetVar, String expression,
-	    double threshold) {
+	    final double threshold) {
 
 	logger.info("Running RatcliffObershelpMapper");
 
-	List<String> listA, listB;
 	List<String> properties = PropertyFetcher.getProperties(expression, threshold);
-	Map<String, Set<String>> sourceMap = getValueToUriMap(source, properties.get(0));
-	Map<String, Set<String>> targetMap = getValueToUriMap(target, properties.get(1));
-	listA = new ArrayList<>(sourceMap.keySet());
-	listB = new ArrayList<>(targetMap.keySet());
-	RatcliffObershelpMeasure metric = new RatcliffObershelpMeasure();
-
-	ConcurrentHashMap<String, Map<String, Double>> similarityBook;
-
-	similarityBook = new ConcurrentHashMap<>(listA.size(), 1.0f);
-
-	List<String> red, blue;
-	red = listA;
-	blue = listB;
-	LengthQuicksort.sort(red);
-	LengthQuicksort.sort(blue);
-	// red is the list with the longest string
-	if (red.get(red.size() - 1).length() < blue.get(blue.size() - 1).length()) {
-	    List<String> temp = red;
-	    red = blue;
-	    blue = temp;
+	ValueIndex sourceIndex = ValueIndex.get(source, properties.get(0));
+	ValueIndex targetIndex = ValueIndex.get(target, properties.get(1));
+	if (sourceIndex.size() == 0 || targetIndex.size() == 0) {
+	    return new MemoryMapping();
 	}
+	final Values sourceValues = new Values(sourceIndex);
+	final Values targetValues = new Values(targetIndex);
+
+	return MapperExecutor.processChunks(sourceValues.size(), MIN_VALUES_PER_THREAD, CHUNK_SIZE,
+		new MapperExecutor.ChunkWorkerFactory() {
+		    public MapperExecutor.ChunkWorker newWorker() {
+			return new Worker(sourceValues, targetValues, threshold);
+		    }
+		}, new MemoryMapping());
+    }
 
-	List<Pair<List<String>, List<String>>> tempPairs = new LinkedList<>();
-	// generate length filtered partitions
-	if (metric.lengthUpperBound(1, threshold) != -1) {
-	    List<ImmutableTriple<Integer, Integer, Integer>> sliceBoundaries = metric
-		    .getPartitionBounds(blue.get(blue.size() - 1).length(), threshold);
-	    for (ImmutableTriple<Integer, Integer, Integer> sliceBoundary : sliceBoundaries) {
-		MutablePair<List<String>, List<String>> m = new MutablePair<>();
-		m.setLeft(new LinkedList<String>());
-		m.setRight(new LinkedList<String>());
-		for (String s : red)
-		    if (s.length() >= sliceBoundary.getMiddle() && s.length() <= sliceBoundary.getRight())
-			m.getLeft().add(s);
-		    else if (s.length() > sliceBoundary.getRight())
-			break;
-		for (String s : blue)
-		    if (s.length() == sliceBoundary.getLeft())
-			m.getRight().add(s);
-		    else if (s.length() > sliceBoundary.getLeft())
-			break;
-		if (m.getRight().size() > 0 && m.getLeft().size() > 0)
-		    tempPairs.add(m);
+    /**
+     * Lower cased values of an index, sorted by length.
+     */
+    private static class Values {
+	private final ValueIndex index;
+	// value IDs of the index, in the order of the lengths
+	private final int[] ids;
+	private final char[][] chars;
+	// lengthStart[l] is the position of the first value of at least length l
+	private final int[] lengthStart;
+
+	Values(ValueIndex index) {
+	    this.index = index;
+	    int n = index.size();
+	    char[][] lowerCase = new char[n][];
+	    int maxLength = 0;
+	    for (int id = 0; id < n; id++) {
+		lowerCase[id] = index.getValue(id).toLowerCase().toCharArray();
+		maxLength = Math.max(maxLength, lowerCase[id].length);
+	    }
+	    // counting sort by length
+	    lengthStart = new int[maxLength + 2];
+	    for (char[] value : lowerCase) {
+		lengthStart[value.length + 1]++;
+	    }
+	    for (int l = 1; l < lengthStart.length; l++) {
+		lengthStart[l] += lengthStart[l - 1];
+	    }
+	    int[] fill = Arrays.copyOf(lengthStart, lengthStart.length);
+	    ids = new int[n];
+	    chars = new char[n][];
+	    for (int id = 0; id < n; id++) {
+		int position = fill[lowerCase[id].length]++;
+		ids[position] = id;
+		chars[position] = lowerCase[id];
 	    }
-	} else {
-	    MutablePair<List<String>, List<String>> m = new MutablePair<>();
-	    m.setLeft(red);
-	    m.setRight(blue);
-	    tempPairs.add(m);
 	}
 
-	int poolSize = Runtime.getRuntime().availableProcessors();
-	poolSize = poolSize > tempPairs.size() ? tempPairs.size() : poolSize;
-
-	logger.info("Partitioned into " + String.valueOf(tempPairs.size()) + " sets.");
-	logger.info("Initializing Threadpool for " + String.valueOf(Runtime.getRuntime().availableProcessors())
-		+ " threads.");
-
-	// create thread pool, one thread per partition
-	ExecutorService executor = Executors.newFixedThreadPool(poolSize);
-	// executor = Executors.newFixedThreadPool(1);
-	for (Pair<List<String>, List<String>> tempPair : tempPairs) {
-	    Runnable worker = new TrieFilter(tempPair, similarityBook, new RatcliffObershelpMeasure(), threshold);
-	    executor.execute(worker);
+	int size() {
+	    return ids.length;
 	}
-	executor.shutdown();
-	while (!executor.isTerminated()) {
-	    try {
-		Thread.sleep(500);
-	    } catch (InterruptedException e) {
-		e.printStackTrace();
+
+	/**
+	 * @return The position of the first value of at least the length
+	 */
+	int firstOfLength(int length) {
+	    if (length <= 0) {
+		return 0;
 	    }
+	    return (length < lengthStart.length) ? lengthStart[length] : ids.length;
 	}
-	logger.info("Similarity Book has " + String.valueOf(similarityBook.size()) + " entries.");
-	Mapping result = new MemoryMapping();
-	for (String s : similarityBook.keySet()) {
-	    for (String t : similarityBook.get(s).keySet()) {
-		for (String sourceUri : sourceMap.get(s)) {
-		    for (String targetUri : targetMap.get(t)) {
-			result.add(sourceUri, targetUri, similarityBook.get(s).get(t));
+    }
+
+    /**
+     * Compares chunks of the source values with the target values of the
+     * lengths that can reach the threshold.
+     */
+    private static class Worker implements MapperExecutor.ChunkWorker {
+	private final Values sourceValues;
+	private final Values targetValues;
+	private final double threshold;
+	private final RatcliffObershelpMeasure measure = new RatcliffObershelpMeasure();
+	// character counts of the current source value
+	private final int[] counts = new int[Character.MAX_VALUE + 1];
+	private char[] used = new char[0];
+
+	Worker(Values sourceValues, Values targetValues, double threshold) {
+	    this.sourceValues = sourceValues;
+	    this.targetValues = targetValues;
+	    this.threshold = threshold;
+	}
+
+	public void process(int begin, int end, Mapping result) {
+	    ValueIndex sourceIndex = sourceValues.index;
+	    ValueIndex targetIndex = targetValues.index;
+	    for (int s = begin; s < end; s++) {
+		char[] a = sourceValues.chars[s];
+		for (char c : a) {
+		    counts[c]++;
+		}
+		int from = 0;
+		int to = targetValues.size();
+		if (threshold > 0) {
+		    // 2 min(a, b) / (a + b) >= threshold
+		    from = targetValues.firstOfLength((int) Math.ceil(threshold / (2 - threshold) * a.length - 1e-9));
+		    to = targetValues.firstOfLength((int) Math.min(
+			    Math.floor((2 - threshold) / threshold * a.length + 1e-9), Integer.MAX_VALUE - 1) + 1);
+		}
+		for (int t = from; t < to; t++) {
+		    char[] b = targetValues.chars[t];
+		    // characters in common, the counts are restored afterwards
+		    if (used.length < b.length) {
+			used = new char[b.length];
+		    }
+		    int common = 0;
+		    for (char c : b) {
+			if (counts[c] > 0) {
+			    counts[c]--;
+			    used[common++] = c;
+			}
+		    }
+		    for (int i = 0; i < common; i++) {
+			counts[used[i]]++;
 		    }
+		    if (2d * common < threshold * (a.length + b.length) - 1e-9) {
+			continue;
+		    }
+		    double sim = measure.proximity(a, b);
+		    if (sim >= threshold) {
+			int x = sourceValues.ids[s];
+			int y = targetValues.ids[t];
+			for (int i = 0; i < sourceIndex.getUriCount(x); i++) {
+			    for (int j = 0; j < targetIndex.getUriCount(y); j++) {
+				result.add(sourceIndex.getUri(x, i), targetIndex.getUri(y, j), sim);
+			    }
+			}
+		    }
+		}
+		for (char c : a) {
+		    counts[c]--;
 		}
 	    }
 	}
-	return result;
     }
 
     @Override
@@ -8,12 +8,28 @@ import org.aksw.limes.core.io.cache.Cache;
 import org.aksw.limes.core.io.mapping.Mapping;
 import org.aksw.limes.core.measures.mapper.Mapper;
 import org.aksw.limes.core.measures.mapper.MappingOperations;
+import org.aksw.limes.core.measures.mapper.atomic.hausdorff.SpatialJoin;
 
 /**
  *
  * @author ngonga
  */
 public class SymmetricHausdorffMapper extends Mapper {
+
+    SpatialJoin.Mode joinMode = null;
+
+    /**
+     * Sets the blocking of the polygons, see
+     * {@link OrchidMapper#setJoinMode(SpatialJoin.Mode)}.
+     *
+     * @param joinMode
+     *            Squares or R-tree, null to use the blocking of the
+     *            expression
+     */
+    public void setJoinMode(SpatialJoin.Mode joinMode) {
+	this.joinMode = joinMode;
+    }
+
     /**
      * Computes a mapping between a source and a target.
      *
@@ -35,6 +51,7 @@ public class SymmetricHausdorffMapper extends Mapper {
     public Mapping getMapping(Cache source, Cache target, String sourceVar, String targetVar, String expression,
 	    double threshold) {
 	OrchidMapper hm = new OrchidMapper();
+	hm.setJoinMode(joinMode);
 	Mapping m1 = hm.getMapping(source, target, sourceVar, targetVar, expression, threshold);
 	Mapping m2 = hm.getMapping(target, source, targetVar, sourceVar, expression, threshold);
 	m2 = m2.reverseSourceTarget();
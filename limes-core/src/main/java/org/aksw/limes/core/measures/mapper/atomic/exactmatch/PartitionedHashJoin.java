@@ -0,0 +1,371 @@
+package org.aksw.limes.core.measures.mapper.atomic.exactmatch;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.concurrent.Callable;
+
+import org.aksw.limes.core.io.mapping.Mapping;
+import org.aksw.limes.core.io.mapping.MemoryMapping;
+import org.aksw.limes.core.measures.mapper.MapperExecutor;
+import org.apache.log4j.Logger;
+
+/**
+ * Hash join of (key, URI) entries of a source and a target. The entries of
+ * both sides are split into hash partitions by key. Each partition builds a
+ * hash table of its smaller side and probes it with the other side.
+ *
+ * The number of entries held in memory is bounded by a budget. When the
+ * budget is exceeded, the entries of the largest partition are appended to
+ * temporary files. The partitions that were never spilled are joined first,
+ * in parallel, see {@link MapperExecutor}, as their entries are in memory
+ * anyway. Then the spilled partitions are joined one after the other: the
+ * hash table is built from at most budget entries of the smaller side at a
+ * time, and the other side is read once per such block. Thus, apart from
+ * the resulting mapping, no more entries than the budget are held in memory.
+ * The temporary files are deleted after the join. A join is meant to be used
+ * once.
+ */
+public class PartitionedHashJoin {
+
+    static Logger logger = Logger.getLogger(PartitionedHashJoin.class.getName());
+
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+    private static final int SOURCE = 0;
+    private static final int TARGET = 1;
+
+    private final Partition[] partitions;
+    private final long budget;
+    private final File spillDirectory;
+    // number of entries in memory
+    private long buffered = 0;
+
+    /**
+     * @param partitions
+     *            Number of hash partitions
+     * @param budget
+     *            Maximal number of entries held in memory
+     * @param spillDirectory
+     *            Directory of the temporary files, null for the default
+     *            temporary directory
+     */
+    public PartitionedHashJoin(int partitions, long budget, File spillDirectory) {
+	this.partitions = new Partition[Math.max(1, partitions)];
+	for (int i = 0; i < this.partitions.length; i++) {
+	    this.partitions[i] = new Partition();
+	}
+	this.budget = Math.max(1, budget);
+	this.spillDirectory = spillDirectory;
+    }
+
+    /**
+     * @param key
+     *            Join key
+     * @param uri
+     *            Source URI with the key
+     */
+    public void addSource(String key, String uri) {
+	add(SOURCE, key, uri);
+    }
+
+    /**
+     * @param key
+     *            Join key
+     * @param uri
+     *            Target URI with the key
+     */
+    public void addTarget(String key, String uri) {
+	add(TARGET, key, uri);
+    }
+
+    private void add(int side, String key, String uri) {
+	int h = key.hashCode();
+	h ^= (h >>> 16);
+	partitions[(h & 0x7fffffff) % partitions.length].sides[side].add(key, uri);
+	if (++buffered > budget) {
+	    spillLargest();
+	}
+    }
+
+    private void spillLargest() {
+	Partition largest = partitions[0];
+	for (Partition partition : partitions) {
+	    if (partition.buffered() > largest.buffered()) {
+		largest = partition;
+	    }
+	}
+	try {
+	    buffered -= largest.sides[SOURCE].spill() + largest.sides[TARGET].spill();
+	} catch (IOException e) {
+	    throw new RuntimeException("Could not spill hash partition", e);
+	}
+    }
+
+    /**
+     * Joins the partitions and deletes the temporary files.
+     *
+     * @return Mapping with similarity 1 between the source and the target
+     *         URIs with the same key
+     */
+    public Mapping join() {
+	List<Callable<Mapping>> tasks = new ArrayList<Callable<Mapping>>();
+	List<Partition> spilled = new ArrayList<Partition>();
+	for (final Partition partition : partitions) {
+	    if (partition.sides[SOURCE].size() == 0 || partition.sides[TARGET].size() == 0) {
+		continue;
+	    }
+	    if (partition.isSpilled()) {
+		spilled.add(partition);
+	    } else {
+		tasks.add(new Callable<Mapping>() {
+		    public Mapping call() throws IOException {
+			Mapping result = new MemoryMapping();
+			partition.join(Long.MAX_VALUE, result);
+			return result;
+		    }
+		});
+	    }
+	}
+	try {
+	    List<Mapping> results = MapperExecutor.invokeAll(tasks);
+	    // merge into the result of the first partition
+	    Mapping result = results.isEmpty() ? new MemoryMapping() : results.get(0);
+	    for (Mapping m : results.subList(Math.min(1, results.size()), results.size())) {
+		for (String s : m.getMap().keySet()) {
+		    for (String t : m.getMap().get(s).keySet()) {
+			result.add(s, t, m.getConfidence(s, t));
+		    }
+		}
+	    }
+	    // release the entries of the joined partitions before the spilled
+	    // ones are read back
+	    for (Partition partition : partitions) {
+		if (!partition.isSpilled()) {
+		    partition.sides[SOURCE].delete();
+		    partition.sides[TARGET].delete();
+		}
+	    }
+	    for (Partition partition : spilled) {
+		// spill the rest of the partition, so that a block of the build
+		// side can use the whole budget
+		partition.sides[SOURCE].spill();
+		partition.sides[TARGET].spill();
+		partition.join(budget, result);
+		partition.sides[SOURCE].delete();
+		partition.sides[TARGET].delete();
+	    }
+	    return result;
+	} catch (IOException e) {
+	    throw new RuntimeException("Could not read spilled hash partition", e);
+	} finally {
+	    for (Partition partition : partitions) {
+		partition.sides[SOURCE].delete();
+		partition.sides[TARGET].delete();
+	    }
+	    buffered = 0;
+	}
+    }
+
+    /**
+     * Source and target entries of one hash partition.
+     */
+    private class Partition {
+	final Side[] sides = { new Side(), new Side() };
+
+	int buffered() {
+	    return sides[SOURCE].buffered + sides[TARGET].buffered;
+	}
+
+	boolean isSpilled() {
+	    return sides[SOURCE].spilled > 0 || sides[TARGET].spilled > 0;
+	}
+
+	/**
+	 * Joins the sides of the partition into result. The hash table is built
+	 * from blocks of at most blockSize entries of the smaller side, and the
+	 * other side is probed once per block.
+	 */
+	void join(long blockSize, Mapping result) throws IOException {
+	    Side source = sides[SOURCE];
+	    Side target = sides[TARGET];
+	    boolean buildSource = source.size() <= target.size();
+	    Side build = buildSource ? source : target;
+	    Side probe = buildSource ? target : source;
+	    HashMap<String, List<String>> table = new HashMap<String, List<String>>();
+	    try (Entries buildEntries = build.entries()) {
+		boolean more = buildEntries.next();
+		while (more) {
+		    long size = 0;
+		    do {
+			List<String> uris = table.get(buildEntries.key);
+			if (uris == null) {
+			    uris = new ArrayList<String>(1);
+			    table.put(buildEntries.key, uris);
+			}
+			uris.add(buildEntries.uri);
+			more = buildEntries.next();
+		    } while (more && ++size < blockSize);
+		    try (Entries probeEntries = probe.entries()) {
+			while (probeEntries.next()) {
+			    List<String> uris = table.get(probeEntries.key);
+			    if (uris != null) {
+				for (String uri : uris) {
+				    if (buildSource) {
+					result.add(uri, probeEntries.uri, 1d);
+				    } else {
+					result.add(probeEntries.uri, uri, 1d);
+				    }
+				}
+			    }
+			}
+		    }
+		    table.clear();
+		}
+	    }
+	}
+    }
+
+    /**
+     * Entries of one side of a partition, in memory and in a temporary file.
+     */
+    private class Side {
+	String[] keys = new String[16];
+	String[] uris = new String[16];
+	int buffered = 0;
+	File file;
+	DataOutputStream out;
+	int spilled = 0;
+
+	int size() {
+	    return buffered + spilled;
+	}
+
+	void add(String key, String uri) {
+	    if (buffered == keys.length) {
+		keys = Arrays.copyOf(keys, buffered * 2);
+		uris = Arrays.copyOf(uris, buffered * 2);
+	    }
+	    keys[buffered] = key;
+	    uris[buffered++] = uri;
+	}
+
+	/**
+	 * Appends the entries in memory to the temporary file.
+	 *
+	 * @return The number of entries that were written
+	 */
+	int spill() throws IOException {
+	    int count = buffered;
+	    if (count == 0) {
+		return 0;
+	    }
+	    if (out == null) {
+		file = File.createTempFile("limes-join", ".part", spillDirectory);
+		file.deleteOnExit();
+		out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file), 1 << 16));
+	    }
+	    for (int i = 0; i < count; i++) {
+		writeString(keys[i]);
+		writeString(uris[i]);
+	    }
+	    spilled += count;
+	    keys = new String[16];
+	    uris = new String[16];
+	    buffered = 0;
+	    logger.debug("Spilled " + count + " entries to " + file);
+	    return count;
+	}
+
+	private void writeString(String s) throws IOException {
+	    byte[] bytes = s.getBytes(UTF8);
+	    out.writeInt(bytes.length);
+	    out.write(bytes);
+	}
+
+	Entries entries() throws IOException {
+	    if (out != null) {
+		out.close();
+		out = null;
+	    }
+	    return new Entries(this);
+	}
+
+	void delete() {
+	    try {
+		if (out != null) {
+		    out.close();
+		    out = null;
+		}
+	    } catch (IOException e) {
+		logger.warn("Could not close " + file);
+	    }
+	    if (file != null && !file.delete()) {
+		logger.warn("Could not delete " + file);
+	    }
+	    file = null;
+	    keys = null;
+	    uris = null;
+	}
+    }
+
+    /**
+     * Iterator over the entries of a side, first the spilled ones.
+     */
+    private static class Entries implements Closeable {
+	private final Side side;
+	private DataInputStream in;
+	private int remaining;
+	private int next = 0;
+	String key;
+	String uri;
+
+	Entries(Side side) throws IOException {
+	    this.side = side;
+	    this.remaining = side.spilled;
+	    if (remaining > 0) {
+		in = new DataInputStream(new BufferedInputStream(new FileInputStream(side.file), 1 << 16));
+	    }
+	}
+
+	boolean next() throws IOException {
+	    if (remaining > 0) {
+		key = readString();
+		uri = readString();
+		if (--remaining == 0) {
+		    close();
+		}
+		return true;
+	    }
+	    if (next < side.buffered) {
+		key = side.keys[next];
+		uri = side.uris[next++];
+		return true;
+	    }
+	    return false;
+	}
+
+	private String readString() throws IOException {
+	    byte[] bytes = new byte[in.readInt()];
+	    in.readFully(bytes);
+	    return new String(bytes, UTF8);
+	}
+
+	public void close() throws IOException {
+	    if (in != null) {
+		in.close();
+		in = null;
+	    }
+	}
+    }
+}
@@ -11,8 +11,9 @@ import org.aksw.limes.core.io.mapping.Mapping;
 import org.aksw.limes.core.io.mapping.MemoryMapping;
 import org.aksw.limes.core.io.parser.Parser;
 import org.aksw.limes.core.measures.mapper.Mapper;
-import org.aksw.limes.core.measures.measure.string.QGramSimilarity;
+import org.aksw.limes.core.measures.mapper.MapperExecutor;
 import org.aksw.limes.core.io.cache.Cache;
+import org.aksw.limes.core.io.cache.ValueIndex;
 import org.apache.log4j.Logger;
 
 /**
@@ -24,60 +25,124 @@ public class FastNGram extends Mapper {
     static Logger logger = Logger.getLogger("LIMES");
     static int q = 3;
 
+    // below this number of source strings per thread, threads do not pay off
+    private static final int MIN_SOURCES_PER_THREAD = 1000;
+    // number of source strings a worker takes at once
+    private static final int CHUNK_SIZE = 256;
+
     public String getName() {
 	return "FastNGram";
     }
 
+    /**
+     * Computes the pairs of source and target strings whose q-gram similarity
+     * is at least threshold. The target strings are indexed by token IDs and
+     * number of tokens, and the source strings are processed in parallel, see
+     * {@link MapperExecutor}.
+     *
+     * @param source
+     *            Source strings
+     * @param target
+     *            Target strings
+     * @param q
+     *            Value of n for n-grams
+     * @param threshold
+     *            Similarity threshold
+     * @return Mapping from source to target strings
+     */
     public static Mapping compute(Set<String> source, Set<String> target, int q, double threshold) {
-	Index index = new Index(q);
-	double kappa = (1 + threshold) / threshold;
-	QGramSimilarity sim = new QGramSimilarity(q);
-	Tokenizer tokenizer = new NGramTokenizer();
-	Map<String, Set<String>> targetTokens = new HashMap<String, Set<String>>();
-	Mapping result = new MemoryMapping();
-	// index target
-	for (String t : target) {
-	    targetTokens.put(t, index.addString(t));
-	}
-	// run similarity computation
-
-	for (String s : source) {
-	    Set<Integer> allSizes = index.getAllSizes();
-	    Set<String> sourceTokens = tokenizer.tokenize(s, q);
-	    double sourceSize = (double) sourceTokens.size();
-	    for (int size = (int) Math.ceil(sourceSize * threshold); size <= (int) Math
-		    .floor(sourceSize / threshold); size++) {
-		if (allSizes.contains(size)) {
-		    // maps tokens to strings
-		    Map<String, Set<String>> stringsOfSize = index.getStrings(size);
-		    Map<String, Integer> countMap = new HashMap<String, Integer>();
-		    for (String token : sourceTokens) {
-			if (stringsOfSize.containsKey(token)) {
-			    // take each string and add it to the count map
-			    Set<String> candidates = stringsOfSize.get(token);
-			    for (String candidate : candidates) {
-				if (!countMap.containsKey(candidate)) {
-				    countMap.put(candidate, 0);
-				}
-				countMap.put(candidate, countMap.get(candidate) + 1);
-			    }
-			}
+	return compute(source, target, q, threshold, MapperExecutor.getParallelism());
+    }
+
+    /**
+     * Same as {@link #compute(Set, Set, int, double)}, with a given number of
+     * threads.
+     *
+     * @param source
+     *            Source strings
+     * @param target
+     *            Target strings
+     * @param q
+     *            Value of n for n-grams
+     * @param threshold
+     *            Similarity threshold
+     * @param threads
+     *            Number of threads
+     * @return Mapping from source to target strings
+     */
+    public static Mapping compute(Set<String> source, Set<String> target, int q, final double threshold,
+	    int threads) {
+	final TokenIndex index = new TokenIndex(target, q);
+	final List<String> sources = new ArrayList<String>(source);
+	return MapperExecutor.processChunks(sources.size(), MIN_SOURCES_PER_THREAD, CHUNK_SIZE,
+		new MapperExecutor.ChunkWorkerFactory() {
+		    public MapperExecutor.ChunkWorker newWorker() {
+			return new Worker(index, sources, threshold);
 		    }
-		    // now apply filtering |X \cap Y| \geq \kappa(|X| + |Y|)
-		    for (String candidate : countMap.keySet()) {
-			double count = (double) countMap.get(candidate);
-			if (kappa * count >= (sourceSize + size)) {
-			    double similarity = sim.getSimilarity(targetTokens.get(candidate), sourceTokens);
-			    if (similarity >= threshold) {
-				result.add(s, candidate, similarity);
-			    }
+		}, new MemoryMapping(), threads);
+    }
+
+    /**
+     * Matches chunks of the source strings against the index. Each worker
+     * has its own counters, which are reset after each source string.
+     */
+    private static class Worker implements MapperExecutor.ChunkWorker {
+	private final TokenIndex index;
+	private final List<String> sources;
+	private final double threshold;
+	private final double kappa;
+	private final int[] counts;
+	private final int[] touched;
+	private int[] tokenIds = new int[16];
+
+	Worker(TokenIndex index, List<String> sources, double threshold) {
+	    this.index = index;
+	    this.sources = sources;
+	    this.threshold = threshold;
+	    this.kappa = (1 + threshold) / threshold;
+	    this.counts = new int[index.size()];
+	    this.touched = new int[index.size()];
+	}
+
+	public void process(int begin, int end, Mapping result) {
+	    for (int i = begin; i < end; i++) {
+		String s = sources.get(i);
+		Set<String> sourceTokens = index.tokenize(s);
+		double sourceSize = (double) sourceTokens.size();
+		int minSize = (int) Math.ceil(sourceSize * threshold);
+		int maxSize = (int) Math.floor(sourceSize / threshold);
+		if (maxSize < minSize) {
+		    continue;
+		}
+		int from = index.firstOfSize(minSize);
+		int to = (maxSize == Integer.MAX_VALUE) ? index.size() : index.firstOfSize(maxSize + 1);
+		if (from >= to) {
+		    continue;
+		}
+		if (tokenIds.length < sourceTokens.size()) {
+		    tokenIds = new int[sourceTokens.size()];
+		}
+		int known = index.lookup(sourceTokens, tokenIds);
+		int touchedCount = 0;
+		for (int k = 0; k < known; k++) {
+		    touchedCount = index.count(tokenIds[k], from, to, counts, touched, touchedCount);
+		}
+		// now apply filtering |X \cap Y| \geq \kappa(|X| + |Y|)
+		for (int k = 0; k < touchedCount; k++) {
+		    int candidate = touched[k];
+		    double count = (double) counts[candidate];
+		    counts[candidate] = 0;
+		    double size = (double) index.getSize(candidate);
+		    if (kappa * count >= (sourceSize + size)) {
+			// same as QGramSimilarity.getSimilarity on the token sets
+			double similarity = count / (size + sourceSize - count);
+			if (similarity >= threshold) {
+			    result.add(s, index.getString(candidate), similarity);
 			}
 		    }
 		}
 	    }
-
 	}
-	return result;
     }
 
     /**
@@ -170,33 +235,8 @@ public class FastNGram extends Mapper {
 	}
 
 	/////////////////// This actually runs the algorithm
-	Map<String, Set<String>> sourceMap = new HashMap<String, Set<String>>();
-	ArrayList<String> sourceUris = source.getAllUris();
-	Map<String, Set<String>> targetMap = new HashMap<String, Set<String>>();
-	ArrayList<String> targetUris = target.getAllUris();
-
-	// index source values
-	for (String s : sourceUris) {
-	    TreeSet<String> values = source.getInstance(s).getProperty(property1);
-	    for (String v : values) {
-		if (!sourceMap.containsKey(v)) {
-		    sourceMap.put(v, new HashSet<String>());
-		}
-		sourceMap.get(v).add(s);
-	    }
-	}
-
-	// index target values
-	// logger.info("Indexing target values");
-	for (String t : targetUris) {
-	    TreeSet<String> values = target.getInstance(t).getProperty(property2);
-	    for (String v : values) {
-		if (!targetMap.containsKey(v)) {
-		    targetMap.put(v, new HashSet<String>());
-		}
-		targetMap.get(v).add(t);
-	    }
-	}
+	Map<String, Set<String>> sourceMap = ValueIndex.get(source, property1).asMap();
+	Map<String, Set<String>> targetMap = ValueIndex.get(target, property2).asMap();
 
 	// run the algorithm
 	// logger.info("Computing mappings");
@@ -0,0 +1,211 @@
+package org.aksw.limes.core.measures.mapper.atomic.fastngram;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Set;
+
+/**
+ * Primitive counterpart of {@link Index} used by {@link FastNGram#compute}.
+ * Tokens are encoded as int IDs, and the strings are numbered by ascending
+ * number of tokens, so that the postings of each token, which are sorted
+ * string IDs, are also partitioned by size. The strings of a size range are
+ * thus a contiguous part of each posting list.
+ *
+ * The index is immutable once built and can be read by several threads.
+ */
+public class TokenIndex {
+
+    private final int q;
+    private final Tokenizer tokenizer = new NGramTokenizer();
+    private final HashMap<String, Integer> tokenIds = new HashMap<String, Integer>();
+    // strings ordered by size
+    private final String[] strings;
+    private final int[] sizes;
+    // sizeStart[s] is the ID of the first string with at least s tokens
+    private final int[] sizeStart;
+    // the postings of token t are postings[offsets[t]] to postings[offsets[t+1]-1]
+    private final int[] offsets;
+    private final int[] postings;
+
+    /**
+     * Tokenizes and indexes the strings
+     *
+     * @param input
+     *            Strings to index
+     * @param q
+     *            Value of n for n-grams
+     */
+    public TokenIndex(Set<String> input, int q) {
+	this.q = q;
+	int n = input.size();
+	String[] raw = new String[n];
+	int[][] rawTokens = new int[n][];
+	int maxSize = 0;
+	int entries = 0;
+	int i = 0;
+	for (String s : input) {
+	    Set<String> tokens = tokenizer.tokenize(s, q);
+	    int[] ids = new int[tokens.size()];
+	    int j = 0;
+	    for (String token : tokens) {
+		Integer id = tokenIds.get(token);
+		if (id == null) {
+		    id = tokenIds.size();
+		    tokenIds.put(token, id);
+		}
+		ids[j++] = id;
+	    }
+	    raw[i] = s;
+	    rawTokens[i++] = ids;
+	    maxSize = Math.max(maxSize, ids.length);
+	    entries += ids.length;
+	}
+	// number the strings by size (counting sort)
+	sizeStart = new int[maxSize + 2];
+	for (int[] ids : rawTokens) {
+	    sizeStart[ids.length + 1]++;
+	}
+	for (int s = 1; s < sizeStart.length; s++) {
+	    sizeStart[s] += sizeStart[s - 1];
+	}
+	int[] next = Arrays.copyOf(sizeStart, sizeStart.length);
+	strings = new String[n];
+	sizes = new int[n];
+	int[][] tokens = new int[n][];
+	for (i = 0; i < n; i++) {
+	    int id = next[rawTokens[i].length]++;
+	    strings[id] = raw[i];
+	    sizes[id] = rawTokens[i].length;
+	    tokens[id] = rawTokens[i];
+	}
+	// postings, sorted by string ID as the strings are added in order
+	int tokenCount = tokenIds.size();
+	offsets = new int[tokenCount + 1];
+	for (int[] ids : tokens) {
+	    for (int t : ids) {
+		offsets[t + 1]++;
+	    }
+	}
+	for (int t = 0; t < tokenCount; t++) {
+	    offsets[t + 1] += offsets[t];
+	}
+	int[] fill = Arrays.copyOf(offsets, tokenCount);
+	postings = new int[entries];
+	for (int id = 0; id < n; id++) {
+	    for (int t : tokens[id]) {
+		postings[fill[t]++] = id;
+	    }
+	}
+    }
+
+    /**
+     * @return The number of indexed strings
+     */
+    public int size() {
+	return strings.length;
+    }
+
+    /**
+     * @param id
+     *            String ID
+     * @return The string with the ID
+     */
+    public String getString(int id) {
+	return strings[id];
+    }
+
+    /**
+     * @param id
+     *            String ID
+     * @return The number of distinct tokens of the string
+     */
+    public int getSize(int id) {
+	return sizes[id];
+    }
+
+    /**
+     * Maps the tokens of a string that is not indexed to token IDs. Tokens
+     * that do not occur in the index are dropped, as no indexed string shares
+     * them.
+     *
+     * @param tokens
+     *            Tokens of the string, see {@link #tokenize(String)}
+     * @param ids
+     *            Receives the IDs of the known tokens, must be able to hold
+     *            all tokens
+     * @return The number of known tokens in ids
+     */
+    public int lookup(Set<String> tokens, int[] ids) {
+	int known = 0;
+	for (String token : tokens) {
+	    Integer id = tokenIds.get(token);
+	    if (id != null) {
+		ids[known++] = id;
+	    }
+	}
+	return known;
+    }
+
+    /**
+     * @param s
+     *            String to tokenize
+     * @return The q-grams of s
+     */
+    public Set<String> tokenize(String s) {
+	return tokenizer.tokenize(s, q);
+    }
+
+    /**
+     * @param size
+     *            Number of tokens
+     * @return The ID of the first string with at least size tokens
+     */
+    public int firstOfSize(int size) {
+	if (size < 0) {
+	    return 0;
+	}
+	return (size < sizeStart.length) ? sizeStart[size] : strings.length;
+    }
+
+    /**
+     * Adds one to the counter of each string in [from, to) that contains the
+     * token.
+     *
+     * @param token
+     *            Token ID
+     * @param from
+     *            First string ID
+     * @param to
+     *            String ID after the last one
+     * @param counts
+     *            Counters, indexed by string ID
+     * @param touched
+     *            Receives the IDs of the strings whose counter was 0
+     * @param touchedCount
+     *            Number of IDs in touched
+     * @return The new number of IDs in touched
+     */
+    public int count(int token, int from, int to, int[] counts, int[] touched, int touchedCount) {
+	int end = offsets[token + 1];
+	// binary search of the first posting >= from
+	int lo = offsets[token], hi = end;
+	while (lo < hi) {
+	    int mid = (lo + hi) >>> 1;
+	    if (postings[mid] < from) {
+		lo = mid + 1;
+	    } else {
+		hi = mid;
+	    }
+	}
+	for (int p = lo; p < end; p++) {
+	    int id = postings[p];
+	    if (id >= to) {
+		break;
+	    }
+	    if (counts[id]++ == 0) {
+		touched[touchedCount++] = id;
+	    }
+	}
+	return touchedCount;
+    }
+}
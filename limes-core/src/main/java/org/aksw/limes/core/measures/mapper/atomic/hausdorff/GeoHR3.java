@@ -4,18 +4,20 @@
  */
 package org.aksw.limes.core.measures.mapper.atomic.hausdorff;
 
-import org.aksw.limes.core.datastrutures.Point;
 import org.aksw.limes.core.io.mapping.Mapping;
 import org.aksw.limes.core.io.mapping.MemoryMapping;
 
 import java.util.*;
 import java.util.logging.Logger;
 
+import org.aksw.limes.core.measures.mapper.MapperExecutor;
 import org.aksw.limes.core.measures.measure.pointsets.IPointsetsMeasure;
 import org.aksw.limes.core.measures.measure.pointsets.SetMeasureFactory;
 import org.aksw.limes.core.measures.measure.pointsets.hausdorff.CentroidIndexedHausdorff;
 import org.aksw.limes.core.measures.measure.pointsets.hausdorff.IndexedHausdorff;
 
+import com.vividsolutions.jts.geom.Envelope;
+
 /**
  * Still need to add tabu list. Basically checks whether two polygons have
  * already been compared and rejected Should also check whether the polygon
@@ -42,6 +44,9 @@ public class GeoHR3 {
     public boolean verbose = false;
     public long indexingTime;
 
+    // below this number of source squares per thread, threads do not pay off
+    private static final int MIN_SQUARES_PER_THREAD = 4;
+
     public GeoHR3(float distanceThreshold, int granularity, SetMeasureFactory.Type hd) {
 	this.angularThreshold = (float) ((distanceThreshold * 180) / (Math.PI * OrthodromicDistance.R));
 	this.distanceThreshold = distanceThreshold;
@@ -68,9 +73,11 @@ public class GeoHR3 {
     public GeoIndex assignSquares(Set<Polygon> input) {
 	GeoIndex index = new GeoIndex();
 	for (Polygon p : input) {
-	    for (Point x : p.points) {
-		int latIndex = (int) Math.floor(x.coordinates.get(0) / delta);
-		int longIndex = (int) Math.floor(x.coordinates.get(1) / delta);
+	    PackedPolygon packed = p.getPacked();
+	    for (int i = 0; i < packed.size(); i++) {
+		int latIndex = (int) Math.floor(packed.latitudes[i] / delta);
+		int longIndex = (int) Math.floor(packed.longitudes[i] / delta);
+
 		if (verbose) {
 		    System.out.println(p.uri + ": (" + latIndex + "," + longIndex + ")");
 		}
@@ -124,17 +131,8 @@ public class GeoHR3 {
 		for (int deltaLong = longMin; deltaLong <= longMax; deltaLong++) {
 		    toCompare.add(Arrays.asList(new Integer[] { realLat, deltaLong }));
 		}
-	    } // if latitude index is negative then take the circle above, i.e.,
-	      // else take the one below. Equivalent to taking the latitude
-	      // circle with the largest radius
-	    else {
-		if (realLat < 0) {
-		    localGranularity = (int) Math
-			    .ceil(granularity / Math.cos(Math.abs(realLat) * delta * Math.PI / 180));
-		} else {
-		    localGranularity = (int) Math
-			    .ceil(granularity / Math.cos((Math.abs(realLat) + 1) * delta * Math.PI / 180));
-		}
+	    } else {
+		localGranularity = getLocalGranularity(realLat);
 
 		// if crossing occurred we need to alter the longIndex
 		if (polarCross < 0) {
@@ -162,48 +160,9 @@ public class GeoHR3 {
 
 	if (HR3) {
 	    Set<List<Integer>> result = new HashSet<List<Integer>>();
-	    double lat1, lat2, long1, long2;
 	    for (List<Integer> candidate : toCompare) {
-		// square is at the north-east of reference square then take
-		// upper corner of reference
-		// and lower left corner of candidate
-		if (latIndex == candidate.get(0) && longIndex == candidate.get(1)) {
-		    result.add(candidate);
-		} else if (latIndex == latMin && candidate.get(0) == latMin
-			|| latIndex == latMax && candidate.get(0) == latMax) {
+		if (isWithinThreshold(latIndex, longIndex, candidate.get(0), candidate.get(1))) {
 		    result.add(candidate);
-		} else {
-		    if (candidate.get(0) > latIndex) {
-			lat1 = latIndex + 1;
-			lat2 = candidate.get(0);
-		    } else if (candidate.get(0) < latIndex) {
-			lat1 = latIndex;
-			lat2 = candidate.get(0) + 1;
-		    } // else they are the same value. No need to alter that
-		    else {
-			lat1 = latIndex;
-			lat2 = candidate.get(0);
-		    }
-		    if (candidate.get(1) > longIndex) {
-			long1 = longIndex + 1;
-			long2 = candidate.get(1);
-		    } else if (candidate.get(1) < longIndex) {
-			long1 = longIndex;
-			long2 = candidate.get(1) + 1;
-		    } else {
-			long1 = longIndex;
-			long2 = candidate.get(1);
-		    }
-
-		    lat1 = lat1 * delta;
-		    lat2 = lat2 * delta;
-		    long1 = long1 * delta;
-		    long2 = long2 * delta;
-
-		    double d = OrthodromicDistance.getDistanceInDegrees(lat1, long1, lat2, long2);
-		    if (d <= distanceThreshold) {
-			result.add(candidate);
-		    }
 		}
 	    }
 	    if (verbose) {
@@ -217,10 +176,128 @@ public class GeoHR3 {
 	return toCompare;
     }
 
+    /**
+     * Returns whether a square is among the squares to compare for a given
+     * index, see {@link #getSquaresToCompare(int, int, GeoIndex)}, without
+     * enumerating them. Runs in O(granularity) also for the squares close to
+     * the poles, which are compared with whole latitude circles.
+     *
+     * @param latIndex
+     *            Latitude index of square for which "neighbors" are required
+     * @param longIndex
+     *            Longitude index
+     * @param candidateLat
+     *            Latitude index of the square to test
+     * @param candidateLong
+     *            Longitude index of the same
+     * @return True if the square is a "neighbor"
+     */
+    public boolean isToCompare(int latIndex, int longIndex, int candidateLat, int candidateLong) {
+	int period = 2 * (longMax + 1);
+	boolean found = false;
+	for (int deltaLat = (-1) * granularity; deltaLat <= granularity && !found; deltaLat++) {
+	    int lat = latIndex + deltaLat;
+	    int realLat = lat;
+	    int lon = longIndex;
+	    // crossing a pole
+	    if (lat > latMax || lat < latMin) {
+		realLat = 2 * ((lat > latMax) ? latMax : latMin) - lat;
+		lon = -1 - longIndex;
+	    }
+	    if (realLat != candidateLat) {
+		continue;
+	    }
+	    if (realLat == latMax || realLat == latMin) {
+		found = candidateLong >= longMin && candidateLong <= longMax;
+		continue;
+	    }
+	    int localGranularity = getLocalGranularity(realLat);
+	    // the longitude index is lon + deltaLong, moved once by a period if
+	    // it crosses the 180° boundary
+	    for (int realLong = candidateLong - period; realLong <= candidateLong + period && !found; realLong += period) {
+		int wrapped = realLong;
+		if (wrapped > longMax) {
+		    wrapped = wrapped - period;
+		} else if (wrapped < (-1) * (longMax + 1)) {
+		    wrapped = period + wrapped;
+		}
+		found = Math.abs(realLong - lon) <= localGranularity && wrapped == candidateLong;
+	    }
+	}
+	return found && (!HR3 || isWithinThreshold(latIndex, longIndex, candidateLat, candidateLong));
+    }
+
+    /**
+     * Returns the number of squares to compare along a latitude circle, which
+     * grows with the latitude as the squares become narrower.
+     */
+    private int getLocalGranularity(int realLat) {
+	// if latitude index is negative then take the circle above, i.e.,
+	// else take the one below. Equivalent to taking the latitude circle
+	// with the largest radius
+	if (realLat < 0) {
+	    return (int) Math.ceil(granularity / Math.cos(Math.abs(realLat) * delta * Math.PI / 180));
+	} else {
+	    return (int) Math.ceil(granularity / Math.cos((Math.abs(realLat) + 1) * delta * Math.PI / 180));
+	}
+    }
+
+    /**
+     * HR3 condition: returns whether the closest corners of two squares are
+     * within the distance threshold.
+     */
+    private boolean isWithinThreshold(int latIndex, int longIndex, int candidateLat, int candidateLong) {
+	double lat1, lat2, long1, long2;
+	// square is at the north-east of reference square then take
+	// upper corner of reference
+	// and lower left corner of candidate
+	if (latIndex == candidateLat && longIndex == candidateLong) {
+	    return true;
+	} else if (latIndex == latMin && candidateLat == latMin || latIndex == latMax && candidateLat == latMax) {
+	    return true;
+	}
+	if (candidateLat > latIndex) {
+	    lat1 = latIndex + 1;
+	    lat2 = candidateLat;
+	} else if (candidateLat < latIndex) {
+	    lat1 = latIndex;
+	    lat2 = candidateLat + 1;
+	} // else they are the same value. No need to alter that
+	else {
+	    lat1 = latIndex;
+	    lat2 = candidateLat;
+	}
+	if (candidateLong > longIndex) {
+	    long1 = longIndex + 1;
+	    long2 = candidateLong;
+	} else if (candidateLong < longIndex) {
+	    long1 = longIndex;
+	    long2 = candidateLong + 1;
+	} else {
+	    long1 = longIndex;
+	    long2 = candidateLong;
+	}
+
+	lat1 = lat1 * delta;
+	lat2 = lat2 * delta;
+	long1 = long1 * delta;
+	long2 = long2 * delta;
+
+	double d = OrthodromicDistance.getDistanceInDegrees(lat1, long1, lat2, long2);
+	return d <= distanceThreshold;
+    }
+
     /**
      * Runs GeoHR3 for source and target dataset. Uses the set SetMeasure
      * implementation. FastHausdorff is used as default
      *
+     * The source squares are compared with their neighboring target squares
+     * in parallel. A pair of polygons can be reached from several source
+     * squares of the source polygon. Instead of recording the compared pairs,
+     * a pair is only compared in the first of these squares in the order of
+     * the squares, so that the workers need no shared state. Their mappings
+     * are merged at the end.
+     *
      * @param sourceData,
      *            Source polygons
      * @param targetData,
@@ -229,10 +306,9 @@ public class GeoHR3 {
      */
     public Mapping run(Set<Polygon> sourceData, Set<Polygon> targetData) {
 	long begin = System.currentTimeMillis();
-	GeoIndex source = assignSquares(sourceData);
-	GeoIndex target = assignSquares(targetData);
+	final GeoIndex source = assignSquares(sourceData);
+	final GeoIndex target = assignSquares(targetData);
 	long end = System.currentTimeMillis();
-	Map<String, Set<String>> computed = new HashMap<String, Set<String>>();
 	indexingTime = end - begin;
 	if (verbose) {
 	    System.out.println("Geo-Indexing took: " + indexingTime + " ms");
@@ -242,9 +318,121 @@ public class GeoHR3 {
 	    System.out.println("Angular Threshold = " + angularThreshold);
 	    System.out.println("Index = " + source);
 	}
-	Mapping m = new MemoryMapping();
+	prepareMeasure(sourceData, targetData);
+	// the source squares in the order in which pairs are assigned to them
+	final List<List<Integer>> squares = new ArrayList<List<Integer>>();
+	final Map<List<Integer>, Integer> order = new HashMap<List<Integer>, Integer>();
+	for (Integer latIndex : source.squares.keySet()) {
+	    for (Integer longIndex : source.squares.get(latIndex).keySet()) {
+		List<Integer> square = Arrays.asList(new Integer[] { latIndex, longIndex });
+		order.put(square, squares.size());
+		squares.add(square);
+	    }
+	}
+	return MapperExecutor.processChunks(squares.size(), MIN_SQUARES_PER_THREAD, 1,
+		new MapperExecutor.ChunkWorkerFactory() {
+		    public MapperExecutor.ChunkWorker newWorker() {
+			return new Worker(source, target, squares, order);
+		    }
+		}, new MemoryMapping());
+    }
+
+    /**
+     * Compares the polygons of the source squares with the polygons of their
+     * neighboring target squares. The workers take the source squares one
+     * after the other.
+     */
+    private class Worker implements MapperExecutor.ChunkWorker {
+	private final GeoIndex source;
+	private final GeoIndex target;
+	private final List<List<Integer>> squares;
+	private final Map<List<Integer>, Integer> order;
+
+	Worker(GeoIndex source, GeoIndex target, List<List<Integer>> squares, Map<List<Integer>, Integer> order) {
+	    this.source = source;
+	    this.target = target;
+	    this.squares = squares;
+	    this.order = order;
+	}
+
+	public void process(int begin, int end, Mapping m) {
+	    double d;
+	    for (int i = begin; i < end; i++) {
+		List<Integer> square = squares.get(i);
+		GeoSquare g1 = source.getSquare(square.get(0), square.get(1));
+		// polygons of the neighboring target squares, each once
+		Set<Polygon> candidates = new LinkedHashSet<Polygon>();
+		for (List<Integer> squareIndex : getSquaresToCompare(square.get(0), square.get(1), target)) {
+		    candidates.addAll(target.getSquare(squareIndex.get(0), squareIndex.get(1)).elements);
+		}
+		for (Polygon a : g1.elements) {
+		    for (Polygon b : candidates) {
+			if (reachedBefore(a, b, i)) {
+			    continue;
+			}
+			d = setMeasure.computeDistance(a, b, distanceThreshold);
+			if (d <= distanceThreshold) {
+			    m.add(a.uri, b.uri, 1 / (1 + d));
+			}
+		    }
+		}
+	    }
+	}
 
-	double d;
+	/**
+	 * @return True if b is reached from a source square of a that precedes
+	 *         the current square, i.e., if the pair is compared there
+	 */
+	private boolean reachedBefore(Polygon a, Polygon b, int current) {
+	    Set<List<Integer>> sourceSquares = source.getIndexes(a);
+	    if (sourceSquares.size() == 1) {
+		return false;
+	    }
+	    Set<List<Integer>> targetSquares = target.getIndexes(b);
+	    for (List<Integer> square : sourceSquares) {
+		if (order.get(square) < current) {
+		    for (List<Integer> targetSquare : targetSquares) {
+			if (isToCompare(square.get(0), square.get(1), targetSquare.get(0), targetSquare.get(1))) {
+			    return true;
+			}
+		    }
+		}
+	    }
+
+	    return false;
+	}
+    }
+
+    /**
+     * Runs GeoHR3 for source and target dataset with the given blocking. With
+     * {@link SpatialJoin.Mode#RTREE}, the polygons are joined on an R-tree of
+     * the target MBBs instead of the squares.
+     *
+     * @param sourceData,
+     *            Source polygons
+     * @param targetData,
+     *            Target polygons
+     * @param mode,
+     *            Blocking of the polygons
+     * @return Mapping of polygons
+     */
+    public Mapping run(Set<Polygon> sourceData, Set<Polygon> targetData, SpatialJoin.Mode mode) {
+	if (mode != SpatialJoin.Mode.RTREE) {
+	    return run(sourceData, targetData);
+	}
+	long begin = System.currentTimeMillis();
+	prepareMeasure(sourceData, targetData);
+	Mapping m = new DistanceJoin().run(sourceData, targetData);
+	if (verbose) {
+	    System.out.println("R-tree join took: " + (System.currentTimeMillis() - begin) + " ms");
+	}
+	return m;
+    }
+
+    /**
+     * Builds the indexes of the indexed set measures
+     */
+    private void prepareMeasure(Set<Polygon> sourceData, Set<Polygon> targetData) {
 	if (setMeasure instanceof CentroidIndexedHausdorff) {
 	    ((CentroidIndexedHausdorff) setMeasure).computeIndexes(sourceData, targetData);
 	} else if (setMeasure instanceof IndexedHausdorff) {
@@ -252,31 +440,62 @@ public class GeoHR3 {
 	    targetIndex.index(targetData);
 	    ((IndexedHausdorff) setMeasure).targetIndex = targetIndex;
 	}
-	for (Integer latIndex : source.squares.keySet()) {
-	    for (Integer longIndex : source.squares.get(latIndex).keySet()) {
-		GeoSquare g1 = source.getSquare(latIndex, longIndex);
-		Set<List<Integer>> squares = getSquaresToCompare(latIndex, longIndex, target);
-		for (List<Integer> squareIndex : squares) {
-		    GeoSquare g2 = target.getSquare(squareIndex.get(0), squareIndex.get(1));
-		    // only run if the hypercube actually exists
-		    for (Polygon a : g1.elements) {
-			for (Polygon b : g2.elements) {
-			    if (!computed.containsKey(a.uri)) {
-				computed.put(a.uri, new HashSet<String>());
-			    }
-			    if (!computed.get(a.uri).contains(b.uri)) {
-				// add subset condition
-				d = setMeasure.computeDistance(a, b, distanceThreshold);
-				if (d <= distanceThreshold) {
-				    m.add(a.uri, b.uri, 1 / (1 + d));
-				}
-			    }
-			    computed.get(a.uri).add(b.uri);
-			}
-		    }
+    }
+
+    /**
+     * Computes the set measure for the pairs of polygons that contain two
+     * points within the distance threshold, which is the case for all pairs
+     * whose distance is below the threshold. The MBB of a source polygon is
+     * hence widened by the threshold before it is intersected with the target
+     * MBBs.
+     */
+    private class DistanceJoin extends SpatialJoin {
+	// threshold in degrees, with a margin of 1% as the great elliptic
+	// distance deviates by less from the orthodromic distance
+	private final double angle = 1.01 * distanceThreshold * 180 / (Math.PI * OrthodromicDistance.R);
+
+	@Override
+	protected Envelope[] getQueryEnvelopes(Polygon polygon) {
+	    Envelope envelope = getEnvelope(polygon);
+	    if (envelope == null) {
+		return new Envelope[0];
+	    }
+	    double minLat = envelope.getMinX() - angle;
+	    double maxLat = envelope.getMaxX() + angle;
+	    // the longitudes of two points at the angular distance d differ by
+	    // at most 2 asin(sin(d/2) / cos(lat)), where lat is the largest
+	    // absolute latitude of both points
+	    double s = 1;
+	    if (minLat > -90 && maxLat < 90) {
+		s = Math.sin(Math.toRadians(angle) / 2) / Math.cos(Math.toRadians(Math.max(-minLat, maxLat)));
+	    }
+	    if (s >= 1) {
+		// close to a pole, all longitudes are within the threshold
+		return new Envelope[] { new Envelope(minLat, maxLat, -180, 180) };
+	    }
+	    double deltaLong = Math.toDegrees(2 * Math.asin(s));
+	    double minLong = envelope.getMinY() - deltaLong;
+	    double maxLong = envelope.getMaxY() + deltaLong;
+	    List<Envelope> envelopes = new ArrayList<Envelope>();
+	    envelopes.add(new Envelope(minLat, maxLat, minLong, maxLong));
+	    // crossing +180° or -180° means continuing at the other side
+	    if (minLong < -180) {
+		envelopes.add(new Envelope(minLat, maxLat, minLong + 360, 180));
+	    }
+	    if (maxLong > 180) {
+		envelopes.add(new Envelope(minLat, maxLat, -180, maxLong - 360));
+	    }
+	    return envelopes.toArray(new Envelope[envelopes.size()]);
+	}
+
+	@Override
+	protected void refine(Polygon a, Collection<Polygon> candidates, Mapping m) {
+	    for (Polygon b : candidates) {
+		double d = setMeasure.computeDistance(a, b, distanceThreshold);
+		if (d <= distanceThreshold) {
+		    m.add(a.uri, b.uri, 1 / (1 + d));
 		}
 	    }
 	}
-	return m;
     }
 }
@@ -68,12 +68,39 @@ public class GreatEllipticDistance {
      * @return Distance between both points
      */
     public static double getDistance(double lat1, double lon1, double lat2, double lon2) {
-	double a = 6378137, b = 6356752.314245, f = 1 / 298.257223563;
-	double L = lon2 - lon1;
+	double f = PackedPolygon.FLATTENING;
 	double U1 = Math.atan((1 - f) * Math.tan(lat1));
 	double U2 = Math.atan((1 - f) * Math.tan(lat2));
-	double sinU1 = Math.sin(U1), cosU1 = Math.cos(U1);
-	double sinU2 = Math.sin(U2), cosU2 = Math.cos(U2);
+	return getDistance(lon1, Math.sin(U1), Math.cos(U1), lon2, Math.sin(U2), Math.cos(U2));
+    }
+
+    /**
+     * Computes the distance between two points of packed polygons, with the
+     * precomputed reduced latitudes.
+     * 
+     * @param x,
+     *            first polygon
+     * @param i,
+     *            index of the point in x
+     * @param y,
+     *            second polygon
+     * @param j,
+     *            index of the point in y
+     * @return Distance between both points
+     */
+    public static double getDistance(PackedPolygon x, int i, PackedPolygon y, int j) {
+	return getDistance(x.longitudeRadians[i], x.sinReducedLatitudes[i], x.cosReducedLatitudes[i],
+		y.longitudeRadians[j], y.sinReducedLatitudes[j], y.cosReducedLatitudes[j]);
+    }
+
+    /**
+     * Computes the distance between two points on earth given the longitudes
+     * in radians and sine and cosine of the reduced latitudes
+     */
+    private static double getDistance(double lon1, double sinU1, double cosU1, double lon2, double sinU2,
+	    double cosU2) {
+	double a = 6378137, b = 6356752.314245, f = PackedPolygon.FLATTENING;
+	double L = lon2 - lon1;
 	double cosSqAlpha;
 	double sinSigma;
 	double cos2SigmaM;
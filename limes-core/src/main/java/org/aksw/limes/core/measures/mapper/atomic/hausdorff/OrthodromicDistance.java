@@ -77,6 +77,31 @@ public class OrthodromicDistance {
 	return R * c;
     }
 
+    /**
+     * Computes the distance between two points of packed polygons, with the
+     * precomputed radians and cosines of their latitudes.
+     * 
+     * @param x,
+     *            first polygon
+     * @param i,
+     *            index of the point in x
+     * @param y,
+     *            second polygon
+     * @param j,
+     *            index of the point in y
+     * @return Distance between both points
+     */
+    public static double getDistance(PackedPolygon x, int i, PackedPolygon y, int j) {
+	double dLat = y.latitudeRadians[j] - x.latitudeRadians[i];
+	double dLon = y.longitudeRadians[j] - x.longitudeRadians[i];
+	double sinLat = Math.sin(dLat / 2);
+	double sinLon = Math.sin(dLon / 2);
+
+	double a = sinLat * sinLat + sinLon * sinLon * x.cosLatitudes[i] * y.cosLatitudes[j];
+	double c = 2 * Math.atan2(Math.sqrt(a), Math.sqrt(1 - a));
+	return R * c;
+    }
+
     // public static Point getMidPoint(Point p, Point q){
     // return getMidPoint("mid_" + p.label + "_" + q.label, p, q);
     // }
@@ -0,0 +1,170 @@
+package org.aksw.limes.core.measures.mapper.atomic.hausdorff;
+
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+import org.aksw.limes.core.datastrutures.Point;
+
+import com.vividsolutions.jts.geom.Coordinate;
+import com.vividsolutions.jts.geom.Geometry;
+import com.vividsolutions.jts.geom.GeometryFactory;
+import com.vividsolutions.jts.io.ParseException;
+
+/**
+ * Points of a polygon as contiguous arrays, so that the distance kernels of
+ * the pointsets measures neither unbox coordinates nor convert them to
+ * radians in their loops. Besides latitude and longitude in degrees and
+ * radians, the terms of the distances that only depend on one point are
+ * precomputed: the cosine of the latitude for the orthodromic distance and
+ * sine and cosine of the reduced latitude for the great elliptic distance.
+ *
+ * A packed polygon is an immutable snapshot of the points of a
+ * {@link Polygon}, see {@link Polygon#getPacked()}. Polygons read by the
+ * {@link WktParser} are created from their packed form; their points are a
+ * read-only view on the arrays whose points are only created when requested.
+ *
+ * @author ngonga
+ */
+public class PackedPolygon {
+
+    // flattening of the WGS-84 ellipsoid, as in GreatEllipticDistance
+    static final double FLATTENING = 1 / 298.257223563;
+    private static final GeometryFactory geometryFactory = new GeometryFactory();
+
+    public final String uri;
+    public final double[] latitudes;
+    public final double[] longitudes;
+    public final double[] latitudeRadians;
+    public final double[] longitudeRadians;
+    public final double[] cosLatitudes;
+    public final double[] sinReducedLatitudes;
+    public final double[] cosReducedLatitudes;
+    // points the arrays were built from, or a view on the arrays
+    final List<Point> points;
+    // JTS polygon of the points, built on the first request
+    private volatile Geometry geometry;
+
+    public PackedPolygon(Polygon polygon) {
+	this(polygon.uri, polygon.points);
+    }
+
+    PackedPolygon(String uri, List<Point> points) {
+	this(uri, points, getCoordinates(points, 0), getCoordinates(points, 1));
+    }
+
+    /**
+     * Packs coordinates that were read without points, e.g., by the
+     * {@link WktParser}. The arrays are taken over, the points are created
+     * lazily, see {@link PointList}.
+     */
+    PackedPolygon(String uri, double[] latitudes, double[] longitudes) {
+	this(uri, null, latitudes, longitudes);
+    }
+
+    private PackedPolygon(String uri, List<Point> points, double[] latitudes, double[] longitudes) {
+	this.uri = uri;
+	int n = latitudes.length;
+	this.latitudes = latitudes;
+	this.longitudes = longitudes;
+	this.points = (points == null) ? new PointList(this) : points;
+	latitudeRadians = new double[n];
+	longitudeRadians = new double[n];
+	cosLatitudes = new double[n];
+	sinReducedLatitudes = new double[n];
+	cosReducedLatitudes = new double[n];
+	for (int i = 0; i < n; i++) {
+	    latitudeRadians[i] = Math.toRadians(latitudes[i]);
+	    longitudeRadians[i] = Math.toRadians(longitudes[i]);
+	    cosLatitudes[i] = Math.cos(latitudeRadians[i]);
+	    double reduced = Math.atan((1 - FLATTENING) * Math.tan(latitudeRadians[i]));
+	    sinReducedLatitudes[i] = Math.sin(reduced);
+	    cosReducedLatitudes[i] = Math.cos(reduced);
+	}
+    }
+
+    private static double[] getCoordinates(List<Point> points, int dimension) {
+	double[] coordinates = new double[points.size()];
+	for (int i = 0; i < coordinates.length; i++) {
+	    coordinates[i] = points.get(i).coordinates.get(dimension);
+	}
+	return coordinates;
+    }
+
+    /**
+     * @return The number of points
+     */
+    public int size() {
+	return latitudes.length;
+    }
+
+    /**
+     * @param i
+     *            Index of a point
+     * @return The i-th point of the polygon
+     */
+    public Point getPoint(int i) {
+	return points.get(i);
+    }
+
+    /**
+     * Returns the points as JTS polygon, with the latitudes as x and the
+     * longitudes as y coordinates. The geometry is built once and shared, so
+     * it must not be modified.
+     *
+     * @return The geometry of the points
+     * @throws ParseException
+     *             if there are no points
+     */
+    public Geometry getGeometry() throws ParseException {
+	Geometry g = geometry;
+	if (g == null) {
+	    if (size() == 0) {
+		throw new ParseException("Polygon " + uri + " has no points");
+	    }
+	    Coordinate[] coordinates = new Coordinate[size()];
+	    for (int i = 0; i < size(); i++) {
+		coordinates[i] = new Coordinate(latitudes[i], longitudes[i]);
+	    }
+	    g = geometryFactory.createPolygon(geometryFactory.createLinearRing(coordinates), null);
+	    geometry = g;
+	}
+	return g;
+    }
+
+    /**
+     * Read-only view on the points of a packed polygon. A point is created
+     * when it is requested for the first time and then kept, so that the
+     * coordinates of polygons whose points are never requested are not boxed.
+     */
+    static class PointList extends AbstractList<Point> {
+
+	private final PackedPolygon polygon;
+	// points created so far, shared by the threads that read the polygon
+	private final AtomicReferenceArray<Point> points;
+
+	PointList(PackedPolygon polygon) {
+	    this.polygon = polygon;
+	    points = new AtomicReferenceArray<Point>(polygon.size());
+	}
+
+	@Override
+	public Point get(int i) {
+	    Point p = points.get(i);
+	    if (p == null) {
+		p = new Point("", Arrays.asList(new Double[] { polygon.latitudes[i], polygon.longitudes[i] }));
+		if (!points.compareAndSet(i, null, p)) {
+		    p = points.get(i);
+		}
+	    }
+	    return p;
+	}
+
+	@Override
+	public int size() {
+	    return points.length();
+	}
+    }
+
+}
@@ -0,0 +1,151 @@
+package org.aksw.limes.core.measures.mapper.atomic.hausdorff;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.WeakHashMap;
+
+import org.aksw.limes.core.io.cache.Cache;
+import org.aksw.limes.core.io.cache.Instance;
+import org.apache.log4j.Logger;
+
+/**
+ * Polygons of the WKT values of one property of a cache, parsed once by a
+ * {@link WktParser} and shared by all mappers that request them, e.g., by
+ * both directions of the symmetric Hausdorff mapper or by the topology
+ * mappers. Like the {@link org.aksw.limes.core.io.cache.ValueIndex}, the
+ * polygons are kept per cache and property and rebuilt if the cache was
+ * changed, see {@link Cache#getModificationCount()}. Changes made directly to
+ * the instances of a memory cache must be announced by calling
+ * {@link #invalidate(Cache)}.
+ *
+ * The returned polygons are shared and must not be modified.
+ */
+public class ParsedPolygons {
+
+    static Logger logger = Logger.getLogger(ParsedPolygons.class.getName());
+
+    // polygons per cache and property, the caches are weakly referenced so
+    // that the registry does not keep them alive
+    private static final Map<Cache, Map<String, ParsedPolygons>> registry = new WeakHashMap<Cache, Map<String, ParsedPolygons>>();
+
+    private final int modifications;
+    private final Set<Polygon> polygons;
+
+    private ParsedPolygons(int modifications, Set<Polygon> polygons) {
+	this.modifications = modifications;
+	this.polygons = Collections.unmodifiableSet(polygons);
+    }
+
+    /**
+     * Returns the polygons of the values of a property of a cache. Each
+     * instance is one polygon with the points of all its values.
+     *
+     * @param cache
+     *            Cache from which the data is to be fetched
+     * @param property
+     *            Property with WKT values
+     * @return Read-only set of polygons, one per instance
+     */
+    public static Set<Polygon> get(Cache cache, String property) {
+	Map<String, ParsedPolygons> parsed;
+	synchronized (registry) {
+	    parsed = registry.get(cache);
+	    if (parsed == null) {
+		parsed = new HashMap<String, ParsedPolygons>();
+		registry.put(cache, parsed);
+	    }
+	}
+	synchronized (parsed) {
+	    ParsedPolygons p = parsed.get(property);
+	    if (p == null || p.modifications != cache.getModificationCount()) {
+		p = build(cache, property);
+		parsed.put(property, p);
+	    }
+	    return p.polygons;
+	}
+    }
+
+    /**
+     * Parses the polygon of one instance, e.g., to compare two instances
+     * without caches.
+     *
+     * @param instance
+     *            Instance with WKT values
+     * @param property
+     *            Property with WKT values
+     * @return Polygon with the points of all values of the property
+     */
+    public static Polygon getPolygon(Instance instance, String property) {
+	WktParser parser = new WktParser();
+	parse(parser, instance, property);
+	return parser.toPolygon(instance.getUri());
+    }
+
+    /**
+     * Drops all polygons of a cache. Must be called after changes to the
+     * instances of the cache that were not made through the cache.
+     *
+     * @param cache
+     *            Changed cache
+     */
+    public static void invalidate(Cache cache) {
+	synchronized (registry) {
+	    registry.remove(cache);
+	}
+    }
+
+    private static ParsedPolygons build(Cache cache, String property) {
+	long begin = System.currentTimeMillis();
+	int modifications = cache.getModificationCount();
+	WktParser parser = new WktParser();
+	Set<Polygon> polygons = new HashSet<Polygon>();
+	int errors = 0;
+	for (Instance instance : cache.getAllInstances()) {
+	    parser.clear();
+	    errors += parse(parser, instance, property);
+	    polygons.add(parser.toPolygon(instance.getUri()));
+	}
+	if (errors > 0) {
+	    logger.warn(errors + " values of " + property + " have malformed coordinates");
+	}
+	logger.info("Parsed " + polygons.size() + " polygons of " + property + " in "
+		+ (System.currentTimeMillis() - begin) + "ms");
+	return new ParsedPolygons(modifications, polygons);
+    }
+
+    /**
+     * Adds the points of the values of an instance to the parser.
+     *
+     * @return The number of values with malformed coordinates
+     */
+    private static int parse(WktParser parser, Instance instance, String property) {
+	TreeSet<String> values = instance.getProperty(property);
+	if (instance.getUri().contains("dbpedia") && !values.isEmpty()) {
+	    // only the first value of DBpedia resources is used
+	    return parse(parser, instance.getUri(), values.first().replace(",", "")) ? 0 : 1;
+	}
+	int errors = 0;
+	for (String value : values) {
+	    if (!parse(parser, instance.getUri(), value)) {
+		errors++;
+	    }
+	}
+	return errors;
+    }
+
+    /**
+     * @return False if the value has malformed coordinates
+     */
+    private static boolean parse(WktParser parser, String uri, String value) {
+	parser.parse(value);
+	if (parser.getError() != null) {
+	    logger.warn("Value of " + uri + ": " + parser.getError());
+	    return false;
+	}
+	return true;
+    }
+}
@@ -11,7 +11,6 @@ import org.aksw.limes.core.datastrutures.Point;
 
 import com.vividsolutions.jts.geom.Geometry;
 import com.vividsolutions.jts.io.ParseException;
-import com.vividsolutions.jts.io.WKTReader;
 
 /**
  *
@@ -22,6 +21,9 @@ public class Polygon {
 
     public List<Point> points;
     public String uri;
+    // packed form of the points, rebuilt when the points were changed by
+    // add, remove or by assigning another list
+    private volatile PackedPolygon packed;
 
     public Polygon(String name) {
 	uri = name;
@@ -38,6 +40,17 @@ public class Polygon {
 	points = new ArrayList<Point>(polygon.points);
     }
 
+    /**
+     * Creates a polygon from its packed form, e.g., from a {@link WktParser}.
+     * The points are a read-only view on the packed coordinates, which is
+     * copied into a list when the polygon is changed by add or remove.
+     */
+    Polygon(PackedPolygon packed) {
+	uri = packed.uri;
+	points = packed.points;
+	this.packed = packed;
+    }
+
     /**
      * Adds a point to the polygon. Also updates the distance list
      *
@@ -45,7 +58,11 @@ public class Polygon {
      *            Point to add
      */
     public void add(Point y) {
+	if (points instanceof PackedPolygon.PointList) {
+	    points = new ArrayList<Point>(points);
+	}
 	points.add(y);
+	packed = null;
     }
 
     /**
@@ -55,7 +72,28 @@ public class Polygon {
      *            Point to remove
      */
     public void remove(Point y) {
+	if (points instanceof PackedPolygon.PointList) {
+	    points = new ArrayList<Point>(points);
+	}
 	((List<Point>) points).remove(y);
+	packed = null;
+    }
+
+    /**
+     * Returns the points of the polygon as arrays. The packed form is built
+     * on the first call and kept until the points change. Changing the
+     * coordinates of a point or setting a point of the list directly is not
+     * noticed.
+     *
+     * @return The packed points
+     */
+    public PackedPolygon getPacked() {
+	PackedPolygon p = packed;
+	if (p == null || p.points != points || p.size() != points.size()) {
+	    p = new PackedPolygon(uri, points);
+	    packed = p;
+	}
+	return p;
     }
 
     /**
@@ -89,25 +127,16 @@ public class Polygon {
     }
 
     /**
-     * Returns a Geometry from the Points of the Polygon
+     * Returns a Geometry from the Points of the Polygon. The geometry is
+     * built once from the packed points, see {@link #getPacked()}, and
+     * shared by all callers, so it must not be modified.
      * 
      * @return Geometry
      * @throws com.vividsolutions.jts.io.ParseException
+     *             if the polygon has no points
      */
     public Geometry getGeometry() throws ParseException {
-	String geometryString = "Polygon ((";
-
-	for (Point p : points) {
-	    geometryString += p.coordinates.get(0);
-	    geometryString += " ";
-	    geometryString += p.coordinates.get(1);
-	    geometryString += ", ";
-	}
-	geometryString = geometryString.substring(0, geometryString.length() - 2);
-	geometryString += "))";
-
-	WKTReader wktReader = new WKTReader();
-	return wktReader.read(geometryString);
+	return getPacked().getGeometry();
     }
 
 }
@@ -4,10 +4,11 @@
  */
 package org.aksw.limes.core.measures.mapper.atomic.hausdorff;
 
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.Set;
-
+import java.util.concurrent.atomic.AtomicLong;
 
 import org.aksw.limes.core.measures.mapper.atomic.hausdorff.OrthodromicDistance;
 import org.aksw.limes.core.measures.mapper.atomic.hausdorff.Polygon;
@@ -15,20 +16,25 @@ import org.aksw.limes.core.datastrutures.Point;
 import org.apache.log4j.Logger;
 
 /**
+ * Index of the distances between the points of polygons. The distances of a
+ * polygon with n points are stored in an array of n(n-1)/2 values, which
+ * holds the distances of the point 0 to the points 1 to n-1, then the
+ * distances of the point 1 to the points 2 to n-1 and so on. The points are
+ * identified by their index in the polygon, so a polygon must not change
+ * after it has been indexed.
  *
  * @author ngonga
  */
 public class PolygonIndex {
 
-    public Map<String, Map<Point, Map<Point, Double>>> distanceIndex;
+    public Map<String, double[]> distanceIndex;
     public Map<String, Polygon> polygonIndex;
-    public int computations;
+    public final AtomicLong computations = new AtomicLong();
     static Logger logger = Logger.getLogger("LIMES");
 
     public PolygonIndex() {
-	distanceIndex = new HashMap<String, Map<Point, Map<Point, Double>>>();
+	distanceIndex = new HashMap<String, double[]>();
 	polygonIndex = new HashMap<String, Polygon>();
-	computations = 0;
     }
     /**
      * String representation of the polygon index
@@ -36,7 +42,14 @@ public class PolygonIndex {
      * @return polygon index, as a string
      */
     public String toString() {
-	return distanceIndex.toString();
+	StringBuilder result = new StringBuilder("{");
+	for (Map.Entry<String, double[]> entry : distanceIndex.entrySet()) {
+	    if (result.length() > 1) {
+		result.append(", ");
+	    }
+	    result.append(entry.getKey()).append('=').append(Arrays.toString(entry.getValue()));
+	}
+	return result.append('}').toString();
     }
 
     /**
@@ -60,23 +73,69 @@ public class PolygonIndex {
      * @return Distances between all points in the polygon
      */
     public void index(Polygon p) {
-	Map<Point, Map<Point, Double>> index = new HashMap<Point, Map<Point, Double>>();
-	Map<Point, Double> distances;
-	for (int i = 0; i < p.points.size(); i++) {
-	    distances = new HashMap<Point, Double>();
-	    for (int j = i + 1; j < p.points.size(); j++) {
-		distances.put(p.points.get(j),
-			OrthodromicDistance.getDistanceInDegrees(p.points.get(i), p.points.get(j)));
-		computations++;
+	PackedPolygon packed = p.getPacked();
+	int n = packed.size();
+	double[] distances = new double[n * (n - 1) / 2];
+	int k = 0;
+	for (int i = 0; i < n; i++) {
+	    for (int j = i + 1; j < n; j++) {
+		distances[k++] = distance(packed, i, packed, j);
+		computations.incrementAndGet();
 	    }
-	    // if (!distances.isEmpty()) {
-	    index.put(p.points.get(i), distances);
-	    // }
 	}
-	distanceIndex.put(p.uri, index);
+	distanceIndex.put(p.uri, distances);
 	polygonIndex.put(p.uri, p);
     }
 
+    /**
+     * Distance used for the points of an indexed polygon
+     *
+     * @param X
+     *            First polygon
+     * @param i
+     *            Index of a point of X
+     * @param Y
+     *            Second polygon
+     * @param j
+     *            Index of a point of Y
+     * @return Distance between the i-th point of X and the j-th point of Y
+     */
+    public double distance(PackedPolygon X, int i, PackedPolygon Y, int j) {
+	return OrthodromicDistance.getDistance(X, i, Y, j);
+    }
+
+    /**
+     * Returns the distance between the points with the indexes i and j of a
+     * polygon. If the polygon is not indexed, then the distance is computed.
+     *
+     * @param p
+     *            Polygon
+     * @param i
+     *            Index of the first point
+     * @param j
+     *            Index of the second point
+     * @return Distance between the points
+     */
+    public double getDistance(Polygon p, int i, int j) {
+	if (i == j) {
+	    return 0f;
+	}
+	PackedPolygon packed = p.getPacked();
+	int n = packed.size();
+	double[] distances = distanceIndex.get(p.uri);
+	if (distances != null && polygonIndex.get(p.uri) == p && distances.length == n * (n - 1) / 2) {
+	    if (i > j) {
+		int k = i;
+		i = j;
+		j = k;
+	    }
+	    // distances of the points 0 to i-1 come first
+	    return distances[i * (2 * n - i - 1) / 2 + (j - i - 1)];
+	}
+	logger.warn(p.uri + "\t Index contains uri = " + polygonIndex.containsKey(p.uri));
+	return OrthodromicDistance.getDistance(packed, i, packed, j);
+    }
+
     /**
      * Returns the distances between two points x and y from the polygon with
      * label uri Returns -1 if nothing is found
@@ -93,28 +152,19 @@ public class PolygonIndex {
 	if (x.equals(y)) {
 	    return 0f;
 	}
-	if (polygonIndex.containsKey(uri)) {
-	    try {
-		if (distanceIndex.get(uri).get(x).containsKey(y)) {
-		    return distanceIndex.get(uri).get(x).get(y);
-		} else {
-		    return distanceIndex.get(uri).get(y).get(x);
-		}
-		// return distanceIndex.get(uri).get(x).get(y);
-	    } catch (Exception e) {
-		logger.warn("Error for uri" + uri + "\t Index contains uri = " + distanceIndex.containsKey(uri)
-			+ "\nx = " + x + "\ty = " + y);
-		return OrthodromicDistance.getDistanceInDegrees(x, y);
+	Polygon p = polygonIndex.get(uri);
+	if (p != null) {
+	    int i = p.points.indexOf(x);
+	    int j = p.points.indexOf(y);
+	    if (i >= 0 && j >= 0) {
+		return getDistance(p, i, j);
 	    }
+	    logger.warn("Error for uri" + uri + "\t Index contains uri = " + distanceIndex.containsKey(uri)
+		    + "\nx = " + x + "\ty = " + y);
 	} else {
 	    logger.warn(uri + "\t Index contains uri = " + polygonIndex.containsKey(uri));
-	    if (distanceIndex.containsKey(uri)) {
-
-		logger.warn(uri + "\t Distance index contains " + x + " = " + distanceIndex.get(uri).containsKey(x));
-		logger.warn(uri + "\t Distance index contains " + x + " = " + distanceIndex.get(uri).containsKey(y));
-	    }
-	    return OrthodromicDistance.getDistanceInDegrees(x, y);
 	}
+	return OrthodromicDistance.getDistanceInDegrees(x, y);
     }
 
 }
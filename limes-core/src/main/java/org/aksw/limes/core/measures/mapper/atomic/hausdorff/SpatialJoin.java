@@ -0,0 +1,205 @@
+package org.aksw.limes.core.measures.mapper.atomic.hausdorff;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.aksw.limes.core.io.mapping.Mapping;
+import org.aksw.limes.core.io.mapping.MemoryMapping;
+import org.aksw.limes.core.measures.mapper.MapperExecutor;
+import org.apache.log4j.Logger;
+
+import com.vividsolutions.jts.geom.Envelope;
+import com.vividsolutions.jts.index.strtree.STRtree;
+
+/**
+ * Spatial join of two sets of polygons on an STR packed R-tree, as an
+ * alternative to the blocking by squares of {@link GeoIndex}. The squares
+ * have a fixed size, so that large polygons are added to many squares and
+ * pairs of polygons that share several squares have to be deduplicated. The
+ * join instead indexes the minimum bounding box (MBB) of each target polygon
+ * once, queries the tree with the MBB of each source polygon and refines the
+ * candidates with the exact predicate. The source polygons are probed in
+ * parallel, the tree is read-only once it is built.
+ *
+ * A link specification selects the R-tree join by appending the suffix
+ * _rtree to the name of a set measure, e.g., hausdorff_rtree(x.geo, y.geo),
+ * see {@link #getMode(String)}. Otherwise, the system property
+ * limes.spatial.join sets the mode.
+ *
+ * The MBBs are computed from the packed coordinates, with the latitude as x
+ * and the longitude as y, as in {@link Polygon#getGeometry()}. Polygons
+ * without points are not joined.
+ */
+public abstract class SpatialJoin {
+
+    /**
+     * Blocking used by the spatial mappers.
+     */
+    public enum Mode {
+	SQUARES, RTREE
+    }
+
+    public static final String MODE_PROPERTY = "limes.spatial.join";
+    public static final String RTREE_SUFFIX = "_rtree";
+    private static final Logger logger = Logger.getLogger(SpatialJoin.class.getName());
+
+    // below this number of source polygons per thread, threads do not pay off
+    private static final int MIN_POLYGONS_PER_THREAD = 10;
+    // number of source polygons a worker takes at once
+    private static final int CHUNK_SIZE = 8;
+
+    // target polygons in the tree
+    protected List<Polygon> indexed;
+
+    /**
+     * @return The mode set by the system property limes.spatial.join, i.e.,
+     *         squares or rtree, {@link Mode#SQUARES} if it is not set
+     */
+    public static Mode getDefaultMode() {
+	String mode = System.getProperty(MODE_PROPERTY);
+	if (mode == null) {
+	    return Mode.SQUARES;
+	}
+	try {
+	    return Mode.valueOf(mode.trim().toUpperCase());
+	} catch (IllegalArgumentException e) {
+	    logger.warn("Unknown spatial join mode " + mode + ", using squares");
+	    return Mode.SQUARES;
+	}
+    }
+
+    /**
+     * Returns the mode selected by the measure of an atomic link
+     * specification, i.e., {@link Mode#RTREE} if the name of the measure
+     * ends with {@link #RTREE_SUFFIX}.
+     *
+     * @param expression
+     *            Measure expression, e.g., hausdorff_rtree(x.geo, y.geo), or
+     *            the name of the measure
+     * @return The mode of the measure, the default mode if the measure does
+     *         not select one
+     */
+    public static Mode getMode(String expression) {
+	int end = expression.indexOf("(");
+	String measure = (end < 0) ? expression : expression.substring(0, end);
+	if (measure.trim().toLowerCase().endsWith(RTREE_SUFFIX)) {
+	    return Mode.RTREE;
+	}
+	return getDefaultMode();
+    }
+
+    /**
+     * @param polygon
+     *            Polygon
+     * @return The MBB of the polygon, null if it has no points
+     */
+    public static Envelope getEnvelope(Polygon polygon) {
+	PackedPolygon packed = polygon.getPacked();
+	if (packed.size() == 0) {
+	    return null;
+	}
+	Envelope envelope = new Envelope();
+	for (int i = 0; i < packed.size(); i++) {
+	    envelope.expandToInclude(packed.latitudes[i], packed.longitudes[i]);
+	}
+	return envelope;
+    }
+
+    /**
+     * Returns the envelopes whose intersecting target MBBs are the candidates
+     * for a source polygon. By default, this is the MBB of the polygon.
+     *
+     * @param polygon
+     *            Source polygon
+     * @return Envelopes to query, none if the polygon is not to be joined
+     */
+    protected Envelope[] getQueryEnvelopes(Polygon polygon) {
+	Envelope envelope = getEnvelope(polygon);
+	return (envelope == null) ? new Envelope[0] : new Envelope[] { envelope };
+    }
+
+    /**
+     * Tests a source polygon against its candidates and adds the pairs that
+     * satisfy the exact predicate to a mapping.
+     *
+     * @param polygon
+     *            Source polygon
+     * @param candidates
+     *            Target polygons whose MBBs intersect the query envelopes of
+     *            the source polygon
+     * @param m
+     *            Mapping of the worker
+     */
+    protected abstract void refine(Polygon polygon, Collection<Polygon> candidates, Mapping m);
+
+    /**
+     * Joins source and target polygons.
+     *
+     * @param sourceData
+     *            Source polygons
+     * @param targetData
+     *            Target polygons
+     * @return Mapping of polygons
+     */
+    public Mapping run(Set<Polygon> sourceData, Set<Polygon> targetData) {
+	final STRtree tree = new STRtree();
+	indexed = new ArrayList<Polygon>(targetData.size());
+	for (Polygon p : targetData) {
+	    Envelope envelope = getEnvelope(p);
+	    if (envelope != null) {
+		tree.insert(envelope, p);
+		indexed.add(p);
+	    }
+	}
+	if (indexed.isEmpty() || sourceData.isEmpty()) {
+	    return new MemoryMapping();
+	}
+	// the tree is built lazily by the first query, which must not happen
+	// in several threads at once
+	tree.build();
+	final Polygon[] probes = sourceData.toArray(new Polygon[sourceData.size()]);
+	return MapperExecutor.processChunks(probes.length, MIN_POLYGONS_PER_THREAD, CHUNK_SIZE,
+		new MapperExecutor.ChunkWorkerFactory() {
+		    public MapperExecutor.ChunkWorker newWorker() {
+			return new Worker(tree, probes);
+		    }
+		}, new MemoryMapping());
+    }
+
+    /**
+     * Probes chunks of the source polygons in the tree.
+     */
+    private class Worker implements MapperExecutor.ChunkWorker {
+	private final STRtree tree;
+	private final Polygon[] probes;
+
+	Worker(STRtree tree, Polygon[] probes) {
+	    this.tree = tree;
+	    this.probes = probes;
+	}
+
+	@SuppressWarnings("unchecked")
+	public void process(int begin, int end, Mapping m) {
+	    for (int i = begin; i < end; i++) {
+		Envelope[] envelopes = getQueryEnvelopes(probes[i]);
+		if (envelopes.length == 0) {
+		    continue;
+		}
+		Collection<Polygon> candidates;
+		if (envelopes.length == 1) {
+		    candidates = tree.query(envelopes[0]);
+		} else {
+		    // a target may intersect several envelopes
+		    candidates = new HashSet<Polygon>();
+		    for (Envelope envelope : envelopes) {
+			candidates.addAll(tree.query(envelope));
+		    }
+		}
+		refine(probes[i], candidates, m);
+	    }
+	}
+    }
+}
@@ -0,0 +1,209 @@
+package org.aksw.limes.core.measures.mapper.atomic.hausdorff;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.aksw.limes.core.datastrutures.Point;
+
+/**
+ * Single pass parser for the coordinates of WKT strings, e.g., POINT,
+ * LINESTRING, POLYGON and their MULTI variants. The type and the nesting of
+ * a geometry are ignored, all coordinates between the first opening and the
+ * last closing parenthesis are read as points of one point set. Within a
+ * coordinate tuple, the numbers are taken as pairs, the first number of a
+ * pair is the first coordinate of the point, i.e., its latitude in
+ * {@link Polygon}.
+ *
+ * The coordinates are parsed into arrays without intermediate strings, and
+ * the points of several values can be collected into one polygon, see
+ * {@link #toPolygon(String)}. A parser is reset by {@link #clear()} and is
+ * not thread-safe. Malformed coordinates are skipped, the last problem of
+ * {@link #parse(String)} is returned by {@link #getError()}.
+ */
+public class WktParser {
+
+    // exact powers of ten, see parseNumber
+    private static final double[] POWERS_OF_TEN = new double[23];
+
+    static {
+	POWERS_OF_TEN[0] = 1;
+	for (int i = 1; i < POWERS_OF_TEN.length; i++) {
+	    POWERS_OF_TEN[i] = POWERS_OF_TEN[i - 1] * 10;
+	}
+    }
+
+    private double[] first = new double[16];
+    private double[] second = new double[16];
+    private int size = 0;
+    private String error;
+
+    /**
+     * Drops the points parsed so far.
+     */
+    public void clear() {
+	size = 0;
+    }
+
+    /**
+     * @return The number of points parsed since the last {@link #clear()}
+     */
+    public int size() {
+	return size;
+    }
+
+    /**
+     * @return The problem of the last call of {@link #parse(String)}, null if
+     *         all coordinates could be read
+     */
+    public String getError() {
+	return error;
+    }
+
+    /**
+     * Adds the points of a WKT string to the points parsed so far.
+     *
+     * @param value
+     *            WKT string
+     * @return The number of points read from the value
+     */
+    public int parse(String value) {
+	error = null;
+	int begin = value.indexOf('(');
+	int end = value.lastIndexOf(')');
+	if (begin < 0 || end < begin) {
+	    if (begin >= 0 || end >= 0) {
+		error = "unbalanced parentheses";
+	    }
+	    return 0;
+	}
+	int before = size;
+	// position of the next number in its tuple, and the first number of
+	// the current pair if it could be read
+	int position = 0;
+	boolean valid = false;
+	double pending = 0;
+	// the last closing parenthesis ends the last tuple and every number
+	int i = begin + 1;
+	while (i <= end) {
+	    char c = value.charAt(i);
+	    if (c == '(' || c == ')' || c == ',') {
+		// end of a tuple
+		if (position % 2 == 1) {
+		    error = "odd number of coordinates before position " + i;
+		}
+		position = 0;
+		i++;
+	    } else if (c <= ' ') {
+		i++;
+	    } else {
+		int start = i;
+		while (!isDelimiter(value.charAt(i))) {
+		    i++;
+		}
+		double number = 0;
+		boolean parsed = true;
+		try {
+		    number = parseNumber(value, start, i);
+		} catch (NumberFormatException e) {
+		    error = "invalid coordinate " + value.substring(start, i);
+		    parsed = false;
+		}
+		if (position % 2 == 0) {
+		    pending = number;
+		    valid = parsed;
+		} else if (valid && parsed) {
+		    add(pending, number);
+		}
+		position++;
+	    }
+	}
+	return size - before;
+    }
+
+    private boolean isDelimiter(char c) {
+	return c <= ' ' || c == ',' || c == '(' || c == ')';
+    }
+
+    private void add(double x, double y) {
+	if (size == first.length) {
+	    first = Arrays.copyOf(first, size * 2);
+	    second = Arrays.copyOf(second, size * 2);
+	}
+	first[size] = x;
+	second[size++] = y;
+    }
+
+    /**
+     * Parses a decimal number. Numbers with up to 15 significant digits and
+     * up to 22 decimals are divided exactly by a power of ten, which gives
+     * the correctly rounded value just like Double.parseDouble. All others
+     * are left to Double.parseDouble.
+     *
+     * @return The number
+     * @throws NumberFormatException
+     *             if the number is malformed
+     */
+    static double parseNumber(String value, int begin, int end) {
+	int i = begin;
+	boolean negative = false;
+	if (i < end && (value.charAt(i) == '-' || value.charAt(i) == '+')) {
+	    negative = value.charAt(i) == '-';
+	    i++;
+	}
+	long mantissa = 0;
+	int digits = 0;
+	int decimals = 0;
+	boolean point = false;
+	boolean fast = false;
+	for (; i < end; i++) {
+	    char c = value.charAt(i);
+	    if (c >= '0' && c <= '9') {
+		if (mantissa > 0 || c != '0') {
+		    digits++;
+		}
+		mantissa = mantissa * 10 + (c - '0');
+		if (point) {
+		    decimals++;
+		}
+		fast = true;
+	    } else if (c == '.' && !point) {
+		point = true;
+	    } else {
+		fast = false;
+		break;
+	    }
+	}
+	if (fast && digits <= 15 && decimals < POWERS_OF_TEN.length) {
+	    double d = mantissa / POWERS_OF_TEN[decimals];
+	    return negative ? -d : d;
+	}
+	return Double.parseDouble(value.substring(begin, end));
+    }
+
+    /**
+     * Creates a point for each coordinate pair. Prefer
+     * {@link #toPolygon(String)}, which creates the points only on request.
+     *
+     * @return The points parsed since the last {@link #clear()}
+     */
+    public List<Point> getPoints() {
+	List<Point> points = new ArrayList<Point>(size);
+	for (int i = 0; i < size; i++) {
+	    points.add(new Point("", Arrays.asList(new Double[] { first[i], second[i] })));
+	}
+	return points;
+    }
+
+    /**
+     * Returns a polygon of the points parsed since the last {@link #clear()},
+     * whose packed form is built from the parsed coordinates.
+     *
+     * @param uri
+     *            URI of the polygon
+     * @return The polygon
+     */
+    public Polygon toPolygon(String uri) {
+	return new Polygon(new PackedPolygon(uri, Arrays.copyOf(first, size), Arrays.copyOf(second, size)));
+    }
+}
@@ -1,28 +1,40 @@
 package org.aksw.limes.core.measures.mapper.atomic.jarowinkler;
 
+import org.aksw.limes.core.io.mapping.Mapping;
+import org.aksw.limes.core.io.mapping.MemoryMapping;
+import org.aksw.limes.core.measures.mapper.MapperExecutor;
 import org.aksw.limes.core.measures.measure.string.TrieFilterableStringMeasure;
+import org.apache.commons.lang3.tuple.ImmutableTriple;
 import org.apache.commons.lang3.tuple.MutablePair;
 import org.apache.commons.lang3.tuple.MutableTriple;
 import org.apache.commons.lang3.tuple.Pair;
+import org.apache.log4j.Logger;
 
 import java.util.*;
+import java.util.concurrent.Callable;
 
-public class TrieFilter implements Runnable {
+/**
+ * Filters and verifies the pairs of one partition of the strings. The
+ * strings of the left list are indexed in a trie, the strings of the right
+ * list are searched in it. The task returns its own map of similarities, the
+ * maps of all partitions are merged by {@link #getMapping}.
+ */
+public class TrieFilter implements Callable<Map<String, Map<String, Double>>> {
+
+    static Logger logger = Logger.getLogger("LIMES");
 
     private double threshold;
     private List<String> listA, listB;
     private List<Pair<List<String>, List<String>>> matchCandidateListPairs;
     private Map<String, Map<String, Double>> tempResult;
-    private final Map<String, Map<String, Double>> result;
     private TrieFilterableStringMeasure metric;
     private TrieNode trieRoot;
     private boolean swapped;
     private int minLenInA, maxLenInA;
 
-    public TrieFilter(Pair<List<String>, List<String>> lists, Map<String, Map<String, Double>> result,
-	    TrieFilterableStringMeasure metric, double threshold) {
+    public TrieFilter(Pair<List<String>, List<String>> lists, TrieFilterableStringMeasure metric,
+	    double threshold) {
 	this.threshold = threshold;
-	this.result = result;
 	this.metric = metric;
 	this.matchCandidateListPairs = new LinkedList<>();
 	this.tempResult = new HashMap<>();
@@ -43,8 +55,106 @@ public class TrieFilter implements Runnable {
 	this.maxLenInA = listA.get(listA.size() - 1).length();
     }
 
+    /**
+     * Matches the values of a source and a target index. The values are
+     * partitioned by length with the bounds of the measure, and the
+     * partitions are filtered and verified in parallel, see
+     * {@link MapperExecutor}. Each task works on its own clone of the
+     * measure.
+     *
+     * @param sourceMap
+     *            Source values and the URIs with these values
+     * @param targetMap
+     *            Target values and the URIs with these values
+     * @param metric
+     *            Measure to compute
+     * @param threshold
+     *            Similarity threshold
+     * @return A mapping between the source and the target URIs
+     */
+    public static Mapping getMapping(Map<String, Set<String>> sourceMap, Map<String, Set<String>> targetMap,
+	    TrieFilterableStringMeasure metric, double threshold) {
+	Mapping result = new MemoryMapping();
+	if (sourceMap.isEmpty() || targetMap.isEmpty()) {
+	    return result;
+	}
+	List<String> red = new ArrayList<>(sourceMap.keySet());
+	List<String> blue = new ArrayList<>(targetMap.keySet());
+	LengthQuicksort.sort(red);
+	LengthQuicksort.sort(blue);
+	// red is the list with the longest string
+	boolean swapped = false;
+	if (red.get(red.size() - 1).length() < blue.get(blue.size() - 1).length()) {
+	    List<String> temp = red;
+	    red = blue;
+	    blue = temp;
+	    swapped = true;
+	}
+
+	List<Pair<List<String>, List<String>>> tempPairs = new LinkedList<>();
+	// generate length filtered partitions
+	if (metric.lengthUpperBound(1, threshold) != -1) {
+	    List<ImmutableTriple<Integer, Integer, Integer>> sliceBoundaries = metric
+		    .getPartitionBounds(blue.get(blue.size() - 1).length(), threshold);
+	    for (ImmutableTriple<Integer, Integer, Integer> sliceBoundary : sliceBoundaries) {
+		MutablePair<List<String>, List<String>> m = new MutablePair<>();
+		m.setLeft(new LinkedList<String>());
+		m.setRight(new LinkedList<String>());
+		for (String s : red)
+		    if (s.length() >= sliceBoundary.getMiddle() && s.length() <= sliceBoundary.getRight())
+			m.getLeft().add(s);
+		    else if (s.length() > sliceBoundary.getRight())
+			break;
+		for (String s : blue)
+		    if (s.length() == sliceBoundary.getLeft())
+			m.getRight().add(s);
+		    else if (s.length() > sliceBoundary.getLeft())
+			break;
+		if (m.getRight().size() > 0 && m.getLeft().size() > 0)
+		    tempPairs.add(m);
+	    }
+	} else {
+	    MutablePair<List<String>, List<String>> m = new MutablePair<>();
+	    m.setLeft(red);
+	    m.setRight(blue);
+	    tempPairs.add(m);
+	}
+
+	logger.info("Partitioned into " + String.valueOf(tempPairs.size()) + " sets.");
+
+	// one task per partition, each with its own result map
+	List<TrieFilter> tasks = new ArrayList<>(tempPairs.size());
+	for (Pair<List<String>, List<String>> tempPair : tempPairs) {
+	    tasks.add(new TrieFilter(tempPair, metric.clone(), threshold));
+	}
+	// merge the partial results, whose keys are the blue strings
+	Map<String, Set<String>> redMap = swapped ? targetMap : sourceMap;
+	Map<String, Set<String>> blueMap = swapped ? sourceMap : targetMap;
+	for (Map<String, Map<String, Double>> similarityBook : MapperExecutor.invokeAll(tasks)) {
+	    for (String s : similarityBook.keySet()) {
+		for (String t : similarityBook.get(s).keySet()) {
+		    double sim = similarityBook.get(s).get(t);
+		    for (String blueUri : blueMap.get(s)) {
+			for (String redUri : redMap.get(t)) {
+			    if (swapped) {
+				result.add(blueUri, redUri, sim);
+			    } else {
+				result.add(redUri, blueUri, sim);
+			    }
+			}
+		    }
+		}
+	    }
+	}
+	return result;
+    }
+
+    /**
+     * @return Map from the strings of the right list to the strings of the
+     *         left list whose similarity is at least the threshold
+     */
     @Override
-    public void run() {
+    public Map<String, Map<String, Double>> call() {
 	// construct trie from red part
 	for (String s : listA) {
 	    trieRoot.addChild(s, s);
@@ -64,16 +174,7 @@ public class TrieFilter implements Runnable {
 	    trieSearch(key, partitions.get(key));
 	}
 	reducePairsToResultMap();
-	// insert results back to mapper
-	synchronized (this.result) {
-	    for (String s : tempResult.keySet()) {
-		if (this.result.containsKey(s)) {
-		    this.result.get(s).putAll(this.tempResult.get(s));
-		} else {
-		    this.result.put(s, this.tempResult.get(s));
-		}
-	    }
-	}
+	return tempResult;
     }
 
     @SuppressWarnings("unchecked")
@@ -89,60 +190,58 @@ public class TrieFilter implements Runnable {
 			similarityTable.put(b, currentSim);
 		}
 		if (similarityTable.size() > 0) {
-		    // noinspection unchecked
-		    tempResult.put(a, (HashMap<String, Double>) (similarityTable.clone()));
+		    // a may be a candidate of several partitions
+		    if (tempResult.containsKey(a)) {
+			tempResult.get(a).putAll(similarityTable);
+		    } else {
+			// noinspection unchecked
+			tempResult.put(a, (HashMap<String, Double>) (similarityTable.clone()));
+		    }
 		}
 	    }
 	}
     }
 
-    @SuppressWarnings("unchecked")
     private void trieSearch(String b, List<String> partition) {
 
 	List<String> matchCandidateList = new LinkedList<>();
 	int bLen = b.length();
-	int matches = 0;
-	Stack<Character> referenceStack = new Stack<>();
-	char[] charArray = b.toCharArray();
-	for (int i = charArray.length - 1; i >= 0; i--) {
-	    char c = charArray[i];
-	    referenceStack.push(c);
-	}
-	Stack<MutableTriple<Stack<Character>, TrieNode, Integer>> searchStack = new Stack<>();
+	// b is sorted, the characters of b that are left to match are
+	// reference[position] to reference[bLen - 1]
+	char[] reference = b.toCharArray();
+	int minMatches = metric.characterMatchLowerBound(bLen, minLenInA, threshold);
+	Stack<MutableTriple<Integer, TrieNode, Integer>> searchStack = new Stack<>();
 	// set inital algorithm stack
-	for (Character key : trieRoot.children.keySet()) {
-	    // noinspection unchecked
-	    searchStack.add(new MutableTriple<>((Stack<Character>) referenceStack.clone(), trieRoot.children.get(key),
-		    matches));
+	for (TrieNode child : trieRoot.children.values()) {
+	    searchStack.push(new MutableTriple<>(0, child, 0));
 	}
 	// until the stack is empty, pop and evaluate
 	while (!searchStack.isEmpty()) {
-	    MutableTriple<Stack<Character>, TrieNode, Integer> current = searchStack.pop();
-	    int maxPossibleMatches = Math.min(current.getLeft().size(), maxLenInA - current.getMiddle().getLevel() + 1)
-		    + current.getRight();
-	    if (maxPossibleMatches >= metric.characterMatchLowerBound(bLen, minLenInA, threshold)) {
-		int currentOrder = current.getLeft().isEmpty() ? -1
-			: new Character(current.getMiddle().key).compareTo(current.getLeft().peek());
-		if (currentOrder <= 0) {
-		    if (currentOrder == 0) {
-			current.getLeft().pop();
-			current.setRight(current.getRight() + 1);
-			if (current.getRight() >= metric.characterMatchLowerBound(bLen, current.getMiddle().getLevel(),
-				threshold) && current.getMiddle().data != null && current.getMiddle().data.size() > 0
-				&& metric.characterFrequencyUpperBound(current.getMiddle().getLevel(), b.length(),
-					current.getRight()) >= threshold) {
-			    matchCandidateList.addAll(current.getMiddle().data);
-			}
-		    }
-		    for (Character key : current.getMiddle().children.keySet()) {
-			// noinspection unchecked
-			searchStack.push(new MutableTriple<>((Stack<Character>) current.getLeft().clone(),
-				current.getMiddle().children.get(key), current.getRight().intValue()));
-		    }
-		} else {
-		    current.getLeft().pop();
-		    searchStack.push(current);
-		}
+	    MutableTriple<Integer, TrieNode, Integer> current = searchStack.pop();
+	    TrieNode node = current.getMiddle();
+	    int position = current.getLeft();
+	    int matches = current.getRight();
+	    // skip the characters of b that are smaller than the key of the node
+	    while (position < bLen && reference[position] < node.key) {
+		position++;
+	    }
+	    int maxPossibleMatches = Math.min(bLen - position, maxLenInA - node.getLevel() + 1) + matches;
+	    if (maxPossibleMatches < minMatches) {
+		continue;
+	    }
+	    if (position < bLen && reference[position] == node.key) {
+		position++;
+		matches++;
+	    }
+	    // the strings of a node are candidates whether or not the last
+	    // character of their path occurs in b
+	    if (node.data != null && node.data.size() > 0
+		    && matches >= metric.characterMatchLowerBound(bLen, node.getLevel(), threshold)
+		    && metric.characterFrequencyUpperBound(node.getLevel(), bLen, matches) >= threshold) {
+		matchCandidateList.addAll(node.data);
+	    }
+	    for (TrieNode child : node.children.values()) {
+		searchStack.push(new MutableTriple<>(position, child, matches));
 	    }
 	}
 	if (matchCandidateList.size() > 0)
@@ -156,6 +255,7 @@ public class TrieFilter implements Runnable {
 	public char key;
 	public TrieNode parent;
 	public HashMap<Character, TrieNode> children;
+	private int level;
 
 	public boolean isRoot() {
 	    return parent == null;
@@ -181,6 +281,7 @@ public class TrieFilter implements Runnable {
 		if (!currentNode.children.containsKey(c)) {
 		    currentNode.children.put(c, new TrieNode(c));
 		    currentNode.children.get(c).parent = currentNode;
+		    currentNode.children.get(c).level = currentNode.level + 1;
 		}
 		currentNode = currentNode.children.get(c);
 	    }
@@ -192,10 +293,7 @@ public class TrieFilter implements Runnable {
 	}
 
 	public int getLevel() {
-	    if (this.isRoot())
-		return 0;
-	    else
-		return parent.getLevel() + 1;
+	    return level;
 	}
 
 	@Override
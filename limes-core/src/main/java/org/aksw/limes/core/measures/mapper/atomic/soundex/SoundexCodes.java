@@ -0,0 +1,215 @@
+package org.aksw.limes.core.measures.mapper.atomic.soundex;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.WeakHashMap;
+
+import org.aksw.limes.core.io.cache.ValueIndex;
+
+/**
+ * Dictionary encoded soundex codes of the values of one column, i.e., of one
+ * {@link ValueIndex}. The distinct codes are numbered, and the value IDs of
+ * each code are a run in a single int array. A table is computed once per
+ * index, see {@link #get(ValueIndex)}, along with the trie of its codes, and
+ * is immutable afterwards. A table does not reference its index, so that the
+ * table is dropped together with the index.
+ */
+public class SoundexCodes {
+
+    public static final int CODE_LENGTH = 6;
+
+    // tables per index, the indexes are weakly referenced so that the
+    // registry does not keep them alive
+    private static final Map<ValueIndex, SoundexCodes> tables = new WeakHashMap<ValueIndex, SoundexCodes>();
+
+    // distinct codes, indexed by code ID
+    private final String[] codes;
+    // the value IDs of code i are values[offsets[i]] to values[offsets[i+1]-1]
+    private final int[] offsets;
+    private final int[] values;
+    private SoundexTrie trie;
+
+    private SoundexCodes(ValueIndex index) {
+	HashMap<String, Integer> codeIds = new HashMap<String, Integer>();
+	String[] codes = new String[16];
+	int[] valueCodes = new int[index.size()];
+	for (int value = 0; value < index.size(); value++) {
+	    String code = getCode(index.getValue(value));
+	    Integer id = codeIds.get(code);
+	    if (id == null) {
+		id = codeIds.size();
+		codeIds.put(code, id);
+		if (id == codes.length) {
+		    codes = Arrays.copyOf(codes, id * 2);
+		}
+		codes[id] = code;
+	    }
+	    valueCodes[value] = id;
+	}
+	int codeCount = codeIds.size();
+	this.codes = Arrays.copyOf(codes, codeCount);
+	// counting sort of the values by code ID
+	offsets = new int[codeCount + 1];
+	for (int code : valueCodes) {
+	    offsets[code + 1]++;
+	}
+	for (int i = 0; i < codeCount; i++) {
+	    offsets[i + 1] += offsets[i];
+	}
+	int[] fill = Arrays.copyOf(offsets, codeCount);
+	values = new int[valueCodes.length];
+	for (int value = 0; value < valueCodes.length; value++) {
+	    values[fill[valueCodes[value]]++] = value;
+	}
+    }
+
+    /**
+     * Returns the code table of the values of an index. The table is
+     * computed on the first request only.
+     *
+     * @param index
+     *            Values to encode
+     * @return The code table
+     */
+    public static SoundexCodes get(ValueIndex index) {
+	synchronized (tables) {
+	    SoundexCodes table = tables.get(index);
+	    if (table != null) {
+		return table;
+	    }
+	}
+	// tables of different indexes are computed in parallel, a table that
+	// is computed twice is simply dropped
+	SoundexCodes table = new SoundexCodes(index);
+	synchronized (tables) {
+	    SoundexCodes other = tables.get(index);
+	    if (other != null) {
+		return other;
+	    }
+	    tables.put(index, table);
+	    return table;
+	}
+    }
+
+    /**
+     * @return The number of distinct codes
+     */
+    public int size() {
+	return codes.length;
+    }
+
+    /**
+     * @param id
+     *            Code ID, between 0 and size() - 1
+     * @return The code with the ID
+     */
+    public String getCode(int id) {
+	return codes[id];
+    }
+
+    /**
+     * @param id
+     *            Code ID
+     * @return The number of values with the code
+     */
+    public int getValueCount(int id) {
+	return offsets[id + 1] - offsets[id];
+    }
+
+    /**
+     * @param id
+     *            Code ID
+     * @param i
+     *            Position, between 0 and getValueCount(id) - 1
+     * @return The ID of the i-th value with the code in the index
+     */
+    public int getValue(int id, int i) {
+	return values[offsets[id] + i];
+    }
+
+    /**
+     * @return The trie of the codes, built on the first call
+     */
+    public synchronized SoundexTrie getTrie() {
+	if (trie == null) {
+	    trie = new SoundexTrie(codes);
+	}
+	return trie;
+    }
+
+    /**
+     * Computes the soundex code of a string. The code consists of the first
+     * consonant of the string and the digits of the following consonants,
+     * padded with zeros to {@link #CODE_LENGTH} characters.
+     *
+     * @param string
+     *            Input string
+     * @return The code of the string
+     */
+    public static String getCode(String string) {
+	char[] in = string.toUpperCase().toCharArray();
+	char[] out = new char[CODE_LENGTH];
+	int i = 0;
+	int j = 0;
+	while (i < in.length && j < CODE_LENGTH) {
+	    if (in[i] != 'A' && in[i] != 'E' && in[i] != 'I' && in[i] != 'O' && in[i] != 'U' && in[i] != 'Y'
+		    && in[i] != 'H' && in[i] != 'W') {
+		// consonants are added to output
+		if (j == 0) {
+		    out[j] = in[i];
+		    j++;
+		} else {
+		    int t = getCode(in[i]);
+		    if (t > 0) {
+			out[j] = (char) ('0' + t);
+			j++;
+		    }
+		}
+		// double consonants are skipped
+		if (i < in.length - 1 && in[i] == in[i + 1])
+		    i++;
+		// double consonants with 'h' or 'w' inbetween are skipped too
+		else if (i < in.length - 2 && in[i] == in[i + 2] && (in[i + 1] == 'H' || in[i + 1] == 'W'))
+		    i += 2;
+	    }
+	    i++;
+	}
+	while (j < CODE_LENGTH) {
+	    out[j] = '0';
+	    j++;
+	}
+	return String.valueOf(out);
+    }
+
+    private static int getCode(char x) {
+	switch (x) {
+	case 'B':
+	case 'F':
+	case 'P':
+	case 'V':
+	    return 1;
+	case 'C':
+	case 'G':
+	case 'J':
+	case 'K':
+	case 'Q':
+	case 'S':
+	case 'X':
+	case 'Z':
+	    return 2;
+	case 'D':
+	case 'T':
+	    return 3;
+	case 'L':
+	    return 4;
+	case 'M':
+	case 'N':
+	    return 5;
+	case 'R':
+	    return 6;
+	default:
+	    return -1;
+	}
+    }
+}
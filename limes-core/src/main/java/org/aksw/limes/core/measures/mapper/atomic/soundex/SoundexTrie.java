@@ -0,0 +1,190 @@
+package org.aksw.limes.core.measures.mapper.atomic.soundex;
+
+import java.util.Arrays;
+import java.util.HashMap;
+
+/**
+ * Trie of soundex codes for the search of all codes within a Hamming
+ * distance. A code is its first character followed by digits from 0 to 6,
+ * so the root has one child per distinct first character, and all other
+ * nodes have an array of 7 children, one per digit. The nodes are stored in
+ * a single int array, and the leaves are the code IDs.
+ *
+ * The trie is immutable and can be searched by several threads.
+ */
+public class SoundexTrie {
+
+    private static final int DIGITS = 7;
+
+    // first characters and their nodes
+    private final char[] firstChars;
+    private final int[] firstNodes;
+    // children[node * DIGITS + digit] is the child node + 1 of the node on
+    // the digit, or the code ID + 1 on the last position, 0 if there is no
+    // such child
+    private final int[] children;
+    private final int size;
+
+    /**
+     * @param codes
+     *            Distinct codes of length {@link SoundexCodes#CODE_LENGTH},
+     *            their positions are their IDs
+     */
+    public SoundexTrie(String[] codes) {
+	size = codes.length;
+	HashMap<Character, Integer> roots = new HashMap<Character, Integer>();
+	char[] firstChars = new char[16];
+	int[] firstNodes = new int[16];
+	int[] children = new int[DIGITS * 64];
+	int nodes = 0;
+	for (int id = 0; id < codes.length; id++) {
+	    String code = codes[id];
+	    Integer root = roots.get(code.charAt(0));
+	    if (root == null) {
+		if (roots.size() == firstChars.length) {
+		    firstChars = Arrays.copyOf(firstChars, roots.size() * 2);
+		    firstNodes = Arrays.copyOf(firstNodes, roots.size() * 2);
+		}
+		if (nodes * DIGITS == children.length) {
+		    children = Arrays.copyOf(children, children.length * 2);
+		}
+		root = nodes++;
+		firstChars[roots.size()] = code.charAt(0);
+		firstNodes[roots.size()] = root;
+		roots.put(code.charAt(0), root);
+	    }
+	    int node = root;
+	    for (int position = 1; position < SoundexCodes.CODE_LENGTH; position++) {
+		int slot = node * DIGITS + code.charAt(position) - '0';
+		if (position == SoundexCodes.CODE_LENGTH - 1) {
+		    children[slot] = id + 1;
+		} else {
+		    if (children[slot] == 0) {
+			if (nodes * DIGITS == children.length) {
+			    children = Arrays.copyOf(children, children.length * 2);
+			}
+			children[slot] = ++nodes;
+		    }
+		    node = children[slot] - 1;
+		}
+	    }
+	}
+	this.firstChars = Arrays.copyOf(firstChars, roots.size());
+	this.firstNodes = Arrays.copyOf(firstNodes, roots.size());
+	this.children = children;
+    }
+
+    /**
+     * @return The number of codes in the trie
+     */
+    public int size() {
+	return size;
+    }
+
+    /**
+     * Finds the codes within a Hamming distance of a code.
+     *
+     * @param code
+     *            Code to search
+     * @param maxDistance
+     *            Maximal number of positions in which the codes differ
+     * @param matches
+     *            Receives the IDs of the matching codes, must be able to hold
+     *            size() IDs
+     * @param distances
+     *            Receives the distances of the matching codes
+     * @return The number of matching codes
+     */
+    public int search(String code, int maxDistance, int[] matches, int[] distances) {
+	int count = 0;
+	char first = code.charAt(0);
+	for (int r = 0; r < firstChars.length; r++) {
+	    int distance = (firstChars[r] == first) ? 0 : 1;
+	    if (distance <= maxDistance) {
+		count = search(firstNodes[r], 1, distance, code, maxDistance, matches, distances, count);
+	    }
+	}
+	return count;
+    }
+
+    private int search(int node, int position, int distance, String code, int maxDistance, int[] matches,
+	    int[] distances, int count) {
+	int digit = code.charAt(position) - '0';
+	int base = node * DIGITS;
+	for (int d = 0; d < DIGITS; d++) {
+	    int child = children[base + d];
+	    if (child == 0) {
+		continue;
+	    }
+	    int childDistance = (d == digit) ? distance : distance + 1;
+	    if (childDistance > maxDistance) {
+		continue;
+	    }
+	    if (position == SoundexCodes.CODE_LENGTH - 1) {
+		matches[count] = child - 1;
+		distances[count++] = childDistance;
+	    } else {
+		count = search(child - 1, position + 1, childDistance, code, maxDistance, matches, distances, count);
+	    }
+	}
+	return count;
+    }
+
+    /**
+     * Finds the codes within a Hamming distance of each of a batch of codes.
+     *
+     * @param codes
+     *            Codes to search
+     * @param maxDistance
+     *            Maximal number of positions in which the codes differ
+     * @return The matches of each code, in the order of the codes
+     */
+    public Matches[] search(String[] codes, int maxDistance) {
+	Matches[] result = new Matches[codes.length];
+	int[] matches = new int[size];
+	int[] distances = new int[size];
+	for (int i = 0; i < codes.length; i++) {
+	    int count = search(codes[i], maxDistance, matches, distances);
+	    result[i] = new Matches(Arrays.copyOf(matches, count), Arrays.copyOf(distances, count));
+	}
+	return result;
+    }
+
+    /**
+     * Codes of the trie that match a searched code.
+     */
+    public static class Matches {
+	private final int[] codes;
+	private final int[] distances;
+
+	Matches(int[] codes, int[] distances) {
+	    this.codes = codes;
+	    this.distances = distances;
+	}
+
+	/**
+	 * @return The number of matching codes
+	 */
+	public int size() {
+	    return codes.length;
+	}
+
+	/**
+	 * @param i
+	 *            Position, between 0 and size() - 1
+	 * @return The ID of the i-th matching code
+	 */
+	public int getCode(int i) {
+	    return codes[i];
+	}
+
+	/**
+	 * @param i
+	 *            Position, between 0 and size() - 1
+	 * @return The distance of the i-th matching code
+	 */
+	public int getDistance(int i) {
+	    return distances[i];
+	}
+    }
+}
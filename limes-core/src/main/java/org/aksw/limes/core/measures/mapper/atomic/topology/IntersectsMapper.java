@@ -9,6 +9,7 @@ import org.aksw.limes.core.io.mapping.Mapping;
 import java.util.*;
 
 import org.aksw.limes.core.measures.mapper.atomic.hausdorff.Polygon;
+import org.aksw.limes.core.measures.mapper.atomic.hausdorff.SpatialJoin;
 
 /**
  * Mapper that checks for the topological relation intersects.
@@ -17,6 +18,16 @@ import org.aksw.limes.core.measures.mapper.atomic.hausdorff.Polygon;
 public class IntersectsMapper implements TopologicRelationMapper {
 
     float theta = 10;
+    SpatialJoin.Mode joinMode = SpatialJoin.getDefaultMode();
+
+    /**
+     * Sets the blocking of the polygons.
+     *
+     * @param joinMode Squares or R-tree
+     */
+    public void setJoinMode(SpatialJoin.Mode joinMode) {
+        this.joinMode = joinMode;
+    }
 
     /**
      *
@@ -27,6 +38,6 @@ public class IntersectsMapper implements TopologicRelationMapper {
     @Override
     public Mapping getMapping(Set<Polygon> sourceData, Set<Polygon> targetData) {
         TopologicalRelationUtils.theta = this.theta;
-        return TopologicalRelationUtils.getMapping(sourceData, targetData, TopologicalRelationUtils.INTERSECTS);
+        return TopologicalRelationUtils.getMapping(sourceData, targetData, joinMode, TopologicalRelationUtils.INTERSECTS);
     }
 }
@@ -6,6 +6,8 @@ package org.aksw.limes.core.measures.mapper.atomic.topology;
 
 import com.vividsolutions.jts.geom.Envelope;
 import com.vividsolutions.jts.geom.Geometry;
+import com.vividsolutions.jts.geom.prep.PreparedGeometry;
+import com.vividsolutions.jts.geom.prep.PreparedGeometryFactory;
 import com.vividsolutions.jts.io.ParseException;
 
 
@@ -51,6 +53,18 @@ public class TopologicalRelationUtils {
      * @return Index for all polygons
      */
     static GeoIndex assignSquaresByMBBs(Set<Polygon> input) {
+        return assignSquaresByMBBs(input, null);
+    }
+
+     /**
+     * Computes the geo squares for each polygon based on their MBBs (Minimum Bounding Boxes)
+     * and prepares the geometries of the indexed polygons for repeated relation tests.
+     *
+     * @param input Set of polygon to be indexed
+     * @param prepared Map to which the prepared geometry of each indexed polygon is added, may be null
+     * @return Index for all polygons
+     */
+    static GeoIndex assignSquaresByMBBs(Set<Polygon> input, Map<Polygon, PreparedGeometry> prepared) {
         float delta = (float) ((theta * 180) / (Math.PI * OrthodromicDistance.R));
 
         GeoIndex index = new GeoIndex();
@@ -62,6 +76,9 @@ public class TopologicalRelationUtils {
                 Logger.getLogger(TopologicalRelationUtils.class.getName()).log(Level.SEVERE, null, ex);
                 continue;
             }
+            if (prepared != null) {
+                prepared.put(p, PreparedGeometryFactory.prepare(g));
+            }
             Envelope envelope = g.getEnvelopeInternal();
             
             int minLatIndex = (int) Math.floor(envelope.getMinY() / delta);
@@ -110,7 +127,78 @@ public class TopologicalRelationUtils {
             return false;
         }
     }   
+
+    /**
+      * This function returns true if the given relation holds between a prepared geometry
+      * and a polygon. Preparing a geometry indexes its segments, which speeds up repeated
+      * tests of the same geometry against many others.
+      *
+      * @param geometry1
+      * @param polygon2
+      * @param relation
+      * @return Boolean
+      */
+    static Boolean relate(PreparedGeometry geometry1, Polygon polygon2, String relation) {
+        try {
+            Geometry geometry2 = polygon2.getGeometry();
+
+            switch (relation) {
+                case EQUALS: return geometry1.getGeometry().equals(geometry2);
+                case DISJOINT: return geometry1.disjoint(geometry2);
+                case INTERSECTS: return geometry1.intersects(geometry2);
+                case TOUCHES: return geometry1.touches(geometry2);
+                case CROSSES: return geometry1.crosses(geometry2);
+                case WITHIN: return geometry1.within(geometry2);
+                case CONTAINS: return geometry1.contains(geometry2);
+                case OVERLAPS: return geometry1.overlaps(geometry2);
+                default: return geometry1.getGeometry().relate(geometry2, relation);
+            }
+        } catch (ParseException ex) {
+            Logger.getLogger(TopologicalRelationUtils.class.getName()).log(Level.SEVERE, null, ex);
+            return false;
+        }
+    }
     
+    /**
+     * Returns true if the relation can only hold between geometries that intersect, so that
+     * only pairs with intersecting MBBs need to be tested. A DE-9IM pattern requires an
+     * intersection if it requires a shared point of the interiors or boundaries.
+     *
+     * @param relation
+     * @return boolean
+     */
+    static boolean requiresIntersection(String relation) {
+        switch (relation) {
+            case DISJOINT: return false;
+            case EQUALS: case INTERSECTS: case TOUCHES: case CROSSES:
+            case WITHIN: case CONTAINS: case OVERLAPS: return true;
+            default:
+                for (int i : new int[] {0, 1, 3, 4}) {
+                    if (i < relation.length() && "T012".indexOf(relation.charAt(i)) >= 0) {
+                        return true;
+                    }
+                }
+                return false;
+        }
+    }
+
+    /**
+     * This function computes the Mapping between two sets of Polygons based on a given relation.
+     *
+     * @param sourceData Set of Polygons
+     * @param targetData Set of Polygons
+     * @param mode Blocking of the polygons, squares or R-tree
+     * @param relation
+     * @return Mapping
+     */
+    public static Mapping getMapping(Set<Polygon> sourceData, Set<Polygon> targetData, SpatialJoin.Mode mode,
+            String relation) {
+        if (mode == SpatialJoin.Mode.RTREE) {
+            return new RelationJoin(relation).run(sourceData, targetData);
+        }
+        return getMapping(sourceData, targetData, relation);
+    }
+
     /**
      * This function computes the Mapping between two sets of Polygons based on a given relation.
      *
@@ -122,7 +210,9 @@ public class TopologicalRelationUtils {
     public static Mapping getMapping(Set<Polygon> sourceData, Set<Polygon> targetData, String relation) {
 
         long begin = System.currentTimeMillis();
-        GeoIndex source = assignSquaresByMBBs(sourceData);
+        // each source geometry is prepared once and tested against all its candidates
+        Map<Polygon, PreparedGeometry> prepared = new IdentityHashMap<Polygon, PreparedGeometry>();
+        GeoIndex source = assignSquaresByMBBs(sourceData, prepared);
         GeoIndex target = assignSquaresByMBBs(targetData);            
         long end = System.currentTimeMillis();
     	indexingTime = end - begin;
@@ -147,7 +237,7 @@ public class TopologicalRelationUtils {
                             computed.put(a.uri, new HashSet<String>());
                         }
                         if (!computed.get(a.uri).contains(b.uri)) {
-                            if (relate(a, b, relation))
+                            if (relate(prepared.get(a), b, relation))
                             {
                                 m.add(a.uri, b.uri, 1.0);
                             }
@@ -187,6 +277,49 @@ public class TopologicalRelationUtils {
         }            
         return m;
     } 
+
+    /**
+     * Joins the polygons on an R-tree of the target MBBs. The relation is tested for the pairs
+     * whose MBBs intersect, or for all pairs if it may hold between disjoint geometries. In
+     * the latter case, DISJOINT holds without a test for the pairs whose MBBs do not intersect.
+     */
+    private static class RelationJoin extends SpatialJoin {
+
+        private final String relation;
+        private final boolean intersecting;
+
+        RelationJoin(String relation) {
+            this.relation = relation;
+            this.intersecting = requiresIntersection(relation);
+        }
+
+        @Override
+        protected void refine(Polygon a, Collection<Polygon> candidates, Mapping m) {
+            PreparedGeometry geometry;
+            try {
+                geometry = PreparedGeometryFactory.prepare(a.getGeometry());
+            } catch (ParseException ex) {
+                Logger.getLogger(TopologicalRelationUtils.class.getName()).log(Level.SEVERE, null, ex);
+                return;
+            }
+            if (intersecting) {
+                for (Polygon b : candidates) {
+                    if (relate(geometry, b, relation)) {
+                        m.add(a.uri, b.uri, 1.0);
+                    }
+                }
+                return;
+            }
+            Set<Polygon> overlapping = new HashSet<Polygon>(candidates);
+            for (Polygon b : indexed) {
+                if (relation.equals(DISJOINT) && !overlapping.contains(b)) {
+                    m.add(a.uri, b.uri, 1.0);
+                } else if (relate(geometry, b, relation)) {
+                    m.add(a.uri, b.uri, 1.0);
+                }
+            }
+        }
+    }
     
     
 }
@@ -0,0 +1,326 @@
+package org.aksw.limes.core.measures.measure;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.StringTokenizer;
+
+import org.aksw.limes.core.io.cache.Instance;
+import org.aksw.limes.core.io.parser.Parser;
+import org.aksw.limes.core.measures.mapper.Mapper;
+import org.aksw.limes.core.measures.mapper.atomic.EDJoin;
+import org.aksw.limes.core.measures.mapper.atomic.OrchidMapper;
+import org.aksw.limes.core.measures.mapper.atomic.PPJoinPlusPlus;
+import org.aksw.limes.core.measures.mapper.atomic.RatcliffObershelpMapper;
+import org.aksw.limes.core.measures.mapper.atomic.SoundexMapper;
+import org.aksw.limes.core.measures.mapper.atomic.SymmetricHausdorffMapper;
+import org.aksw.limes.core.measures.mapper.atomic.hausdorff.ParsedPolygons;
+import org.aksw.limes.core.measures.mapper.atomic.hausdorff.Polygon;
+import org.aksw.limes.core.measures.measure.pointsets.IPointsetsMeasure;
+import org.aksw.limes.core.measures.measure.pointsets.SetMeasureFactory;
+import org.aksw.limes.core.measures.measure.pointsets.SetMeasureFactory.Type;
+import org.aksw.limes.core.measures.measure.string.IStringMeasure;
+
+import org.aksw.limes.core.measures.measure.string.RatcliffObershelpMeasure;
+import org.aksw.limes.core.measures.measure.string.Soundex;
+import org.apache.log4j.Logger;
+
+/**
+ * Compiled form of a metric expression. The expression is parsed once into a
+ * tree whose leaves hold the resolved measure, mapper and property names of
+ * the atomic measures and whose inner nodes hold the operator, coefficients
+ * and thresholds of the complex ones. Scoring a pair of instances
+ * then requires neither parsing nor temporary caches: each leaf scores a pair
+ * with the measure that computes the similarity of its mapper, so the scores
+ * are the ones the mapper would assign to the pair. The tree does not change
+ * once it is compiled, but its measures may keep state such as counters, so
+ * an evaluator is not thread-safe and must not be used by several threads at
+ * once.
+ *
+ * @author ngonga
+ */
+public abstract class MeasureEvaluator {
+
+    static Logger logger = Logger.getLogger("LIMES");
+
+    /**
+     * Computes the similarity of two instances.
+     *
+     * @param s
+     *            Instance from the source knowledge base
+     * @param t
+     *            Instance from the target knowledge base
+     * @return Similarity of s and t, 0 if it does not pass the thresholds of
+     *         the expression
+     */
+    public abstract double score(Instance s, Instance t);
+
+    /**
+     * Compiles a metric expression into an evaluator.
+     *
+     * @param expression
+     *            Metric expression
+     * @param threshold
+     *            Similarity threshold of the expression
+     * @param sourceVar
+     *            Source variable (usually "?x")
+     * @param targetVar
+     *            Target variable (usually "?y")
+     * @return Evaluator of the expression
+     */
+    public static MeasureEvaluator compile(String expression, double threshold, String sourceVar,
+	    String targetVar) {
+	Parser p = new Parser(expression, threshold);
+	if (p.isAtomic()) {
+	    return new AtomicEvaluator(p, expression, threshold, sourceVar, targetVar);
+	}
+	MeasureEvaluator first = compile(p.getTerm1(), p.getThreshold1(), sourceVar, targetVar);
+	MeasureEvaluator second = compile(p.getTerm2(), p.getThreshold2(), sourceVar, targetVar);
+	return new OperatorEvaluator(p.getOperator(), p.getCoef1(), p.getCoef2(), p.getThreshold(), first, second);
+    }
+
+    /**
+     * Leaf of the evaluator tree, i.e., an atomic measure.
+     */
+    static class AtomicEvaluator extends MeasureEvaluator {
+
+	private final double threshold;
+	private final String property1;
+	private final String property2;
+	private final Measure measure;
+	private final Mapper mapper;
+	// set if the mapper computes the similarity from the token overlap
+	private final IStringMeasure overlapMeasure;
+	// measure of the mapper if it differs from the one of the expression
+	private final IMeasure pairMeasure;
+	// set if the mapper compares polygons, with the distance threshold of
+	// the mapper
+	private final IPointsetsMeasure pointsetsMeasure;
+	private final float distanceThreshold;
+	// true if the distance must be below the threshold in both directions
+	private final boolean symmetric;
+	// largest edit distance EDJoin links, set if the mapper is EDJoin
+	private final int maxEditDistance;
+
+	AtomicEvaluator(Parser p, String expression, double threshold, String sourceVar, String targetVar) {
+	    this.threshold = threshold;
+	    this.measure = MeasureFactory.getMeasure(p.getOperator());
+	    this.mapper = MeasureFactory.getMapper(p.getOperator());
+
+	    String[] properties = new String[2];
+	    resolveProperty("?" + p.getTerm1(), sourceVar, properties, 0);
+	    resolveProperty("?" + p.getTerm2(), sourceVar, properties, 1);
+	    if (properties[0] == null || properties[1] == null) {
+		throw new IllegalArgumentException("Property values could not be read from " + expression);
+	    }
+	    this.property1 = properties[0];
+	    this.property2 = properties[1];
+
+	    IStringMeasure m = null;
+	    if (mapper instanceof PPJoinPlusPlus) {
+		Measure ppjoinMeasure = ((PPJoinPlusPlus) mapper).getMeasure(p.getOperator());
+		if (ppjoinMeasure instanceof IStringMeasure && ((IStringMeasure) ppjoinMeasure).computableViaOverlap())
+		    m = (IStringMeasure) ppjoinMeasure;
+	    }
+	    this.overlapMeasure = m;
+
+	    if (mapper instanceof RatcliffObershelpMapper) {
+		pairMeasure = new RatcliffObershelpMeasure();
+	    } else if (mapper instanceof SoundexMapper) {
+		pairMeasure = new Soundex();
+	    } else {
+		pairMeasure = measure;
+	    }
+	    if (mapper instanceof OrchidMapper || mapper instanceof SymmetricHausdorffMapper) {
+		Type type = new OrchidMapper().getTypeFromExpression(expression);
+		if (type == Type.INDEXEDHAUSDORFF) {
+		    // same distance without an index of the target polygons
+		    type = Type.NAIVEHAUSDORFF;
+		}
+		pointsetsMeasure = SetMeasureFactory.getMeasure(type);
+		distanceThreshold = (1 / (float) threshold) - 1;
+		symmetric = mapper instanceof SymmetricHausdorffMapper;
+	    } else {
+		pointsetsMeasure = null;
+		distanceThreshold = 0;
+		symmetric = false;
+	    }
+	    if (mapper instanceof EDJoin) {
+		// same conversion of the similarity threshold as in EDJoin
+		maxEditDistance = (int) Math.min(Math.floor((1 - threshold) / threshold), Integer.MAX_VALUE - 1);
+	    } else {
+		maxEditDistance = 0;
+	    }
+	}
+
+	/**
+	 * Stores the property of a term at the position of its variable.
+	 * Property paths such as ?x.a.b are kept as a.b. A term without
+	 * variable is taken as it is for the given position.
+	 */
+	private static void resolveProperty(String term, String sourceVar, String[] properties, int position) {
+	    if (term.contains(".")) {
+		String split[] = term.split("\\.");
+		String property = split[1];
+		for (int i = 2; i < split.length; i++) {
+		    property = property + "." + split[i];
+		}
+		if (split[0].equals(sourceVar)) {
+		    properties[0] = property;
+		} else {
+		    properties[1] = property;
+		}
+	    } else {
+		properties[position] = term;
+	    }
+	}
+
+	@Override
+	public double score(Instance s, Instance t) {
+	    if (mapper == null)
+		return measure.getSimilarity(s, t, property1, property2);
+	    if (mapper instanceof EDJoin)
+		return editDistanceScore(s, t);
+	    if (overlapMeasure != null)
+		return overlapScore(s, t);
+	    if (pointsetsMeasure != null)
+		return pointsetsScore(s, t);
+	    double sim = pairMeasure.getSimilarity(s, t, property1, property2);
+	    return (sim >= threshold) ? sim : 0;
+	}
+
+	/**
+	 * Computes the best similarity of the values of the two instances the
+	 * way EDJoin does, i.e., 1/(1+d) if the edit distance d is within the
+	 * distance threshold.
+	 */
+	private double editDistanceScore(Instance s, Instance t) {
+	    if (maxEditDistance < 0) {
+		return 0;
+	    }
+	    int min = maxEditDistance + 1;
+	    for (String a : s.getProperty(property1)) {
+		for (String b : t.getProperty(property2)) {
+		    min = Math.min(min, EDJoin.editDistance(a, b, maxEditDistance));
+		}
+	    }
+	    return (min <= maxEditDistance) ? 1.0 / (1 + (double) min) : 0;
+	}
+
+	/**
+	 * Computes the similarity of the polygons of the two instances the way
+	 * the Orchid mappers do, i.e., 1/(1+d) if the distance d is within the
+	 * distance threshold.
+	 */
+	private double pointsetsScore(Instance s, Instance t) {
+	    Polygon a = ParsedPolygons.getPolygon(s, property1);
+	    Polygon b = ParsedPolygons.getPolygon(t, property2);
+	    if (a.size() == 0 || b.size() == 0) {
+		return 0;
+	    }
+	    double d = pointsetsMeasure.computeDistance(a, b, distanceThreshold);
+	    if (symmetric && d <= distanceThreshold) {
+		d = Math.max(d, pointsetsMeasure.computeDistance(b, a, distanceThreshold));
+	    }
+	    return (d <= distanceThreshold) ? 1 / (1 + d) : 0;
+	}
+
+	/**
+	 * Computes the best similarity of the values of the two instances the
+	 * way PPJoinPlusPlus does, i.e., from the overlap of their token
+	 * multisets.
+	 */
+	private double overlapScore(Instance s, Instance t) {
+	    double max = 0;
+	    for (String a : s.getProperty(property1)) {
+		Map<String, Integer> tokensA = new HashMap<String, Integer>();
+		int lengthA = tokenize(a, tokensA);
+		for (String b : t.getProperty(property2)) {
+		    StringTokenizer st = new StringTokenizer(b, " .,?!\t");
+		    int lengthB = st.countTokens();
+		    Map<String, Integer> seen = new HashMap<String, Integer>();
+		    int overlap = 0;
+		    while (st.hasMoreTokens()) {
+			String token = st.nextToken();
+			Integer count = seen.get(token);
+			count = (count == null) ? 1 : count + 1;
+			seen.put(token, count);
+			Integer available = tokensA.get(token);
+			if (available != null && available >= count) {
+			    overlap++;
+			}
+		    }
+		    if (overlap == 0) {
+			continue;
+		    }
+		    double sim = overlapMeasure.getSimilarity(overlap, lengthA, lengthB);
+		    if (sim >= threshold && sim > max) {
+			max = sim;
+		    }
+		}
+	    }
+	    return max;
+	}
+
+	private static int tokenize(String value, Map<String, Integer> tokens) {
+	    StringTokenizer st = new StringTokenizer(value, " .,?!\t");
+	    int length = st.countTokens();
+	    while (st.hasMoreTokens()) {
+		String token = st.nextToken();
+		Integer count = tokens.get(token);
+		tokens.put(token, (count == null) ? 1 : count + 1);
+	    }
+	    return length;
+	}
+    }
+
+    /**
+     * Inner node of the evaluator tree, i.e., a complex measure.
+     */
+    static class OperatorEvaluator extends MeasureEvaluator {
+
+	private final String operator;
+	private final double coef1;
+	private final double coef2;
+	private final double threshold;
+	private final MeasureEvaluator first;
+	private final MeasureEvaluator second;
+
+	OperatorEvaluator(String operator, double coef1, double coef2, double threshold, MeasureEvaluator first,
+		MeasureEvaluator second) {
+	    this.operator = operator;
+	    this.coef1 = coef1;
+	    this.coef2 = coef2;
+	    this.threshold = threshold;
+	    this.first = first;
+	    this.second = second;
+	}
+
+	@Override
+	public double score(Instance s, Instance t) {
+	    if (operator.equalsIgnoreCase("MAX") | operator.equalsIgnoreCase("OR")
+		    | operator.equalsIgnoreCase("XOR")) {
+		double maxSimilarity = Math.max(first.score(s, t), second.score(s, t));
+		return (maxSimilarity >= threshold) ? maxSimilarity : 0;
+	    }
+	    if (operator.equalsIgnoreCase("MIN") | operator.equalsIgnoreCase("AND")) {
+		double firstChild = first.score(s, t);
+		double secondChild = second.score(s, t);
+		if (firstChild == 0 && secondChild == 0)
+		    return 0;
+		double minSimilarity = Math.min(firstChild, secondChild);
+		return (minSimilarity >= threshold) ? minSimilarity : 0;
+	    }
+	    if (operator.equalsIgnoreCase("ADD")) {
+		double sum = coef1 * first.score(s, t) + coef2 * second.score(s, t);
+		return (sum >= threshold) ? sum : 0;
+	    }
+	    // perform MINUS as usual: the second similarity must be 0 in order
+	    // for the instance to have a chance to be included at the final
+	    // result
+	    double firstChild = first.score(s, t);
+	    if (second.score(s, t) == 0 && firstChild >= threshold)
+		return firstChild;
+	    return 0;
+	}
+    }
+}
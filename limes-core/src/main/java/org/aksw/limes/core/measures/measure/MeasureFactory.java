@@ -5,6 +5,7 @@ import org.aksw.limes.core.measures.mapper.Mapper;
 import org.aksw.limes.core.measures.mapper.atomic.EDJoin;
 import org.aksw.limes.core.measures.mapper.atomic.ExactMatchMapper;
 import org.aksw.limes.core.measures.mapper.atomic.JaroMapper;
+import org.aksw.limes.core.measures.mapper.atomic.MongeElkanMapper;
 import org.aksw.limes.core.measures.mapper.atomic.OrchidMapper;
 import org.aksw.limes.core.measures.mapper.atomic.PPJoinPlusPlus;
 import org.aksw.limes.core.measures.mapper.atomic.RatcliffObershelpMapper;
@@ -33,6 +34,7 @@ import org.aksw.limes.core.measures.measure.string.ExactMatch;
 import org.aksw.limes.core.measures.measure.string.JaccardMeasure;
 import org.aksw.limes.core.measures.measure.string.Jaro;
 import org.aksw.limes.core.measures.measure.string.Levenshtein;
+import org.aksw.limes.core.measures.measure.string.MongeElkan;
 import org.aksw.limes.core.measures.measure.string.QGramSimilarity;
 import org.aksw.limes.core.measures.measure.string.TrigramMeasure;
 
@@ -60,6 +62,8 @@ public class MeasureFactory {
 	    m = new EuclideanMetric();
 	} else if (name.toLowerCase().startsWith("levens")) {
 	    m = new Levenshtein();
+	} else if (name.toLowerCase().startsWith("monge")) {
+	    m = new MongeElkan();
 	} else if (name.toLowerCase().startsWith("qgrams")) {
 	    m = new QGramSimilarity();
 	} else if (name.toLowerCase().startsWith("exactmatch")) {// NO
@@ -118,7 +122,10 @@ public class MeasureFactory {
     }
 
     /**
-     * Get mapper to measure
+     * Get mapper to measure. The names of the set measures may end with
+     * _rtree, e.g., hausdorff_rtree, to join the polygons on an R-tree
+     * instead of blocking them by squares, see
+     * {@link org.aksw.limes.core.measures.mapper.atomic.hausdorff.SpatialJoin}.
      *
      * @param measure,
      *            name of measure
@@ -147,10 +154,9 @@ public class MeasureFactory {
 	    am = new SoundexMapper();
 	} else if (measure.toLowerCase().startsWith("ratcliff")) {
 	    am = new RatcliffObershelpMapper();
-	} // else if (measure.toLowerCase().startsWith("monge")) { //problem in
-	  // getMappingSizeApproximation
-	  // am = new MongeElkanMapper();}
-	  else if (measure.toLowerCase().startsWith("exactmatch")) {
+	} else if (measure.toLowerCase().startsWith("monge")) {
+	    am = new MongeElkanMapper();
+	} else if (measure.toLowerCase().startsWith("exactmatch")) {
 	    am = new ExactMatchMapper();
 	} else if (measure.toLowerCase().startsWith("euclid")) {
 	    am = new TotalOrderBlockingMapper();
@@ -6,6 +6,7 @@ package org.aksw.limes.core.measures.measure.pointsets.average;
 import java.util.HashSet;
 import java.util.Set;
 import java.util.TreeSet;
+import java.util.concurrent.atomic.AtomicLong;
 
 import org.aksw.limes.core.datastrutures.Point;
 import org.aksw.limes.core.io.cache.Instance;
@@ -14,6 +15,7 @@ import org.aksw.limes.core.io.mapping.MemoryMapping;
 import org.aksw.limes.core.measures.mapper.atomic.OrchidMapper;
 import org.aksw.limes.core.measures.mapper.atomic.hausdorff.GreatEllipticDistance;
 import org.aksw.limes.core.measures.mapper.atomic.hausdorff.OrthodromicDistance;
+import org.aksw.limes.core.measures.mapper.atomic.hausdorff.PackedPolygon;
 import org.aksw.limes.core.measures.mapper.atomic.hausdorff.Polygon;
 import org.aksw.limes.core.measures.measure.pointsets.PointsetsMeasure;
 
@@ -23,14 +25,13 @@ import org.aksw.limes.core.measures.measure.pointsets.PointsetsMeasure;
  */
 public class NaiveAverage extends PointsetsMeasure {
 
-    public int computations;
+    public final AtomicLong computations = new AtomicLong();
 
     public NaiveAverage() {
-	computations = 0;
     }
 
     public int getComputations() {
-	return computations;
+	return (int) computations.get();
     }
 
     /**
@@ -43,12 +44,15 @@ public class NaiveAverage extends PointsetsMeasure {
      * @return Distance between the two polygons
      */
     public double computeDistance(Polygon X, Polygon Y, double threshold) {
+	PackedPolygon x = X.getPacked();
+	PackedPolygon y = Y.getPacked();
 	double sum = 0f;
-	for (Point x : X.points) {
-	    for (Point y : Y.points) {
-		sum += distance(x, y);
+	for (int i = 0; i < x.size(); i++) {
+	    for (int j = 0; j < y.size(); j++) {
+		sum += distance(x, i, y, j);
 	    }
 	}
+
 	double avg = (double) sum / (double) (X.points.size() * Y.points.size());
 	// System.out.println("Average distance is: " + avg);
 	return avg;
@@ -94,13 +98,32 @@ public class NaiveAverage extends PointsetsMeasure {
      * @return Distance between x and y
      */
     public double distance(Point x, Point y) {
-	computations++;
+	computations.incrementAndGet();
 	if (USE_GREAT_ELLIPTIC_DISTANCE) {
 	    return GreatEllipticDistance.getDistanceInDegrees(x, y);
 	}
 	return OrthodromicDistance.getDistanceInDegrees(x, y);
     }
 
+    /**
+     * @param X
+     *            First polygon
+     * @param i
+     *            Index of a point of X
+     * @param Y
+     *            Second polygon
+     * @param j
+     *            Index of a point of Y
+     * @return Distance between the i-th point of X and the j-th point of Y
+     */
+    public double distance(PackedPolygon X, int i, PackedPolygon Y, int j) {
+	computations.incrementAndGet();
+	if (USE_GREAT_ELLIPTIC_DISTANCE) {
+	    return GreatEllipticDistance.getDistance(X, i, Y, j);
+	}
+	return OrthodromicDistance.getDistance(X, i, Y, j);
+    }
+
     public double getSimilarity(Object a, Object b) {
 	Polygon p1 = OrchidMapper.getPolygon((String) a);
 	Polygon p2 = OrchidMapper.getPolygon((String) b);
@@ -4,6 +4,7 @@ package org.aksw.limes.core.measures.measure.pointsets.frechet;
 import java.util.HashSet;
 import java.util.Set;
 import java.util.TreeSet;
+import java.util.concurrent.atomic.AtomicLong;
 
 import org.aksw.limes.core.datastrutures.Point;
 import org.aksw.limes.core.io.cache.Instance;
@@ -12,6 +13,7 @@ import org.aksw.limes.core.io.mapping.MemoryMapping;
 import org.aksw.limes.core.measures.mapper.atomic.OrchidMapper;
 import org.aksw.limes.core.measures.mapper.atomic.hausdorff.GreatEllipticDistance;
 import org.aksw.limes.core.measures.mapper.atomic.hausdorff.OrthodromicDistance;
+import org.aksw.limes.core.measures.mapper.atomic.hausdorff.PackedPolygon;
 import org.aksw.limes.core.measures.mapper.atomic.hausdorff.Polygon;
 import org.aksw.limes.core.measures.measure.pointsets.PointsetsMeasure;
 
@@ -26,7 +28,7 @@ import fr.ign.cogit.geoxygene.api.spatial.coordgeom.ILineSegment;
  */
 public class GeOxygeneFrechet extends PointsetsMeasure {
 
-    public int computations;
+    public final AtomicLong computations = new AtomicLong();
 
     public double computeDistance(Polygon X, Polygon Y, double threshold) {
 	// PrintStream originalStream = System.out;
@@ -38,17 +40,14 @@ public class GeOxygeneFrechet extends PointsetsMeasure {
 
     public static ILineSegment toLineSegment(Polygon poly) {
 	// assume a polygon as a curve starting at point p and end at point q
-	double pLat = poly.points.get(0).coordinates.get(0);
-	double pLong = poly.points.get(0).coordinates.get(1);
-	double qLat = poly.points.get(poly.points.size() - 1).coordinates.get(0);
-	double qLong = poly.points.get(poly.points.size() - 1).coordinates.get(1);
-	GM_LineSegment lineSegment = new GM_LineSegment(new DirectPosition(pLat, pLong),
-		new DirectPosition(qLat, qLong));
-
-	for (int i = 1; i < (poly.points.size() - 1); i++) {
-	    double lat = poly.points.get(i).coordinates.get(0);
-	    double lon = poly.points.get(i).coordinates.get(1);
-	    lineSegment.addControlPoint(new DirectPosition(lat, lon));
+	PackedPolygon packed = poly.getPacked();
+	int n = packed.size();
+	GM_LineSegment lineSegment = new GM_LineSegment(
+		new DirectPosition(packed.latitudes[0], packed.longitudes[0]),
+		new DirectPosition(packed.latitudes[n - 1], packed.longitudes[n - 1]));
+
+	for (int i = 1; i < (n - 1); i++) {
+	    lineSegment.addControlPoint(new DirectPosition(packed.latitudes[i], packed.longitudes[i]));
 	}
 
 	return lineSegment;
@@ -62,11 +61,10 @@ public class GeOxygeneFrechet extends PointsetsMeasure {
      * @return Distance between the two polygons
      */
     public GeOxygeneFrechet() {
-	computations = 0;
     }
 
     public int getComputations() {
-	return computations;
+	return (int) computations.get();
     }
 
     public static double distance(Polygon X, Polygon Y, double threshold) {
@@ -109,7 +107,7 @@ public class GeOxygeneFrechet extends PointsetsMeasure {
      * @return Distance between x and y
      */
     public double distance(Point x, Point y) {
-	computations++;
+	computations.incrementAndGet();
 	if (USE_GREAT_ELLIPTIC_DISTANCE) {
 	    return GreatEllipticDistance.getDistanceInDegrees(x, y);
 	}
@@ -6,6 +6,7 @@ package org.aksw.limes.core.measures.measure.pointsets.frechet;
 import java.util.HashSet;
 import java.util.Set;
 import java.util.TreeSet;
+import java.util.concurrent.atomic.AtomicLong;
 
 import org.aksw.limes.core.datastrutures.Point;
 import org.aksw.limes.core.io.cache.Instance;
@@ -18,7 +19,6 @@ import org.aksw.limes.core.measures.mapper.atomic.hausdorff.Polygon;
 import org.aksw.limes.core.measures.measure.pointsets.PointsetsMeasure;
 
 import com.vividsolutions.jts.geom.GeometryFactory;
-import com.vividsolutions.jts.util.GeometricShapeFactory;
 
 /**
  * @author sherif
@@ -27,11 +27,10 @@ import com.vividsolutions.jts.util.GeometricShapeFactory;
 public class NaiveFrechet extends PointsetsMeasure {
     Polygon poly1, poly2;
     public double[][] a, b, c, d;
-    static GeometricShapeFactory gsf = new GeometricShapeFactory();
     static GeometryFactory gf = new GeometryFactory();
     static double delta = 0.01;
 
-    public int computations;
+    public final AtomicLong computations = new AtomicLong();
 
     public double computeDistance(Polygon X, Polygon Y, double threshold) {
 	PolygonFrechetDistance frechetDistance = new PolygonFrechetDistance(X, Y);
@@ -49,11 +48,10 @@ public class NaiveFrechet extends PointsetsMeasure {
      * @return Distance between the two polygons
      */
     public NaiveFrechet() {
-	computations = 0;
     }
 
     public int getComputations() {
-	return computations;
+	return (int) computations.get();
     }
 
     public static double distance(Polygon X, Polygon Y, double threshold) {
@@ -9,6 +9,7 @@ import java.util.Arrays;
 
 import org.aksw.limes.core.datastrutures.Point;
 import org.aksw.limes.core.measures.mapper.atomic.hausdorff.OrthodromicDistance;
+import org.aksw.limes.core.measures.mapper.atomic.hausdorff.PackedPolygon;
 import org.aksw.limes.core.measures.mapper.atomic.hausdorff.Polygon;
 
 import com.vividsolutions.jts.geom.Coordinate;
@@ -24,14 +25,24 @@ import com.vividsolutions.jts.util.GeometricShapeFactory;
  */
 public class PolygonFrechetDistance {
     Polygon poly1, poly2;
+    // latitudes and longitudes of the points of poly1 and poly2
+    double[] lat1, lon1, lat2, lon2;
     public double[][] a, b, c, d;
-    static GeometricShapeFactory gsf = new GeometricShapeFactory();
+    // each circle modifies the factory, so it is not shared between
+    // distance computations, which may run in parallel
+    GeometricShapeFactory gsf = new GeometricShapeFactory();
     static GeometryFactory gf = new GeometryFactory();
     static double delta = 0.01;
 
     public PolygonFrechetDistance(Polygon p1, Polygon p2) {
 	poly1 = p1;
 	poly2 = p2;
+	PackedPolygon packed1 = poly1.getPacked();
+	PackedPolygon packed2 = poly2.getPacked();
+	lat1 = packed1.latitudes;
+	lon1 = packed1.longitudes;
+	lat2 = packed2.latitudes;
+	lon2 = packed2.longitudes;
 	a = new double[poly1.points.size()][poly2.points.size()];
 	b = new double[poly1.points.size()][poly2.points.size()];
 	c = new double[poly1.points.size()][poly2.points.size()];
@@ -56,19 +67,21 @@ public class PolygonFrechetDistance {
 
     public double getFrechetPointToPolygonDistance(Point p, Polygon poly) {
 	ArrayList<Double> list = new ArrayList<Double>();
+	double pLat = p.coordinates.get(0);
+	double pLon = p.coordinates.get(1);
+	double[] lat = poly.getPacked().latitudes;
+	double[] lon = poly.getPacked().longitudes;
 
 	// (1) distances between the point and all the polygon points
-	for (Point q : poly.points) {
-	    list.add(OrthodromicDistance.getDistanceInDegrees(p, q));
+	for (int i = 0; i < lat.length; i++) {
+	    list.add(OrthodromicDistance.getDistanceInDegrees(pLat, pLon, lat[i], lon[i]));
 	}
 
 	// (2) distances between the point and all the polygon edges
 	for (int i = 0; i < poly.points.size() - 1; i++) {
 	    double d = (double) Line2D.ptSegDist( // TODO alter to (double)
 						  // OrthodromicDistance.getPoint2LineDistanceInDegrees(a,b)
-		    poly.points.get(i).coordinates.get(0), poly.points.get(i).coordinates.get(1),
-		    poly.points.get(i + 1).coordinates.get(0), poly.points.get(i + 1).coordinates.get(1),
-		    p.coordinates.get(0), p.coordinates.get(1));
+		    lat[i], lon[i], lat[i + 1], lon[i + 1], pLat, pLon);
 	    list.add(d);
 	}
 
@@ -86,9 +99,10 @@ public class PolygonFrechetDistance {
 	ArrayList<Double> list = new ArrayList<Double>();
 
 	// (1) distances between starting and ending points
-	list.add((double) OrthodromicDistance.getDistanceInDegrees(poly1.points.get(0), poly2.points.get(0)));
-	list.add((double) OrthodromicDistance.getDistanceInDegrees(poly1.points.get(poly1.points.size() - 1),
-		poly2.points.get(poly2.points.size() - 1)));
+	PackedPolygon packed1 = poly1.getPacked();
+	PackedPolygon packed2 = poly2.getPacked();
+	list.add((double) OrthodromicDistance.getDistance(packed1, 0, packed2, 0));
+	list.add((double) OrthodromicDistance.getDistance(packed1, packed1.size() - 1, packed2, packed2.size() - 1));
 
 	// (2) distances between vertices of one polygon and edges of the other
 	// polygon
@@ -96,19 +110,14 @@ public class PolygonFrechetDistance {
 	    for (int j = 0; j < poly2.points.size() - 1; j++) {
 		double d = Line2D.ptSegDist( // TODO alter to (double)
 					     // OrthodromicDistance.getPoint2LineDistanceInDegrees(a,b)
-			poly2.points.get(j).coordinates.get(0), poly2.points.get(j).coordinates.get(1),
-			poly2.points.get(j + 1).coordinates.get(0), poly2.points.get(j + 1).coordinates.get(1),
-			poly1.points.get(i).coordinates.get(0), poly1.points.get(i).coordinates.get(1));
+			lat2[j], lon2[j], lat2[j + 1], lon2[j + 1], lat1[i], lon1[i]);
 		list.add(d);
 	    }
 	}
 
 	for (int j = 0; j < poly2.points.size(); j++) {
 	    for (int i = 0; i < poly1.points.size() - 1; i++) {
-		double d = Line2D.ptSegDist(poly1.points.get(i).coordinates.get(0),
-			poly1.points.get(i).coordinates.get(1), poly1.points.get(i + 1).coordinates.get(0),
-			poly1.points.get(i + 1).coordinates.get(1), poly2.points.get(j).coordinates.get(0),
-			poly2.points.get(j).coordinates.get(1));
+		double d = Line2D.ptSegDist(lat1[i], lon1[i], lat1[i + 1], lon1[i + 1], lat2[j], lon2[j]);
 		list.add(d);
 	    }
 	}
@@ -117,12 +126,10 @@ public class PolygonFrechetDistance {
 	Coordinate[] poly1Curve = new Coordinate[poly1.points.size()];
 	Coordinate[] poly2Curve = new Coordinate[poly2.points.size()];
 	for (int i = 0; i < poly1.points.size(); i++) {
-	    poly1Curve[i] = new Coordinate(poly1.points.get(i).coordinates.get(0),
-		    poly1.points.get(i).coordinates.get(1));
+	    poly1Curve[i] = new Coordinate(lat1[i], lon1[i]);
 	}
 	for (int i = 0; i < poly2.points.size(); i++) {
-	    poly2Curve[i] = new Coordinate(poly2.points.get(i).coordinates.get(0),
-		    poly2.points.get(i).coordinates.get(1));
+	    poly2Curve[i] = new Coordinate(lat2[i], lon2[i]);
 	}
 
 	// (3) common distance of two vertices of one polygon to the
@@ -245,58 +252,34 @@ public class PolygonFrechetDistance {
 	    return false;
 
 	// check first pair of segments
-	if (Line2D.ptSegDist(poly1.points.get(0).coordinates.get(0), poly1.points.get(0).coordinates.get(1),
-		poly1.points.get(1).coordinates.get(0), poly1.points.get(1).coordinates.get(1),
-		poly2.points.get(0).coordinates.get(0), poly2.points.get(0).coordinates.get(1)) > epsilon &&
+	if (Line2D.ptSegDist(lat1[0], lon1[0], lat1[1], lon1[1], lat2[0], lon2[0]) > epsilon &&
 
-	Line2D.ptSegDist(poly1.points.get(0).coordinates.get(0), poly1.points.get(0).coordinates.get(1),
-		poly1.points.get(1).coordinates.get(0), poly1.points.get(1).coordinates.get(1),
-		poly2.points.get(1).coordinates.get(0), poly2.points.get(1).coordinates.get(1)) > epsilon) {
+	Line2D.ptSegDist(lat1[0], lon1[0], lat1[1], lon1[1], lat2[1], lon2[1]) > epsilon) {
 
 	    return false;
 	}
 
-	if (Line2D.ptSegDist(poly2.points.get(0).coordinates.get(0), poly2.points.get(0).coordinates.get(1),
-		poly2.points.get(1).coordinates.get(0), poly2.points.get(1).coordinates.get(1),
-		poly1.points.get(0).coordinates.get(0), poly1.points.get(0).coordinates.get(1)) > epsilon &&
+	if (Line2D.ptSegDist(lat2[0], lon2[0], lat2[1], lon2[1], lat1[0], lon1[0]) > epsilon &&
 
-	Line2D.ptSegDist(poly2.points.get(0).coordinates.get(0), poly2.points.get(0).coordinates.get(1),
-		poly2.points.get(1).coordinates.get(0), poly2.points.get(1).coordinates.get(1),
-		poly1.points.get(1).coordinates.get(0), poly1.points.get(1).coordinates.get(1)) > epsilon) {
+	Line2D.ptSegDist(lat2[0], lon2[0], lat2[1], lon2[1], lat1[1], lon1[1]) > epsilon) {
 
 	    return false;
 	}
 
 	// check last pair of segments
-	if (Line2D.ptSegDist(poly1.points.get(poly1.points.size() - 2).coordinates.get(0),
-		poly1.points.get(poly1.points.size() - 2).coordinates.get(1),
-		poly1.points.get(poly1.points.size() - 1).coordinates.get(0),
-		poly1.points.get(poly1.points.size() - 1).coordinates.get(1),
-		poly2.points.get(poly2.points.size() - 1).coordinates.get(0),
-		poly2.points.get(poly2.points.size() - 1).coordinates.get(1)) > epsilon &&
-
-	Line2D.ptSegDist(poly1.points.get(poly1.points.size() - 2).coordinates.get(0),
-		poly1.points.get(poly1.points.size() - 2).coordinates.get(1),
-		poly1.points.get(poly1.points.size() - 1).coordinates.get(0),
-		poly1.points.get(poly1.points.size() - 1).coordinates.get(1),
-		poly2.points.get(poly2.points.size() - 2).coordinates.get(0),
-		poly2.points.get(poly2.points.size() - 2).coordinates.get(1)) > epsilon) {
+	if (Line2D.ptSegDist(lat1[lat1.length - 2], lon1[lat1.length - 2],
+		lat1[lat1.length - 1], lon1[lat1.length - 1], lat2[lat2.length - 1], lon2[lat2.length - 1]) > epsilon &&
+
+	Line2D.ptSegDist(lat1[lat1.length - 2], lon1[lat1.length - 2], lat1[lat1.length - 1],
+		lon1[lat1.length - 1], lat2[lat2.length - 2], lon2[lat2.length - 2]) > epsilon) {
 
 	    return false;
 	}
-	if (Line2D.ptSegDist(poly2.points.get(poly2.points.size() - 2).coordinates.get(0),
-		poly2.points.get(poly2.points.size() - 2).coordinates.get(1),
-		poly2.points.get(poly2.points.size() - 1).coordinates.get(0),
-		poly2.points.get(poly2.points.size() - 1).coordinates.get(1),
-		poly1.points.get(poly1.points.size() - 2).coordinates.get(0),
-		poly1.points.get(poly1.points.size() - 2).coordinates.get(1)) > epsilon &&
-
-	Line2D.ptSegDist(poly2.points.get(poly2.points.size() - 2).coordinates.get(0),
-		poly2.points.get(poly2.points.size() - 2).coordinates.get(1),
-		poly2.points.get(poly2.points.size() - 1).coordinates.get(0),
-		poly2.points.get(poly2.points.size() - 1).coordinates.get(1),
-		poly1.points.get(poly1.points.size() - 1).coordinates.get(0),
-		poly1.points.get(poly1.points.size() - 1).coordinates.get(1)) > epsilon) {
+	if (Line2D.ptSegDist(lat2[lat2.length - 2], lon2[lat2.length - 2],
+		lat2[lat2.length - 1], lon2[lat2.length - 1], lat1[lat1.length - 2], lon1[lat1.length - 2]) > epsilon &&
+
+	Line2D.ptSegDist(lat2[lat2.length - 2], lon2[lat2.length - 2], lat2[lat2.length - 1],
+		lon2[lat2.length - 1], lat1[lat1.length - 1], lon1[lat1.length - 1]) > epsilon) {
 
 	    return false;
 	}
@@ -310,16 +293,12 @@ public class PolygonFrechetDistance {
 	for (int i = 0; i < poly1.points.size() - 1; i++) {
 	    for (int j = 0; j < poly2.points.size() - 1; j++) {
 
-		p1 = new Coordinate(poly1.points.get(i).coordinates.get(0), poly1.points.get(i).coordinates.get(1));
-		p2 = new Coordinate(poly1.points.get(i + 1).coordinates.get(0),
-			poly1.points.get(i + 1).coordinates.get(1));
-		q1 = new Coordinate(poly2.points.get(j).coordinates.get(0), poly2.points.get(j).coordinates.get(1));
-		q2 = new Coordinate(poly2.points.get(j + 1).coordinates.get(0),
-			poly2.points.get(j + 1).coordinates.get(1));
+		p1 = new Coordinate(lat1[i], lon1[i]);
+		p2 = new Coordinate(lat1[i + 1], lon1[i + 1]);
+		q1 = new Coordinate(lat2[j], lon2[j]);
+		q2 = new Coordinate(lat2[j + 1], lon2[j + 1]);
 
-		if (Line2D.ptSegDist(poly2.points.get(j).coordinates.get(0), poly2.points.get(j).coordinates.get(1),
-			poly2.points.get(j + 1).coordinates.get(0), poly2.points.get(j + 1).coordinates.get(1),
-			poly1.points.get(i).coordinates.get(0), poly1.points.get(i).coordinates.get(1)) > epsilon) {
+		if (Line2D.ptSegDist(lat2[j], lon2[j], lat2[j + 1], lon2[j + 1], lat1[i], lon1[i]) > epsilon) {
 
 		    a[i][j] = b[i][j] = -1;
 
@@ -360,10 +339,7 @@ public class PolygonFrechetDistance {
 		}
 
 		// fill up c_ij and d_ij
-		double val1 = Line2D.ptSegDist(poly1.points.get(i).coordinates.get(0),
-			poly1.points.get(i).coordinates.get(1), poly1.points.get(i + 1).coordinates.get(0),
-			poly1.points.get(i + 1).coordinates.get(1), poly2.points.get(j).coordinates.get(0),
-			poly2.points.get(j).coordinates.get(1));
+		double val1 = Line2D.ptSegDist(lat1[i], lon1[i], lat1[i + 1], lon1[i + 1], lat2[j], lon2[j]);
 
 		if (val1 > epsilon) {
 		    c[i][j] = d[i][j] = -1;
@@ -429,10 +405,10 @@ public class PolygonFrechetDistance {
 	boolean retVal = true;
 
 	// cannot enter the upper right cell
-	if (a[poly1.points.size() - 1][poly2.points.size() - 1] == -1
-		&& b[poly1.points.size() - 1][poly2.points.size() - 1] == -1
-		&& c[poly1.points.size() - 1][poly2.points.size() - 1] == -1
-		&& d[poly1.points.size() - 1][poly2.points.size() - 1] == -1) {
+	if (a[lat1.length - 1][lat2.length - 1] == -1
+		&& b[lat1.length - 1][lat2.length - 1] == -1
+		&& c[lat1.length - 1][lat2.length - 1] == -1
+		&& d[lat1.length - 1][lat2.length - 1] == -1) {
 	    retVal = false;
 	}
 
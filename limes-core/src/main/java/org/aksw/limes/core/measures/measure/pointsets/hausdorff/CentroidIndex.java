@@ -12,6 +12,7 @@ import java.util.Map;
 import org.aksw.limes.core.datastrutures.Point;
 import org.aksw.limes.core.measures.mapper.atomic.hausdorff.GreatEllipticDistance;
 import org.aksw.limes.core.measures.mapper.atomic.hausdorff.OrthodromicDistance;
+import org.aksw.limes.core.measures.mapper.atomic.hausdorff.PackedPolygon;
 import org.aksw.limes.core.measures.mapper.atomic.hausdorff.Polygon;
 import org.aksw.limes.core.measures.mapper.atomic.hausdorff.PolygonIndex;
 
@@ -46,27 +47,31 @@ public class CentroidIndex extends PolygonIndex {
 	return OrthodromicDistance.getDistanceInDegrees(x, y);
     }
 
+    @Override
+    public double distance(PackedPolygon X, int i, PackedPolygon Y, int j) {
+	if (USE_GREAT_ELLIPTIC_DISTANCE) {
+	    return GreatEllipticDistance.getDistance(X, i, Y, j);
+	}
+	return OrthodromicDistance.getDistance(X, i, Y, j);
+    }
+
     @Override
     public void index(Polygon p) {
-	Map<Point, Map<Point, Double>> index = new HashMap<Point, Map<Point, Double>>();
-	Map<Point, Double> distances;
+	super.index(p);
+	// find the longest axis in the indexed distances
+	double[] distances = distanceIndex.get(p.uri);
+	int n = p.getPacked().size();
 	double maxDistance = 0;
-	double distance;
 	int from = -1, to = -1;
-	for (int i = 0; i < p.points.size(); i++) {
-	    distances = new HashMap<Point, Double>();
-	    for (int j = i + 1; j < p.points.size(); j++) {
-		distance = distance(p.points.get(i), p.points.get(j));
-		distances.put(p.points.get(j), distance);
-		if (distance > maxDistance) {
-		    maxDistance = distance;
+	int k = 0;
+	for (int i = 0; i < n; i++) {
+	    for (int j = i + 1; j < n; j++) {
+		if (distances[k] > maxDistance) {
+		    maxDistance = distances[k];
 		    from = i;
 		    to = j;
 		}
-		computations++;
-	    }
-	    if (!distances.isEmpty()) {
-		index.put(p.points.get(i), distances);
+		k++;
 	    }
 	}
 	// if polygon size is above 1, then compute the middle of the longest
@@ -79,8 +84,6 @@ public class CentroidIndex extends PolygonIndex {
 	else {
 	    centroids.put(p.uri, new Circle(p.points.get(0), 0.0));
 	}
-	distanceIndex.put(p.uri, index);
-	polygonIndex.put(p.uri, p);
     }
 
     public Point average(Point source, Point target) {
@@ -4,7 +4,7 @@
  */
 package org.aksw.limes.core.measures.measure.pointsets.hausdorff;
 
-import org.aksw.limes.core.datastrutures.Point;
+import org.aksw.limes.core.measures.mapper.atomic.hausdorff.PackedPolygon;
 import org.aksw.limes.core.measures.mapper.atomic.hausdorff.Polygon;
 
 /**
@@ -24,13 +24,15 @@ public class FastHausdorff extends NaiveHausdorff {
      */
     @Override
     public double computeDistance(Polygon X, Polygon Y, double threshold) {
+	PackedPolygon x = X.getPacked();
+	PackedPolygon y = Y.getPacked();
 	double max = 0f;
 	double d;
 	double min;
-	for (Point x : X.points) {
+	for (int i = 0; i < x.size(); i++) {
 	    min = Float.POSITIVE_INFINITY;
-	    for (Point y : Y.points) {
-		d = distance(x, y);
+	    for (int j = 0; j < y.size(); j++) {
+		d = distance(x, i, y, j);
 		if (min > d) {
 		    min = d;
 		}
@@ -45,10 +47,6 @@ public class FastHausdorff extends NaiveHausdorff {
 	return max;
     }
 
-    public FastHausdorff() {
-	computations = 0;
-    }
-
     public String getName() {
 	return "fast";
     }
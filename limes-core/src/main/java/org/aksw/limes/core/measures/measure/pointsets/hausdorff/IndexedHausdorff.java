@@ -10,6 +10,7 @@ import org.aksw.limes.core.io.mapping.Mapping;
 import org.aksw.limes.core.io.mapping.MemoryMapping;
 import org.aksw.limes.core.measures.mapper.atomic.hausdorff.GreatEllipticDistance;
 import org.aksw.limes.core.measures.mapper.atomic.hausdorff.OrthodromicDistance;
+import org.aksw.limes.core.measures.mapper.atomic.hausdorff.PackedPolygon;
 import org.aksw.limes.core.measures.mapper.atomic.hausdorff.Polygon;
 import org.aksw.limes.core.measures.mapper.atomic.hausdorff.PolygonIndex;
 import org.aksw.limes.core.measures.measure.pointsets.PointsetsMeasure;
@@ -17,6 +18,7 @@ import org.aksw.limes.core.measures.measure.pointsets.PointsetsMeasure;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  *
@@ -25,7 +27,7 @@ import java.util.Set;
 public class IndexedHausdorff extends PointsetsMeasure {
 
     public PolygonIndex targetIndex;
-    public int computations;
+    public final AtomicLong computations = new AtomicLong();
     public NaiveHausdorff nh;
 
     /**
@@ -35,12 +37,11 @@ public class IndexedHausdorff extends PointsetsMeasure {
      */
     public IndexedHausdorff() {
 	targetIndex = null;
-	computations = 0;
 	nh = new NaiveHausdorff();
     }
 
     public int getComputations() {
-	return computations + targetIndex.computations;
+	return (int) (computations.get() + targetIndex.computations.get());
     }
 
     public Mapping run(Set<Polygon> source, Set<Polygon> target, double threshold) {
@@ -164,28 +165,36 @@ public class IndexedHausdorff extends PointsetsMeasure {
 	if (X.uri.equals(Y.uri)) {
 	    return 0f;
 	}
+	PackedPolygon x = X.getPacked();
+	PackedPolygon y = Y.getPacked();
 	double max = 0f;
 	double d;
-	Map<Point, Double> distances;
+	// the exemplars are the points of Y whose distance to the current point
+	// of X was computed
+	int[] exemplars = new int[y.size()];
+	double[] distances = new double[y.size()];
+	int exemplarCount;
 	double min = 0, approx;
-	for (Point x : X.points) {
-	    distances = new HashMap<Point, Double>();
-	    for (Point y : Y.points) {
-		if (distances.isEmpty()) {
-		    min = distance(x, y);
-		    distances.put(y, min);
+	for (int i = 0; i < x.size(); i++) {
+	    exemplarCount = 0;
+	    for (int j = 0; j < y.size(); j++) {
+		if (exemplarCount == 0) {
+		    min = distance(x, i, y, j);
+		    exemplars[0] = j;
+		    distances[0] = min;
+		    exemplarCount = 1;
 		} else {
 		    // first try examplars
 		    double dist, minDist = Double.POSITIVE_INFINITY;
-		    Point exemplar = null;
-		    for (Point e : distances.keySet()) {
-			dist = targetIndex.getDistance(Y.uri, e, y);
+		    int exemplar = -1;
+		    for (int e = 0; e < exemplarCount; e++) {
+			dist = targetIndex.getDistance(Y, exemplars[e], j);
 			if (dist < minDist) {
 			    minDist = dist;
 			    exemplar = e;
 			}
 		    }
-		    approx = Math.abs(distances.get(exemplar) - minDist);
+		    approx = Math.abs(distances[exemplar] - minDist);
 		    if (approx > threshold) {
 			// no need to compute d as it is larger than the
 			// threshold anyway
@@ -199,8 +208,9 @@ public class IndexedHausdorff extends PointsetsMeasure {
 			}
 		    } else if (approx < min) {
 			// approximation does not give us any information
-			d = distance(x, y);
-			distances.put(y, d);
+			d = distance(x, i, y, j);
+			exemplars[exemplarCount] = j;
+			distances[exemplarCount++] = d;
 			if (min > d) {
 			    min = d;
 			}
@@ -226,13 +236,32 @@ public class IndexedHausdorff extends PointsetsMeasure {
      * @return Distance between x and y
      */
     public double distance(Point x, Point y) {
-	computations++;
+	computations.incrementAndGet();
 	if (USE_GREAT_ELLIPTIC_DISTANCE) {
 	    return GreatEllipticDistance.getDistanceInDegrees(x, y);
 	}
 	return OrthodromicDistance.getDistanceInDegrees(x, y);
     }
 
+    /**
+     * @param X
+     *            First polygon
+     * @param i
+     *            Index of a point of X
+     * @param Y
+     *            Second polygon
+     * @param j
+     *            Index of a point of Y
+     * @return Distance between the i-th point of X and the j-th point of Y
+     */
+    public double distance(PackedPolygon X, int i, PackedPolygon Y, int j) {
+	computations.incrementAndGet();
+	if (USE_GREAT_ELLIPTIC_DISTANCE) {
+	    return GreatEllipticDistance.getDistance(X, i, Y, j);
+	}
+	return OrthodromicDistance.getDistance(X, i, Y, j);
+    }
+
     public String getName() {
 	return "indexedHausdorff";
     }
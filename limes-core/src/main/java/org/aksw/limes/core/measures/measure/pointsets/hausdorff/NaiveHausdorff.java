@@ -11,12 +11,14 @@ import org.aksw.limes.core.io.mapping.MemoryMapping;
 import org.aksw.limes.core.measures.mapper.atomic.OrchidMapper;
 import org.aksw.limes.core.measures.mapper.atomic.hausdorff.GreatEllipticDistance;
 import org.aksw.limes.core.measures.mapper.atomic.hausdorff.OrthodromicDistance;
+import org.aksw.limes.core.measures.mapper.atomic.hausdorff.PackedPolygon;
 import org.aksw.limes.core.measures.mapper.atomic.hausdorff.Polygon;
 import org.aksw.limes.core.measures.measure.pointsets.PointsetsMeasure;
 
 import java.util.HashSet;
 import java.util.Set;
 import java.util.TreeSet;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  *
@@ -24,7 +26,7 @@ import java.util.TreeSet;
  */
 public class NaiveHausdorff extends PointsetsMeasure {
 
-    public int computations;
+    public final AtomicLong computations = new AtomicLong();
 
     /**
      * Brute force approach to computing the SetMeasure distance between two
@@ -37,21 +39,22 @@ public class NaiveHausdorff extends PointsetsMeasure {
      * @return Distance between the two polygons
      */
     public NaiveHausdorff() {
-	computations = 0;
     }
 
     public int getComputations() {
-	return computations;
+	return (int) computations.get();
     }
 
     public double computeDistance(Polygon X, Polygon Y, double threshold) {
+	PackedPolygon x = X.getPacked();
+	PackedPolygon y = Y.getPacked();
 	double max = 0;
 	double d;
 	double min;
-	for (Point x : X.points) {
+	for (int i = 0; i < x.size(); i++) {
 	    min = Double.POSITIVE_INFINITY;
-	    for (Point y : Y.points) {
-		d = distance(x, y);
+	    for (int j = 0; j < y.size(); j++) {
+		d = distance(x, i, y, j);
 		if (min > d) {
 		    min = d;
 		}
@@ -64,13 +67,16 @@ public class NaiveHausdorff extends PointsetsMeasure {
     }
 
     public static double distance(Polygon X, Polygon Y, double threshold) {
+	NaiveHausdorff nh = new NaiveHausdorff();
+	PackedPolygon x = X.getPacked();
+	PackedPolygon y = Y.getPacked();
 	double max = 0;
 	double d;
 	double min;
-	for (Point x : X.points) {
+	for (int i = 0; i < x.size(); i++) {
 	    min = Double.POSITIVE_INFINITY;
-	    for (Point y : Y.points) {
-		d = (new NaiveHausdorff()).distance(x, y);
+	    for (int j = 0; j < y.size(); j++) {
+		d = nh.distance(x, i, y, j);
 		if (min > d) {
 		    min = d;
 		}
@@ -118,13 +124,32 @@ public class NaiveHausdorff extends PointsetsMeasure {
      * @return Distance between x and y
      */
     public double distance(Point x, Point y) {
-	computations++;
+	computations.incrementAndGet();
 	if (USE_GREAT_ELLIPTIC_DISTANCE) {
 	    return GreatEllipticDistance.getDistanceInDegrees(x, y);
 	}
 	return OrthodromicDistance.getDistanceInDegrees(x, y);
     }
 
+    /**
+     * @param X
+     *            First polygon
+     * @param i
+     *            Index of a point of X
+     * @param Y
+     *            Second polygon
+     * @param j
+     *            Index of a point of Y
+     * @return Distance between the i-th point of X and the j-th point of Y
+     */
+    public double distance(PackedPolygon X, int i, PackedPolygon Y, int j) {
+	computations.incrementAndGet();
+	if (USE_GREAT_ELLIPTIC_DISTANCE) {
+	    return GreatEllipticDistance.getDistance(X, i, Y, j);
+	}
+	return OrthodromicDistance.getDistance(X, i, Y, j);
+    }
+
     public double getSimilarity(Object a, Object b) {
 	Polygon p1 = OrchidMapper.getPolygon((String) a);
 	Polygon p2 = OrchidMapper.getPolygon((String) b);
@@ -141,13 +141,13 @@ public class ScanIndexedHausdorff extends CentroidIndexedHausdorff {
     public Map<Integer, List<Integer>> initToCompute(Polygon s, Polygon t, double threshold, Mapping knownDistances) {
 	// 1. compute first distance
 	Map<Integer, List<Integer>> toCompute = new HashMap<Integer, List<Integer>>();
-	double approx, d = distance(s.points.get(0), t.points.get(0));
+	double approx, d = distance(s.getPacked(), 0, t.getPacked(), 0);
 	if (d <= threshold) {
 	    knownDistances.add(0 + "", 0 + "", d);
 	}
 	// 2. approximate distance from s0 to all other points
 	for (int j = 1; j < t.points.size(); j++) {
-	    approx = d - targetIndex.getDistance(t.uri, t.points.get(0), t.points.get(j));
+	    approx = d - targetIndex.getDistance(t, 0, j);
 	    // do not compute values larger than the threshold
 	    if (approx <= threshold) {
 		if (!toCompute.containsKey(0)) {
@@ -160,7 +160,7 @@ public class ScanIndexedHausdorff extends CentroidIndexedHausdorff {
 	// 3. Repeat 2. for t0, i.e., approximate distance from t0 to all other
 	// points
 	for (int i = 1; i < s.points.size(); i++) {
-	    approx = d - targetIndex.getDistance(s.uri, s.points.get(0), s.points.get(i));
+	    approx = d - targetIndex.getDistance(s, 0, i);
 	    if (approx <= threshold) {
 		// remove from toCompute if in there
 		if (!toCompute.containsKey(i)) {
@@ -172,9 +172,9 @@ public class ScanIndexedHausdorff extends CentroidIndexedHausdorff {
 
 	// 4. now approximate distance from s1 ... sn to t1 ... tm
 	for (int i = 1; i < s.points.size(); i++) {
-	    approx = d - (sourceIndex.getDistance(s.uri, s.points.get(0), s.points.get(i)));
+	    approx = d - (sourceIndex.getDistance(s, 0, i));
 	    for (int j = 1; j < t.points.size(); j++) {
-		if (approx - targetIndex.getDistance(t.uri, t.points.get(0), t.points.get(j)) <= threshold) {
+		if (approx - targetIndex.getDistance(t, 0, j) <= threshold) {
 		    if (!toCompute.containsKey(i)) {
 			toCompute.put(i, new ArrayList<Integer>());
 		    }
@@ -203,7 +203,7 @@ public class ScanIndexedHausdorff extends CentroidIndexedHausdorff {
 	Map.Entry<Integer, List<Integer>> entries = toCompute.entrySet().iterator().next();
 	sIndex = entries.getKey();
 	tIndex = entries.getValue().get(0);
-	double approx, d = distance(s.points.get(sIndex), t.points.get(tIndex));
+	double approx, d = distance(s.getPacked(), sIndex, t.getPacked(), tIndex);
 	
 	if (d <= threshold) {
 	    knownDistances.add(sIndex + "", tIndex + "", d);
@@ -220,12 +220,12 @@ public class ScanIndexedHausdorff extends CentroidIndexedHausdorff {
 	for (int sIdx : toCompute.keySet()) {
 	    for (int tIdx : toCompute.get(sIdx)) {
 		if (sIdx == sIndex) {
-		    approx = Math.abs(d - targetIndex.getDistance(t.uri, t.points.get(tIdx), t.points.get(tIndex)));
+		    approx = Math.abs(d - targetIndex.getDistance(t, tIdx, tIndex));
 		} else if (tIdx == tIndex) {
-		    approx = Math.abs(d - sourceIndex.getDistance(s.uri, s.points.get(sIdx), s.points.get(sIndex)));
+		    approx = Math.abs(d - sourceIndex.getDistance(s, sIdx, sIndex));
 		} else {
-		    approx = d - targetIndex.getDistance(t.uri, t.points.get(tIdx), t.points.get(tIndex))
-			    - sourceIndex.getDistance(s.uri, s.points.get(sIdx), s.points.get(sIndex));
+		    approx = d - targetIndex.getDistance(t, tIdx, tIndex)
+			    - sourceIndex.getDistance(s, sIdx, sIndex);
 		}
 		
 		if (approx > threshold) {
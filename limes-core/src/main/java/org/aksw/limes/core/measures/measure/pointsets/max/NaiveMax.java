@@ -10,12 +10,14 @@ import org.aksw.limes.core.io.mapping.MemoryMapping;
 import org.aksw.limes.core.measures.mapper.atomic.OrchidMapper;
 import org.aksw.limes.core.measures.mapper.atomic.hausdorff.GreatEllipticDistance;
 import org.aksw.limes.core.measures.mapper.atomic.hausdorff.OrthodromicDistance;
+import org.aksw.limes.core.measures.mapper.atomic.hausdorff.PackedPolygon;
 import org.aksw.limes.core.measures.mapper.atomic.hausdorff.Polygon;
 import org.aksw.limes.core.measures.measure.pointsets.PointsetsMeasure;
 
 import java.util.HashSet;
 import java.util.Set;
 import java.util.TreeSet;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * @author sherif
@@ -23,7 +25,7 @@ import java.util.TreeSet;
  */
 public class NaiveMax extends PointsetsMeasure {
 
-    public int computations;
+    public final AtomicLong computations = new AtomicLong();
 
     /**
      * Brute force approach to computing the MAX distance between two polygons
@@ -35,19 +37,20 @@ public class NaiveMax extends PointsetsMeasure {
      * @return Distance between the two polygons
      */
     public NaiveMax() {
-	computations = 0;
     }
 
     public int getComputations() {
-	return computations;
+	return (int) computations.get();
     }
 
     public double computeDistance(Polygon X, Polygon Y, double threshold) {
+	PackedPolygon x = X.getPacked();
+	PackedPolygon y = Y.getPacked();
 	double max = 0.0;
 	double d;
-	for (Point x : X.points) {
-	    for (Point y : Y.points) {
-		d = distance(x, y);
+	for (int i = 0; i < x.size(); i++) {
+	    for (int j = 0; j < y.size(); j++) {
+		d = distance(x, i, y, j);
 		if (max < d) {
 		    max = d;
 		}
@@ -57,11 +60,14 @@ public class NaiveMax extends PointsetsMeasure {
     }
 
     public static double distance(Polygon X, Polygon Y, double threshold) {
+	NaiveMax m = new NaiveMax();
+	PackedPolygon x = X.getPacked();
+	PackedPolygon y = Y.getPacked();
 	double max = 0.0;
 	double d;
-	for (Point x : X.points) {
-	    for (Point y : Y.points) {
-		d = (new NaiveMax()).distance(x, y);
+	for (int i = 0; i < x.size(); i++) {
+	    for (int j = 0; j < y.size(); j++) {
+		d = m.distance(x, i, y, j);
 		if (max < d) {
 		    max = d;
 		}
@@ -107,13 +113,32 @@ public class NaiveMax extends PointsetsMeasure {
      * @return Distance between x and y
      */
     public double distance(Point x, Point y) {
-	computations++;
+	computations.incrementAndGet();
 	if (USE_GREAT_ELLIPTIC_DISTANCE) {
 	    return GreatEllipticDistance.getDistanceInDegrees(x, y);
 	}
 	return OrthodromicDistance.getDistanceInDegrees(x, y);
     }
 
+    /**
+     * @param X
+     *            First polygon
+     * @param i
+     *            Index of a point of X
+     * @param Y
+     *            Second polygon
+     * @param j
+     *            Index of a point of Y
+     * @return Distance between the i-th point of X and the j-th point of Y
+     */
+    public double distance(PackedPolygon X, int i, PackedPolygon Y, int j) {
+	computations.incrementAndGet();
+	if (USE_GREAT_ELLIPTIC_DISTANCE) {
+	    return GreatEllipticDistance.getDistance(X, i, Y, j);
+	}
+	return OrthodromicDistance.getDistance(X, i, Y, j);
+    }
+
     public double getSimilarity(Object a, Object b) {
 	Polygon p1 = OrchidMapper.getPolygon((String) a);
 	Polygon p2 = OrchidMapper.getPolygon((String) b);
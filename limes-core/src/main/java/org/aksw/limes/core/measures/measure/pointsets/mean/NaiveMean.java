@@ -10,6 +10,7 @@ import org.aksw.limes.core.io.mapping.MemoryMapping;
 import org.aksw.limes.core.measures.mapper.atomic.OrchidMapper;
 import org.aksw.limes.core.measures.mapper.atomic.hausdorff.GreatEllipticDistance;
 import org.aksw.limes.core.measures.mapper.atomic.hausdorff.OrthodromicDistance;
+import org.aksw.limes.core.measures.mapper.atomic.hausdorff.PackedPolygon;
 import org.aksw.limes.core.measures.mapper.atomic.hausdorff.Polygon;
 import org.aksw.limes.core.measures.measure.pointsets.PointsetsMeasure;
 
@@ -17,6 +18,7 @@ import java.util.ArrayList;
 import java.util.HashSet;
 import java.util.Set;
 import java.util.TreeSet;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * @author sherif
@@ -24,7 +26,7 @@ import java.util.TreeSet;
  */
 public class NaiveMean extends PointsetsMeasure {
 
-    public int computations;
+    public final AtomicLong computations = new AtomicLong();
 
     /**
      * Brute force approach to computing the mean distance between two polygons
@@ -36,31 +38,28 @@ public class NaiveMean extends PointsetsMeasure {
      * @return Distance between the two polygons
      */
     public NaiveMean() {
-	computations = 0;
     }
 
     public int getComputations() {
-	return computations;
+	return (int) computations.get();
     }
 
     public double computeDistance(Polygon X, Polygon Y, double threshold) {
-	Point meanX = new Point();
-	for (Point x : X.points) {
-	    meanX = Point.add(meanX, x);
-	}
-	for (int i = 0; i < meanX.coordinates.size(); i++) {
-	    meanX.coordinates.set(i, meanX.coordinates.get(i) / X.points.size());
-	}
+	return distance(mean(X.getPacked()), mean(Y.getPacked()));
+    }
 
-	Point meanY = new Point();
-	for (Point y : Y.points) {
-	    meanY = Point.add(meanY, y);
-	}
-	for (int i = 0; i < meanY.coordinates.size(); i++) {
-	    meanY.coordinates.set(i, meanY.coordinates.get(i) / (double) Y.points.size());
+    /**
+     * @param X
+     *            Polygon
+     * @return The point with the mean latitude and longitude of the points of X
+     */
+    private static Point mean(PackedPolygon X) {
+	double latitude = 0, longitude = 0;
+	for (int i = 0; i < X.size(); i++) {
+	    latitude += X.latitudes[i];
+	    longitude += X.longitudes[i];
 	}
-
-	return distance(meanX, meanY);
+	return new Point(latitude / X.size(), longitude / X.size());
     }
 
     public static double distance(Polygon X, Polygon Y, double threshold) {
@@ -120,7 +119,7 @@ public class NaiveMean extends PointsetsMeasure {
      * @return Distance between x and y
      */
     public double distance(Point x, Point y) {
-	computations++;
+	computations.incrementAndGet();
 	if (USE_GREAT_ELLIPTIC_DISTANCE) {
 	    return GreatEllipticDistance.getDistanceInDegrees(x, y);
 	}
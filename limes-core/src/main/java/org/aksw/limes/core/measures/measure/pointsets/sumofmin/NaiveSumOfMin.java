@@ -6,6 +6,7 @@ package org.aksw.limes.core.measures.measure.pointsets.sumofmin;
 import java.util.HashSet;
 import java.util.Set;
 import java.util.TreeSet;
+import java.util.concurrent.atomic.AtomicLong;
 
 import org.aksw.limes.core.measures.measure.pointsets.min.NaiveMin;
 import org.aksw.limes.core.datastrutures.Point;
@@ -15,6 +16,7 @@ import org.aksw.limes.core.io.mapping.MemoryMapping;
 import org.aksw.limes.core.measures.mapper.atomic.OrchidMapper;
 import org.aksw.limes.core.measures.mapper.atomic.hausdorff.GreatEllipticDistance;
 import org.aksw.limes.core.measures.mapper.atomic.hausdorff.OrthodromicDistance;
+import org.aksw.limes.core.measures.mapper.atomic.hausdorff.PackedPolygon;
 import org.aksw.limes.core.measures.mapper.atomic.hausdorff.Polygon;
 import org.aksw.limes.core.measures.measure.pointsets.PointsetsMeasure;
 
@@ -23,7 +25,7 @@ import org.aksw.limes.core.measures.measure.pointsets.PointsetsMeasure;
  *
  */
 public class NaiveSumOfMin extends PointsetsMeasure {
-    public int computations;
+    public final AtomicLong computations = new AtomicLong();
 
     /**
      * Brute force approach to computing the MAX distance between two polygons
@@ -35,11 +37,10 @@ public class NaiveSumOfMin extends PointsetsMeasure {
      * @return Distance between the two polygons
      */
     public NaiveSumOfMin() {
-	computations = 0;
     }
 
     public int getComputations() {
-	return computations;
+	return (int) computations.get();
     }
 
     public double computeDistance(Polygon X, Polygon Y, double threshold) {
@@ -47,17 +48,19 @@ public class NaiveSumOfMin extends PointsetsMeasure {
     }
 
     private double SumOfMins(Polygon X, Polygon Y) {
+	PackedPolygon x = X.getPacked();
+	PackedPolygon y = Y.getPacked();
 	double sum = 0;
-	for (Point x : X.points) {
-	    sum += computeMinDistance(x, Y);
+	for (int i = 0; i < x.size(); i++) {
+	    sum += computeMinDistance(x, i, y);
 	}
 	return sum;
     }
 
-    private double computeMinDistance(Point x, Polygon Y) {
+    private double computeMinDistance(PackedPolygon X, int i, PackedPolygon Y) {
 	double d, min = Double.MAX_VALUE;
-	for (Point y : Y.points) {
-	    d = distance(x, y);
+	for (int j = 0; j < Y.size(); j++) {
+	    d = distance(X, i, Y, j);
 	    if (d < min) {
 		min = d;
 	    }
@@ -106,13 +109,32 @@ public class NaiveSumOfMin extends PointsetsMeasure {
      * @return Distance between x and y
      */
     public double distance(Point x, Point y) {
-	computations++;
+	computations.incrementAndGet();
 	if (USE_GREAT_ELLIPTIC_DISTANCE) {
 	    return GreatEllipticDistance.getDistanceInDegrees(x, y);
 	}
 	return OrthodromicDistance.getDistanceInDegrees(x, y);
     }
 
+    /**
+     * @param X
+     *            First polygon
+     * @param i
+     *            Index of a point of X
+     * @param Y
+     *            Second polygon
+     * @param j
+     *            Index of a point of Y
+     * @return Distance between the i-th point of X and the j-th point of Y
+     */
+    public double distance(PackedPolygon X, int i, PackedPolygon Y, int j) {
+	computations.incrementAndGet();
+	if (USE_GREAT_ELLIPTIC_DISTANCE) {
+	    return GreatEllipticDistance.getDistance(X, i, Y, j);
+	}
+	return OrthodromicDistance.getDistance(X, i, Y, j);
+    }
+
     public double getSimilarity(Object a, Object b) {
 	Polygon p1 = OrchidMapper.getPolygon((String) a);
 	Polygon p2 = OrchidMapper.getPolygon((String) b);
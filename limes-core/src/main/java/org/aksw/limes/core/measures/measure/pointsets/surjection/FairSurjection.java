@@ -6,6 +6,7 @@ package org.aksw.limes.core.measures.measure.pointsets.surjection;
 import java.util.HashSet;
 import java.util.Set;
 import java.util.TreeSet;
+import java.util.concurrent.atomic.AtomicLong;
 
 import org.aksw.limes.core.datastrutures.Point;
 import org.aksw.limes.core.io.cache.Instance;
@@ -14,6 +15,7 @@ import org.aksw.limes.core.io.mapping.MemoryMapping;
 import org.aksw.limes.core.measures.mapper.atomic.OrchidMapper;
 import org.aksw.limes.core.measures.mapper.atomic.hausdorff.GreatEllipticDistance;
 import org.aksw.limes.core.measures.mapper.atomic.hausdorff.OrthodromicDistance;
+import org.aksw.limes.core.measures.mapper.atomic.hausdorff.PackedPolygon;
 import org.aksw.limes.core.measures.mapper.atomic.hausdorff.Polygon;
 import org.aksw.limes.core.measures.measure.pointsets.IPointsetsMeasure;
 import org.aksw.limes.core.measures.measure.pointsets.PointsetsMeasure;
@@ -25,7 +27,7 @@ import org.aksw.limes.core.util.Pair;
  */
 public class FairSurjection extends PointsetsMeasure {
 
-    public int computations;
+    public final AtomicLong computations = new AtomicLong();
 
     /**
      * Approach to computing the Surjection distance between two polygons
@@ -37,11 +39,10 @@ public class FairSurjection extends PointsetsMeasure {
      * @return Distance between the two polygons
      */
     public FairSurjection() {
-	computations = 0;
     }
 
     public int getComputations() {
-	return computations;
+	return (int) computations.get();
     }
 
     public double computeDistance(Polygon X, Polygon Y, double threshold) {
@@ -49,9 +50,11 @@ public class FairSurjection extends PointsetsMeasure {
 	FairSurjectionFinder fsf = new FairSurjectionFinder(X, Y);
 	fsf.USE_GREAT_ELLIPTIC_DISTANCE = IPointsetsMeasure.USE_GREAT_ELLIPTIC_DISTANCE;
 
-	for (Pair<Point> p : fsf.getFairSurjectionPairsList()) {
-	   
-	    sum += distance(p.a, p.b);
+	PackedPolygon small = fsf.small.getPacked();
+	PackedPolygon large = fsf.large.getPacked();
+	int[] pairs = fsf.getFairSurjectionPairs();
+	for (int k = 0; k < pairs.length; k += 2) {
+	    sum += distance(large, pairs[k], small, pairs[k + 1]);
 	}
 	return sum;
     }
@@ -103,13 +106,32 @@ public class FairSurjection extends PointsetsMeasure {
      * @return Distance between x and y
      */
     public double distance(Point x, Point y) {
-	computations++;
+	computations.incrementAndGet();
 	if (USE_GREAT_ELLIPTIC_DISTANCE) {
 	    return GreatEllipticDistance.getDistanceInDegrees(x, y);
 	}
 	return OrthodromicDistance.getDistanceInDegrees(x, y);
     }
 
+    /**
+     * @param X
+     *            First polygon
+     * @param i
+     *            Index of a point of X
+     * @param Y
+     *            Second polygon
+     * @param j
+     *            Index of a point of Y
+     * @return Distance between the i-th point of X and the j-th point of Y
+     */
+    public double distance(PackedPolygon X, int i, PackedPolygon Y, int j) {
+	computations.incrementAndGet();
+	if (USE_GREAT_ELLIPTIC_DISTANCE) {
+	    return GreatEllipticDistance.getDistance(X, i, Y, j);
+	}
+	return OrthodromicDistance.getDistance(X, i, Y, j);
+    }
+
     public double getSimilarity(Object a, Object b) {
 	Polygon p1 = OrchidMapper.getPolygon((String) a);
 	Polygon p2 = OrchidMapper.getPolygon((String) b);
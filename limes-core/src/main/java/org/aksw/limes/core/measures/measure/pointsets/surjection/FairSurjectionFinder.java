@@ -3,13 +3,13 @@
  */
 package org.aksw.limes.core.measures.measure.pointsets.surjection;
 
+import java.util.Arrays;
 import java.util.List;
-import java.util.Map.Entry;
-import java.util.TreeMap;
 
 import org.aksw.limes.core.datastrutures.Point;
 import org.aksw.limes.core.measures.mapper.atomic.hausdorff.GreatEllipticDistance;
 import org.aksw.limes.core.measures.mapper.atomic.hausdorff.OrthodromicDistance;
+import org.aksw.limes.core.measures.mapper.atomic.hausdorff.PackedPolygon;
 import org.aksw.limes.core.measures.mapper.atomic.hausdorff.Polygon;
 import org.aksw.limes.core.util.Pair;
 
@@ -39,33 +39,91 @@ public class FairSurjectionFinder extends SurjectionFinder {
 	return OrthodromicDistance.getDistanceInDegrees(x, y);
     }
 
+    /**
+     * @param X
+     *            First polygon
+     * @param i
+     *            Index of a point of X
+     * @param Y
+     *            Second polygon
+     * @param j
+     *            Index of a point of Y
+     * @return Distance between the i-th point of X and the j-th point of Y
+     */
+    public double distance(PackedPolygon X, int i, PackedPolygon Y, int j) {
+	if (USE_GREAT_ELLIPTIC_DISTANCE) {
+	    return GreatEllipticDistance.getDistance(X, i, Y, j);
+	}
+	return OrthodromicDistance.getDistance(X, i, Y, j);
+    }
+
     public List<Pair<Point>> getFairSurjectionPairsList() {
 	if (surjectionPairsList.isEmpty()) {
+	    toPairsList(getFairSurjectionPairs());
+	}
+	return surjectionPairsList;
+    }
+
+    /**
+     * Computes the fair surjection on the packed points of the polygons.
+     *
+     * @return The indexes of the points of the pairs (l,s), i.e., the index of
+     *         l in the large polygon followed by the index of s in the small
+     *         polygon
+     */
+    public int[] getFairSurjectionPairs() {
+	if (surjectionPairs == null) {
+	    PackedPolygon s = small.getPacked();
+	    PackedPolygon l = large.getPacked();
 	    // compute the fair capacity for each of the small polygon points
-	    int fairCapacity = (int) Math.ceil((double) large.points.size() / (double) small.points.size());
-	    for (Point s : small.points) {
-		int fairCount = 0;
-		// get sorted set of all near by points
-		TreeMap<Double, Point> nearestPoints = getSortedNearestPoints(s, large);
-		// add fairCapacity times of the nearby point to the
-		// surjectionPairsList
-		for (Entry<Double, Point> e : nearestPoints.entrySet()) {
-		    Point l = e.getValue();
-		    surjectionPairsList.add(new Pair<Point>(l, s));
-		    fairCount++;
-		    // if the fair capacity reached the go to the next point
-		    if (fairCount == fairCapacity)
-			break;
+	    int fairCapacity = (int) Math.ceil((double) l.size() / (double) s.size());
+	    int[] pairs = new int[0];
+	    int n = 0;
+	    for (int i = 0; i < s.size(); i++) {
+		// get the fairCapacity nearest points and add them to the pairs
+		int[] nearestPoints = getSortedNearestPoints(s, i, l, fairCapacity);
+		if (pairs.length < n + 2 * nearestPoints.length) {
+		    pairs = Arrays.copyOf(pairs, Math.max(2 * pairs.length, n + 2 * nearestPoints.length));
+		}
+		for (int j : nearestPoints) {
+		    pairs[n++] = j;
+		    pairs[n++] = i;
 		}
 	    }
+	    surjectionPairs = Arrays.copyOf(pairs, n);
 	}
-	return surjectionPairsList;
+	return surjectionPairs;
     }
 
-    TreeMap<Double, Point> getSortedNearestPoints(Point x, Polygon Y) {
-	TreeMap<Double, Point> result = new TreeMap<Double, Point>();
-	for (Point y : Y.points) {
-	    result.put(distance(x, y), y);
+    /**
+     * Sorts the points of Y by their distance to the i-th point of X. Points
+     * at the same distance are counted once, by the last of them.
+     *
+     * @return The indexes of the nearest points of Y, at most capacity many
+     */
+    int[] getSortedNearestPoints(PackedPolygon X, int i, PackedPolygon Y, int capacity) {
+	double[] distances = new double[Y.size()];
+	for (int j = 0; j < Y.size(); j++) {
+	    distances[j] = distance(X, i, Y, j);
+	}
+	// the smallest distinct distances
+	double[] nearest = distances.clone();
+	Arrays.sort(nearest);
+	int count = 0;
+	for (double d : nearest) {
+	    if (count == 0 || Double.compare(d, nearest[count - 1]) != 0) {
+		if (count == capacity) {
+		    break;
+		}
+		nearest[count++] = d;
+	    }
+	}
+	int[] result = new int[count];
+	for (int j = 0; j < Y.size(); j++) {
+	    int rank = Arrays.binarySearch(nearest, 0, count, distances[j]);
+	    if (rank >= 0) {
+		result[rank] = j;
+	    }
 	}
 	return result;
     }
@@ -4,12 +4,14 @@
 package org.aksw.limes.core.measures.measure.pointsets.surjection;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 
 import org.aksw.limes.core.datastrutures.Point;
 
 import org.aksw.limes.core.measures.mapper.atomic.hausdorff.GreatEllipticDistance;
 import org.aksw.limes.core.measures.mapper.atomic.hausdorff.OrthodromicDistance;
+import org.aksw.limes.core.measures.mapper.atomic.hausdorff.PackedPolygon;
 import org.aksw.limes.core.measures.mapper.atomic.hausdorff.Polygon;
 import org.aksw.limes.core.util.Pair;
 
@@ -20,6 +22,9 @@ import org.aksw.limes.core.util.Pair;
 public class SurjectionFinder {
     public static boolean USE_GREAT_ELLIPTIC_DISTANCE = true;
     protected List<Pair<Point>> surjectionPairsList;
+    // the pairs as indexes of a point of the large and a point of the small
+    // polygon, one pair after the other
+    protected int[] surjectionPairs;
     protected Polygon small, large;
 
     /**
@@ -42,25 +47,61 @@ public class SurjectionFinder {
 
     public List<Pair<Point>> getSurjectionPairsList() {
 	if (surjectionPairsList.isEmpty()) {
-	    Polygon largeCopy = new Polygon(large);
+	    toPairsList(getSurjectionPairs());
+	}
+	return surjectionPairsList;
+    }
+
+    /**
+     * Computes the surjection on the packed points of the polygons.
+     *
+     * @return The indexes of the points of the pairs (l,s), i.e., the index of
+     *         l in the large polygon followed by the index of s in the small
+     *         polygon
+     */
+    public int[] getSurjectionPairs() {
+	if (surjectionPairs == null) {
+	    PackedPolygon s = small.getPacked();
+	    PackedPolygon l = large.getPacked();
+	    int[] pairs = new int[2 * (s.size() + l.size())];
+	    int n = 0;
+	    boolean[] paired = new boolean[l.size()];
 
 	    // find nearest points (l) to each point of the small polygon (s)
-	    // and add the pairs (l,s) to the surjectionPairsList
-	    for (Point s : small.points) {
-		Point l = getNearestPoint(s, largeCopy);
-		surjectionPairsList.add(new Pair<Point>(l, s));
-		largeCopy.remove(l);
+	    // and add the pairs (l,s) to the surjectionPairs
+	    for (int i = 0; i < s.size(); i++) {
+		int j = getNearestPoint(s, i, l, paired);
+		pairs[n++] = j;
+		pairs[n++] = i;
+		if (j >= 0) {
+		    paired[j] = true;
+		}
 	    }
 
 	    // for each of the rest points of the large polygon (l)
 	    // find nearest point (s) from the small polygon
-	    // and add the pairs (l,s) to the surjectionPairsList
-	    for (Point l : largeCopy.points) {
-		Point s = getNearestPoint(l, small);
-		surjectionPairsList.add(new Pair<Point>(l, s));
+	    // and add the pairs (l,s) to the surjectionPairs
+	    for (int j = 0; j < l.size(); j++) {
+		if (!paired[j]) {
+		    pairs[n++] = j;
+		    pairs[n++] = getNearestPoint(l, j, s, null);
+		}
 	    }
+	    surjectionPairs = Arrays.copyOf(pairs, n);
+	}
+	return surjectionPairs;
+    }
+
+    /**
+     * Adds the pairs of points with the given indexes to the
+     * surjectionPairsList
+     */
+    protected void toPairsList(int[] pairs) {
+	for (int k = 0; k < pairs.length; k += 2) {
+	    Point l = (pairs[k] < 0) ? null : large.points.get(pairs[k]);
+	    Point s = (pairs[k + 1] < 0) ? null : small.points.get(pairs[k + 1]);
+	    surjectionPairsList.add(new Pair<Point>(l, s));
 	}
-	return surjectionPairsList;
     }
 
     /**
@@ -77,14 +118,47 @@ public class SurjectionFinder {
 	return OrthodromicDistance.getDistanceInDegrees(x, y);
     }
 
-    protected Point getNearestPoint(Point x, Polygon Y) {
+    /**
+     * @param X
+     *            First polygon
+     * @param i
+     *            Index of a point of X
+     * @param Y
+     *            Second polygon
+     * @param j
+     *            Index of a point of Y
+     * @return Distance between the i-th point of X and the j-th point of Y
+     */
+    public double distance(PackedPolygon X, int i, PackedPolygon Y, int j) {
+	if (USE_GREAT_ELLIPTIC_DISTANCE) {
+	    return GreatEllipticDistance.getDistance(X, i, Y, j);
+	}
+	return OrthodromicDistance.getDistance(X, i, Y, j);
+    }
+
+    /**
+     * @param X
+     *            Polygon of the point
+     * @param i
+     *            Index of the point in X
+     * @param Y
+     *            Polygon to search
+     * @param skip
+     *            Marks the points of Y to ignore, may be null
+     * @return Index of the first point of Y nearest to the i-th point of X, -1
+     *         if there is none
+     */
+    protected int getNearestPoint(PackedPolygon X, int i, PackedPolygon Y, boolean[] skip) {
 	double d, min = Double.MAX_VALUE;
-	Point result = null;
-	for (Point y : Y.points) {
-	    d = distance(x, y);
+	int result = -1;
+	for (int j = 0; j < Y.size(); j++) {
+	    if (skip != null && skip[j]) {
+		continue;
+	    }
+	    d = distance(X, i, Y, j);
 	    if (d < min) {
 		min = d;
-		result = y;
+		result = j;
 	    }
 	}
 	return result;
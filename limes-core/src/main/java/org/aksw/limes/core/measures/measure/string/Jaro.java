@@ -5,15 +5,35 @@
 package org.aksw.limes.core.measures.measure.string;
 
 import org.aksw.limes.core.io.cache.Instance;
+import org.apache.commons.lang3.tuple.ImmutableTriple;
 
 import java.util.ArrayList;
+import java.util.LinkedList;
 import java.util.List;
 
 /**
+ * The bounds of {@link TrieFilterableStringMeasure} follow from the fact that
+ * the Jaro similarity of strings of lengths l1 and l2 with m common characters
+ * is at most (m/l1 + m/l2 + 1)/3, and that m is at most the size of the
+ * intersection of the character multisets of the strings. The measure keeps
+ * no state, so one instance can be used by several threads at once.
  *
  * @author ngonga
  */
-public class Jaro extends StringMeasure {
+public class Jaro extends StringMeasure implements TrieFilterableStringMeasure {
+
+    // slack for the rounding of the similarities, keeps the bounds safe
+    private static final double EPSILON = 1e-6;
+
+    // buffers of proximity, the copy of the second string and the common
+    // characters of both strings, per thread
+    private static final ThreadLocal<char[][]> buffers = new ThreadLocal<char[][]>() {
+	@Override
+	protected char[][] initialValue() {
+	    return new char[3][16];
+	}
+    };
+
     /**
      * gets the similarity of the two strings using Jaro distance.
      *
@@ -98,6 +118,110 @@ public class Jaro extends StringMeasure {
 	return returnCommons;
     }
 
+    /**
+     * Clone method for parallel execution
+     * @return A new measure
+     */
+    public Jaro clone() {
+	return new Jaro();
+    }
+
+    /**
+     * Same similarity as {@link #getSimilarity(String, String)}, computed on
+     * char arrays of the calling thread instead of lists of characters.
+     *
+     * @param string1
+     *            the first input string
+     * @param string2
+     *            the second input string
+     * @return a value between 0-1 of the similarity
+     */
+    public double proximity(String string1, String string2) {
+	int n = string1.length();
+	int m = string2.length();
+	char[][] buffer = buffers.get();
+	if (buffer[0].length < Math.max(n, m)) {
+	    int capacity = Math.max(buffer[0].length * 2, Math.max(n, m));
+	    buffer = new char[3][capacity];
+	    buffers.set(buffer);
+	}
+	char[] copy = buffer[0];
+	char[] common1 = buffer[1];
+	char[] common2 = buffer[2];
+	int halflen = Math.min(n, m) / 2;
+	int size1 = getCommonCharacters(string1, string2, halflen, copy, common1);
+	int size2 = getCommonCharacters(string2, string1, halflen, copy, common2);
+	if (size1 == 0 || size1 != size2) {
+	    return 0d;
+	}
+	int transpositions = 0;
+	for (int i = 0; i < size1; i++) {
+	    if (common1[i] != common2[i])
+		transpositions++;
+	}
+	transpositions /= 2;
+	// in float like getSimilarity, so that both return the same values
+	return ((size1 / (float) n) + (size2 / (float) m) + (size1 - transpositions) / (float) size1) / 3.0f;
+    }
+
+    /**
+     * Char array version of {@link #getCommonCharacters(String, String, int)}
+     *
+     * @return the number of common characters written to common
+     */
+    private static int getCommonCharacters(String string1, String string2, int distanceSep, char[] copy,
+	    char[] common) {
+	int n = string1.length();
+	int m = string2.length();
+	string2.getChars(0, m, copy, 0);
+	int size = 0;
+	for (int i = 0; i < n; i++) {
+	    char ch = string1.charAt(i);
+	    int end = Math.min(i + distanceSep, m);
+	    for (int j = Math.max(0, i - distanceSep); j < end; j++) {
+		if (copy[j] == ch) {
+		    common[size++] = ch;
+		    copy[j] = (char) 0;
+		    break;
+		}
+	    }
+	}
+	return size;
+    }
+
+    @Override
+    public double characterFrequencyUpperBound(int l1, int l2, int m) {
+	return (((double) m / (double) l1) + ((double) m / (double) l2) + 1.0d) / 3.0d + EPSILON;
+    }
+
+    @Override
+    public int characterMatchLowerBound(int l1, int l2, double threshold) {
+	return (int) Math.ceil((3.0d * threshold - 1.0d) * l1 * l2 / (l1 + l2) - EPSILON);
+    }
+
+    @Override
+    public int lengthUpperBound(int l1, double threshold) {
+	// with m <= l1, the longer string has at most l1/(3*threshold - 2)
+	// characters, which is unbounded for thresholds up to 2/3
+	if (3.0d * threshold - 2.0d <= EPSILON)
+	    return -1;
+	return (int) Math.floor(l1 / (3.0d * threshold - 2.0d) + EPSILON);
+    }
+
+    @Override
+    public int lengthLowerBound(int l1, double threshold) {
+	return (int) Math.ceil(l1 * (3.0d * threshold - 2.0d) - EPSILON);
+    }
+
+    @Override
+    public LinkedList<ImmutableTriple<Integer, Integer, Integer>> getPartitionBounds(int maxSize, double threshold) {
+	LinkedList<ImmutableTriple<Integer, Integer, Integer>> sliceBoundaries = new LinkedList<>();
+	for (int t = 1; t <= maxSize; t++) {
+	    sliceBoundaries.add(new ImmutableTriple<>(t, lengthLowerBound(t, threshold), lengthUpperBound(t, threshold)));
+	}
+	return sliceBoundaries;
+    }
+
     public double getSimilarity(Object a, Object b) {
 	throw new UnsupportedOperationException("Not supported yet.");
     }
@@ -111,13 +235,13 @@ public class Jaro extends StringMeasure {
 	double sim = 0;
 	for (String source : a.getProperty(property1)) {
 	    for (String target : b.getProperty(property2)) {
-		sim = getSimilarity(source, target);
+		sim = proximity(source, target);
 		if (sim > value) {
 		    value = sim;
 		}
 	    }
 	}
-	return sim;
+	return value;
     }
 
     public String getName() {
@@ -0,0 +1,74 @@
+package org.aksw.limes.core.measures.measure.string;
+
+import org.aksw.limes.core.io.cache.Instance;
+import org.aksw.limes.core.measures.measure.Measure;
+
+/**
+ * Monge-Elkan similarity of two texts, i.e., the average over the tokens of
+ * the first text of the best trigram similarity to a token of the second
+ * text. The tokens are separated by spaces. Pairwise counterpart of the
+ * {@link org.aksw.limes.core.measures.mapper.atomic.MongeElkanMapper}.
+ */
+public class MongeElkan extends Measure {
+
+    private final TrigramMeasure trigrams = new TrigramMeasure();
+
+    /**
+     * @param source
+     *            Text whose tokens are averaged
+     * @param target
+     *            Text whose tokens are searched
+     * @return The Monge-Elkan similarity of the texts
+     */
+    public double proximity(String source, String target) {
+	String[] sourceTokens = source.split(" ");
+	String[] targetTokens = target.split(" ");
+	if (sourceTokens.length == 0) {
+	    return 0d;
+	}
+	double sum = 0;
+	for (String a : sourceTokens) {
+	    double max = 0;
+	    for (String b : targetTokens) {
+		double sim = a.equals(b) ? 1d : trigrams.getSimilarity(a, b);
+		if (max < sim) {
+		    max = sim;
+		}
+		if (max == 1) {
+		    break;
+		}
+	    }
+	    sum += max;
+	}
+	return sum / sourceTokens.length;
+    }
+
+    public double getSimilarity(Object a, Object b) {
+	return proximity(a + "", b + "");
+    }
+
+    public double getSimilarity(Instance a, Instance b, String property1, String property2) {
+	double max = 0;
+	for (String source : a.getProperty(property1)) {
+	    for (String target : b.getProperty(property2)) {
+		double sim = proximity(source, target);
+		if (sim > max) {
+		    max = sim;
+		}
+	    }
+	}
+	return max;
+    }
+
+    public String getName() {
+	return "monge-elkan";
+    }
+
+    public String getType() {
+	return "string";
+    }
+
+    public double getRuntimeApproximation(double mappingSize) {
+	return mappingSize / 1000d;
+    }
+}
@@ -4,7 +4,7 @@
  */
 package org.aksw.limes.core.measures.measure.string;
 
-
+
 import org.aksw.limes.core.io.cache.Instance;
 import org.aksw.limes.core.measures.mapper.atomic.fastngram.NGramTokenizer;
 import org.aksw.limes.core.measures.mapper.atomic.fastngram.Tokenizer;
@@ -96,7 +96,7 @@ public class QGramSimilarity extends StringMeasure {
                 }
             }
         }
-        return sim;
+        return value;
     }
 
     public String getName() {
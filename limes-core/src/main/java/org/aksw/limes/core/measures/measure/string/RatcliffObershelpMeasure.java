@@ -3,6 +3,7 @@ package org.aksw.limes.core.measures.measure.string;
 import org.aksw.limes.core.io.cache.Instance;
 import org.apache.commons.lang3.tuple.ImmutableTriple;
 
+import java.util.Arrays;
 import java.util.LinkedList;
 
 public class RatcliffObershelpMeasure extends StringMeasure implements TrieFilterableStringMeasure {
@@ -12,6 +13,13 @@ public class RatcliffObershelpMeasure extends StringMeasure implements TrieFilte
      */
     private int score;
 
+    /**
+     * rows of the dynamic program of the longest common substring, reused
+     * across calls.
+     */
+    private int[] previous = new int[0];
+    private int[] current = new int[0];
+
     @Override
     public double characterFrequencyUpperBound(int l1, int l2, int m) {
         return (2*(double)m)/((double)l1+(double)l2);
@@ -41,6 +49,14 @@ public class RatcliffObershelpMeasure extends StringMeasure implements TrieFilte
         return sliceBoundaries;
     }
 
+    /**
+     * Clone method for parallel execution, the score is not shared
+     * @return A new measure
+     */
+    public RatcliffObershelpMeasure clone() {
+        return new RatcliffObershelpMeasure();
+    }
+
     /**
      * returns the score calculated by the algorithm
      *
@@ -49,95 +65,79 @@ public class RatcliffObershelpMeasure extends StringMeasure implements TrieFilte
      * @return double
      */
     public double proximity(String s1, String s2) {
-        score = 0;
-
-        s1 = s1.toLowerCase();
-        s2 = s2.toLowerCase();
-
-        processRatcliffAlgorithm(s1, s2);
-
-        return (double) score / (s1.length() + s2.length());
+        return proximity(s1.toLowerCase().toCharArray(), s2.toLowerCase().toCharArray());
     }
 
     /**
-     * processes the ratcliff/obershelp-algorithm recursivcely. this method is
-     * faster than the iterative option (ca. 5-10%).
+     * returns the score of two strings that are already in lower case
      *
      * @param s1
      * @param s2
+     * @return double
      */
-    private void processRatcliffAlgorithm(String s1, String s2) {
-
-        String substring = findLongestSubstring(s1, s2);
-        if (substring == null || substring.isEmpty())
-            return;
-        score += 2 * substring.length();
-        int index1 = s1.indexOf(substring);
-        int index2 = s2.indexOf(substring);
-        String rightPartS1 = s1.substring(index1 + substring.length());
-        String leftPartS1 = s1.substring(0, index1);
-        String rightPartS2 = s2.substring(index2 + substring.length());
-        String leftPartS2 = s2.substring(0, index2);
-        if (rightPartS1 != null && !rightPartS1.isEmpty()
-                && rightPartS2 != null && !rightPartS2.isEmpty()) {
-            processRatcliffAlgorithm(rightPartS1, rightPartS2);
-        }
-        if (leftPartS1 != null && !leftPartS1.isEmpty() && leftPartS2 != null
-                && !leftPartS2.isEmpty()) {
-            processRatcliffAlgorithm(leftPartS1, leftPartS2);
+    public double proximity(char[] s1, char[] s2) {
+        score = 0;
+        if (previous.length <= s2.length) {
+            previous = new int[s2.length + 1];
+            current = new int[s2.length + 1];
         }
+
+        processRatcliffAlgorithm(s1, 0, s1.length, s2, 0, s2.length);
+
+        return (double) score / (s1.length + s2.length);
     }
 
     /**
-     * finds the largest common group of two strings.
+     * processes the ratcliff/obershelp-algorithm recursively on the ranges
+     * [begin1, end1) of s1 and [begin2, end2) of s2, so that no substrings
+     * are created.
      *
-     * @param s
-     * @param t
-     * @return String
+     * @param s1
+     * @param s2
      */
-    private String findLongestSubstring(String s, String t) {
-
-        StringBuilder sb = new StringBuilder();
-        if (s == null || s.isEmpty() || t == null || t.isEmpty())
-            return "";
-
-        // ignore case
-        s = s.toLowerCase();
-        t = t.toLowerCase();
-
-        // java initializes them already with 0
-        int[][] num = new int[s.length()][t.length()];
-        int maxlen = 0;
-        int lastSubsBegin = 0;
-
-        for (int i = 0; i < s.length(); i++) {
-            for (int j = 0; j < t.length(); j++) {
-                if (s.charAt(i) == t.charAt(j)) {
-                    if ((i == 0) || (j == 0))
-                        num[i][j] = 1;
-                    else
-                        num[i][j] = 1 + num[i - 1][j - 1];
-
-                    if (num[i][j] > maxlen) {
-                        maxlen = num[i][j];
-                        // generate substring from str1 => i
-                        int thisSubsBegin = i - num[i][j] + 1;
-                        if (lastSubsBegin == thisSubsBegin) {
-                            // if the current LCS is the same as the last time
-                            // this block ran
-                            sb.append(s.charAt(i));
-                        } else {
-                            // this block resets the string builder if a
-                            // different LCS is found
-                            sb.setLength(0);
-                            sb.append(s.substring(thisSubsBegin, i + 1));
-                            lastSubsBegin = thisSubsBegin;
-                        }
+    private void processRatcliffAlgorithm(char[] s1, int begin1, int end1, char[] s2, int begin2, int end2) {
+
+        // the longest common substring, as the first one found by the
+        // original algorithm, i.e., ending first in s1 and then in s2
+        int length = 0;
+        int last1 = 0;
+        int last2 = 0;
+        int[] above = previous;
+        int[] row = current;
+        // row[j + 1] is the length of the common suffix of s1 up to i and s2
+        // up to j
+        Arrays.fill(above, begin2, end2 + 1, 0);
+        row[begin2] = 0;
+        for (int i = begin1; i < end1; i++) {
+            char c = s1[i];
+            for (int j = begin2; j < end2; j++) {
+                if (c == s2[j]) {
+                    int suffix = above[j] + 1;
+                    row[j + 1] = suffix;
+                    if (suffix > length) {
+                        length = suffix;
+                        last1 = i;
+                        last2 = j;
                     }
+                } else {
+                    row[j + 1] = 0;
                 }
             }
+            int[] swap = above;
+            above = row;
+            row = swap;
+        }
+        if (length == 0)
+            return;
+        score += 2 * length;
+        int index1 = last1 - length + 1;
+        int index2 = last2 - length + 1;
+        if (index1 + length < end1 && index2 + length < end2) {
+            processRatcliffAlgorithm(s1, index1 + length, end1, s2, index2 + length, end2);
+        }
+        if (index1 > begin1 && index2 > begin2) {
+            processRatcliffAlgorithm(s1, begin1, index1, s2, begin2, index2);
         }
-        return sb.toString();
     }
 
     @Override
@@ -192,7 +192,7 @@ public class RatcliffObershelpMeasure extends StringMeasure implements TrieFilte
                 }
             }
         }
-        return sim;
+        return value;
     }
 
     @Override
@@ -0,0 +1,57 @@
+package org.aksw.limes.core.measures.measure.string;
+
+import org.aksw.limes.core.io.cache.Instance;
+import org.aksw.limes.core.measures.mapper.atomic.soundex.SoundexCodes;
+import org.aksw.limes.core.measures.measure.Measure;
+
+/**
+ * Similarity of the soundex codes of two strings, i.e., one minus the Hamming
+ * distance of the codes divided by the code length. Pairwise counterpart of
+ * the {@link org.aksw.limes.core.measures.mapper.atomic.SoundexMapper}.
+ */
+public class Soundex extends Measure {
+
+    /**
+     * @return The similarity of the soundex codes of the strings
+     */
+    public double proximity(String s1, String s2) {
+	String code1 = SoundexCodes.getCode(s1);
+	String code2 = SoundexCodes.getCode(s2);
+	int distance = 0;
+	for (int i = 0; i < SoundexCodes.CODE_LENGTH; i++) {
+	    if (code1.charAt(i) != code2.charAt(i)) {
+		distance++;
+	    }
+	}
+	return 1.0d - (distance / (double) SoundexCodes.CODE_LENGTH);
+    }
+
+    public double getSimilarity(Object a, Object b) {
+	return proximity(a + "", b + "");
+    }
+
+    public double getSimilarity(Instance a, Instance b, String property1, String property2) {
+	double max = 0;
+	for (String source : a.getProperty(property1)) {
+	    for (String target : b.getProperty(property2)) {
+		double sim = proximity(source, target);
+		if (sim > max) {
+		    max = sim;
+		}
+	    }
+	}
+	return max;
+    }
+
+    public String getName() {
+	return "soundex";
+    }
+
+    public String getType() {
+	return "string";
+    }
+
+    public double getRuntimeApproximation(double mappingSize) {
+	return mappingSize / 1000d;
+    }
+}
@@ -20,4 +20,12 @@ public interface TrieFilterableStringMeasure extends IStringMeasure {
     LinkedList<ImmutableTriple<Integer, Integer, Integer>> getPartitionBounds(int maxSize, double threshold);
 
     double proximity(String a, String b);
+
+    /**
+     * Measures may keep state for computing proximities, so each thread works
+     * on its own copy.
+     *
+     * @return A new measure with the same settings
+     */
+    TrieFilterableStringMeasure clone();
 }
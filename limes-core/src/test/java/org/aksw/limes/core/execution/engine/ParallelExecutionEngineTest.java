@@ -0,0 +1,74 @@
+package org.aksw.limes.core.execution.engine;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+import org.aksw.limes.core.execution.planning.plan.NestedPlan;
+import org.aksw.limes.core.execution.planning.planner.CanonicalPlanner;
+import org.aksw.limes.core.io.cache.Cache;
+import org.aksw.limes.core.io.cache.MemoryCache;
+import org.aksw.limes.core.io.ls.LinkSpecification;
+import org.aksw.limes.core.io.mapping.Mapping;
+import org.junit.Test;
+
+/**
+ * Checks that the parallel engine returns the mappings of the simple engine
+ * and that it does not leave pools behind.
+ */
+public class ParallelExecutionEngineTest {
+
+    private static final String SPEC = "OR(AND(trigrams(x.name, y.name)|0.5, jaccard(x.name, y.name)|0.3)|0.5,"
+	    + "levenshtein(x.name, y.name)|0.8)";
+
+    private static Cache createCache(String prefix, Random random) {
+	Cache cache = new MemoryCache();
+	for (int i = 0; i < 100; i++) {
+	    StringBuilder name = new StringBuilder();
+	    for (int j = 0; j < 3 + random.nextInt(5); j++) {
+		name.append((char) ('a' + random.nextInt(6)));
+	    }
+	    cache.addTriple(prefix + i, "name", name.toString());
+	}
+	return cache;
+    }
+
+    private static NestedPlan createPlan() {
+	LinkSpecification spec = new LinkSpecification();
+	spec.readSpec(SPEC, 0.5);
+	return new CanonicalPlanner().plan(spec);
+    }
+
+    @Test
+    public void testSameMappingAsSimpleEngine() {
+	Random random = new Random(1);
+	Cache source = createCache("s", random);
+	Cache target = createCache("t", random);
+	Mapping expected = new SimpleExecutionEngine(source, target, "?x", "?y").execute(createPlan());
+	assertTrue(expected.size() > 0);
+	Mapping shared = new ParallelExecutionEngine(source, target, "?x", "?y").execute(createPlan());
+	assertEquals(expected.getMap(), shared.getMap());
+	Mapping own = new ParallelExecutionEngine(source, target, "?x", "?y", 2).execute(createPlan());
+	assertEquals(expected.getMap(), own.getMap());
+	ForkJoinPool pool = new ForkJoinPool(2);
+	Mapping given = new ParallelExecutionEngine(source, target, "?x", "?y", pool).execute(createPlan());
+	assertEquals(expected.getMap(), given.getMap());
+	assertTrue(!pool.isShutdown());
+	pool.shutdown();
+    }
+
+    @Test
+    public void testOwnPoolsAreShutDown() throws InterruptedException {
+	Random random = new Random(2);
+	Cache source = createCache("s", random);
+	Cache target = createCache("t", random);
+	int threads = Thread.activeCount();
+	for (int i = 0; i < 20; i++) {
+	    new ParallelExecutionEngine(source, target, "?x", "?y", 2).execute(createPlan());
+	}
+	Thread.sleep(500);
+	assertTrue(Thread.activeCount() <= threads + 2);
+    }
+}
@@ -0,0 +1,158 @@
+package org.aksw.limes.core.io.cache;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.TreeSet;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.Test;
+
+/**
+ * Checks that caches read back from binary snapshots, at once and lazily,
+ * compressed and not, hold the data that was written.
+ */
+public class BinaryCacheFormatTest {
+
+    private static Cache createCache(int size, long seed) {
+	Random random = new Random(seed);
+	Cache cache = new MemoryCache();
+	for (int i = 0; i < size; i++) {
+	    String uri = "http://example.org/resource/" + i;
+	    cache.addTriple(uri, "label", "Label " + random.nextInt(size) + " \u00e4\u00df\u4e2d");
+	    for (int j = random.nextInt(3); j > 0; j--) {
+		cache.addTriple(uri, "city", "city" + random.nextInt(20));
+	    }
+	    if (i % 50 == 0) {
+		// longer than the initial string buffer
+		StringBuilder text = new StringBuilder();
+		for (int j = 0; j < 100; j++) {
+		    text.append("word").append(j).append(' ');
+		}
+		cache.addTriple(uri, "text", text.toString());
+	    }
+	}
+	return cache;
+    }
+
+    private static void assertSameData(Cache expected, Cache actual) {
+	assertEquals(expected.size(), actual.size());
+	for (String uri : expected.getAllUris()) {
+	    Instance e = expected.getInstance(uri);
+	    Instance a = actual.getInstance(uri);
+	    assertEquals(uri, a.getUri());
+	    assertEquals(new TreeSet<String>(e.getAllProperties()), new TreeSet<String>(a.getAllProperties()));
+	    for (String p : e.getAllProperties()) {
+		assertEquals(e.getProperty(p), a.getProperty(p));
+	    }
+	}
+    }
+
+    private static File write(Cache cache, boolean compress) throws IOException {
+	File file = File.createTempFile("limes-snapshot", BinaryCacheFormat.EXTENSION);
+	file.deleteOnExit();
+	BinaryCacheFormat.write(cache, file, compress);
+	assertTrue(BinaryCacheFormat.isBinaryCache(file));
+	return file;
+    }
+
+    @Test
+    public void testRead() throws IOException {
+	Cache expected = createCache(2000, 1);
+	for (boolean compress : new boolean[] { false, true }) {
+	    File file = write(expected, compress);
+	    Cache actual = new MemoryCache();
+	    BinaryCacheFormat.read(file, actual);
+	    assertSameData(expected, actual);
+	    actual = new MemoryCache();
+	    BinaryCacheFormat.readLazily(file, actual);
+	    assertSameData(expected, actual);
+	    file.delete();
+	}
+    }
+
+    @Test
+    public void testEmptyCache() throws IOException {
+	File file = write(new MemoryCache(), false);
+	Cache cache = new MemoryCache();
+	BinaryCacheFormat.readLazily(file, cache);
+	assertEquals(0, cache.size());
+	file.delete();
+    }
+
+    @Test
+    public void testLazyInstancesInThreads() throws Exception {
+	final Cache expected = createCache(5000, 2);
+	File file = write(expected, false);
+	final Cache actual = new MemoryCache();
+	BinaryCacheFormat.readLazily(file, actual);
+	final List<String> uris = actual.getAllUris();
+	ExecutorService pool = Executors.newFixedThreadPool(4);
+	List<Future<Integer>> futures = new ArrayList<Future<Integer>>();
+	for (int t = 0; t < 4; t++) {
+	    final int offset = t;
+	    futures.add(pool.submit(new Callable<Integer>() {
+		public Integer call() {
+		    int mismatches = 0;
+		    // all threads decode the same instances in different orders
+		    for (int i = 0; i < uris.size(); i++) {
+			String uri = uris.get((i * (offset + 1)) % uris.size());
+			if (!expected.getInstance(uri).getProperty("label")
+				.equals(actual.getInstance(uri).getProperty("label"))) {
+			    mismatches++;
+			}
+		    }
+		    return mismatches;
+		}
+	    }));
+	}
+	for (Future<Integer> future : futures) {
+	    assertEquals(0, (int) future.get());
+	}
+	pool.shutdown();
+	assertSameData(expected, actual);
+	file.delete();
+    }
+
+    @Test
+    public void testHybridCacheSnapshot() throws Exception {
+	File folder = Files.createTempDirectory("limes-snapshot-test").toFile();
+	File cacheFolder = new File(folder, "cache");
+	cacheFolder.mkdir();
+	HybridCache cache = new HybridCache(folder);
+	Cache expected = createCache(300, 3);
+	for (Instance instance : expected.getAllInstances()) {
+	    cache.addInstance(instance);
+	}
+	File file = new File(cacheFolder, "1" + BinaryCacheFormat.EXTENSION);
+	cache.saveToFile(file);
+	HybridCache loaded = HybridCache.loadFromFile(file);
+	assertSameData(expected, loaded);
+
+	// lazily read instances are serialized as plain instances
+	ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+	ObjectOutputStream out = new ObjectOutputStream(bytes);
+	out.writeObject(HybridCache.loadFromFile(file));
+	out.close();
+	Cache read = (Cache) new ObjectInputStream(new ByteArrayInputStream(bytes.toByteArray())).readObject();
+	assertSameData(expected, read);
+	assertEquals(Instance.class, read.getInstance("http://example.org/resource/0").getClass());
+
+	file.delete();
+	cacheFolder.delete();
+	folder.delete();
+    }
+}
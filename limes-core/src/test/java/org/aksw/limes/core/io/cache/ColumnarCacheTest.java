@@ -0,0 +1,155 @@
+package org.aksw.limes.core.io.cache;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.TreeSet;
+
+import org.junit.Test;
+
+/**
+ * Checks that the ColumnarCache holds the same data as the MemoryCache, with
+ * dense and sparse properties, that it returns one instance per URI that
+ * sorts like the instances of the MemoryCache, and that it needs less heap
+ * than the MemoryCache.
+ */
+public class ColumnarCacheTest {
+
+    private static final String[] CITIES = { "berlin", "dresden", "leipzig", "hamburg", "bonn", "kiel" };
+
+    private static Cache fill(Cache cache, int size, long seed) {
+	Random random = new Random(seed);
+	for (int i = 0; i < size; i++) {
+	    String uri = "http://example.org/resource/" + i;
+	    cache.addTriple(uri, "http://www.w3.org/2000/01/rdf-schema#label", "label " + random.nextInt(size));
+	    cache.addTriple(uri, "http://example.org/city", CITIES[random.nextInt(CITIES.length)]);
+	    if (random.nextInt(3) == 0) {
+		cache.addTriple(uri, "http://example.org/city", CITIES[random.nextInt(CITIES.length)]);
+	    }
+	    // sparse property
+	    if (i % 97 == 0) {
+		cache.addTriple(uri, "http://example.org/note", "note " + i);
+	    }
+	}
+	return cache;
+    }
+
+    private static void assertSameData(Cache expected, Cache actual) {
+	assertEquals(expected.size(), actual.size());
+	assertEquals(new TreeSet<String>(expected.getAllProperties()),
+		new TreeSet<String>(actual.getAllProperties()));
+	for (String uri : expected.getAllUris()) {
+	    Instance e = expected.getInstance(uri);
+	    Instance a = actual.getInstance(uri);
+	    assertEquals(new TreeSet<String>(e.getAllProperties()), new TreeSet<String>(a.getAllProperties()));
+	    for (String p : e.getAllProperties()) {
+		assertEquals(e.getProperty(p), a.getProperty(p));
+	    }
+	}
+    }
+
+    @Test
+    public void testSameDataAsMemoryCache() {
+	Cache expected = fill(new MemoryCache(), 2000, 1);
+	Cache actual = fill(new ColumnarCache(), 2000, 1);
+	assertSameData(expected, actual);
+
+	// changes of a dense and of a sparse property
+	for (Cache cache : new Cache[] { expected, actual }) {
+	    cache.getInstance("http://example.org/resource/5").removePropery("http://example.org/city");
+	    cache.getInstance("http://example.org/resource/97").removePropery("http://example.org/note");
+	    cache.addTriple("http://example.org/resource/1999", "http://example.org/note", "last");
+	    cache.addTriple("http://example.org/resource/0", "http://example.org/note", "first");
+	}
+	assertSameData(expected, actual);
+    }
+
+    @Test
+    public void testOneInstancePerUri() {
+	Cache cache = fill(new ColumnarCache(), 100, 2);
+	Instance instance = cache.getInstance("http://example.org/resource/7");
+	assertSame(instance, cache.getInstance("http://example.org/resource/7"));
+	assertTrue(cache.getAllInstances().contains(instance));
+	cache.resetIterator();
+	Instance first = cache.getNextInstance();
+	assertSame(first, cache.getInstance(first.getUri()));
+	// views of another cache are other instances
+	assertFalse(instance.equals(fill(new ColumnarCache(), 100, 2).getInstance(instance.getUri())));
+    }
+
+    @Test
+    public void testSortsLikeInstances() {
+	Cache columnar = fill(new ColumnarCache(), 50, 3);
+	List<Instance> instances = new ArrayList<Instance>();
+	Random random = new Random(3);
+	for (String uri : columnar.getAllUris()) {
+	    Instance view = columnar.getInstance(uri);
+	    view.distance = random.nextInt(5);
+	    instances.add(view);
+	    Instance copy = new Instance(uri + "#copy");
+	    copy.distance = random.nextInt(5);
+	    instances.add(copy);
+	}
+	TreeSet<Instance> sorted = new TreeSet<Instance>(instances);
+	assertEquals(instances.size(), sorted.size());
+	for (Instance instance : instances) {
+	    assertTrue(sorted.contains(instance));
+	}
+	Collections.shuffle(instances, random);
+	Collections.sort(instances);
+	assertEquals(new ArrayList<Instance>(sorted), instances);
+    }
+
+    @Test
+    public void testSerialization() throws Exception {
+	Cache cache = fill(new ColumnarCache(), 500, 4);
+	ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+	ObjectOutputStream out = new ObjectOutputStream(bytes);
+	out.writeObject(cache);
+	out.close();
+	Cache read = (Cache) new ObjectInputStream(new ByteArrayInputStream(bytes.toByteArray())).readObject();
+	assertNotSame(cache, read);
+	assertSameData(cache, read);
+	Instance instance = read.getInstance("http://example.org/resource/3");
+	assertSame(instance, read.getInstance("http://example.org/resource/3"));
+    }
+
+    private static long usedHeap() throws InterruptedException {
+	Runtime runtime = Runtime.getRuntime();
+	long used = Long.MAX_VALUE;
+	for (int i = 0; i < 5; i++) {
+	    System.gc();
+	    Thread.sleep(20);
+	    used = Math.min(used, runtime.totalMemory() - runtime.freeMemory());
+	}
+	return used;
+    }
+
+    private static long heapOf(Cache empty) throws InterruptedException {
+	long before = usedHeap();
+	Cache cache = fill(empty, 20000, 5);
+	long after = usedHeap();
+	// keep the cache reachable until it is measured
+	assertEquals(20000, cache.size());
+	return after - before;
+    }
+
+    @Test
+    public void testLessHeapThanMemoryCache() throws InterruptedException {
+	long memory = heapOf(new MemoryCache());
+	long columnar = heapOf(new ColumnarCache());
+	// measured: 12.3 MB for the MemoryCache, 5.9 MB for the ColumnarCache
+	assertTrue(columnar + " >= 2/3 * " + memory, columnar * 3 < memory * 2);
+    }
+}
@@ -0,0 +1,71 @@
+package org.aksw.limes.core.io.cache;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.junit.Test;
+
+/**
+ * Checks that temporary FileCaches delete their files when they are closed,
+ * also the ones returned by processData and addProperty, and that recently
+ * used instances are shared.
+ */
+public class FileCacheTest {
+
+    private static FileCache createCache(File folder) {
+	FileCache cache = new FileCache(folder, true, 1 << 20, 10, 10);
+	for (int i = 0; i < 100; i++) {
+	    cache.addTriple("s" + i, "name", "Name" + i);
+	}
+	return cache;
+    }
+
+    @Test
+    public void testTemporaryFolderIsDeletedOnClose() throws IOException {
+	File folder = Files.createTempDirectory("limes-filecache-test").toFile();
+	FileCache cache = createCache(folder);
+	assertEquals(100, cache.size());
+	assertTrue(new File(folder, "segment-0.dat").exists());
+	cache.close();
+	assertFalse(folder.exists());
+    }
+
+    @Test
+    public void testProcessedCachesAreTemporaryFileCaches() throws IOException {
+	File folder = Files.createTempDirectory("limes-filecache-test").toFile();
+	FileCache cache = createCache(folder);
+	Map<String, String> propertyMap = new HashMap<String, String>();
+	propertyMap.put("name", "lowercase");
+	FileCache processed = cache.processData(propertyMap);
+	assertEquals("name7", processed.getInstance("s7").getProperty("name").first());
+	FileCache added = cache.addProperty("name", "lower", "lowercase");
+	assertEquals("name7", added.getInstance("s7").getProperty("lower").first());
+	assertEquals("Name7", added.getInstance("s7").getProperty("name").first());
+	processed.close();
+	added.close();
+	cache.close();
+    }
+
+    @Test
+    public void testRecentlyUsedInstancesAreShared() throws IOException {
+	File folder = Files.createTempDirectory("limes-filecache-test").toFile();
+	FileCache cache = createCache(folder);
+	assertSame(cache.getInstance("s1"), cache.getInstance("s1"));
+	Instance first = cache.getInstance("s1");
+	for (int i = 2; i < 50; i++) {
+	    cache.getInstance("s" + i);
+	}
+	// dropped from the heap and read again
+	assertNotSame(first, cache.getInstance("s1"));
+	cache.close();
+    }
+}
@@ -0,0 +1,68 @@
+package org.aksw.limes.core.io.cache;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+/**
+ * Checks that the shared value indexes are rebuilt when their cache changes,
+ * also if the size of the cache stays the same.
+ */
+public class ValueIndexTest {
+
+    private static Cache createCache(Cache cache) {
+	cache.addTriple("s1", "name", "berlin");
+	cache.addTriple("s2", "name", "leipzig");
+	return cache;
+    }
+
+    private static void checkRebuild(Cache cache) {
+	ValueIndex index = ValueIndex.get(cache, "name");
+	assertSame(index, ValueIndex.get(cache, "name"));
+	assertTrue(index.getUris("dresden").isEmpty());
+
+	cache.addTriple("s1", "name", "dresden");
+	assertEquals(2, cache.size());
+	ValueIndex rebuilt = ValueIndex.get(cache, "name");
+	assertNotSame(index, rebuilt);
+	assertEquals(1, rebuilt.getUris("dresden").size());
+	assertTrue(rebuilt.getUris("dresden").contains("s1"));
+    }
+
+    @Test
+    public void testMemoryCacheChangeOfSameSizeRebuilds() {
+	checkRebuild(createCache(new MemoryCache()));
+    }
+
+    @Test
+    public void testColumnarCacheChangeOfSameSizeRebuilds() {
+	checkRebuild(createCache(new ColumnarCache()));
+    }
+
+    @Test
+    public void testReplaceInstanceRebuilds() {
+	Cache cache = createCache(new MemoryCache());
+	ValueIndex index = ValueIndex.get(cache, "name");
+	Instance instance = new Instance("s2");
+	instance.addProperty("name", "dresden");
+	cache.replaceInstance("s2", instance);
+	ValueIndex rebuilt = ValueIndex.get(cache, "name");
+	assertNotSame(index, rebuilt);
+	assertTrue(rebuilt.getUris("leipzig").isEmpty());
+	assertTrue(rebuilt.getUris("dresden").contains("s2"));
+    }
+
+    @Test
+    public void testInvalidateRebuilds() {
+	Cache cache = createCache(new MemoryCache());
+	ValueIndex index = ValueIndex.get(cache, "name");
+	// changes of the instances themselves are not seen by the cache
+	cache.getInstance("s1").addProperty("name", "dresden");
+	assertSame(index, ValueIndex.get(cache, "name"));
+	ValueIndex.invalidate(cache);
+	assertTrue(ValueIndex.get(cache, "name").getUris("dresden").contains("s1"));
+    }
+}
@@ -0,0 +1,152 @@
+package org.aksw.limes.core.io.mapping;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Map.Entry;
+
+import org.junit.Test;
+
+/**
+ * Checks that the changes of the nested-map view of a CompactMapping, also
+ * through its key sets, values, entry sets and iterators, are written through
+ * to the mapping.
+ */
+public class CompactMappingTest {
+
+    private static CompactMapping createMapping() {
+	CompactMapping mapping = new CompactMapping();
+	for (int s = 0; s < 10; s++) {
+	    for (int t = 0; t < 5; t++) {
+		mapping.add("s" + s, "t" + t, (s + t) / 20d);
+	    }
+	}
+	return mapping;
+    }
+
+    // the links of the mapping, independent of its view
+    private static Map<String, Map<String, Double>> links(CompactMapping mapping) {
+	Map<String, Map<String, Double>> links = new HashMap<String, Map<String, Double>>();
+	CompactMapping.Cursor c = mapping.cursor();
+	while (c.next()) {
+	    if (!links.containsKey(c.getSource())) {
+		links.put(c.getSource(), new HashMap<String, Double>());
+	    }
+	    links.get(c.getSource()).put(c.getTarget(), c.getConfidence());
+	}
+	return links;
+    }
+
+    private static void assertInSync(CompactMapping mapping) {
+	Map<String, Map<String, Double>> view = new HashMap<String, Map<String, Double>>();
+	int size = 0;
+	for (Entry<String, HashMap<String, Double>> e : mapping.getMap().entrySet()) {
+	    if (!e.getValue().isEmpty()) {
+		view.put(e.getKey(), new HashMap<String, Double>(e.getValue()));
+		size += e.getValue().size();
+	    }
+	}
+	assertEquals(links(mapping), view);
+	assertEquals(size, mapping.size());
+    }
+
+    @Test
+    public void testMapMethods() {
+	CompactMapping mapping = createMapping();
+	HashMap<String, HashMap<String, Double>> map = mapping.getMap();
+	map.get("s1").put("t9", 0.9);
+	map.get("s2").remove("t0");
+	map.remove("s3");
+	HashMap<String, Double> targets = new HashMap<String, Double>();
+	targets.put("t7", 0.7);
+	map.put("s4", targets);
+	map.put("s11", targets);
+	mapping.add("s5", "t8", 0.8);
+	assertInSync(mapping);
+	assertEquals(0.9, mapping.getConfidence("s1", "t9"), 0d);
+	assertFalse(mapping.contains("s3", "t1"));
+	assertFalse(mapping.contains("s4", "t1"));
+	assertEquals(0.8, map.get("s5").get("t8"), 0d);
+    }
+
+    @Test
+    public void testIteratorRemovals() {
+	CompactMapping mapping = createMapping();
+	HashMap<String, HashMap<String, Double>> map = mapping.getMap();
+	for (Iterator<String> it = map.keySet().iterator(); it.hasNext();) {
+	    if (it.next().equals("s0")) {
+		it.remove();
+	    }
+	}
+	for (Iterator<HashMap<String, Double>> it = map.values().iterator(); it.hasNext();) {
+	    HashMap<String, Double> t = it.next();
+	    if (t.containsKey("t4") && t.get("t4") == 0.25) {
+		it.remove();
+	    }
+	}
+	for (Iterator<Entry<String, Double>> it = map.get("s2").entrySet().iterator(); it.hasNext();) {
+	    if (it.next().getValue() < 0.2) {
+		it.remove();
+	    }
+	}
+	map.get("s3").keySet().remove("t0");
+	map.get("s4").values().remove(0.25);
+	map.keySet().remove("s6");
+	map.get("s7").keySet().retainAll(Collections.singleton("t1"));
+	assertInSync(mapping);
+	assertFalse(mapping.contains("s0", "t0"));
+	assertFalse(mapping.contains("s1", "t0"));
+	assertFalse(mapping.contains("s2", "t1"));
+	assertTrue(mapping.contains("s2", "t2"));
+	assertFalse(mapping.contains("s3", "t0"));
+	assertFalse(mapping.contains("s4", "t1"));
+	assertFalse(mapping.contains("s6", "t0"));
+	assertEquals(1, map.get("s7").size());
+	assertTrue(mapping.contains("s7", "t1"));
+	assertFalse(mapping.contains("s7", "t0"));
+    }
+
+    @Test
+    public void testSetValue() {
+	CompactMapping mapping = createMapping();
+	HashMap<String, HashMap<String, Double>> map = mapping.getMap();
+	for (Entry<String, Double> e : map.get("s1").entrySet()) {
+	    e.setValue(0.01);
+	}
+	for (Entry<String, HashMap<String, Double>> e : map.entrySet()) {
+	    if (e.getKey().equals("s2")) {
+		HashMap<String, Double> targets = new HashMap<String, Double>();
+		targets.put("t9", 0.5);
+		e.setValue(targets);
+	    }
+	}
+	assertInSync(mapping);
+	assertEquals(0.01, mapping.getConfidence("s1", "t4"), 0d);
+	assertFalse(mapping.contains("s2", "t0"));
+	assertEquals(0.5, mapping.getConfidence("s2", "t9"), 0d);
+	// the new targets are a view too
+	map.get("s2").remove("t9");
+	assertInSync(mapping);
+	assertFalse(mapping.contains("s2", "t9"));
+    }
+
+    @Test
+    public void testDictionary() {
+	UriDictionary dictionary = new UriDictionary();
+	for (int i = 0; i < 100; i++) {
+	    assertEquals(i, dictionary.intern("u" + i));
+	}
+	assertEquals(7, dictionary.intern("u7"));
+	assertEquals(100, dictionary.size());
+	assertEquals(-1, dictionary.getId("v"));
+	for (int i = 0; i < 100; i++) {
+	    assertEquals(i, dictionary.getId("u" + i));
+	    assertEquals("u" + i, dictionary.getUri(i));
+	}
+    }
+}
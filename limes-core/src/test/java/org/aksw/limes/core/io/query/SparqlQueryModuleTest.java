@@ -0,0 +1,147 @@
+package org.aksw.limes.core.io.query;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.fail;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.TreeSet;
+
+import org.aksw.limes.core.io.cache.Cache;
+import org.aksw.limes.core.io.cache.Instance;
+import org.aksw.limes.core.io.cache.MemoryCache;
+import org.aksw.limes.core.io.config.KBInfo;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.hp.hpl.jena.rdf.model.Model;
+import com.hp.hpl.jena.rdf.model.ModelFactory;
+import com.hp.hpl.jena.rdf.model.Property;
+import com.hp.hpl.jena.rdf.model.Resource;
+import com.hp.hpl.jena.vocabulary.RDF;
+import com.hp.hpl.jena.vocabulary.RDFS;
+
+/**
+ * Checks that the serial and the paged fetch modes of the SparqlQueryModule
+ * read the same data from a Jena model registered in the ModelRegistry, which
+ * stands in for the endpoint and is reused by every page request.
+ */
+public class SparqlQueryModuleTest {
+
+    private static final String ENDPOINT = "sparqlQueryModuleTest";
+    private static final String EX = "http://example.org/";
+    private static final int CITIES = 240;
+
+    @Before
+    public void registerModel() {
+	Model model = ModelFactory.createDefaultModel();
+	Resource city = model.createResource(EX + "City");
+	Property name = model.createProperty(EX + "name");
+	for (int i = 0; i < CITIES; i++) {
+	    Resource r = model.createResource(EX + "city" + i);
+	    r.addProperty(RDF.type, city);
+	    r.addProperty(RDFS.label, "City " + i);
+	    // several values per URI, so that the rows of a URI span pages
+	    for (int j = 0; j < i % 4; j++) {
+		r.addProperty(name, "Name " + i + "-" + j);
+	    }
+	}
+	// not a city
+	model.createResource(EX + "river").addProperty(RDFS.label, "River");
+	ModelRegistry.register(ENDPOINT, model);
+    }
+
+    @After
+    public void unregisterModel() {
+	ModelRegistry.unregister(ENDPOINT);
+    }
+
+    private static KBInfo kb(int pageSize) {
+	KBInfo kb = new KBInfo("?x");
+	kb.setId("cities");
+	kb.setEndpoint(ENDPOINT);
+	kb.setPageSize(pageSize);
+	kb.getPrefixes().put("ex", EX);
+	kb.getPrefixes().put("rdf", RDF.getURI());
+	kb.getPrefixes().put("rdfs", RDFS.getURI());
+	kb.addRestriction("?x rdf:type ex:City");
+	kb.getProperties().add("rdfs:label");
+	kb.getProperties().add("ex:name");
+	Map<String, String> label = new HashMap<String, String>();
+	label.put("rdfs:label", "lowercase");
+	kb.getFunctions().put("rdfs:label", label);
+	Map<String, String> name = new HashMap<String, String>();
+	name.put("ex:name", "");
+	kb.getFunctions().put("ex:name", name);
+	return kb;
+    }
+
+    private static Cache fill(SparqlQueryModule module) {
+	Cache cache = new MemoryCache();
+	module.fillCache(cache, false);
+	return cache;
+    }
+
+    private static void assertSameData(Cache expected, Cache actual) {
+	assertEquals(new TreeSet<String>(expected.getAllUris()), new TreeSet<String>(actual.getAllUris()));
+	for (String uri : expected.getAllUris()) {
+	    Instance e = expected.getInstance(uri);
+	    Instance a = actual.getInstance(uri);
+	    assertEquals(uri, new TreeSet<String>(e.getAllProperties()), new TreeSet<String>(a.getAllProperties()));
+	    for (String p : e.getAllProperties()) {
+		assertEquals(uri, e.getProperty(p), a.getProperty(p));
+	    }
+	}
+    }
+
+    @Test
+    public void testSerialFetch() {
+	Cache cache = fill(new SparqlQueryModule(kb(-1)));
+	// cities without a name do not match the query
+	assertEquals(CITIES - CITIES / 4, cache.size());
+	Instance city = cache.getInstance(EX + "city7");
+	assertEquals(new TreeSet<String>(Arrays.asList("city 7")), city.getProperty("rdfs:label"));
+	assertEquals(3, city.getProperty("ex:name").size());
+	assertNull(cache.getInstance(EX + "river"));
+    }
+
+    @Test
+    public void testOffsetPagesInFlight() {
+	Cache expected = fill(new SparqlQueryModule(kb(-1)));
+	for (int pageSize : new int[] { 7, 50, 1000 }) {
+	    SparqlQueryModule module = new SparqlQueryModule(kb(pageSize));
+	    module.setPagesInFlight(4);
+	    module.setWorkers(3);
+	    assertSameData(expected, fill(module));
+	}
+    }
+
+    @Test
+    public void testKeysetPagination() {
+	Cache expected = fill(new SparqlQueryModule(kb(-1)));
+	// page size 2 is smaller than the rows of some URIs
+	for (int pageSize : new int[] { 2, 7, 1000 }) {
+	    SparqlQueryModule module = new SparqlQueryModule(kb(pageSize));
+	    module.setKeysetPagination(true);
+	    module.setWorkers(2);
+	    assertSameData(expected, fill(module));
+	}
+    }
+
+    @Test
+    public void testUnregisteredModelFails() {
+	ModelRegistry.unregister(ENDPOINT);
+	SparqlQueryModule module = new SparqlQueryModule(kb(10));
+	module.setPagesInFlight(2);
+	module.setMaxAttempts(2);
+	try {
+	    fill(module);
+	    fail("Filled the cache without a registered model");
+	} catch (IllegalStateException e) {
+	    // expected
+	}
+    }
+}
@@ -0,0 +1,65 @@
+package org.aksw.limes.core.measures.mapper;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+/**
+ * Checks that the mapper executor returns the results in task order and runs
+ * at most as many tasks at the same time as the parallelism of the job.
+ */
+public class MapperExecutorTest {
+
+    private static List<Callable<Integer>> createTasks(int count, final AtomicInteger running,
+	    final AtomicInteger maxRunning) {
+	List<Callable<Integer>> tasks = new ArrayList<Callable<Integer>>();
+	for (int i = 0; i < count; i++) {
+	    final int result = i;
+	    tasks.add(new Callable<Integer>() {
+		public Integer call() throws Exception {
+		    int now = running.incrementAndGet();
+		    int max;
+		    while ((max = maxRunning.get()) < now && !maxRunning.compareAndSet(max, now)) {
+		    }
+		    Thread.sleep(2);
+		    running.decrementAndGet();
+		    return result;
+		}
+	    });
+	}
+	return tasks;
+    }
+
+    @Test
+    public void testResultsInTaskOrder() {
+	List<Integer> results = MapperExecutor.invokeAll(createTasks(50, new AtomicInteger(), new AtomicInteger()), 4);
+	assertEquals(50, results.size());
+	for (int i = 0; i < results.size(); i++) {
+	    assertEquals(i, results.get(i).intValue());
+	}
+    }
+
+    @Test
+    public void testParallelismBoundsRunningTasks() {
+	AtomicInteger maxRunning = new AtomicInteger();
+	MapperExecutor.invokeAll(createTasks(40, new AtomicInteger(), maxRunning), 2);
+	assertTrue(maxRunning.get() <= 2);
+	maxRunning.set(0);
+	MapperExecutor.invokeAll(createTasks(40, new AtomicInteger(), maxRunning), 1);
+	assertEquals(1, maxRunning.get());
+    }
+
+    @Test
+    public void testJobsShareOnePool() {
+	MapperExecutor.invokeAll(createTasks(8, new AtomicInteger(), new AtomicInteger()), 2);
+	MapperExecutor.invokeAll(createTasks(8, new AtomicInteger(), new AtomicInteger()), 3);
+	assertSame(MapperExecutor.getPool(), MapperExecutor.getPool());
+    }
+}
@@ -0,0 +1,111 @@
+package org.aksw.limes.core.measures.mapper;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.aksw.limes.core.io.cache.Cache;
+import org.aksw.limes.core.io.cache.MemoryCache;
+import org.aksw.limes.core.io.mapping.Mapping;
+
+/**
+ * Helpers shared by the mapper tests.
+ */
+public class MapperTestUtils {
+
+    public static final int CALLS = 8;
+
+    private MapperTestUtils() {
+    }
+
+    /**
+     * Creates a cache whose instances have a name of one to three random
+     * words, drawn from a random vocabulary, in the property "name".
+     *
+     * @param prefix
+     *            Prefix of the URIs
+     * @param size
+     *            Number of instances
+     * @param seed
+     *            Seed of the random names
+     * @return The cache
+     */
+    public static Cache createCache(String prefix, int size, long seed) {
+	// the vocabulary is the same for all caches
+	Random random = new Random(0);
+	String[] words = new String[Math.max(20, size / 25)];
+	for (int i = 0; i < words.length; i++) {
+	    StringBuilder word = new StringBuilder();
+	    for (int j = 0; j < 4 + random.nextInt(5); j++) {
+		word.append((char) ('a' + random.nextInt(26)));
+	    }
+	    words[i] = word.toString();
+	}
+	random = new Random(seed);
+	Cache cache = new MemoryCache();
+	for (int i = 0; i < size; i++) {
+	    StringBuilder name = new StringBuilder();
+	    int count = 1 + random.nextInt(3);
+	    for (int j = 0; j < count; j++) {
+		if (j > 0) {
+		    name.append(' ');
+		}
+		name.append(words[random.nextInt(words.length)]);
+	    }
+	    cache.addTriple(prefix + i, "name", name.toString());
+	}
+	return cache;
+    }
+
+    /**
+     * Runs CALLS calls at the same time, e.g., getMapping calls on the same
+     * mapper.
+     *
+     * @param call
+     *            Call to run
+     * @return The results of the calls
+     */
+    public static List<Mapping> getMappingsConcurrently(final Callable<Mapping> call) throws Exception {
+	ExecutorService pool = Executors.newFixedThreadPool(CALLS);
+	try {
+	    List<Callable<Mapping>> calls = new ArrayList<Callable<Mapping>>();
+	    for (int i = 0; i < CALLS; i++) {
+		calls.add(call);
+	    }
+	    List<Mapping> mappings = new ArrayList<Mapping>();
+	    for (Future<Mapping> future : pool.invokeAll(calls)) {
+		mappings.add(future.get());
+	    }
+	    return mappings;
+	} finally {
+	    pool.shutdown();
+	}
+    }
+
+    /**
+     * Wraps a call so that the mappers it calls run with the given
+     * parallelism, see {@link MapperExecutor#pin(int)}.
+     *
+     * @param call
+     *            Call to wrap
+     * @param parallelism
+     *            Parallelism of the call
+     * @return The wrapped call
+     */
+    public static <T> Callable<T> pinned(final Callable<T> call, final int parallelism) {
+	return new Callable<T>() {
+	    public T call() throws Exception {
+		MapperExecutor.pin(parallelism);
+		try {
+		    return call.call();
+		} finally {
+		    MapperExecutor.unpin();
+		}
+	    }
+	};
+    }
+}
@@ -0,0 +1,121 @@
+package org.aksw.limes.core.measures.mapper;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import org.aksw.limes.core.io.mapping.CompactMapping;
+import org.aksw.limes.core.io.mapping.Mapping;
+import org.aksw.limes.core.io.mapping.MemoryMapping;
+import org.aksw.limes.core.measures.mapper.MappingOperations.Operator;
+import org.junit.Test;
+
+/**
+ * Checks the merge of the set operators against a link by link computation,
+ * for memory mappings as returned by the mappers, for compact mappings and
+ * for a mix of both.
+ */
+public class MappingOperationsTest {
+
+    private static final Operator[] OPERATORS = { Operator.AND, Operator.OR, Operator.DIFF, Operator.XOR };
+
+    private static Mapping randomMapping(Random random, Mapping mapping) {
+	for (int i = 0; i < 2000; i++) {
+	    mapping.add("s" + random.nextInt(100), "t" + random.nextInt(100), random.nextInt(10) / 10d);
+	}
+	return mapping;
+    }
+
+    private static Map<String, Map<String, Double>> links(Mapping mapping) {
+	Map<String, Map<String, Double>> links = new HashMap<String, Map<String, Double>>();
+	for (String s : mapping.getMap().keySet()) {
+	    for (String t : mapping.getMap().get(s).keySet()) {
+		if (!links.containsKey(s)) {
+		    links.put(s, new HashMap<String, Double>());
+		}
+		links.get(s).put(t, mapping.getConfidence(s, t));
+	    }
+	}
+	return links;
+    }
+
+    private static Map<String, Map<String, Double>> expected(Mapping map1, Mapping map2, Operator op) {
+	Mapping expected = new MemoryMapping();
+	for (String s : map1.getMap().keySet()) {
+	    for (String t : map1.getMap().get(s).keySet()) {
+		double sim1 = map1.getConfidence(s, t);
+		boolean both = map2.contains(s, t);
+		if (op == Operator.AND && both) {
+		    expected.add(s, t, Math.min(sim1, map2.getConfidence(s, t)));
+		} else if (op == Operator.OR) {
+		    expected.add(s, t, both ? Math.max(sim1, map2.getConfidence(s, t)) : sim1);
+		} else if ((op == Operator.DIFF || op == Operator.XOR) && !both) {
+		    expected.add(s, t, sim1);
+		}
+	    }
+	}
+	for (String s : map2.getMap().keySet()) {
+	    for (String t : map2.getMap().get(s).keySet()) {
+		if ((op == Operator.OR || op == Operator.XOR) && !map1.contains(s, t)) {
+		    expected.add(s, t, map2.getConfidence(s, t));
+		}
+	    }
+	}
+	return links(expected);
+    }
+
+    private static void check(Mapping map1, Mapping map2) {
+	for (Operator op : OPERATORS) {
+	    Mapping actual = MappingOperations.getMapping(map1, map2, op);
+	    // merged, not hashed
+	    assertTrue(op.toString(), actual instanceof CompactMapping);
+	    Map<String, Map<String, Double>> expected = expected(map1, map2, op);
+	    assertTrue(op.toString(), !expected.isEmpty());
+	    assertEquals(op.toString(), expected, links(actual));
+	}
+    }
+
+    @Test
+    public void testMemoryMappings() {
+	Random random = new Random(1);
+	check(randomMapping(random, new MemoryMapping()), randomMapping(random, new MemoryMapping()));
+    }
+
+    @Test
+    public void testCompactMappings() {
+	Random random = new Random(2);
+	CompactMapping map1 = (CompactMapping) randomMapping(random, new CompactMapping());
+	Mapping map2 = randomMapping(random,
+		new CompactMapping(map1.getSourceDictionary(), map1.getTargetDictionary()));
+	check(map1, map2);
+    }
+
+    @Test
+    public void testMixedMappings() {
+	Random random = new Random(3);
+	Mapping map1 = randomMapping(random, new MemoryMapping());
+	Mapping map2 = randomMapping(random, new CompactMapping());
+	check(map1, map2);
+	check(map2, map1);
+    }
+
+    @Test
+    public void testNestedOperators() {
+	Random random = new Random(4);
+	Mapping map1 = randomMapping(random, new MemoryMapping());
+	Mapping map2 = randomMapping(random, new MemoryMapping());
+	Mapping map3 = randomMapping(random, new MemoryMapping());
+	Mapping union = MappingOperations.union(map1, map2);
+	Mapping actual = MappingOperations.intersection(union, map3);
+	Mapping expected = new MemoryMapping();
+	for (Map.Entry<String, Map<String, Double>> e : expected(map1, map2, Operator.OR).entrySet()) {
+	    for (Map.Entry<String, Double> t : e.getValue().entrySet()) {
+		expected.add(e.getKey(), t.getKey(), t.getValue());
+	    }
+	}
+	assertEquals(expected(expected, map3, Operator.AND), links(actual));
+    }
+}
@@ -0,0 +1,111 @@
+package org.aksw.limes.core.measures.mapper.atomic;
+
+import java.util.Random;
+
+import org.aksw.limes.core.io.cache.Cache;
+import org.aksw.limes.core.io.cache.MemoryCache;
+import org.aksw.limes.core.io.mapping.Mapping;
+import org.aksw.limes.core.util.DataGenerator;
+
+/**
+ * Compares the threshold-bounded edit distance used by the verification of
+ * {@link EDJoin} with the full dynamic programming edit distance, and runs
+ * EDJoin on generated data. The strings are random lower case strings, each
+ * with a copy that differs by a few random edits, so that the bounded edit
+ * distance sees both pairs within and beyond the threshold.
+ *
+ * Usage: EDJoinBenchmark [number of strings] [minimal length] [maximal
+ * length]
+ */
+public class EDJoinBenchmark {
+
+    private static final int MAX_TAU = 3;
+
+    public static void main(String args[]) {
+	int size = (args.length > 0) ? Integer.parseInt(args[0]) : 20000;
+	int minLength = (args.length > 1) ? Integer.parseInt(args[1]) : 5;
+	int maxLength = (args.length > 2) ? Integer.parseInt(args[2]) : 40;
+	Random random = new Random(42);
+	String[] strings = new String[size];
+	String[] variants = new String[size];
+	for (int i = 0; i < size; i++) {
+	    strings[i] = generateString(random, minLength, maxLength);
+	    variants[i] = edit(random, strings[i], random.nextInt(2 * MAX_TAU + 1));
+	}
+
+	// warm up
+	compare(strings, variants, MAX_TAU, false);
+	for (int tau = 1; tau <= MAX_TAU; tau++) {
+	    compare(strings, variants, tau, true);
+	}
+
+	Cache source = new MemoryCache();
+	Cache target = new MemoryCache();
+	for (int i = 0; i < size; i++) {
+	    source.addTriple("s" + i, DataGenerator.LABEL, strings[i]);
+	    target.addTriple("t" + i, DataGenerator.LABEL, variants[i]);
+	}
+	for (int tau = 1; tau <= MAX_TAU; tau++) {
+	    // EDJoin converts the similarity threshold theta to the distance
+	    // (1 - theta) / theta
+	    double threshold = 1d / (1 + tau);
+	    long begin = System.currentTimeMillis();
+	    Mapping mapping = new EDJoin().getMapping(source, target, "?x", "?y",
+		    "levenshtein(x." + DataGenerator.LABEL + ", y." + DataGenerator.LABEL + ")", threshold);
+	    System.out.println("EDJoin, tau = " + tau + ": " + mapping.getNumberofMappings() + " links in "
+		    + (System.currentTimeMillis() - begin) + " ms");
+	}
+    }
+
+    private static void compare(String[] strings, String[] variants, int tau, boolean print) {
+	int agreeing = 0;
+	long begin = System.nanoTime();
+	int[] full = new int[strings.length];
+	for (int i = 0; i < strings.length; i++) {
+	    full[i] = EDJoin.editDistance(strings[i], variants[i]);
+	}
+	long fullTime = System.nanoTime() - begin;
+	begin = System.nanoTime();
+	int[] bounded = new int[strings.length];
+	for (int i = 0; i < strings.length; i++) {
+	    bounded[i] = EDJoin.editDistance(strings[i], variants[i], tau);
+	}
+	long boundedTime = System.nanoTime() - begin;
+	for (int i = 0; i < strings.length; i++) {
+	    if (bounded[i] == Math.min(full[i], tau + 1)) {
+		agreeing++;
+	    }
+	}
+	if (print) {
+	    System.out.println("tau = " + tau + ": full " + fullTime / 1000000 + " ms, bounded "
+		    + boundedTime / 1000000 + " ms, " + agreeing + " of " + strings.length + " results agree");
+	}
+    }
+
+    private static String generateString(Random random, int minLength, int maxLength) {
+	int length = minLength + random.nextInt(maxLength - minLength + 1);
+	StringBuilder s = new StringBuilder(length);
+	for (int i = 0; i < length; i++) {
+	    s.append((char) ('a' + random.nextInt(26)));
+	}
+	return s.toString();
+    }
+
+    /**
+     * Applies random insertions, deletions and substitutions to a string
+     */
+    private static String edit(Random random, String s, int edits) {
+	StringBuilder result = new StringBuilder(s);
+	for (int i = 0; i < edits; i++) {
+	    int operation = random.nextInt(3);
+	    if (operation == 0 || result.length() == 0) {
+		result.insert(random.nextInt(result.length() + 1), (char) ('a' + random.nextInt(26)));
+	    } else if (operation == 1) {
+		result.deleteCharAt(random.nextInt(result.length()));
+	    } else {
+		result.setCharAt(random.nextInt(result.length()), (char) ('a' + random.nextInt(26)));
+	    }
+	}
+	return result.toString();
+    }
+}
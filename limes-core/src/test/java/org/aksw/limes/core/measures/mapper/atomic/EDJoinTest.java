@@ -0,0 +1,90 @@
+package org.aksw.limes.core.measures.mapper.atomic;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.Callable;
+
+import org.aksw.limes.core.io.cache.Cache;
+import org.aksw.limes.core.io.mapping.Mapping;
+import org.aksw.limes.core.measures.mapper.MapperTestUtils;
+import org.junit.Test;
+
+/**
+ * Checks that concurrent calls of one EDJoin instance return the mapping of a
+ * serial call, and that the bounded edit distance used by the verification
+ * matches the full dynamic programming edit distance.
+ */
+public class EDJoinTest {
+
+    private static final String ALPHABET = "abcde\u00e9\u4e2d";
+
+    private static String randomString(Random random, int length) {
+	StringBuilder s = new StringBuilder();
+	for (int i = 0; i < length; i++) {
+	    // mostly ASCII, so that both the bit-parallel and the banded
+	    // computation are used
+	    s.append(ALPHABET.charAt(random.nextInt(random.nextInt(10) == 0 ? ALPHABET.length() : 5)));
+	}
+	return s.toString();
+    }
+
+    private static String edit(Random random, String s, int edits) {
+	StringBuilder t = new StringBuilder(s);
+	for (int i = 0; i < edits; i++) {
+	    int position = random.nextInt(t.length() + 1);
+	    int operation = random.nextInt(3);
+	    if (operation == 0 || t.length() == 0) {
+		t.insert(position, randomString(random, 1));
+	    } else if (operation == 1 || position == t.length()) {
+		t.deleteCharAt(Math.min(position, t.length() - 1));
+	    } else {
+		t.setCharAt(position, randomString(random, 1).charAt(0));
+	    }
+	}
+	return t.toString();
+    }
+
+    @Test
+    public void testBoundedEditDistanceMatchesFullEditDistance() {
+	Random random = new Random(7);
+	for (int k = 0; k < 3000; k++) {
+	    // lengths up to 150, i.e., also beyond the 64 characters of the
+	    // bit-parallel computation
+	    String x = randomString(random, random.nextInt(k % 3 == 0 ? 150 : 70));
+	    String y = (k % 4 == 0) ? randomString(random, random.nextInt(150)) : edit(random, x, random.nextInt(8));
+	    int distance = EDJoin.editDistance(x, y);
+	    for (int tau : new int[] { 0, 1, 2, 3, 5, distance - 1, distance, distance + 1 }) {
+		if (tau < 0) {
+		    continue;
+		}
+		int expected = (distance <= tau) ? distance : tau + 1;
+		assertEquals(x + " / " + y + " / " + tau, expected, EDJoin.editDistance(x, y, tau));
+		assertEquals(y + " / " + x + " / " + tau, expected, EDJoin.editDistance(y, x, tau));
+	    }
+	}
+    }
+
+    @Test
+    public void testConcurrentCallsMatchSerialCall() throws Exception {
+	final Cache source = MapperTestUtils.createCache("s", 400, 3);
+	final Cache target = MapperTestUtils.createCache("t", 400, 4);
+	final String expression = "levenshtein(x.name, y.name)";
+	final double threshold = 0.5;
+	final EDJoin mapper = new EDJoin();
+
+	Mapping serial = mapper.getMapping(source, target, "?x", "?y", expression, threshold);
+	assertTrue(serial.size() > 0);
+	List<Mapping> mappings = MapperTestUtils.getMappingsConcurrently(new Callable<Mapping>() {
+	    public Mapping call() {
+		return mapper.getMapping(source, target, "?x", "?y", expression, threshold);
+	    }
+	});
+	for (Mapping m : mappings) {
+	    assertEquals(serial.size(), m.size());
+	    assertEquals(serial.getMap(), m.getMap());
+	}
+    }
+}
@@ -0,0 +1,86 @@
+package org.aksw.limes.core.measures.mapper.atomic;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.aksw.limes.core.io.cache.Cache;
+import org.aksw.limes.core.io.cache.MemoryCache;
+import org.aksw.limes.core.io.mapping.Mapping;
+import org.aksw.limes.core.io.mapping.MemoryMapping;
+import org.aksw.limes.core.measures.measure.string.JaroWinkler;
+import org.junit.Test;
+
+/**
+ * Checks the JaroWinklerMapper against the nested loop over all pairs of
+ * values, both if the longest value is a source value and if it is a target
+ * value. In the former case, the lists are swapped internally and the links
+ * must be swapped back.
+ */
+public class JaroWinklerMapperTest {
+
+    private static final String LETTERS = "aabcdeeilmnorst";
+
+    private static List<String> randomNames(Random random, int count, int maxLength) {
+	List<String> names = new ArrayList<String>();
+	for (int i = 0; i < count; i++) {
+	    StringBuilder name = new StringBuilder();
+	    int length = 1 + random.nextInt(maxLength);
+	    for (int j = 0; j < length; j++) {
+		name.append(LETTERS.charAt(random.nextInt(LETTERS.length())));
+	    }
+	    names.add(name.toString());
+	}
+	return names;
+    }
+
+    private static Cache createCache(String prefix, List<String> names) {
+	Cache cache = new MemoryCache();
+	for (int i = 0; i < names.size(); i++) {
+	    cache.addTriple(prefix + i, "name", names.get(i));
+	}
+	return cache;
+    }
+
+    private static Mapping nestedLoop(List<String> sources, List<String> targets, double threshold) {
+	JaroWinkler measure = new JaroWinkler();
+	Mapping mapping = new MemoryMapping();
+	for (int i = 0; i < sources.size(); i++) {
+	    for (int j = 0; j < targets.size(); j++) {
+		double similarity = measure.proximity(sources.get(i), targets.get(j));
+		if (similarity >= threshold) {
+		    mapping.add("s" + i, "t" + j, similarity);
+		}
+	    }
+	}
+	return mapping;
+    }
+
+    private static void check(List<String> sources, List<String> targets) {
+	Cache source = createCache("s", sources);
+	Cache target = createCache("t", targets);
+	for (double threshold : new double[] { 0.8, 0.9, 0.95 }) {
+	    Mapping expected = nestedLoop(sources, targets, threshold);
+	    Mapping actual = new JaroWinklerMapper().getMapping(source, target, "?x", "?y",
+		    "jarowinkler(x.name, y.name)", threshold);
+	    assertTrue(expected.size() > 0);
+	    assertEquals(expected.size(), actual.size());
+	    assertEquals(expected.getMap(), actual.getMap());
+	}
+    }
+
+    @Test
+    public void testLongestValueInTarget() {
+	Random random = new Random(1);
+	check(randomNames(random, 200, 8), randomNames(random, 200, 12));
+    }
+
+    @Test
+    public void testLongestValueInSource() {
+	Random random = new Random(2);
+	check(randomNames(random, 200, 12), randomNames(random, 200, 8));
+    }
+}
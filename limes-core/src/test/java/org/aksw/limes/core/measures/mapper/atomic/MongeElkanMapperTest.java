@@ -0,0 +1,108 @@
+package org.aksw.limes.core.measures.mapper.atomic;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+
+import org.aksw.limes.core.io.cache.Cache;
+import org.aksw.limes.core.io.cache.MemoryCache;
+import org.aksw.limes.core.io.mapping.Mapping;
+import org.aksw.limes.core.measures.measure.string.MongeElkan;
+import org.junit.Test;
+
+/**
+ * Checks the pruned comparison of the MongeElkanMapper against the unpruned
+ * nested loop over the MongeElkan measure.
+ */
+public class MongeElkanMapperTest {
+
+    private static final String LETTERS = "aabdeeilnorst";
+
+    private static String randomText(Random random) {
+	StringBuilder text = new StringBuilder();
+	int tokens = 1 + random.nextInt(4);
+	for (int i = 0; i < tokens; i++) {
+	    if (i > 0) {
+		text.append(' ');
+	    }
+	    // empty tokens too
+	    int length = random.nextInt(7);
+	    for (int j = 0; j < length; j++) {
+		text.append(LETTERS.charAt(random.nextInt(LETTERS.length())));
+	    }
+	}
+	return text.toString();
+    }
+
+    private static Set<String> randomTexts(Random random, int count) {
+	Set<String> texts = new HashSet<String>();
+	while (texts.size() < count) {
+	    texts.add(randomText(random));
+	}
+	return texts;
+    }
+
+    @Test
+    public void testSameLinksAsNestedLoop() {
+	Random random = new Random(1);
+	// enough source values for several threads
+	Set<String> sources = randomTexts(random, 800);
+	Set<String> targets = randomTexts(random, 300);
+	MongeElkan measure = new MongeElkan();
+	for (double threshold : new double[] { 0.3, 0.6, 0.9 }) {
+	    Map<String, Map<String, Double>> actual = new MongeElkanMapper().mongeElkan(sources, targets, threshold);
+	    assertEquals(sources, actual.keySet());
+	    int expected = 0;
+	    int size = 0;
+	    for (String s : sources) {
+		for (String t : targets) {
+		    double similarity = measure.proximity(s, t);
+		    if (similarity >= threshold) {
+			expected++;
+			assertTrue(s + " / " + t, actual.get(s).containsKey(t));
+			assertEquals(similarity, actual.get(s).get(t), 1e-9);
+		    }
+		}
+		size += actual.get(s).size();
+	    }
+	    assertTrue(expected > 0);
+	    assertEquals(expected, size);
+	}
+    }
+
+    @Test
+    public void testMappingOfCaches() {
+	Random random = new Random(2);
+	Cache source = new MemoryCache();
+	Cache target = new MemoryCache();
+	for (int i = 0; i < 300; i++) {
+	    source.addTriple("s" + i, "name", randomText(random));
+	    target.addTriple("t" + i, "name", randomText(random));
+	}
+	// a value shared by several instances
+	source.addTriple("s300", "name", source.getInstance("s0").getProperty("name").first());
+	Mapping mapping = new MongeElkanMapper().getMapping(source, target, "?x", "?y",
+		"mongeelkan(x.name, y.name)", 0.5);
+	MongeElkan measure = new MongeElkan();
+	int expected = 0;
+	for (String s : source.getAllUris()) {
+	    for (String t : target.getAllUris()) {
+		double similarity = measure.getSimilarity(source.getInstance(s), target.getInstance(t), "name", "name");
+		if (similarity >= 0.5) {
+		    expected++;
+		    assertEquals(similarity, mapping.getConfidence(s, t), 1e-9);
+		}
+	    }
+	}
+	int size = 0;
+	for (Map<String, Double> links : mapping.getMap().values()) {
+	    size += links.size();
+	}
+	assertTrue(expected > 0);
+	assertEquals(expected, size);
+    }
+}
@@ -0,0 +1,49 @@
+package org.aksw.limes.core.measures.mapper.atomic;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.List;
+import java.util.concurrent.Callable;
+
+import org.aksw.limes.core.io.cache.Cache;
+import org.aksw.limes.core.io.mapping.Mapping;
+import org.aksw.limes.core.measures.mapper.MapperTestUtils;
+import org.junit.Test;
+
+/**
+ * Checks that parallel and concurrent calls of one PPJoinPlusPlus instance
+ * return the mapping of a serial call.
+ */
+public class PPJoinPlusPlusTest {
+
+    // more probes than 1000 per thread, so that the probes are split among
+    // PARALLELISM workers
+    private static final int SIZE = 5000;
+    private static final int PARALLELISM = 4;
+
+    @Test
+    public void testConcurrentCallsMatchSerialCall() throws Exception {
+	final Cache source = MapperTestUtils.createCache("s", SIZE, 1);
+	final Cache target = MapperTestUtils.createCache("t", SIZE, 2);
+	final String expression = "trigrams(x.name, y.name)";
+	final double threshold = 0.5;
+	final PPJoinPlusPlus mapper = new PPJoinPlusPlus();
+	Callable<Mapping> call = new Callable<Mapping>() {
+	    public Mapping call() {
+		return mapper.getMapping(source, target, "?x", "?y", expression, threshold);
+	    }
+	};
+
+	Mapping serial = MapperTestUtils.pinned(call, 1).call();
+	assertTrue(serial.size() > 0);
+	Mapping parallel = MapperTestUtils.pinned(call, PARALLELISM).call();
+	assertEquals(serial.size(), parallel.size());
+	assertEquals(serial.getMap(), parallel.getMap());
+	List<Mapping> mappings = MapperTestUtils.getMappingsConcurrently(MapperTestUtils.pinned(call, PARALLELISM));
+	for (Mapping m : mappings) {
+	    assertEquals(serial.size(), m.size());
+	    assertEquals(serial.getMap(), m.getMap());
+	}
+    }
+}
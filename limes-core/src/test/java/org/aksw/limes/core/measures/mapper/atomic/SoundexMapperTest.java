@@ -0,0 +1,164 @@
+package org.aksw.limes.core.measures.mapper.atomic;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.aksw.limes.core.io.cache.Cache;
+import org.aksw.limes.core.io.cache.MemoryCache;
+import org.aksw.limes.core.io.mapping.Mapping;
+import org.aksw.limes.core.io.mapping.MemoryMapping;
+import org.aksw.limes.core.measures.mapper.atomic.soundex.SoundexCodes;
+import org.junit.Test;
+
+/**
+ * Checks the soundex codes and the mappings of the SoundexMapper against the
+ * former implementation, which computed the codes of all values on each call
+ * and compared every source code with the target codes.
+ */
+public class SoundexMapperTest {
+
+    private static final int CODE_LENGTH = 6;
+    private static final String LETTERS = "abcdefghijklmnopqrstuvwxyzAEHW- '";
+
+    private static String randomName(Random random) {
+	StringBuilder name = new StringBuilder();
+	int length = random.nextInt(12);
+	for (int i = 0; i < length; i++) {
+	    name.append(LETTERS.charAt(random.nextInt(LETTERS.length())));
+	}
+	return name.toString();
+    }
+
+    private static Cache createCache(String prefix, List<String> names) {
+	Cache cache = new MemoryCache();
+	for (int i = 0; i < names.size(); i++) {
+	    cache.addTriple(prefix + i, "name", names.get(i));
+	}
+	return cache;
+    }
+
+    // code of a character in the former implementation
+    private static int oldCode(char x) {
+	switch (x) {
+	case 'B':
+	case 'F':
+	case 'P':
+	case 'V':
+	    return 1;
+	case 'C':
+	case 'G':
+	case 'J':
+	case 'K':
+	case 'Q':
+	case 'S':
+	case 'X':
+	case 'Z':
+	    return 2;
+	case 'D':
+	case 'T':
+	    return 3;
+	case 'L':
+	    return 4;
+	case 'M':
+	case 'N':
+	    return 5;
+	case 'R':
+	    return 6;
+	default:
+	    return -1;
+	}
+    }
+
+    // code of a string in the former implementation
+    private static String oldCode(String string) {
+	char[] in = string.toUpperCase().toCharArray();
+	char[] out = new char[CODE_LENGTH];
+	int i = 0;
+	int j = 0;
+	while (i < in.length && j < CODE_LENGTH) {
+	    if (in[i] != 'A' && in[i] != 'E' && in[i] != 'I' && in[i] != 'O' && in[i] != 'U' && in[i] != 'Y'
+		    && in[i] != 'H' && in[i] != 'W') {
+		if (j == 0) {
+		    out[j] = in[i];
+		    j++;
+		} else {
+		    int t = oldCode(in[i]);
+		    if (t > 0) {
+			out[j] = String.valueOf(t).charAt(0);
+			j++;
+		    }
+		}
+		if (i < in.length - 1 && in[i] == in[i + 1])
+		    i++;
+		else if (i < in.length - 2 && in[i] == in[i + 2] && (in[i + 1] == 'H' || in[i + 1] == 'W'))
+		    i += 2;
+	    }
+	    i++;
+	}
+	while (j < CODE_LENGTH) {
+	    out[j] = '0';
+	    j++;
+	}
+	return String.valueOf(out);
+    }
+
+    // mapping of the former implementation: all pairs of values whose codes
+    // are within the Hamming distance that follows from the threshold
+    private static Mapping oldMapping(List<String> sources, List<String> targets, double threshold) {
+	int maxDistance = (int) Math.floor(CODE_LENGTH * (1 - threshold));
+	Mapping mapping = new MemoryMapping();
+	for (int i = 0; i < sources.size(); i++) {
+	    String a = oldCode(sources.get(i));
+	    for (int j = 0; j < targets.size(); j++) {
+		String b = oldCode(targets.get(j));
+		int distance = 0;
+		for (int k = 0; k < CODE_LENGTH; k++) {
+		    if (a.charAt(k) != b.charAt(k)) {
+			distance++;
+		    }
+		}
+		if (distance <= maxDistance) {
+		    mapping.add("s" + i, "t" + j, 1.0d - (distance / (double) CODE_LENGTH));
+		}
+	    }
+	}
+	return mapping;
+    }
+
+    @Test
+    public void testCodesMatchFormerCodes() {
+	Random random = new Random(1);
+	for (int i = 0; i < 10000; i++) {
+	    String name = randomName(random);
+	    assertEquals(name, oldCode(name), SoundexCodes.getCode(name));
+	}
+    }
+
+    @Test
+    public void testMappingsMatchFormerMappings() {
+	Random random = new Random(2);
+	List<String> sources = new ArrayList<String>();
+	List<String> targets = new ArrayList<String>();
+	for (int i = 0; i < 300; i++) {
+	    sources.add(randomName(random));
+	    targets.add(randomName(random));
+	}
+	// duplicate values share their codes and URIs
+	sources.add(targets.get(0));
+	targets.add(sources.get(0));
+	Cache source = createCache("s", sources);
+	Cache target = createCache("t", targets);
+	for (double threshold : new double[] { 0.5, 0.6, 0.7, 0.8, 0.9, 1.0 }) {
+	    Mapping expected = oldMapping(sources, targets, threshold);
+	    Mapping actual = new SoundexMapper().getMapping(source, target, "?x", "?y",
+		    "soundex(x.name, y.name)", threshold);
+	    assertTrue(expected.size() > 0);
+	    assertEquals(expected.size(), actual.size());
+	    assertEquals(expected.getMap(), actual.getMap());
+	}
+    }
+}
@@ -0,0 +1,101 @@
+package org.aksw.limes.core.measures.mapper.atomic.exactmatch;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.aksw.limes.core.io.cache.Cache;
+import org.aksw.limes.core.io.cache.MemoryCache;
+import org.aksw.limes.core.io.mapping.Mapping;
+import org.aksw.limes.core.io.mapping.MemoryMapping;
+import org.aksw.limes.core.measures.mapper.atomic.ExactMatchMapper;
+import org.junit.Test;
+
+/**
+ * Checks the hash join against the nested loop join, with budgets so small
+ * that most partitions are spilled, and that the spilled partitions are
+ * deleted afterwards.
+ */
+public class PartitionedHashJoinTest {
+
+    private static List<String[]> createEntries(String prefix, Random random, int count, int keys) {
+	List<String[]> entries = new ArrayList<String[]>();
+	for (int i = 0; i < count; i++) {
+	    entries.add(new String[] { "key" + random.nextInt(keys), prefix + random.nextInt(count) });
+	}
+	return entries;
+    }
+
+    private static Mapping nestedLoop(List<String[]> sources, List<String[]> targets) {
+	Mapping mapping = new MemoryMapping();
+	for (String[] s : sources) {
+	    for (String[] t : targets) {
+		if (s[0].equals(t[0])) {
+		    mapping.add(s[1], t[1], 1d);
+		}
+	    }
+	}
+	return mapping;
+    }
+
+    private static void check(int partitions, long budget, int sourceCount, int targetCount) throws IOException {
+	Random random = new Random(budget * 31 + sourceCount);
+	List<String[]> sources = createEntries("s", random, sourceCount, 300);
+	List<String[]> targets = createEntries("t", random, targetCount, 300);
+	File directory = Files.createTempDirectory("limes-join-test").toFile();
+	PartitionedHashJoin join = new PartitionedHashJoin(partitions, budget, directory);
+	for (String[] s : sources) {
+	    join.addSource(s[0], s[1]);
+	}
+	for (String[] t : targets) {
+	    join.addTarget(t[0], t[1]);
+	}
+	if (budget < sourceCount + targetCount) {
+	    assertTrue(directory.list().length > 0);
+	}
+	Mapping expected = nestedLoop(sources, targets);
+	Mapping actual = join.join();
+	assertEquals(expected.size(), actual.size());
+	assertEquals(expected.getMap(), actual.getMap());
+	assertEquals(0, directory.list().length);
+	directory.delete();
+    }
+
+    @Test
+    public void testInMemory() throws IOException {
+	check(8, Long.MAX_VALUE, 2000, 1500);
+    }
+
+    @Test
+    public void testSpilledWithTinyBudget() throws IOException {
+	check(8, 1, 2000, 1500);
+	check(8, 7, 1500, 2000);
+	check(4, 50, 2000, 1500);
+	check(1, 10, 500, 3000);
+    }
+
+    @Test
+    public void testMapperWithBudget() {
+	Random random = new Random(3);
+	Cache source = new MemoryCache();
+	Cache target = new MemoryCache();
+	for (int i = 0; i < 1000; i++) {
+	    source.addTriple("s" + i, "name", "name" + random.nextInt(400));
+	    target.addTriple("t" + i, "name", "name" + random.nextInt(400));
+	}
+	String expression = "exactmatch(x.name, y.name)";
+	Mapping expected = new ExactMatchMapper().getMapping(source, target, "?x", "?y", expression, 1d);
+	assertTrue(expected.size() > 0);
+	ExactMatchMapper mapper = new ExactMatchMapper();
+	mapper.setMemoryBudget(20, null);
+	Mapping actual = mapper.getMapping(source, target, "?x", "?y", expression, 1d);
+	assertEquals(expected.size(), actual.size());
+	assertEquals(expected.getMap(), actual.getMap());
+    }
+}
@@ -0,0 +1,71 @@
+package org.aksw.limes.core.measures.mapper.atomic.fastngram;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+
+import org.aksw.limes.core.io.mapping.Mapping;
+import org.aksw.limes.core.measures.measure.string.QGramSimilarity;
+import org.junit.Test;
+
+/**
+ * Checks the FastNGram join on the token index against the nested loop over
+ * QGramSimilarity, in a single thread and in several threads.
+ */
+public class FastNGramTest {
+
+    private static final String LETTERS = "aabcdeeilmnorst";
+
+    private static Set<String> randomStrings(Random random, int count, int maxLength) {
+	Set<String> strings = new HashSet<String>();
+	while (strings.size() < count) {
+	    StringBuilder s = new StringBuilder();
+	    int length = 3 + random.nextInt(maxLength - 2);
+	    for (int j = 0; j < length; j++) {
+		s.append(LETTERS.charAt(random.nextInt(LETTERS.length())));
+	    }
+	    strings.add(s.toString());
+	}
+	return strings;
+    }
+
+    private static void check(Set<String> sources, Set<String> targets, int threads) {
+	QGramSimilarity measure = new QGramSimilarity();
+	for (double threshold : new double[] { 0.3, 0.5, 0.8 }) {
+	    Mapping actual = FastNGram.compute(sources, targets, 3, threshold, threads);
+	    int expected = 0;
+	    for (String s : sources) {
+		for (String t : targets) {
+		    double similarity = measure.getSimilarity(s, t);
+		    if (similarity >= threshold) {
+			expected++;
+			assertEquals(similarity, actual.getConfidence(s, t), 1e-9);
+		    }
+		}
+	    }
+	    assertTrue(expected > 0);
+	    int size = 0;
+	    for (Map<String, Double> links : actual.getMap().values()) {
+		size += links.size();
+	    }
+	    assertEquals(expected, size);
+	}
+    }
+
+    @Test
+    public void testSingleThread() {
+	Random random = new Random(1);
+	check(randomStrings(random, 500, 10), randomStrings(random, 500, 10), 1);
+    }
+
+    @Test
+    public void testThreads() {
+	// enough sources for four threads
+	Random random = new Random(2);
+	check(randomStrings(random, 4500, 8), randomStrings(random, 100, 8), 4);
+    }
+}
@@ -0,0 +1,83 @@
+package org.aksw.limes.core.measures.measure;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Random;
+
+import org.aksw.limes.core.execution.engine.SimpleExecutionEngine;
+import org.aksw.limes.core.execution.planning.planner.CanonicalPlanner;
+import org.aksw.limes.core.io.cache.Cache;
+import org.aksw.limes.core.io.cache.Instance;
+import org.aksw.limes.core.io.cache.MemoryCache;
+import org.aksw.limes.core.io.ls.LinkSpecification;
+import org.aksw.limes.core.io.mapping.Mapping;
+import org.junit.Test;
+
+/**
+ * Checks that a compiled expression scores every pair of instances with the
+ * similarity the execution engine links it with, and with 0 if the engine
+ * does not link it.
+ */
+public class MeasureEvaluatorTest {
+
+    private static final String[] WORDS = { "berlin", "bern", "leipzig", "lipsia", "dresden", "dresda", "bonn",
+	    "boon" };
+
+    private static Cache createCache(String prefix, Random random) {
+	Cache cache = new MemoryCache();
+	for (int i = 0; i < 60; i++) {
+	    for (int j = 0; j <= random.nextInt(2); j++) {
+		String name = WORDS[random.nextInt(WORDS.length)];
+		if (random.nextBoolean()) {
+		    name = name + " " + WORDS[random.nextInt(WORDS.length)];
+		}
+		cache.addTriple(prefix + i, "name", name);
+	    }
+	}
+	return cache;
+    }
+
+    private static void check(String expression, double threshold) {
+	Random random = new Random(expression.hashCode());
+	Cache source = createCache("s", random);
+	Cache target = createCache("t", random);
+	LinkSpecification spec = new LinkSpecification();
+	spec.readSpec(expression, threshold);
+	Mapping mapping = new SimpleExecutionEngine(source, target, "?x", "?y")
+		.execute(new CanonicalPlanner().plan(spec));
+	assertTrue(expression, mapping.size() > 0);
+	MeasureEvaluator evaluator = MeasureEvaluator.compile(expression, threshold, "?x", "?y");
+	for (Instance s : source.getAllInstances()) {
+	    for (Instance t : target.getAllInstances()) {
+		double expected = mapping.contains(s.getUri(), t.getUri())
+			? mapping.getConfidence(s.getUri(), t.getUri()) : 0;
+		assertEquals(expression + " " + s + " " + t, expected, evaluator.score(s, t), 1e-6);
+	    }
+	}
+    }
+
+    @Test
+    public void testAtomicExpressions() {
+	check("trigrams(x.name, y.name)", 0.5);
+	check("jaccard(x.name, y.name)", 0.4);
+	check("cosine(x.name, y.name)", 0.5);
+	check("levenshtein(x.name, y.name)", 0.6);
+	check("jaro(x.name, y.name)", 0.8);
+	check("ratcliff(x.name, y.name)", 0.7);
+	check("soundex(x.name, y.name)", 0.8);
+	check("qgrams(x.name, y.name)", 0.5);
+    }
+
+    @Test
+    public void testComplexExpressions() {
+	check("AND(trigrams(x.name, y.name)|0.5, jaro(x.name, y.name)|0.8)", 0.5);
+	check("OR(levenshtein(x.name, y.name)|0.8, ratcliff(x.name, y.name)|0.7)", 0.7);
+	check("MINUS(jaccard(x.name, y.name)|0.4, soundex(x.name, y.name)|0.9)", 0.4);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testMissingPropertyIsRejected() {
+	MeasureEvaluator.compile("trigrams(x.name, x.label)", 0.5, "?x", "?y");
+    }
+}
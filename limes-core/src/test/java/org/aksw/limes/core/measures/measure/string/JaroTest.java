@@ -0,0 +1,107 @@
+package org.aksw.limes.core.measures.measure.string;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.aksw.limes.core.io.cache.Instance;
+import org.junit.Test;
+
+/**
+ * Checks that the array based proximity returns the same values as the list
+ * based similarity, also if one instance is shared by several threads, and
+ * that the similarity of two instances is the best similarity of their
+ * values, whatever the order of the values.
+ */
+public class JaroTest {
+
+    private static final String LETTERS = "aabcdeeilmnorst";
+
+    private static String[] randomStrings(long seed, int count) {
+	Random random = new Random(seed);
+	String[] strings = new String[count];
+	for (int i = 0; i < count; i++) {
+	    StringBuilder s = new StringBuilder();
+	    // longer than the initial buffers
+	    int length = random.nextInt(40);
+	    for (int j = 0; j < length; j++) {
+		s.append(LETTERS.charAt(random.nextInt(LETTERS.length())));
+	    }
+	    strings[i] = s.toString();
+	}
+	return strings;
+    }
+
+    @Test
+    public void testProximityEqualsSimilarity() {
+	Jaro jaro = new Jaro();
+	String[] strings = randomStrings(1, 300);
+	for (String a : strings) {
+	    for (String b : strings) {
+		assertEquals(jaro.getSimilarity(a, b), jaro.proximity(a, b), 0);
+	    }
+	}
+    }
+
+    @Test
+    public void testSharedInstance() throws Exception {
+	final Jaro jaro = new Jaro();
+	final String[] strings = randomStrings(2, 200);
+	ExecutorService pool = Executors.newFixedThreadPool(4);
+	try {
+	    List<Callable<Void>> calls = new ArrayList<Callable<Void>>();
+	    for (int i = 0; i < 4; i++) {
+		calls.add(new Callable<Void>() {
+		    public Void call() {
+			for (String a : strings) {
+			    for (String b : strings) {
+				assertEquals(jaro.getSimilarity(a, b), jaro.proximity(a, b), 0);
+			    }
+			}
+			return null;
+		    }
+		});
+	    }
+	    for (Future<Void> future : pool.invokeAll(calls)) {
+		future.get();
+	    }
+	} finally {
+	    pool.shutdown();
+	}
+    }
+
+    @Test
+    public void testInstanceSimilarityIsBestValueSimilarity() {
+	Jaro jaro = new Jaro();
+	Instance s = new Instance("s");
+	s.addProperty("name", "dresden");
+	s.addProperty("name", "zwickau");
+	Instance t = new Instance("t");
+	t.addProperty("name", "dresdner");
+	t.addProperty("name", "aachen");
+	double best = jaro.proximity("dresden", "dresdner");
+	// the best pair is not the last one that is compared
+	assertTrue(best > jaro.proximity("zwickau", "aachen"));
+	assertEquals(best, jaro.getSimilarity(s, t, "name", "name"), 0);
+	assertEquals(best, jaro.getSimilarity(t, s, "name", "name"), 0);
+    }
+
+    @Test
+    public void testInstanceSimilarityUsesStringSimilarity() {
+	Jaro jaro = new Jaro();
+	Instance s = new Instance("s");
+	s.addProperty("name", "martha");
+	Instance t = new Instance("t");
+	t.addProperty("name", "marhta");
+	assertEquals(jaro.getSimilarity("martha", "marhta"), jaro.getSimilarity(s, t, "name", "name"), 1e-6);
+	t.addProperty("name", "xyz");
+	assertEquals(jaro.getSimilarity("martha", "marhta"), jaro.getSimilarity(s, t, "name", "name"), 1e-6);
+    }
+}
@@ -0,0 +1,40 @@
+package org.aksw.limes.core.measures.measure.string;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.aksw.limes.core.io.cache.Instance;
+import org.junit.Test;
+
+/**
+ * Checks the similarity of two instances, which is the best similarity of
+ * their values, whatever the order of the values.
+ */
+public class RatcliffObershelpMeasureTest {
+
+    @Test
+    public void testInstanceSimilarityIsBestValueSimilarity() {
+	RatcliffObershelpMeasure measure = new RatcliffObershelpMeasure();
+	Instance s = new Instance("s");
+	s.addProperty("name", "leipzig");
+	s.addProperty("name", "zwickau");
+	Instance t = new Instance("t");
+	t.addProperty("name", "leipziger");
+	t.addProperty("name", "aachen");
+	double best = measure.proximity("leipzig", "leipziger");
+	// the best pair is not the last one that is compared
+	assertTrue(best > measure.proximity("zwickau", "aachen"));
+	assertEquals(best, measure.getSimilarity(s, t, "name", "name"), 0);
+	assertEquals(best, measure.getSimilarity(t, s, "name", "name"), 0);
+    }
+
+    @Test
+    public void testNoCommonValues() {
+	RatcliffObershelpMeasure measure = new RatcliffObershelpMeasure();
+	Instance s = new Instance("s");
+	s.addProperty("name", "abc");
+	Instance t = new Instance("t");
+	t.addProperty("name", "xyz");
+	assertEquals(0, measure.getSimilarity(s, t, "name", "name"), 0);
+    }
+}